@@ -43,9 +43,26 @@ public class LocalLibraryManager {
   private StorageFactory storageFactory;
   private File androidJar;
   private File lambdaStubs;
+  private File classCacheDirectory;
 
   private Map<String, File> localLibraryJar = new HashMap<>();
 
+  /** Whether the DX intern tables hold the types of android.jar */
+  private static boolean internTablesPreloaded;
+
+  /**
+   * Method size, in rop instructions times registers, above which DX skips SCCP and escape
+   * analysis. Only the largest methods of typical libraries go past it, and optimizing those
+   * takes about a third of the optimizer's time.
+   */
+  private static final long CHEAP_OPTIMIZE_ABOVE = 100_000;
+
+  /**
+   * Method size above which DX does not optimize at all. Ordinary code stays below it; the
+   * generated {@code <clinit>} and switch methods past it can take seconds each to optimize.
+   */
+  private static final long NO_OPTIMIZE_ABOVE = 500_000;
+
   public LocalLibraryManager(StorageFactory storageFactory, File newDirectory) {
     this.storageFactory = storageFactory;
     this.newDirectory = newDirectory;
@@ -56,6 +73,16 @@ public class LocalLibraryManager {
     this.lambdaStubs = lambdaStubs;
   }
 
+  /**
+   * Sets the directory in which DX caches the translation of each class, so that classes shared
+   * by several versions of a library are only translated once.
+   *
+   * @param classCacheDirectory the cache directory, or {@code null} to translate every class
+   */
+  public void setClassCacheDirectory(File classCacheDirectory) {
+    this.classCacheDirectory = classCacheDirectory;
+  }
+
   public void setTaskListener(TaskListener listener) {
     this.listener = listener;
   }
@@ -145,15 +172,20 @@ public class LocalLibraryManager {
     } else {
       if (!JarCheck.checkJar(jarFile.getAbsolutePath(), 41, 51)) {
         Main.clearInternTables();
+        preloadInternTables(androidJar);
         listener.info("Dexing jar " + jarFile.getParentFile().getName() + " using DX");
-        Main.main(
-            new String[] {
-              "--debug",
-              "--verbose",
-              "--multi-dex",
-              "--output=" + jarFile.getParentFile().getAbsolutePath(),
-              jarFile.getAbsolutePath()
-            });
+        List<String> args = new ArrayList<>();
+        args.add("--debug");
+        args.add("--verbose");
+        args.add("--multi-dex");
+        args.add("--cheap-optimize-above=" + CHEAP_OPTIMIZE_ABOVE);
+        args.add("--no-optimize-above=" + NO_OPTIMIZE_ABOVE);
+        if (classCacheDirectory != null) {
+          args.add("--class-cache=" + classCacheDirectory.getAbsolutePath());
+        }
+        args.add("--output=" + jarFile.getParentFile().getAbsolutePath());
+        args.add(jarFile.getAbsolutePath());
+        Main.main(args.toArray(new String[0]));
       } else {
         throw new DexFailedException(
             jarFile.getParentFile().getName()
@@ -162,6 +194,17 @@ public class LocalLibraryManager {
     }
   }
 
+  /**
+   * Interns the types of android.jar once, so that every DX run shares them instead of interning
+   * them again after {@link Main#clearInternTables()}.
+   */
+  private static synchronized void preloadInternTables(File androidJar) throws IOException {
+    if (!internTablesPreloaded && androidJar != null) {
+      Main.preloadInternTables(androidJar);
+      internTablesPreloaded = true;
+    }
+  }
+
   private List<Path> getCompileResources() {
     List<Path> resources = new ArrayList<>();
     resources.add(lambdaStubs.toPath());
@@ -37,6 +37,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.commons.io.FileUtils;
 import org.json.JSONException;
@@ -143,6 +144,7 @@ public class DependencyManagerFragment extends Fragment
     libraryManager = new LocalLibraryManager(storageFactory, new File(libSaveDir));
 
     libraryManager.setCompileResourcesClassPath(Path.ANDROID_JAR, Path.CORE_LAMDA_STUBS);
+    libraryManager.setClassCacheDirectory(new File(requireContext().getCacheDir(), "dx-classes"));
     logger = new Logger();
     logger.attach(this);
 
@@ -174,12 +176,24 @@ public class DependencyManagerFragment extends Fragment
   }
 
   private void resolveDependencies() {
+    String declaration = binding.tilDepName.getEditText().getText().toString();
+    List<Coordinates> declaredCoordinates = new ArrayList<>();
     try {
-      coordinates = Coordinates.valueOf(binding.tilDepName.getEditText().getText().toString());
+      // a pasted dependencies block is resolved as one graph
+      declaredCoordinates = Coordinates.valuesOf(declaration);
+      if (declaredCoordinates.isEmpty()) {
+        coordinates = Coordinates.valueOf(declaration);
+      } else {
+        coordinates = declaredCoordinates.get(0);
+      }
     } catch (Exception e) {
       logger.e("ERROR", e.getMessage());
     }
-    resolver = new DependencyResolver(storageFactory, coordinates);
+    if (declaredCoordinates.size() > 1) {
+      resolver = new DependencyResolver(storageFactory, declaredCoordinates);
+    } else {
+      resolver = new DependencyResolver(storageFactory, coordinates);
+    }
     storageFactory.attach(resolver);
 
     configureRepositories(resolver, logger);
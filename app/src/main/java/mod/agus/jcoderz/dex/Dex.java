@@ -21,17 +21,20 @@ import mod.agus.jcoderz.dex.Code.Try;
 import mod.agus.jcoderz.dex.MethodHandle.MethodHandleType;
 import mod.agus.jcoderz.dex.util.ByteInput;
 import mod.agus.jcoderz.dex.util.ByteOutput;
+import mod.agus.jcoderz.dex.util.DexHasher;
 import mod.agus.jcoderz.dex.util.FileUtils;
+import mod.agus.jcoderz.dex.util.MappedArchive;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UTFDataFormatException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.AbstractList;
@@ -101,27 +104,80 @@ public final class Dex {
     }
 
     /**
-     * Creates a new dex buffer from the dex file {@code file}.
+     * Creates a new dex buffer from the dex file {@code file}. Plain dex
+     * files and stored archive entries are memory-mapped rather than read,
+     * so the resulting dex is read-only.
      */
     public Dex(File file) throws IOException {
         if (FileUtils.hasArchiveSuffix(file.getName())) {
-            ZipFile zipFile = new ZipFile(file);
-            ZipEntry entry = zipFile.getEntry(mod.agus.jcoderz.dex.DexFormat.DEX_IN_JAR_NAME);
-            if (entry != null) {
-                try (InputStream inputStream = zipFile.getInputStream(entry)) {
-                    loadFrom(inputStream);
+            MappedArchive archive = MappedArchive.open(file);
+            if (archive == null) {
+                loadFromZipFile(file);
+                return;
+            }
+            try {
+                MappedArchive.Entry entry = archive.getEntry(DexFormat.DEX_IN_JAR_NAME);
+                if (entry == null) {
+                    throw new DexException("Expected " + DexFormat.DEX_IN_JAR_NAME
+                            + " in " + file);
                 }
-                zipFile.close();
-            } else {
-                throw new DexException("Expected " + DexFormat.DEX_IN_JAR_NAME + " in " + file);
+                this.data = entry.isStored()
+                        ? archive.slice(entry)
+                        : ByteBuffer.wrap(archive.read(entry));
+            } finally {
+                archive.close();
             }
         } else if (file.getName().endsWith(".dex")) {
-            try (InputStream inputStream = new FileInputStream(file)) {
-                loadFrom(inputStream);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                FileChannel channel = raf.getChannel();
+                this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
             }
         } else {
             throw new DexException("unknown output extension: " + file);
         }
+        this.data.order(ByteOrder.LITTLE_ENDIAN);
+        this.tableOfContents.readFrom(this);
+    }
+
+    /**
+     * Loads the dex of an archive not supported by {@link MappedArchive}.
+     */
+    private void loadFromZipFile(File file) throws IOException {
+        try (ZipFile zipFile = new ZipFile(file)) {
+            ZipEntry entry = zipFile.getEntry(DexFormat.DEX_IN_JAR_NAME);
+            if (entry == null) {
+                throw new DexException("Expected " + DexFormat.DEX_IN_JAR_NAME + " in " + file);
+            }
+            try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                if (entry.getSize() >= 0 && entry.getSize() <= Integer.MAX_VALUE) {
+                    byte[] bytes = new byte[(int) entry.getSize()];
+                    readFully(inputStream, bytes);
+                    this.data = ByteBuffer.wrap(bytes);
+                    this.data.order(ByteOrder.LITTLE_ENDIAN);
+                    this.tableOfContents.readFrom(this);
+                } else {
+                    loadFrom(inputStream);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills {@code bytes} from {@code in}, which must hold exactly as many
+     * bytes.
+     */
+    private static void readFully(InputStream in, byte[] bytes) throws IOException {
+        int length = 0;
+        while (length < bytes.length) {
+            int count = in.read(bytes, length, bytes.length - length);
+            if (count == -1) {
+                break;
+            }
+            length += count;
+        }
+        if (length != bytes.length || in.read() != -1) {
+            throw new DexException("Unexpected dex size in archive");
+        }
     }
 
     /**
@@ -310,8 +366,19 @@ public final class Dex {
      * writes them to the file.
      */
     public void writeHashes() throws IOException {
-        open(SIGNATURE_OFFSET).write(computeSignature());
-        open(CHECKSUM_OFFSET).writeInt(computeChecksum());
+        // A single pass computes both, rather than one per hash.
+        DexHasher hasher = new DexHasher();
+        byte[] buffer = new byte[8192];
+        ByteBuffer data = this.data.duplicate(); // positioned ByteBuffers aren't thread safe
+        data.limit(data.capacity());
+        data.position(0);
+        while (data.hasRemaining()) {
+            int position = data.position();
+            int count = Math.min(buffer.length, data.remaining());
+            data.get(buffer, 0, count);
+            hasher.update(buffer, 0, count, position);
+        }
+        open(CHECKSUM_OFFSET).write(hasher.finish());
     }
 
     /**
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dex.util;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Adler32;
+
+/**
+ * Computes the signature and checksum of a dex file in a single pass, as
+ * its bytes are produced.
+ *
+ * <p>The SHA-1 signature covers the bytes following it, and the Adler-32
+ * checksum covers the signature and the same bytes. Both are therefore
+ * computed over the bytes after the signature, and the checksum of the
+ * signature itself is combined in once the signature is known.</p>
+ */
+public final class DexHasher {
+    /** offset of the checksum within the header */
+    public static final int CHECKSUM_OFFSET = 8;
+
+    /** size of the checksum */
+    private static final int CHECKSUM_SIZE = 4;
+
+    /** size of the signature */
+    private static final int SIGNATURE_SIZE = 20;
+
+    /** offset of the first byte covered by the signature */
+    private static final int SIGNED_OFFSET = CHECKSUM_OFFSET + CHECKSUM_SIZE + SIGNATURE_SIZE;
+
+    /** largest prime smaller than 65536, the modulus of Adler-32 */
+    private static final int ADLER_BASE = 65521;
+
+    /** {@code non-null;} digest of the bytes after the signature */
+    private final MessageDigest digest;
+
+    /** {@code non-null;} checksum of the bytes after the signature */
+    private final Adler32 adler32 = new Adler32();
+
+    /** file offset of the next byte expected */
+    private int cursor;
+
+    /**
+     * Constructs an instance.
+     */
+    public DexHasher() {
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * Adds bytes of the file. Bytes must be added in file order and
+     * without gaps; those preceding the signed range are ignored.
+     *
+     * @param bytes {@code non-null;} the bytes
+     * @param offset offset of the first byte in {@code bytes}
+     * @param length number of bytes
+     * @param fileOffset file offset of the first byte
+     */
+    public void update(byte[] bytes, int offset, int length, int fileOffset) {
+        if (fileOffset != cursor) {
+            throw new IllegalStateException("expected file offset " + cursor
+                    + "; actual value: " + fileOffset);
+        }
+        cursor += length;
+
+        int skip = Math.max(0, SIGNED_OFFSET - fileOffset);
+        if (skip < length) {
+            digest.update(bytes, offset + skip, length - skip);
+            adler32.update(bytes, offset + skip, length - skip);
+        }
+    }
+
+    /**
+     * Completes the computation.
+     *
+     * @return {@code non-null;} the header bytes starting at
+     * {@link #CHECKSUM_OFFSET}, that is the little-endian checksum
+     * followed by the signature
+     */
+    public byte[] finish() {
+        if (cursor < SIGNED_OFFSET) {
+            throw new IllegalStateException("truncated dex file");
+        }
+
+        byte[] result = new byte[CHECKSUM_SIZE + SIGNATURE_SIZE];
+        try {
+            int amt = digest.digest(result, CHECKSUM_SIZE, SIGNATURE_SIZE);
+            if (amt != SIGNATURE_SIZE) {
+                throw new RuntimeException("unexpected digest write: " + amt +
+                        " bytes");
+            }
+        } catch (DigestException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        Adler32 signatureAdler32 = new Adler32();
+        signatureAdler32.update(result, CHECKSUM_SIZE, SIGNATURE_SIZE);
+        int sum = combineAdler32((int) signatureAdler32.getValue(),
+                (int) adler32.getValue(), cursor - SIGNED_OFFSET);
+
+        result[0] = (byte) sum;
+        result[1] = (byte) (sum >> 8);
+        result[2] = (byte) (sum >> 16);
+        result[3] = (byte) (sum >> 24);
+        return result;
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two consecutive byte ranges into
+     * the checksum of their concatenation.
+     *
+     * @param adler1 checksum of the first range
+     * @param adler2 checksum of the second range
+     * @param length2 {@code >= 0;} length of the second range
+     * @return the checksum of both ranges
+     */
+    private static int combineAdler32(int adler1, int adler2, int length2) {
+        long a1 = adler1 & 0xffff;
+        long b1 = (adler1 >>> 16) & 0xffff;
+        long a2 = adler2 & 0xffff;
+        long b2 = (adler2 >>> 16) & 0xffff;
+        long rem = length2 % ADLER_BASE;
+
+        long a = (a1 + a2 + ADLER_BASE - 1) % ADLER_BASE;
+        long b = (b1 + b2 + rem * (a1 + ADLER_BASE - 1)) % ADLER_BASE;
+        return (int) ((b << 16) | a);
+    }
+}
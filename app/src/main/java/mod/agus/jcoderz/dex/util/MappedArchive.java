@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dex.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the entries of a zip archive through a memory mapping of the
+ * whole file. The central directory is parsed directly, and the contents
+ * of each entry are copied or inflated straight into an array of the
+ * entry's exact size, without intermediate stream buffers. Stored entries
+ * can also be accessed in place, as a view of the mapping.
+ *
+ * <p>Only the subset of the format produced by usual jar tools is
+ * supported: archives using zip64 extensions, encryption or compression
+ * methods other than stored and deflated are rejected by {@link #open},
+ * and callers are expected to fall back to {@link java.util.zip.ZipFile}.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public final class MappedArchive {
+
+    /** signature of the end of central directory record */
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    /** signature of a central directory file header */
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    /** signature of a local file header */
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    /** size of the end of central directory record, without comment */
+    private static final int END_SIZE = 22;
+
+    /** size of a central directory file header, without variable fields */
+    private static final int CENTRAL_SIZE = 46;
+
+    /** size of a local file header, without variable fields */
+    private static final int LOCAL_SIZE = 30;
+
+    /** maximum size of the archive comment */
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    /** compression method of stored entries */
+    private static final int STORED = 0;
+
+    /** compression method of deflated entries */
+    private static final int DEFLATED = 8;
+
+    /** general purpose flag set on encrypted entries */
+    private static final int FLAG_ENCRYPTED = 1;
+
+    /** header id of the extended timestamp extra field */
+    private static final int EXTENDED_TIMESTAMP = 0x5455;
+
+    /** {@code non-null;} mapping of the whole archive */
+    private final MappedByteBuffer map;
+
+    /** {@code non-null;} entries of the central directory, in file order */
+    private final List<Entry> entries;
+
+    /** {@code null-ok;} inflater reused for all deflated entries */
+    private Inflater inflater;
+
+    /** {@code null-ok;} buffer holding the compressed data of an entry */
+    private byte[] input;
+
+    /**
+     * One entry of the central directory.
+     */
+    public static final class Entry {
+        /** {@code non-null;} name of the entry */
+        private final String name;
+
+        /** compression method */
+        private final int method;
+
+        /** modification time, in MS-DOS format */
+        private final int dosTime;
+
+        /** modification time in seconds from the extra field, or {@code -1} */
+        private final long extendedTime;
+
+        /** size of the compressed data */
+        private final int compressedSize;
+
+        /** size of the uncompressed data */
+        private final int size;
+
+        /** offset of the local file header */
+        private final int localOffset;
+
+        private Entry(String name, int method, int dosTime, long extendedTime,
+                int compressedSize, int size, int localOffset) {
+            this.name = name;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.extendedTime = extendedTime;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localOffset = localOffset;
+        }
+
+        /**
+         * Gets the name of this entry.
+         *
+         * @return {@code non-null;} the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the uncompressed size of this entry.
+         *
+         * @return {@code >= 0;} the size
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Returns whether this entry is stored without compression.
+         *
+         * @return whether this entry is stored
+         */
+        public boolean isStored() {
+            return method == STORED;
+        }
+
+        /**
+         * Returns whether this entry is a directory.
+         *
+         * @return whether the name of this entry ends with a slash
+         */
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * Gets the modification time of this entry, in the same way as
+         * {@link java.util.zip.ZipEntry#getTime}.
+         *
+         * @return milliseconds since 1970-Jan-1 00:00:00 GMT
+         */
+        public long getTime() {
+            if (extendedTime != -1) {
+                return extendedTime * 1000;
+            }
+
+            int date = dosTime >>> 16;
+            Calendar calendar = new GregorianCalendar(
+                    ((date >> 9) & 0x7f) + 1980,
+                    ((date >> 5) & 0x0f) - 1,
+                    date & 0x1f,
+                    (dosTime >> 11) & 0x1f,
+                    (dosTime >> 5) & 0x3f,
+                    (dosTime << 1) & 0x3e);
+            return calendar.getTimeInMillis();
+        }
+    }
+
+    private MappedArchive(MappedByteBuffer map, List<Entry> entries) {
+        this.map = map;
+        this.entries = entries;
+    }
+
+    /**
+     * Opens an archive.
+     *
+     * @param file {@code non-null;} the archive
+     * @return {@code null-ok;} the archive, or {@code null} if it uses
+     * features not supported by this class
+     * @throws IOException on i/o problem
+     */
+    public static MappedArchive open(File file) throws IOException {
+        MappedByteBuffer map;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < END_SIZE || length > Integer.MAX_VALUE) {
+                return null;
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+
+        List<Entry> entries = readCentralDirectory(map);
+        return entries == null ? null : new MappedArchive(map, entries);
+    }
+
+    /**
+     * Parses the central directory of a mapped archive.
+     *
+     * @param map {@code non-null;} the mapped archive
+     * @return {@code null-ok;} the entries, or {@code null} if the archive
+     * is not supported
+     */
+    private static List<Entry> readCentralDirectory(MappedByteBuffer map) {
+        int end = findEnd(map);
+        if (end < 0) {
+            return null;
+        }
+
+        int count = map.getShort(end + 10) & 0xffff;
+        long size = map.getInt(end + 12) & 0xffffffffL;
+        long offset = map.getInt(end + 16) & 0xffffffffL;
+        if (count == 0xffff || offset + size > end) {
+            // zip64, or a directory not where the record says it is.
+            return null;
+        }
+
+        List<Entry> entries = new ArrayList<Entry>(count);
+        int at = (int) offset;
+        for (int i = 0; i < count; i++) {
+            if (at + CENTRAL_SIZE > end || map.getInt(at) != CENTRAL_SIGNATURE) {
+                return null;
+            }
+            int flags = map.getShort(at + 8) & 0xffff;
+            int method = map.getShort(at + 10) & 0xffff;
+            int dosTime = map.getInt(at + 12);
+            int compressedSize = map.getInt(at + 20);
+            int entrySize = map.getInt(at + 24);
+            int nameLength = map.getShort(at + 28) & 0xffff;
+            int extraLength = map.getShort(at + 30) & 0xffff;
+            int commentLength = map.getShort(at + 32) & 0xffff;
+            int localOffset = map.getInt(at + 42);
+
+            if ((flags & FLAG_ENCRYPTED) != 0
+                    || (method != STORED && method != DEFLATED)
+                    || compressedSize < 0 || entrySize < 0 || localOffset < 0) {
+                return null;
+            }
+
+            byte[] name = new byte[nameLength];
+            map.position(at + CENTRAL_SIZE);
+            map.get(name);
+            long extendedTime = readExtendedTime(map, at + CENTRAL_SIZE + nameLength,
+                    extraLength);
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), method,
+                    dosTime, extendedTime, compressedSize, entrySize, localOffset));
+
+            at += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return entries;
+    }
+
+    /**
+     * Reads the modification time of an extended timestamp extra field,
+     * which takes precedence over the MS-DOS time when present.
+     *
+     * @param map {@code non-null;} the mapped archive
+     * @param at offset of the extra fields
+     * @param length total length of the extra fields
+     * @return the modification time in seconds, or {@code -1} if absent
+     */
+    private static long readExtendedTime(MappedByteBuffer map, int at, int length) {
+        int end = at + length;
+        while (at + 4 <= end) {
+            int id = map.getShort(at) & 0xffff;
+            int size = map.getShort(at + 2) & 0xffff;
+            if (id == EXTENDED_TIMESTAMP && size >= 5 && at + 4 + size <= end
+                    && (map.get(at + 4) & 1) != 0) {
+                return map.getInt(at + 5);
+            }
+            at += 4 + size;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of central directory record, scanning backwards over
+     * a possible archive comment.
+     *
+     * @param map {@code non-null;} the mapped archive
+     * @return the offset of the record, or {@code -1} if there is none
+     */
+    private static int findEnd(MappedByteBuffer map) {
+        int last = map.limit() - END_SIZE;
+        int first = Math.max(0, last - MAX_COMMENT_SIZE);
+        for (int at = last; at >= first; at--) {
+            if (map.getInt(at) == END_SIGNATURE
+                    && at + END_SIZE + (map.getShort(at + 20) & 0xffff) == map.limit()) {
+                return at;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the entries of this archive, in central directory order.
+     *
+     * @return {@code non-null;} the entries
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Finds an entry by name.
+     *
+     * @param name {@code non-null;} the name of the entry
+     * @return {@code null-ok;} the first entry of that name, or {@code null}
+     * if there is none
+     */
+    public Entry getEntry(String name) {
+        for (Entry entry : entries) {
+            if (entry.name.equals(name)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the contents of a stored entry in place, without copying them.
+     * The result remains valid after this instance is closed.
+     *
+     * @param entry {@code non-null;} a stored entry of this archive
+     * @return {@code non-null;} a read-only view of the mapping holding the
+     * entry's contents, positioned at zero
+     * @throws IOException if the entry is malformed
+     */
+    public ByteBuffer slice(Entry entry) throws IOException {
+        if (entry.method != STORED) {
+            throw new IllegalArgumentException("not a stored entry: " + entry.name);
+        }
+        int data = dataOffset(entry);
+        if (entry.compressedSize != entry.size) {
+            throw new IOException("bad size for stored entry " + entry.name);
+        }
+
+        ByteBuffer view = map.duplicate();
+        view.limit(data + entry.size);
+        view.position(data);
+        return view.slice();
+    }
+
+    /**
+     * Reads the uncompressed contents of an entry.
+     *
+     * @param entry {@code non-null;} an entry of this archive
+     * @return {@code non-null;} a new array of the entry's size
+     * @throws IOException if the entry is malformed
+     */
+    public byte[] read(Entry entry) throws IOException {
+        int data = dataOffset(entry);
+        byte[] result = new byte[entry.size];
+        if (entry.method == STORED) {
+            if (entry.compressedSize != entry.size) {
+                throw new IOException("bad size for stored entry " + entry.name);
+            }
+            map.position(data);
+            map.get(result);
+            return result;
+        }
+
+        // Inflater needs one extra byte of input with nowrap set.
+        if (input == null || input.length < entry.compressedSize + 1) {
+            input = new byte[Math.max(entry.compressedSize + 1, 8192)];
+        }
+        map.position(data);
+        map.get(input, 0, entry.compressedSize);
+        input[entry.compressedSize] = 0;
+
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        } else {
+            inflater.reset();
+        }
+        inflater.setInput(input, 0, entry.compressedSize + 1);
+        try {
+            int length = 0;
+            while (length < result.length) {
+                int read = inflater.inflate(result, length, result.length - length);
+                if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                length += read;
+            }
+            // The data must end exactly at the entry's size.
+            if (length != result.length || !inflater.finished()
+                    && (inflater.inflate(new byte[1]) != 0 || !inflater.finished())) {
+                throw new IOException("bad size for deflated entry " + entry.name);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("bad deflated entry " + entry.name, ex);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the start of the contents of an entry, past its local header.
+     *
+     * @param entry {@code non-null;} an entry of this archive
+     * @return the offset of the contents
+     * @throws IOException if the entry is malformed
+     */
+    private int dataOffset(Entry entry) throws IOException {
+        int local = entry.localOffset;
+        if (local + LOCAL_SIZE > map.limit() || map.getInt(local) != LOCAL_SIGNATURE) {
+            throw new IOException("bad local header for " + entry.name);
+        }
+        int data = local + LOCAL_SIZE
+                + (map.getShort(local + 26) & 0xffff)
+                + (map.getShort(local + 28) & 0xffff);
+        if (data + (long) entry.compressedSize > map.limit()) {
+            throw new IOException("truncated entry " + entry.name);
+        }
+        return data;
+    }
+
+    /**
+     * Releases the resources held by this instance. The mapping itself is
+     * released once it is garbage collected.
+     */
+    public void close() {
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+        input = null;
+    }
+}
@@ -82,8 +82,12 @@ public final class BasicBlocker implements mod.agus.jcoderz.dx.cf.code.BytecodeA
     public static ByteBlockList identifyBlocks(mod.agus.jcoderz.dx.cf.code.ConcreteMethod method) {
         BasicBlocker bb = new BasicBlocker(method);
 
-        bb.doit();
-        return bb.getBlockList();
+        try {
+            bb.doit();
+            return bb.getBlockList();
+        } finally {
+            ScratchArena.get().releaseBlockArrays();
+        }
     }
 
     /**
@@ -106,12 +110,13 @@ public final class BasicBlocker implements mod.agus.jcoderz.dx.cf.code.BytecodeA
          * getting properly reported.
          */
         int sz = method.getCode().size() + 1;
+        ScratchArena arena = ScratchArena.get();
 
-        workSet = mod.agus.jcoderz.dx.util.Bits.makeBitSet(sz);
-        liveSet = mod.agus.jcoderz.dx.util.Bits.makeBitSet(sz);
-        blockSet = mod.agus.jcoderz.dx.util.Bits.makeBitSet(sz);
-        targetLists = new mod.agus.jcoderz.dx.util.IntList[sz];
-        catchLists = new mod.agus.jcoderz.dx.cf.code.ByteCatchList[sz];
+        workSet = arena.getBitSet(ScratchArena.WORK_SET, sz);
+        liveSet = arena.getBitSet(ScratchArena.LIVE_SET, sz);
+        blockSet = arena.getBitSet(ScratchArena.BLOCK_SET, sz);
+        targetLists = arena.getTargetLists(sz);
+        catchLists = arena.getCatchLists(sz);
         previousOffset = -1;
     }
 
@@ -282,7 +287,8 @@ public final class BasicBlocker implements mod.agus.jcoderz.dx.cf.code.BytecodeA
      */
     private ByteBlockList getBlockList() {
         mod.agus.jcoderz.dx.cf.code.BytecodeArray bytes = method.getCode();
-        mod.agus.jcoderz.dx.cf.code.ByteBlock[] bbs = new mod.agus.jcoderz.dx.cf.code.ByteBlock[bytes.size()];
+        mod.agus.jcoderz.dx.cf.code.ByteBlock[] bbs =
+            ScratchArena.get().getByteBlocks(bytes.size());
         int count = 0;
 
         for (int at = 0, next; /*at*/; at = next) {
@@ -258,15 +258,13 @@ public class LocalsArraySet extends mod.agus.jcoderz.dx.cf.code.LocalsArray {
      */
     private LocalsArraySet mergeWithSet(LocalsArraySet other) {
         mod.agus.jcoderz.dx.cf.code.OneLocalsArray newPrimary;
-        ArrayList<mod.agus.jcoderz.dx.cf.code.LocalsArray> newSecondaries;
-        boolean secondariesChanged = false;
+        ArrayList<mod.agus.jcoderz.dx.cf.code.LocalsArray> newSecondaries = null;
 
         newPrimary = primary.merge(other.getPrimary());
 
         int sz1 = secondaries.size();
         int sz2 = other.secondaries.size();
         int sz = Math.max(sz1, sz2);
-        newSecondaries = new ArrayList(sz);
 
         for (int i = 0; i < sz; i++) {
             mod.agus.jcoderz.dx.cf.code.LocalsArray la1 = (i < sz1 ? secondaries.get(i) : null);
@@ -288,13 +286,14 @@ public class LocalsArraySet extends mod.agus.jcoderz.dx.cf.code.LocalsArray {
                 }
             }
 
-            secondariesChanged = secondariesChanged || (la1 != resultla);
-
-            newSecondaries.add(resultla);
+            newSecondaries = addSecondary(newSecondaries, i, la1, resultla, sz);
         }
 
-        if ((primary == newPrimary) && ! secondariesChanged ) {
-            return this;
+        if (newSecondaries == null) {
+            if (primary == newPrimary) {
+                return this;
+            }
+            newSecondaries = new ArrayList<LocalsArray>(secondaries);
         }
 
         return new LocalsArraySet(newPrimary, newSecondaries);
@@ -309,11 +308,9 @@ public class LocalsArraySet extends mod.agus.jcoderz.dx.cf.code.LocalsArray {
      */
     private LocalsArraySet mergeWithOne(mod.agus.jcoderz.dx.cf.code.OneLocalsArray other) {
         mod.agus.jcoderz.dx.cf.code.OneLocalsArray newPrimary;
-        ArrayList<mod.agus.jcoderz.dx.cf.code.LocalsArray> newSecondaries;
-        boolean secondariesChanged = false;
+        ArrayList<mod.agus.jcoderz.dx.cf.code.LocalsArray> newSecondaries = null;
 
         newPrimary = primary.merge(other.getPrimary());
-        newSecondaries = new ArrayList(secondaries.size());
 
         int sz = secondaries.size();
         for (int i = 0; i < sz; i++) {
@@ -329,18 +326,49 @@ public class LocalsArraySet extends mod.agus.jcoderz.dx.cf.code.LocalsArray {
                 }
             }
 
-            secondariesChanged = secondariesChanged || (la != resultla);
-
-            newSecondaries.add(resultla);
+            newSecondaries = addSecondary(newSecondaries, i, la, resultla, sz);
         }
 
-        if ((primary == newPrimary) && ! secondariesChanged ) {
-            return this;
+        if (newSecondaries == null) {
+            if (primary == newPrimary) {
+                return this;
+            }
+            newSecondaries = new ArrayList<LocalsArray>(secondaries);
         }
 
         return new LocalsArraySet(newPrimary, newSecondaries);
     }
 
+    /**
+     * Adds the result of merging one secondary to the secondaries of a
+     * merge result. The list is only made once a secondary differs from
+     * that of this instance, since most merges change none of them.
+     *
+     * @param newSecondaries {@code null-ok;} secondaries so far, or
+     * {@code null} if they are the first {@code label} of this instance
+     * @param label {@code >= 0;} caller label of the secondary
+     * @param old {@code null-ok;} secondary of this instance
+     * @param merged {@code null-ok;} merged secondary
+     * @param size final size of the list
+     * @return {@code null-ok;} secondaries so far, including this one
+     */
+    private ArrayList<LocalsArray> addSecondary(ArrayList<LocalsArray> newSecondaries,
+            int label, LocalsArray old, LocalsArray merged, int size) {
+        if (newSecondaries == null) {
+            if (old == merged) {
+                return null;
+            }
+
+            newSecondaries = new ArrayList<LocalsArray>(size);
+            for (int i = 0; i < label; i++) {
+                newSecondaries.add(i < secondaries.size() ? secondaries.get(i) : null);
+            }
+        }
+
+        newSecondaries.add(merged);
+        return newSecondaries;
+    }
+
     /** {@inheritDoc} */
     @Override
     public LocalsArraySet merge(mod.agus.jcoderz.dx.cf.code.LocalsArray other) {
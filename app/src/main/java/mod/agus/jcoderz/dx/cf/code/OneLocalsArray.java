@@ -24,6 +24,9 @@ import mod.agus.jcoderz.dx.util.Hex;
 
 /**
  * Representation of an array of local variables, with Java semantics.
+ * A copy of an immutable instance shares its array until either is
+ * changed, since most copies made during simulation are changed in few
+ * places, if any.
  *
  * <p><b>Note:</b> For the most part, the documentation for this class
  * ignores the distinction between {@link mod.agus.jcoderz.dx.rop.type.Type} and {@link
@@ -31,7 +34,13 @@ import mod.agus.jcoderz.dx.util.Hex;
  */
 public class OneLocalsArray extends LocalsArray {
     /** {@code non-null;} actual array */
-    private final mod.agus.jcoderz.dx.rop.type.TypeBearer[] locals;
+    private mod.agus.jcoderz.dx.rop.type.TypeBearer[] locals;
+
+    /**
+     * whether {@link #locals} is shared with the immutable instance this
+     * one was copied from, and must be copied before being changed
+     */
+    private boolean shared;
 
     /**
      * Constructs an instance. The locals array initially consists of
@@ -45,14 +54,38 @@ public class OneLocalsArray extends LocalsArray {
         locals = new mod.agus.jcoderz.dx.rop.type.TypeBearer[maxLocals];
     }
 
+    /**
+     * Constructs an instance which is a copy of another.
+     *
+     * @param toCopy {@code non-null;} instance to copy
+     */
+    private OneLocalsArray(OneLocalsArray toCopy) {
+        super(toCopy.locals.length != 0);
+
+        if (toCopy.isMutable()) {
+            locals = toCopy.locals.clone();
+        } else {
+            // The array can't change under us, so share it until needed.
+            locals = toCopy.locals;
+            shared = true;
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public OneLocalsArray copy() {
-        OneLocalsArray result = new OneLocalsArray(locals.length);
-
-        System.arraycopy(locals, 0, result.locals, 0, locals.length);
+        return new OneLocalsArray(this);
+    }
 
-        return result;
+    /**
+     * Makes {@link #locals} private to this instance, so that it can be
+     * changed.
+     */
+    private void unshare() {
+        if (shared) {
+            locals = locals.clone();
+            shared = false;
+        }
     }
 
     /** {@inheritDoc} */
@@ -95,6 +128,7 @@ public class OneLocalsArray extends LocalsArray {
 
         for (int i = 0; i < len; i++) {
             if (locals[i] == type) {
+                unshare();
                 locals[i] = initializedType;
             }
         }
@@ -122,6 +156,8 @@ public class OneLocalsArray extends LocalsArray {
             throw new IndexOutOfBoundsException("idx < 0");
         }
 
+        unshare();
+
         // Make highest possible out-of-bounds check happen first.
         if (type.getType().isCategory2()) {
             locals[idx + 1] = null;
@@ -147,6 +183,7 @@ public class OneLocalsArray extends LocalsArray {
     @Override
     public void invalidate(int idx) {
         throwIfImmutable();
+        unshare();
         locals[idx] = null;
     }
 
@@ -354,6 +354,8 @@ public final class Ropper {
             ex.addContext("...while working on method " +
                           method.getNat().toHuman());
             throw ex;
+        } finally {
+            ScratchArena.get().releaseStartFrames();
         }
     }
 
@@ -383,7 +385,7 @@ public final class Ropper {
         this.maxLocals = method.getMaxLocals();
         this.machine = new RopperMachine(this, method, advice, methods);
         this.sim = new Simulator(machine, method, dexOptions);
-        this.startFrames = new Frame[maxLabel];
+        this.startFrames = ScratchArena.get().getStartFrames(maxLabel);
         this.subroutines = new Subroutine[maxLabel];
 
         /*
@@ -728,7 +730,7 @@ public final class Ropper {
      * Does the conversion.
      */
     private void doit() {
-        int[] workSet = mod.agus.jcoderz.dx.util.Bits.makeBitSet(maxLabel);
+        int[] workSet = ScratchArena.get().getBitSet(ScratchArena.WORK_SET, maxLabel);
 
         mod.agus.jcoderz.dx.util.Bits.set(workSet, 0);
         addSetupBlocks();
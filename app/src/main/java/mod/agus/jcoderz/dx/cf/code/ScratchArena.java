@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.cf.code;
+
+import mod.agus.jcoderz.dx.util.IntList;
+import java.util.Arrays;
+
+/**
+ * Per-thread scratch storage for the conversion of one method to rop
+ * form. Each thread translates one method at a time, so the arrays sized
+ * by the bytecode or by the number of labels of a method, which are
+ * dropped as soon as the method is converted, are kept here and handed
+ * out again for the next method instead of being allocated anew.
+ *
+ * <p>Arrays handed out are cleared over the requested size, and may be
+ * longer than requested. Each group of arrays must be released once the
+ * method is converted, so that it does not keep the method alive.</p>
+ */
+final class ScratchArena {
+    /** index of the work set in {@link #bitSets} */
+    public static final int WORK_SET = 0;
+
+    /** index of the live set in {@link #bitSets} */
+    public static final int LIVE_SET = 1;
+
+    /** index of the block start set in {@link #bitSets} */
+    public static final int BLOCK_SET = 2;
+
+    /** arena of each thread */
+    private static final ThreadLocal<ScratchArena> arenas =
+            new ThreadLocal<ScratchArena>() {
+                @Override
+                protected ScratchArena initialValue() {
+                    return new ScratchArena();
+                }
+            };
+
+    /** {@code non-null;} bit sets, each used by one pass at a time */
+    private final int[][] bitSets = new int[3][0];
+
+    /** {@code non-null;} target list of each bytecode offset */
+    private IntList[] targetLists = new IntList[0];
+
+    /** {@code non-null;} catch list of each bytecode offset */
+    private ByteCatchList[] catchLists = new ByteCatchList[0];
+
+    /** {@code non-null;} basic blocks being identified */
+    private ByteBlock[] byteBlocks = new ByteBlock[0];
+
+    /** {@code non-null;} start frame of each label */
+    private Frame[] startFrames = new Frame[0];
+
+    /** largest size of the block arrays handed out since last released */
+    private int blockArraysUsed;
+
+    /** size of the frame array handed out since last released */
+    private int startFramesUsed;
+
+    /**
+     * This class is uninstantiable outside this class.
+     */
+    private ScratchArena() {
+        // This space intentionally left blank.
+    }
+
+    /**
+     * Gets the arena of the calling thread.
+     *
+     * @return {@code non-null;} the arena
+     */
+    public static ScratchArena get() {
+        return arenas.get();
+    }
+
+    /**
+     * Gets an empty bit set, in the format of {@link
+     * mod.agus.jcoderz.dx.util.Bits}. All of its bits are clear, including
+     * any beyond the requested size.
+     *
+     * @param which which bit set, one of {@link #WORK_SET}, {@link
+     * #LIVE_SET} and {@link #BLOCK_SET}
+     * @param maxValue {@code >= 0;} number of bits needed
+     * @return {@code non-null;} the bit set
+     */
+    public int[] getBitSet(int which, int maxValue) {
+        int words = (maxValue + 0x1f) >> 5;
+        int[] bits = bitSets[which];
+
+        if (bits.length < words) {
+            bits = new int[Math.max(words, bits.length * 2)];
+            bitSets[which] = bits;
+        } else {
+            Arrays.fill(bits, 0);
+        }
+
+        return bits;
+    }
+
+    /**
+     * Gets an array of target lists, cleared over the given size.
+     *
+     * @param size {@code >= 0;} number of bytecode offsets
+     * @return {@code non-null;} the target list array
+     */
+    public IntList[] getTargetLists(int size) {
+        if (targetLists.length < size) {
+            targetLists = new IntList[Math.max(size, targetLists.length * 2)];
+        } else {
+            Arrays.fill(targetLists, 0, size, null);
+        }
+        blockArraysUsed = Math.max(blockArraysUsed, size);
+        return targetLists;
+    }
+
+    /**
+     * Gets an array of catch lists, cleared over the given size.
+     *
+     * @param size {@code >= 0;} number of bytecode offsets
+     * @return {@code non-null;} the catch list array
+     */
+    public ByteCatchList[] getCatchLists(int size) {
+        if (catchLists.length < size) {
+            catchLists = new ByteCatchList[Math.max(size, catchLists.length * 2)];
+        } else {
+            Arrays.fill(catchLists, 0, size, null);
+        }
+        blockArraysUsed = Math.max(blockArraysUsed, size);
+        return catchLists;
+    }
+
+    /**
+     * Gets an array of basic blocks, cleared over the given size.
+     *
+     * @param size {@code >= 0;} number of blocks needed
+     * @return {@code non-null;} the block array
+     */
+    public ByteBlock[] getByteBlocks(int size) {
+        if (byteBlocks.length < size) {
+            byteBlocks = new ByteBlock[Math.max(size, byteBlocks.length * 2)];
+        } else {
+            Arrays.fill(byteBlocks, 0, size, null);
+        }
+        blockArraysUsed = Math.max(blockArraysUsed, size);
+        return byteBlocks;
+    }
+
+    /**
+     * Releases the arrays used to identify basic blocks, as handed out by
+     * {@link #getTargetLists}, {@link #getCatchLists} and {@link
+     * #getByteBlocks}. This may be called even if none were.
+     */
+    public void releaseBlockArrays() {
+        Arrays.fill(targetLists, 0, Math.min(blockArraysUsed, targetLists.length), null);
+        Arrays.fill(catchLists, 0, Math.min(blockArraysUsed, catchLists.length), null);
+        Arrays.fill(byteBlocks, 0, Math.min(blockArraysUsed, byteBlocks.length), null);
+        blockArraysUsed = 0;
+    }
+
+    /**
+     * Gets an array of frames, cleared over the given size.
+     *
+     * @param size {@code >= 0;} number of labels
+     * @return {@code non-null;} the frame array
+     */
+    public Frame[] getStartFrames(int size) {
+        if (startFrames.length < size) {
+            startFrames = new Frame[Math.max(size, startFrames.length * 2)];
+        } else {
+            Arrays.fill(startFrames, 0, size, null);
+        }
+        startFramesUsed = size;
+        return startFrames;
+    }
+
+    /**
+     * Releases the array handed out by {@link #getStartFrames}. This may
+     * be called even if it was not.
+     */
+    public void releaseStartFrames() {
+        Arrays.fill(startFrames, 0, startFramesUsed, null);
+        startFramesUsed = 0;
+    }
+}
@@ -17,6 +17,7 @@
 package mod.agus.jcoderz.dx.cf.direct;
 
 import mod.agus.jcoderz.dex.util.FileUtils;
+import mod.agus.jcoderz.dex.util.MappedArchive;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -241,6 +242,51 @@ public class ClassPathOpener {
      * @throws IOException on i/o problem
      */
     private boolean processArchive(File file) throws IOException {
+        MappedArchive archive = MappedArchive.open(file);
+        if (archive == null) {
+            return processZipFile(file);
+        }
+
+        try {
+            ArrayList<MappedArchive.Entry> entriesList =
+                    new ArrayList<MappedArchive.Entry>(archive.getEntries());
+
+            if (sort) {
+                Collections.sort(entriesList, new Comparator<MappedArchive.Entry>() {
+                   @Override
+                   public int compare (MappedArchive.Entry a, MappedArchive.Entry b) {
+                       return compareClassNames(a.getName(), b.getName());
+                   }
+                });
+            }
+
+            consumer.onProcessArchiveStart(file);
+
+            boolean any = false;
+
+            for (MappedArchive.Entry one : entriesList) {
+                String path = one.getName();
+                if (filter.accept(path)) {
+                    byte[] bytes = one.isDirectory() ? new byte[0] : archive.read(one);
+                    any |= consumer.processFileBytes(path, one.getTime(), bytes);
+                }
+            }
+
+            return any;
+        } finally {
+            archive.close();
+        }
+    }
+
+    /**
+     * Processes the contents of an archive through {@link ZipFile}, for
+     * archives not supported by {@link MappedArchive}.
+     *
+     * @param file {@code non-null;} archive file to process
+     * @return whether any processing actually happened
+     * @throws IOException on i/o problem
+     */
+    private boolean processZipFile(File file) throws IOException {
         ZipFile zip = new ZipFile(file);
 
         ArrayList<? extends java.util.zip.ZipEntry> entriesList
@@ -27,12 +27,13 @@ public class Main {
         "usage:\n" +
         "  dx --dex [--debug] [--verbose] [--positions=<style>] [--no-locals]\n" +
         "  [--no-optimize] [--statistics] [--[no-]optimize-list=<file>] [--no-strict]\n" +
+        "  [--cheap-optimize-above=<n>] [--no-optimize-above=<n>] [--linear-scan]\n" +
         "  [--keep-classes] [--output=<file>] [--dump-to=<file>] [--dump-width=<n>]\n" +
         "  [--dump-method=<name>[*]] [--verbose-dump] [--no-files] [--core-library]\n" +
         "  [--num-threads=<n>] [--incremental] [--force-jumbo] [--no-warning]\n" +
         "  [--multi-dex [--main-dex-list=<file> [--minimal-main-dex]]\n" +
         "  [--input-list=<file>] [--min-sdk-version=<n>]\n" +
-        "  [--allow-all-interface-method-invokes]\n" +
+        "  [--allow-all-interface-method-invokes] [--class-cache=<dir>]\n" +
         "  [<file>.class | <file>.{zip,jar,apk} | <directory>] ...\n" +
         "    Convert a set of classfiles into a dex file, optionally embedded in a\n" +
         "    jar/zip. Output name must end with one of: .dex .jar .zip .apk or be a\n" +
@@ -50,12 +51,22 @@ public class Main {
         "    directory.\n" +
         "    --min-sdk-version=<n>: Enable dex file features that require at least sdk\n" +
         "    version <n>.\n" +
+        "    --cheap-optimize-above=<n>, --no-optimize-above=<n>: skip the costliest\n" +
+        "    optimizations, or all of them, for methods whose instruction count times\n" +
+        "    register count is above <n>, to bound the time spent on huge methods.\n" +
+        "    --linear-scan: allocate registers with a fast linear scan, at the cost of\n" +
+        "    more registers and moves in the output.\n" +
+        "    --class-cache=<dir>: cache the translation of each class in <dir> and only\n" +
+        "    translate classes whose bytes or options changed.\n" +
         "  dx --annotool --annotation=<class> [--element=<element types>]\n" +
         "  [--print=<print types>]\n" +
         "  dx --dump [--debug] [--strict] [--bytes] [--optimize]\n" +
         "  [--basic-blocks | --rop-blocks | --ssa-blocks | --dot] [--ssa-step=<step>]\n" +
-        "  [--width=<n>] [<file>.class | <file>.txt] ...\n" +
+        "  [--width=<n>] [--json] [--num-threads=<n>]\n" +
+        "  [<file>.class | <file>.txt | <file>.jar | <file>.zip | <file>.apk] ...\n" +
         "    Dump classfiles, or transformations thereof, in a human-oriented format.\n" +
+        "    --json: dump the structure of each class as one line of JSON instead.\n" +
+        "    --num-threads=<n>: render <n> classes at once; output keeps the input order.\n" +
         "  dx --find-usages <file.dex> <declaring type> <member>\n" +
         "    Find references and declarations to a field or method.\n" +
         "    <declaring type> is a class name in internal form, like Ljava/lang/Object;\n" +
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.command.dexer;
+
+import mod.agus.jcoderz.dx.Version;
+import mod.agus.jcoderz.dx.dex.DexOptions;
+import mod.agus.jcoderz.dx.dex.cf.CfOptions;
+import mod.agus.jcoderz.dx.util.Hex;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Persistent cache of translated classes, each stored as a dex file of
+ * its own. Entries are keyed by the SHA-1 of the class bytes together
+ * with every option that affects translation, including the contents of
+ * the optimize lists, so a class is only translated again when its bytes
+ * or the options change.
+ */
+public final class ClassDexCache {
+
+    /** file extension of a cache entry */
+    private static final String ENTRY_EXTENSION = ".dex";
+
+    /** {@code non-null;} directory holding the entries */
+    private final File directory;
+
+    /** {@code non-null;} digest of the options affecting translation */
+    private final byte[] optionsDigest;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param directory {@code non-null;} directory holding the entries
+     * @param cfOptions {@code non-null;} options for class file translation
+     * @param dexOptions {@code non-null;} options for dex file output
+     * @throws IOException if an optimize list cannot be read
+     */
+    public ClassDexCache(File directory, CfOptions cfOptions,
+            DexOptions dexOptions) throws IOException {
+        this.directory = directory;
+
+        StringBuilder options = new StringBuilder();
+        options.append(Version.VERSION)
+                .append(";positions=").append(cfOptions.positionInfo)
+                .append(";locals=").append(cfOptions.localInfo)
+                .append(";optimize=").append(cfOptions.optimize)
+                .append(";optimizeList=").append(cfOptions.optimizeListFile != null)
+                .append(";dontOptimizeList=")
+                .append(cfOptions.dontOptimizeListFile != null)
+                .append(";cheapOptimizeAbove=").append(cfOptions.cheapOptimizeThreshold)
+                .append(";noOptimizeAbove=").append(cfOptions.skipOptimizeThreshold)
+                .append(";linearScan=").append(cfOptions.linearScan)
+                .append(";minSdk=").append(dexOptions.minSdkVersion)
+                .append(";forceJumbo=").append(dexOptions.forceJumbo)
+                .append(";allInterfaceInvokes=")
+                .append(dexOptions.allowAllInterfaceMethodInvokes);
+
+        MessageDigest digest = newDigest();
+        digest.update(options.toString().getBytes(StandardCharsets.UTF_8));
+        // The lists are keyed on their contents, as they may be edited in place.
+        updateDigest(digest, cfOptions.optimizeListFile);
+        updateDigest(digest, cfOptions.dontOptimizeListFile);
+        this.optionsDigest = digest.digest();
+    }
+
+    /**
+     * Gets the key of a class.
+     *
+     * @param bytes {@code non-null;} contents of the class file
+     * @return {@code non-null;} the key of the class
+     */
+    public String keyOf(byte[] bytes) {
+        MessageDigest digest = newDigest();
+        digest.update(optionsDigest);
+        digest.update(bytes);
+        byte[] hash = digest.digest();
+
+        StringBuilder key = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            key.append(Hex.u1(b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Gets the translated dex file of a class.
+     *
+     * @param key {@code non-null;} the key of the class
+     * @return {@code null-ok;} the dex file containing only the class, or
+     * {@code null} if the class has not been cached
+     */
+    public byte[] get(String key) {
+        File entry = entryFile(key);
+        if (!entry.isFile()) {
+            return null;
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(entry, "r")) {
+            byte[] dex = new byte[(int) in.length()];
+            in.readFully(dex);
+            return dex;
+        } catch (IOException ex) {
+            // An unreadable entry is translated again.
+            return null;
+        }
+    }
+
+    /**
+     * Stores the translated dex file of a class.
+     *
+     * @param key {@code non-null;} the key of the class
+     * @param dex {@code non-null;} the dex file containing only the class
+     */
+    public void put(String key, byte[] dex) throws IOException {
+        File entry = entryFile(key);
+        File parent = entry.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+
+        /*
+         * Write to a temporary file first, so that concurrent or
+         * interrupted runs never observe a partially written entry.
+         */
+        File temp = new File(parent, key + "." + Thread.currentThread().getId()
+                + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(dex);
+        }
+        if (!temp.renameTo(entry)) {
+            temp.delete();
+            if (!entry.isFile()) {
+                throw new IOException("Unable to write " + entry);
+            }
+        }
+    }
+
+    /**
+     * Adds the length and contents of a file to a digest.
+     *
+     * @param digest {@code non-null;} the digest
+     * @param fileName {@code null-ok;} name of the file, if any
+     */
+    private static void updateDigest(MessageDigest digest, String fileName)
+            throws IOException {
+        if (fileName == null) {
+            return;
+        }
+
+        byte[] contents = Files.readAllBytes(new File(fileName).toPath());
+        digest.update(Integer.toString(contents.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ';');
+        digest.update(contents);
+    }
+
+    private File entryFile(String key) {
+        return new File(new File(directory, key.substring(0, 2)),
+                key + ENTRY_EXTENSION);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
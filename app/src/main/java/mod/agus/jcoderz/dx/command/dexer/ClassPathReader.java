@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.command.dexer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import mod.agus.jcoderz.dx.cf.direct.ClassPathOpener;
+import mod.agus.jcoderz.dx.cf.direct.ClassPathOpener.FileNameFilter;
+import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
+
+/**
+ * Reads class path elements ahead of their processing, on a pool of
+ * threads. Each element is opened with a {@link ClassPathOpener} on a
+ * reader thread, which also parses the class files it finds; the results
+ * are then handed to a {@link Consumer} on the calling thread, element
+ * by element in the original order, so that processing stays
+ * deterministic.
+ *
+ * <p>The memory held by entries read but not yet processed is bounded,
+ * counting both their bytes and, for the classes parsed ahead, an
+ * estimate of the parsed class. Readers of elements after the one being
+ * processed wait once the budget is spent. The reader of the element
+ * being processed only waits once its own entries spend the budget, so
+ * that a single large archive is not read whole ahead of its processing;
+ * it may always queue one entry, so processing never starves.
+ */
+final class ClassPathReader {
+
+    /**
+     * Callback interface for {@code ClassPathReader}.
+     */
+    interface Consumer extends ClassPathOpener.Consumer {
+
+        /**
+         * Parses a class path element ahead of its processing. Called on
+         * a reader thread.
+         *
+         * @param name {@code non-null;} filename of element
+         * @param lastModified milliseconds since 1970-Jan-1 00:00:00 GMT
+         * @param bytes {@code non-null;} file data
+         * @return {@code null-ok;} the parsed class, or {@code null} if the
+         * element is not to be parsed ahead
+         */
+        DirectClassFile parseAhead(String name, long lastModified, byte[] bytes);
+
+        /**
+         * Provides the file name and byte array for a class path element,
+         * along with the result of {@link #parseAhead}.
+         *
+         * @param name {@code non-null;} filename of element
+         * @param lastModified milliseconds since 1970-Jan-1 00:00:00 GMT
+         * @param bytes {@code non-null;} file data
+         * @param parsed {@code non-null;} completed result of
+         * {@link #parseAhead}
+         * @return true on success
+         */
+        boolean processFileBytes(String name, long lastModified, byte[] bytes,
+                Future<DirectClassFile> parsed);
+    }
+
+    /** {@code non-null;} pathnames of the elements to read */
+    private final String[] pathnames;
+
+    /** {@code non-null;} filter applied to the content of elements */
+    private final FileNameFilter filter;
+
+    /** {@code non-null;} consumer of the elements */
+    private final Consumer consumer;
+
+    /**
+     * Estimated number of bytes a parsed class holds for each byte of its
+     * class file, on top of the class file itself. Measured at about 3.7
+     * to 4.3 on the class files of dx and of typical libraries.
+     */
+    private static final int PARSED_BYTES_PER_BYTE = 4;
+
+    /** maximum number of bytes read ahead of processing */
+    private final long maxPendingBytes;
+
+    /** {@code non-null;} entries read from each element */
+    private final List<BlockingQueue<Entry>> entries;
+
+    /** {@code non-null;} threads reading the elements */
+    private final ExecutorService readerPool;
+
+    /**
+     * lock guarding {@link #pendingBytes}, {@link #queuedBytes} and
+     * {@link #head}
+     */
+    private final Object budgetLock = new Object();
+
+    /** number of bytes read and not yet processed */
+    private long pendingBytes;
+
+    /** number of bytes read and not yet processed, for each element */
+    private final long[] queuedBytes;
+
+    /** index of the element being processed */
+    private int head;
+
+    /**
+     * One event of a {@link ClassPathOpener}, recorded on a reader thread.
+     */
+    private static final class Entry {
+        /** {@code null-ok;} name of the file, or {@code null} for other events */
+        final String name;
+        final long lastModified;
+        final byte[] bytes;
+        final Future<DirectClassFile> parsed;
+
+        /** number of bytes charged to the budget for this entry */
+        final long size;
+
+        /** {@code null-ok;} archive whose processing started */
+        final File archive;
+
+        /** {@code null-ok;} exception reported by the opener */
+        final Exception exception;
+
+        Entry(String name, long lastModified, byte[] bytes,
+                Future<DirectClassFile> parsed, long size, File archive,
+                Exception exception) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+            this.parsed = parsed;
+            this.size = size;
+            this.archive = archive;
+            this.exception = exception;
+        }
+    }
+
+    /** marker of the last entry of an element */
+    private static final Entry END = new Entry(null, 0, null, null, 0, null, null);
+
+    /**
+     * Constructs an instance and starts reading.
+     *
+     * @param pathnames {@code non-null;} path elements to read
+     * @param filter {@code non-null;} filter for excluding files
+     * @param numThreads {@code > 0;} number of reader threads
+     * @param maxPendingBytes {@code > 0;} maximum number of bytes read
+     * ahead of processing
+     * @param consumer {@code non-null;} callback interface
+     */
+    @SuppressWarnings("unchecked")
+    ClassPathReader(String[] pathnames, FileNameFilter filter, int numThreads,
+            long maxPendingBytes, Consumer consumer) {
+        this.pathnames = pathnames;
+        this.filter = filter;
+        this.consumer = consumer;
+        this.maxPendingBytes = maxPendingBytes;
+        this.entries = new ArrayList<BlockingQueue<Entry>>(pathnames.length);
+        this.queuedBytes = new long[pathnames.length];
+        this.readerPool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(numThreads, pathnames.length)));
+
+        for (int i = 0; i < pathnames.length; i++) {
+            entries.add(new LinkedBlockingQueue<Entry>());
+        }
+
+        // Readers start in submission order, so the reader of the element
+        // being processed is always running or done.
+        for (int i = 0; i < pathnames.length; i++) {
+            readerPool.execute(new ElementReader(i));
+        }
+    }
+
+    /**
+     * Processes all the elements, in order.
+     *
+     * @return whether any element was processed successfully
+     * @throws InterruptedException if interrupted while waiting for a reader
+     */
+    boolean process() throws InterruptedException {
+        boolean any = false;
+        try {
+            for (int i = 0; i < pathnames.length; i++) {
+                synchronized (budgetLock) {
+                    head = i;
+                    budgetLock.notifyAll();
+                }
+                any |= processElement(i);
+            }
+        } finally {
+            readerPool.shutdownNow();
+        }
+        return any;
+    }
+
+    /**
+     * Replays the entries of one element to the consumer. Unlike with
+     * {@link ClassPathOpener}, an exception while processing a file of an
+     * archive does not skip the rest of that archive, since it has already
+     * been read.
+     *
+     * @param index index of the element
+     * @return whether any file was processed successfully
+     */
+    private boolean processElement(int index) throws InterruptedException {
+        boolean any = false;
+
+        for (Entry entry = entries.get(index).take(); entry != END;
+                entry = entries.get(index).take()) {
+            try {
+                if (entry.exception != null) {
+                    consumer.onException(entry.exception);
+                } else if (entry.name == null) {
+                    consumer.onProcessArchiveStart(entry.archive);
+                } else {
+                    any |= consumer.processFileBytes(entry.name, entry.lastModified,
+                            entry.bytes, entry.parsed);
+                }
+            } catch (RuntimeException ex) {
+                consumer.onException(ex);
+            } finally {
+                release(index, entry.size);
+            }
+        }
+
+        return any;
+    }
+
+    /**
+     * Waits until the budget allows an element to hold more bytes. The
+     * element being processed is only bounded by its own bytes, as the
+     * bytes of later elements are not released before it is done.
+     *
+     * @param index index of the element
+     * @param held number of bytes already acquired for the entry, which
+     * are not queued yet
+     * @param size number of bytes to add
+     */
+    private void acquire(int index, long held, long size) throws InterruptedException {
+        synchronized (budgetLock) {
+            while (index == head
+                    ? queuedBytes[index] > held
+                            && queuedBytes[index] + size > maxPendingBytes
+                    : pendingBytes > held && pendingBytes + size > maxPendingBytes) {
+                budgetLock.wait();
+            }
+            pendingBytes += size;
+            queuedBytes[index] += size;
+        }
+    }
+
+    /**
+     * Returns bytes to the budget, once processed.
+     *
+     * @param index index of the element
+     * @param size number of bytes processed
+     */
+    private void release(int index, long size) {
+        if (size == 0) {
+            return;
+        }
+        synchronized (budgetLock) {
+            pendingBytes -= size;
+            queuedBytes[index] -= size;
+            budgetLock.notifyAll();
+        }
+    }
+
+    /**
+     * Thrown on a reader thread once reading has been cancelled.
+     */
+    private static final class StopProcessingException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StopProcessingException(InterruptedException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Reads one element on a reader thread.
+     */
+    private final class ElementReader implements Runnable, ClassPathOpener.Consumer {
+
+        /** index of the element */
+        private final int index;
+
+        ElementReader(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                new ClassPathOpener(pathnames[index], true, filter, this).process();
+            } finally {
+                entries.get(index).add(END);
+            }
+        }
+
+        @Override
+        public boolean processFileBytes(final String name, final long lastModified,
+                final byte[] bytes) {
+            long size = bytes.length;
+            acquireOrStop(0, size);
+
+            FutureTask<DirectClassFile> parsed = new FutureTask<DirectClassFile>(
+                    new Callable<DirectClassFile>() {
+                        @Override
+                        public DirectClassFile call() {
+                            return consumer.parseAhead(name, lastModified, bytes);
+                        }
+                    });
+            parsed.run();
+
+            if (isParsed(parsed)) {
+                // The parsed class is only known once parsed, so it is
+                // charged afterwards.
+                long parsedSize = (long) bytes.length * PARSED_BYTES_PER_BYTE;
+                try {
+                    acquireOrStop(size, parsedSize);
+                } catch (StopProcessingException ex) {
+                    release(index, size);
+                    throw ex;
+                }
+                size += parsedSize;
+            }
+
+            entries.get(index).add(new Entry(name, lastModified, bytes, parsed, size,
+                    null, null));
+            return true;
+        }
+
+        /**
+         * Acquires bytes of the budget for this element, stopping reading
+         * if interrupted.
+         *
+         * @param held number of bytes already acquired for the entry
+         * @param size number of bytes to add
+         */
+        private void acquireOrStop(long held, long size) {
+            try {
+                acquire(index, held, size);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new StopProcessingException(ex);
+            }
+        }
+
+        @Override
+        public void onException(Exception ex) {
+            if (!(ex instanceof StopProcessingException)) {
+                entries.get(index).add(new Entry(null, 0, null, null, 0, null, ex));
+            }
+        }
+
+        @Override
+        public void onProcessArchiveStart(File file) {
+            entries.get(index).add(new Entry(null, 0, null, null, 0, file, null));
+        }
+    }
+
+    /**
+     * Tells whether {@link Consumer#parseAhead} parsed a class.
+     *
+     * @param parsed {@code non-null;} completed result
+     * @return whether it returned a class, rather than {@code null} or an
+     * exception
+     */
+    private static boolean isParsed(Future<DirectClassFile> parsed) {
+        try {
+            return parsed.get() != null;
+        } catch (InterruptedException ex) {
+            // The task has already run.
+            throw new AssertionError(ex);
+        } catch (ExecutionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the result of {@link Consumer#parseAhead}, rethrowing any
+     * exception it threw.
+     *
+     * @param parsed {@code non-null;} completed result
+     * @return {@code null-ok;} the parsed class
+     */
+    static DirectClassFile getParsed(Future<DirectClassFile> parsed) {
+        try {
+            return parsed.get();
+        } catch (InterruptedException ex) {
+            // The task has already run.
+            throw new AssertionError(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -19,6 +19,9 @@ package mod.agus.jcoderz.dx.command.dexer;
 import mod.agus.jcoderz.dex.Dex;
 import mod.agus.jcoderz.dex.DexException;
 import mod.agus.jcoderz.dex.DexFormat;
+import mod.agus.jcoderz.dex.FieldId;
+import mod.agus.jcoderz.dex.MethodId;
+import mod.agus.jcoderz.dex.ProtoId;
 import mod.agus.jcoderz.dex.util.FileUtils;
 import mod.agus.jcoderz.dx.dex.file.ClassDefItem;
 import mod.agus.jcoderz.dx.rop.annotation.Annotation;
@@ -60,6 +63,7 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -72,6 +76,9 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -79,6 +86,8 @@ import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Main class for the class file translator.
@@ -164,6 +173,9 @@ public class Main {
     /* <primitive types box class>.TYPE */
     private static final int MAX_FIELD_ADDED_DURING_DEX_CREATION = 9;
 
+    /* Bytes of input files read ahead of their processing. */
+    private static final long MAX_PENDING_INPUT_BYTES = 16 * 1024 * 1024;
+
     /** number of errors during processing */
     private AtomicInteger errors = new AtomicInteger(0);
 
@@ -227,6 +239,25 @@ public class Main {
 
     private OutputStreamWriter humanOutWriter = null;
 
+    /** {@code null-ok;} cache of translated classes, if enabled */
+    private ClassDexCache classDexCache = null;
+
+    /** Futures for the dex files of classes processed through
+     * {@link #classDexCache}, in input file order. */
+    private List<Future<byte[]>> classDexFutures = new ArrayList<Future<byte[]>>();
+
+    /** Dex files of the classes processed through {@link #classDexCache},
+     * in input file order. */
+    private final List<byte[]> classDexBuffers = new ArrayList<byte[]>();
+
+    /** Number of {@link #classDexFutures} for classes forced in the main
+     * dex, or {@code -1} without a main dex list. */
+    private int mainDexClassDexCount = -1;
+
+    /** Number of {@link #classDexBuffers} for classes forced in the main
+     * dex, or {@code -1} without a main dex list. */
+    private int mainDexClassBufferCount = -1;
+
     private final DxContext context;
 
     public Main(DxContext context) {
@@ -249,6 +280,10 @@ public class Main {
         }
     }
 
+    /**
+     * Empties the intern tables between runs, except for their read-only
+     * bases set up by {@link #freezeInternTables}.
+     */
     public static void clearInternTables() {
         Prototype.clearInternTable();
         RegisterSpec.clearInternTable();
@@ -256,6 +291,50 @@ public class Main {
         Type.clearInternTable();
     }
 
+    /**
+     * Makes everything currently interned part of the read-only bases of
+     * the intern tables, which are shared by all later runs and survive
+     * {@link #clearInternTables}. Must not be called during a run.
+     */
+    public static synchronized void freezeInternTables() {
+        Type.freezeInternTable();
+        CstType.freezeInternTable();
+        Prototype.freezeInternTable();
+        RegisterSpec.freezeInternTable();
+    }
+
+    /**
+     * Interns the types of all classes of the given archives, typically
+     * {@code android.jar}, then freezes the intern tables so that later runs
+     * find these types without interning them again. Only the entry names
+     * of the archives are read. Must not be called during a run.
+     *
+     * @param archives {@code non-null;} archives to preload
+     * @throws IOException on i/o problem
+     */
+    public static synchronized void preloadInternTables(File... archives)
+            throws IOException {
+        for (File archive : archives) {
+            try (ZipFile zip = new ZipFile(archive)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (!name.endsWith(".class") || name.startsWith("META-INF/")
+                            || name.endsWith("module-info.class")) {
+                        continue;
+                    }
+                    try {
+                        CstType.intern(Type.internClassName(
+                                name.substring(0, name.length() - ".class".length())));
+                    } catch (IllegalArgumentException ex) {
+                        // Not a valid class name; not worth preloading.
+                    }
+                }
+            }
+        }
+        freezeInternTables();
+    }
+
     /**
      * Run and return a result code.
      * @param arguments the data + parameters for the conversion
@@ -272,10 +351,16 @@ public class Main {
         // empty the list, so that  tools that load dx and keep it around
         // for multiple runs don't reuse older buffers.
         libraryDexBuffers.clear();
+        classDexBuffers.clear();
 
         args = arguments;
         args.makeOptionsObjects();
 
+        if (args.classCacheDir != null) {
+            classDexCache = new ClassDexCache(new File(args.classCacheDir),
+                    args.cfOptions, args.dexOptions);
+        }
+
         OutputStream humanOutRaw = null;
         if (args.humanOutName != null) {
             humanOutRaw = openOutput(args.humanOutName);
@@ -316,6 +401,10 @@ public class Main {
             return 0; // this was a no-op incremental build
         }
 
+        if (canStreamOutput()) {
+            return writeDexTo(outputDex, args.outName) ? 0 : 2;
+        }
+
         // this array is null if no classes were defined
         byte[] outArray = null;
 
@@ -371,7 +460,8 @@ public class Main {
             throw new DexException("Library dex files are not supported in multi-dex mode");
         }
 
-        if (outputDex != null) {
+        // With the class cache, every class is in classDexBuffers instead.
+        if (outputDex != null && classDexCache == null) {
             // this array is null if no classes were defined
 
             dexOutputFutures.add(dexOutPool.submit(new DexWriter(outputDex)));
@@ -397,6 +487,8 @@ public class Main {
             throw new RuntimeException("Unexpected exception in dex writer thread");
         }
 
+        mergeClassDexBuffers();
+
         if (args.jarOutput) {
             for (int i = 0; i < dexOutputArrays.size(); i++) {
                 outputResources.put(getDexFileName(i),
@@ -478,7 +570,10 @@ public class Main {
         } else if (dexB == null) {
             result = dexA;
         } else {
-            result = new DexMerger(new Dex[] {dexA, dexB}, CollisionPolicy.KEEP_FIRST, context).merge();
+            DexMerger merger = new DexMerger(new Dex[] {dexA, dexB}, CollisionPolicy.KEEP_FIRST,
+                    context);
+            merger.setCodeParallelism(args.numThreads);
+            result = merger.merge();
         }
 
         ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
@@ -487,7 +582,8 @@ public class Main {
     }
 
     /**
-     * Merges the dex files in library jars. If multiple dex files define the
+     * Merges the dex files in library jars, and those of the classes
+     * processed through the class cache. If multiple dex files define the
      * same type, this fails with an exception.
      */
     private byte[] mergeLibraryDexBuffers(byte[] outArray) throws IOException {
@@ -495,16 +591,137 @@ public class Main {
         if (outArray != null) {
             dexes.add(new Dex(outArray));
         }
+        for (byte[] classDex : classDexBuffers) {
+            dexes.add(new Dex(classDex));
+        }
         for (byte[] libraryDex : libraryDexBuffers) {
             dexes.add(new Dex(libraryDex));
         }
         if (dexes.isEmpty()) {
             return null;
         }
-        Dex merged = new DexMerger(dexes.toArray(new Dex[dexes.size()]), CollisionPolicy.FAIL, context).merge();
+        Dex[] dexArray = dexes.toArray(new Dex[dexes.size()]);
+        Dex merged;
+        if (classDexBuffers.isEmpty()) {
+            merged = DexMerger.mergeInParallel(dexArray, CollisionPolicy.FAIL, context,
+                    args.numThreads);
+        } else {
+            // Dex files of single classes share most of their ids, so their
+            // merge is always compacted.
+            merged = DexMerger.mergeInParallel(dexArray, CollisionPolicy.FAIL, context,
+                    args.numThreads, 0);
+        }
         return merged.getBytes();
     }
 
+    /**
+     * Merges the dex files of the classes processed through the class
+     * cache into as few dex files as the index limits allow, keeping the
+     * input file order, and adds them to {@link #dexOutputArrays}. Unlike
+     * the estimates used while translating, the method and field ids each
+     * class adds are counted exactly, as they are known from its dex file.
+     */
+    private void mergeClassDexBuffers() throws IOException {
+        List<Dex> group = new ArrayList<Dex>();
+        Set<String> methodIds = new HashSet<String>();
+        Set<String> fieldIds = new HashSet<String>();
+
+        for (int i = 0; i < classDexBuffers.size(); i++) {
+            if (i == mainDexClassBufferCount && args.minimalMainDex) {
+                // start the remaining classes directly in a secondary dex file.
+                mergeClassDexGroup(group);
+                methodIds.clear();
+                fieldIds.clear();
+            }
+
+            Dex classDex = new Dex(classDexBuffers.get(i));
+            List<String> newMethodIds = newIds(methodIds, methodIdsOf(classDex));
+            List<String> newFieldIds = newIds(fieldIds, fieldIdsOf(classDex));
+            if (!group.isEmpty()
+                    && (methodIds.size() + newMethodIds.size() > args.maxNumberOfIdxPerDex
+                    || fieldIds.size() + newFieldIds.size() > args.maxNumberOfIdxPerDex)) {
+                if (i < mainDexClassBufferCount) {
+                    throw new DexException("Too many classes in "
+                            + Arguments.MAIN_DEX_LIST_OPTION + ", main dex capacity exceeded");
+                }
+                mergeClassDexGroup(group);
+                methodIds.clear();
+                fieldIds.clear();
+                newMethodIds = methodIdsOf(classDex);
+                newFieldIds = fieldIdsOf(classDex);
+            }
+
+            group.add(classDex);
+            methodIds.addAll(newMethodIds);
+            fieldIds.addAll(newFieldIds);
+        }
+        mergeClassDexGroup(group);
+    }
+
+    /**
+     * Merges a group of class dex files into one output dex file, and
+     * clears the group.
+     *
+     * @param group {@code non-null;} the dex files, possibly empty
+     */
+    private void mergeClassDexGroup(List<Dex> group) throws IOException {
+        if (group.isEmpty()) {
+            return;
+        }
+
+        Dex merged = DexMerger.mergeInParallel(group.toArray(new Dex[group.size()]),
+                CollisionPolicy.FAIL, context, args.numThreads, 0);
+        dexOutputArrays.add(merged.getBytes());
+        group.clear();
+    }
+
+    /**
+     * Gets the ids of a list which are not in a set.
+     */
+    private static List<String> newIds(Set<String> ids, List<String> candidates) {
+        List<String> result = new ArrayList<String>();
+        for (String id : candidates) {
+            if (!ids.contains(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the method ids of a dex file, each as its declaring type, name
+     * and prototype. The return type is part of the key, as bridge methods
+     * differ from the methods they bridge only by it.
+     */
+    private static List<String> methodIdsOf(Dex dex) {
+        List<String> typeNames = dex.typeNames();
+        List<String> strings = dex.strings();
+        List<ProtoId> protoIds = dex.protoIds();
+        List<String> result = new ArrayList<String>();
+        for (MethodId methodId : dex.methodIds()) {
+            result.add(typeNames.get(methodId.getDeclaringClassIndex())
+                    + "." + strings.get(methodId.getNameIndex())
+                    + protoIds.get(methodId.getProtoIndex()));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the field ids of a dex file, each as its declaring type, name
+     * and type.
+     */
+    private static List<String> fieldIdsOf(Dex dex) {
+        List<String> typeNames = dex.typeNames();
+        List<String> strings = dex.strings();
+        List<String> result = new ArrayList<String>();
+        for (FieldId fieldId : dex.fieldIds()) {
+            result.add(typeNames.get(fieldId.getDeclaringClassIndex())
+                    + "." + strings.get(fieldId.getNameIndex())
+                    + ":" + typeNames.get(fieldId.getTypeIndex()));
+        }
+        return result;
+    }
+
     /**
      * Constructs the output {@link DexFile}, fill it in with all the
      * specified classes, and populate the resources map if required.
@@ -522,11 +739,11 @@ public class Main {
         String[] fileNames = args.fileNames;
         Arrays.sort(fileNames);
 
-        // translate classes in parallel
+        // translate classes in parallel, while inputs keep being read
         classTranslatorPool = new ThreadPoolExecutor(args.numThreads,
                args.numThreads, 0, TimeUnit.SECONDS,
                new ArrayBlockingQueue<Runnable>(2 * args.numThreads, true),
-               new ThreadPoolExecutor.CallerRunsPolicy());
+               new BlockingSubmitPolicy());
         // collect translated and write to dex in order
         classDefItemConsumer = Executors.newSingleThreadExecutor();
 
@@ -538,16 +755,15 @@ public class Main {
                     new BestEffortMainDexListFilter();
 
                 // forced in main dex
-                for (int i = 0; i < fileNames.length; i++) {
-                    processOne(fileNames[i], mainPassFilter);
-                }
+                processAll(fileNames, mainPassFilter);
+                mainDexClassDexCount = classDexFutures.size();
 
                 if (dexOutputFutures.size() > 0) {
                     throw new DexException("Too many classes in " + Arguments.MAIN_DEX_LIST_OPTION
                             + ", main dex capacity exceeded");
                 }
 
-                if (args.minimalMainDex) {
+                if (args.minimalMainDex && classDexCache == null) {
                     // start second pass directly in a secondary dex file.
 
                     // Wait for classes in progress to complete
@@ -566,21 +782,21 @@ public class Main {
 
                 // remaining files
                 FileNameFilter filter = new RemoveModuleInfoFilter(new NotFilter(mainPassFilter));
-                for (int i = 0; i < fileNames.length; i++) {
-                    processOne(fileNames[i], filter);
-                }
+                processAll(fileNames, filter);
             } else {
                 // without --main-dex-list
                 FileNameFilter filter = new RemoveModuleInfoFilter(ClassPathOpener.acceptAll);
-                for (int i = 0; i < fileNames.length; i++) {
-                    processOne(fileNames[i], filter);
-                }
+                processAll(fileNames, filter);
             }
         } catch (StopProcessing ex) {
             /*
              * Ignore it and just let the error reporting do
              * their things.
              */
+        } catch (InterruptedException ie) {
+            classTranslatorPool.shutdownNow();
+            classDefItemConsumer.shutdownNow();
+            throw new RuntimeException("Reading has been interrupted", ie);
         }
 
         try {
@@ -595,19 +811,28 @@ public class Main {
                 } catch(ExecutionException ex) {
                     // Catch any previously uncaught exceptions from
                     // class translation and adding to dex.
-                    int count = errors.incrementAndGet();
-                    if (count < 10) {
-                        if (args.debug) {
-                            context.err.println("Uncaught translation error:");
-                            ex.getCause().printStackTrace(context.err);
-                        } else {
-                            context.err.println("Uncaught translation error: " + ex.getCause());
-                        }
-                    } else {
-                        throw new InterruptedException("Too many errors");
+                    reportTranslationError(ex);
+                }
+            }
+
+            // Classes translated through the cache are merged once all
+            // are known, in input file order.
+            for (int i = 0; i < classDexFutures.size(); i++) {
+                if (i == mainDexClassDexCount) {
+                    mainDexClassBufferCount = classDexBuffers.size();
+                }
+                try {
+                    byte[] classDex = classDexFutures.get(i).get();
+                    if (classDex != null) {
+                        classDexBuffers.add(classDex);
                     }
+                } catch(ExecutionException ex) {
+                    reportTranslationError(ex);
                 }
             }
+            if (mainDexClassDexCount == classDexFutures.size()) {
+                mainDexClassBufferCount = classDexBuffers.size();
+            }
 
         } catch (InterruptedException ie) {
             classTranslatorPool.shutdownNow();
@@ -643,6 +868,25 @@ public class Main {
         return true;
     }
 
+    /**
+     * Reports an exception not caught during class translation.
+     *
+     * @param ex {@code non-null;} the exception thrown by a translation task
+     */
+    private void reportTranslationError(ExecutionException ex) throws InterruptedException {
+        int count = errors.incrementAndGet();
+        if (count < 10) {
+            if (args.debug) {
+                context.err.println("Uncaught translation error:");
+                ex.getCause().printStackTrace(context.err);
+            } else {
+                context.err.println("Uncaught translation error: " + ex.getCause());
+            }
+        } else {
+            throw new InterruptedException("Too many errors");
+        }
+    }
+
     private void createDexFile() {
         outputDex = new DexFile(args.dexOptions);
 
@@ -664,19 +908,20 @@ public class Main {
     }
 
     /**
-     * Processes one pathname element.
+     * Processes pathname elements in order. The elements are read and
+     * their classes parsed in parallel, ahead of their processing.
      *
-     * @param pathname {@code non-null;} the pathname to process. May
-     * be the path of a class file, a jar file, or a directory
+     * @param pathnames {@code non-null;} the pathnames to process. Each
+     * may be the path of a class file, a jar file, or a directory
      * containing class files.
      * @param filter {@code non-null;} A filter for excluding files.
      */
-    private void processOne(String pathname, FileNameFilter filter) {
-        ClassPathOpener opener;
-
-        opener = new ClassPathOpener(pathname, true, filter, new FileBytesConsumer());
+    private void processAll(String[] pathnames, FileNameFilter filter)
+            throws InterruptedException {
+        ClassPathReader reader = new ClassPathReader(pathnames, filter,
+                args.numThreads, MAX_PENDING_INPUT_BYTES, new FileBytesConsumer());
 
-        if (opener.process()) {
+        if (reader.process()) {
           updateStatus(true);
         }
     }
@@ -691,9 +936,11 @@ public class Main {
      *
      * @param name {@code non-null;} name of the file
      * @param bytes {@code non-null;} contents of the file
+     * @param parsed {@code null-ok;} the class parsed ahead, if any
      * @return whether processing was successful
      */
-    private boolean processFileBytes(String name, long lastModified, byte[] bytes) {
+    private boolean processFileBytes(String name, long lastModified, byte[] bytes,
+            Future<DirectClassFile> parsed) {
 
         boolean isClass = name.endsWith(".class");
         boolean isClassesDex = name.equals(DexFormat.DEX_IN_JAR_NAME);
@@ -722,7 +969,7 @@ public class Main {
             if (lastModified < minimumFileAge) {
                 return true;
             }
-            processClass(fixedName, bytes);
+            processClass(fixedName, bytes, parsed);
             // Assume that an exception may occur. Status will be updated
             // asynchronously, if the class compiles without error.
             return false;
@@ -745,16 +992,25 @@ public class Main {
      * @param name {@code non-null;} name of the file, clipped such that it
      * <i>should</i> correspond to the name of the class it contains
      * @param bytes {@code non-null;} contents of the file
+     * @param parsed {@code null-ok;} the class parsed ahead, if any
      * @return whether processing was successful
      */
-    private boolean processClass(String name, byte[] bytes) {
+    private boolean processClass(String name, byte[] bytes, Future<DirectClassFile> parsed) {
         if (! args.coreLibrary) {
             checkClassName(name);
         }
 
+        if (classDexCache != null) {
+            processCachedClass(name, bytes);
+            return true;
+        }
+
         try {
-            new DirectClassFileConsumer(name, bytes, null).call(
-                    new ClassParserTask(name, bytes).call());
+            DirectClassFile cf = parsed == null ? null : ClassPathReader.getParsed(parsed);
+            if (cf == null) {
+                cf = new ClassParserTask(name, bytes).call();
+            }
+            new DirectClassFileConsumer(name, bytes, null).call(cf);
         } catch (ParseException ex) {
             // handled in FileBytesConsumer
             throw ex;
@@ -766,6 +1022,34 @@ public class Main {
     }
 
 
+    /**
+     * Processes one classfile through {@link #classDexCache}. A class found
+     * in the cache is not parsed nor translated; any other class is
+     * translated into a dex file of its own, which is then cached.
+     *
+     * @param name {@code non-null;} name of the file
+     * @param bytes {@code non-null;} contents of the file
+     */
+    private void processCachedClass(String name, byte[] bytes) {
+        String key = classDexCache.keyOf(bytes);
+        byte[] cached = classDexCache.get(key);
+
+        if (cached != null) {
+            if (args.verbose) {
+                context.out.println("using cached translation of " + name);
+            }
+            FutureTask<byte[]> cachedDex = new FutureTask<byte[]>(() -> cached);
+            cachedDex.run();
+            classDexFutures.add(cachedDex);
+            updateStatus(true);
+            return;
+        }
+
+        DirectClassFile cf = parseClass(name, bytes);
+        classDexFutures.add(classTranslatorPool.submit(
+                new ClassDexTranslatorTask(name, key, bytes, cf)));
+    }
+
     private DirectClassFile parseClass(String name, byte[] bytes) {
 
         DirectClassFile cf = new DirectClassFile(bytes, name,
@@ -776,9 +1060,13 @@ public class Main {
     }
 
     private mod.agus.jcoderz.dx.dex.file.ClassDefItem translateClass(byte[] bytes, DirectClassFile cf) {
+        return translateClass(bytes, cf, outputDex);
+    }
+
+    private ClassDefItem translateClass(byte[] bytes, DirectClassFile cf, DexFile dexFile) {
         try {
             return CfTranslator.translate(context, cf, bytes, args.cfOptions,
-                    args.dexOptions, outputDex);
+                    args.dexOptions, dexFile);
         } catch (ParseException ex) {
             context.err.println("\ntrouble processing:");
             if (args.debug) {
@@ -887,6 +1175,56 @@ public class Main {
         return outArray;
     }
 
+    /**
+     * Returns whether the output of a mono-dex run is a single dex file
+     * that needs no further processing, and so can be written section by
+     * section rather than built in memory first.
+     */
+    private boolean canStreamOutput() {
+        return !outputDex.isEmpty()
+                && args.outName != null
+                && !args.outName.equals("-")
+                && !args.outName.startsWith("-.")
+                && !args.jarOutput
+                && !args.incremental
+                && args.humanOutName == null
+                && args.methodToDump == null
+                && libraryDexBuffers.isEmpty();
+    }
+
+    /**
+     * Writes the given dex file straight to the named file, without
+     * building it as a {@code byte[]} first.
+     *
+     * @param outputDex {@code non-null;} the dex file to write
+     * @param fileName {@code non-null;} name of the file
+     * @return whether the writing was successful
+     */
+    private boolean writeDexTo(DexFile outputDex, String fileName) {
+        try {
+            FileOutputStream out = new FileOutputStream(fileName);
+            try {
+                outputDex.writeTo(out.getChannel());
+            } finally {
+                out.close();
+            }
+
+            if (args.statistics) {
+                context.out.println(outputDex.getStatistics().toHuman());
+            }
+        } catch (Exception ex) {
+            if (args.debug) {
+                context.err.println("\ntrouble writing output:");
+                ex.printStackTrace(context.err);
+            } else {
+                context.err.println("\ntrouble writing output: " +
+                                   ex.getMessage());
+            }
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Creates a jar file from the resources (including dex file arrays).
      *
@@ -1264,6 +1602,8 @@ public class Main {
 
         private static final String INPUT_LIST_OPTION = "--input-list";
 
+        private static final String CLASS_CACHE_OPTION = "--class-cache";
+
         public final DxContext context;
 
         /** whether to run in debug mode */
@@ -1326,6 +1666,9 @@ public class Main {
         /** whether to merge with the output dex file if it exists. */
         public boolean incremental = false;
 
+        /** {@code null-ok;} directory caching the translation of each class */
+        public String classCacheDir = null;
+
         /** whether to force generation of const-string/jumbo for all indexes,
          *  to allow merges between dex files with many strings. */
         public boolean forceJumbo = false;
@@ -1345,6 +1688,21 @@ public class Main {
         /** Filename containing list of methods to NOT optimize */
         public String dontOptimizeListFile = null;
 
+        /**
+         * Method size, in instructions times registers, above which only
+         * cheap optimizations are run; 0 for no limit
+         */
+        public long cheapOptimizeThreshold = 0;
+
+        /**
+         * Method size, in instructions times registers, above which methods
+         * are not optimized; 0 for no limit
+         */
+        public long skipOptimizeThreshold = 0;
+
+        /** Whether to allocate registers with a linear scan */
+        public boolean linearScan = false;
+
         /** Whether to print statistics to stdout at end of compile cycle */
         public boolean statistics;
 
@@ -1522,6 +1880,12 @@ public class Main {
                     }
                     optimize = true;
                     dontOptimizeListFile = parser.getLastValue();
+                } else if (parser.isArg("--cheap-optimize-above=")) {
+                    cheapOptimizeThreshold = Long.parseLong(parser.getLastValue());
+                } else if (parser.isArg("--no-optimize-above=")) {
+                    skipOptimizeThreshold = Long.parseLong(parser.getLastValue());
+                } else if (parser.isArg("--linear-scan")) {
+                    linearScan = true;
                 } else if (parser.isArg("--keep-classes")) {
                     keepClassesInJar = true;
                 } else if (parser.isArg("--output=")) {
@@ -1566,6 +1930,8 @@ public class Main {
                     numThreads = Integer.parseInt(parser.getLastValue());
                 } else if (parser.isArg(INCREMENTAL_OPTION)) {
                     incremental = true;
+                } else if (parser.isArg(CLASS_CACHE_OPTION + "=")) {
+                    classCacheDir = parser.getLastValue();
                 } else if (parser.isArg("--force-jumbo")) {
                     forceJumbo = true;
                 } else if (parser.isArg(MULTI_DEX_OPTION)) {
@@ -1693,6 +2059,9 @@ public class Main {
             cfOptions.optimize = optimize;
             cfOptions.optimizeListFile = optimizeListFile;
             cfOptions.dontOptimizeListFile = dontOptimizeListFile;
+            cfOptions.cheapOptimizeThreshold = cheapOptimizeThreshold;
+            cfOptions.skipOptimizeThreshold = skipOptimizeThreshold;
+            cfOptions.linearScan = linearScan;
             cfOptions.statistics = statistics;
 
             if (warnings) {
@@ -1712,12 +2081,27 @@ public class Main {
      * Callback class for processing input file bytes, produced by the
      * ClassPathOpener.
      */
-    private class FileBytesConsumer implements ClassPathOpener.Consumer {
+    private class FileBytesConsumer implements ClassPathReader.Consumer {
 
         @Override
         public boolean processFileBytes(String name, long lastModified,
                 byte[] bytes)   {
-            return Main.this.processFileBytes(name, lastModified, bytes);
+            return Main.this.processFileBytes(name, lastModified, bytes, null);
+        }
+
+        @Override
+        public boolean processFileBytes(String name, long lastModified,
+                byte[] bytes, Future<DirectClassFile> parsed) {
+            return Main.this.processFileBytes(name, lastModified, bytes, parsed);
+        }
+
+        @Override
+        public DirectClassFile parseAhead(String name, long lastModified, byte[] bytes) {
+            if (!name.endsWith(".class") || lastModified < minimumFileAge
+                    || classDexCache != null) {
+                return null;
+            }
+            return parseClass(fixPath(name), bytes);
         }
 
         @Override
@@ -1751,6 +2135,27 @@ public class Main {
         }
     }
 
+    /**
+     * Rejection policy of the class translator pool, making the submitting
+     * thread wait for room in the queue rather than translate the class
+     * itself, so that it keeps reading inputs once room is available.
+     */
+    private static class BlockingSubmitPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Translation has been shut down");
+            }
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(ex);
+            }
+        }
+    }
+
     /** Callable helper class to parse class bytes. */
     private class ClassParserTask implements Callable<DirectClassFile> {
 
@@ -1904,6 +2309,47 @@ public class Main {
         }
     }
 
+    /**
+     * Callable helper class to translate a class into a dex file of its
+     * own, and store it in the {@link ClassDexCache}.
+     */
+    private class ClassDexTranslatorTask implements Callable<byte[]> {
+
+        String name;
+        String key;
+        byte[] bytes;
+        DirectClassFile classFile;
+
+        private ClassDexTranslatorTask(String name, String key, byte[] bytes,
+                DirectClassFile classFile) {
+            this.name = name;
+            this.key = key;
+            this.bytes = bytes;
+            this.classFile = classFile;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            DexFile classDex = new DexFile(args.dexOptions);
+            ClassDefItem clazz = translateClass(bytes, classFile, classDex);
+            if (clazz == null) {
+                return null;
+            }
+            classDex.add(clazz);
+            byte[] dex = classDex.toDex(null, false);
+
+            try {
+                classDexCache.put(key, dex);
+            } catch (IOException ex) {
+                // The class is simply translated again next time.
+                context.err.println("warning: unable to cache " + name + ": "
+                        + ex.getMessage());
+            }
+            updateStatus(true);
+            return dex;
+        }
+    }
+
     /**
      * Callable helper class used to collect the results of
      * the parallel translation phase, adding the translated classes to
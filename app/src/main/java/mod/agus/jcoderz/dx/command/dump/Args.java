@@ -53,4 +53,10 @@ class Args {
     /** if non-null, an explicit method to dump */
     String method;
 
+    /** whether to dump one line of JSON per class */
+    boolean jsonLines = false;
+
+    /** number of threads rendering classes at once */
+    int numThreads = 1;
+
 }
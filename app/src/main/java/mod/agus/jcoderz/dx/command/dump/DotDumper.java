@@ -35,6 +35,7 @@ import mod.agus.jcoderz.dx.rop.code.BasicBlockList;
 import mod.agus.jcoderz.dx.rop.code.DexTranslationAdvice;
 import mod.agus.jcoderz.dx.rop.code.RopMethod;
 import mod.agus.jcoderz.dx.rop.code.TranslationAdvice;
+import java.io.PrintStream;
 
 /**
  * Dumps the pred/succ graph of methods into a format compatible
@@ -44,18 +45,22 @@ public class DotDumper implements ParseObserver {
     private DirectClassFile classFile;
 
     private final byte[] bytes;
+    private final PrintStream out;
     private final String filePath;
     private final boolean strictParse;
     private final boolean optimize;
     private final mod.agus.jcoderz.dx.command.dump.Args args;
     private final DexOptions dexOptions;
 
-    static void dump(byte[] bytes, String filePath, mod.agus.jcoderz.dx.command.dump.Args args) {
-        new DotDumper(bytes, filePath, args).run();
+    static void dump(byte[] bytes, PrintStream out, String filePath,
+            mod.agus.jcoderz.dx.command.dump.Args args) {
+        new DotDumper(bytes, out, filePath, args).run();
     }
 
-    DotDumper(byte[] bytes, String filePath, mod.agus.jcoderz.dx.command.dump.Args args) {
+    DotDumper(byte[] bytes, PrintStream out, String filePath,
+            mod.agus.jcoderz.dx.command.dump.Args args) {
         this.bytes = bytes;
+        this.out = out;
         this.filePath = filePath;
         this.strictParse = args.strictParse;
         this.optimize = args.optimize;
@@ -132,9 +137,9 @@ public class DotDumper implements ParseObserver {
                     true, advice);
         }
 
-        System.out.println("digraph "  + name + "{");
+        out.println("digraph "  + name + "{");
 
-        System.out.println("\tfirst -> n"
+        out.println("\tfirst -> n"
                 + Hex.u2(rmeth.getFirstLabel()) + ";");
 
         BasicBlockList blocks = rmeth.getBlocks();
@@ -146,23 +151,23 @@ public class DotDumper implements ParseObserver {
             IntList successors = bb.getSuccessors();
 
             if (successors.size() == 0) {
-                System.out.println("\tn" + Hex.u2(label) + " -> returns;");
+                out.println("\tn" + Hex.u2(label) + " -> returns;");
             } else if (successors.size() == 1) {
-                System.out.println("\tn" + Hex.u2(label) + " -> n"
+                out.println("\tn" + Hex.u2(label) + " -> n"
                         + Hex.u2(successors.get(0)) + ";");
             } else {
-                System.out.print("\tn" + Hex.u2(label) + " -> {");
+                out.print("\tn" + Hex.u2(label) + " -> {");
                 for (int j = 0; j < successors.size(); j++ ) {
                     int successor = successors.get(j);
 
                     if (successor != bb.getPrimarySuccessor()) {
-                        System.out.print(" n" + Hex.u2(successor) + " ");
+                        out.print(" n" + Hex.u2(successor) + " ");
                     }
 
                 }
-                System.out.println("};");
+                out.println("};");
 
-                System.out.println("\tn" + Hex.u2(label) + " -> n"
+                out.println("\tn" + Hex.u2(label) + " -> n"
                         + Hex.u2(bb.getPrimarySuccessor())
                         + " [label=\"primary\"];");
 
@@ -170,6 +175,6 @@ public class DotDumper implements ParseObserver {
             }
         }
 
-        System.out.println("}");
+        out.println("}");
     }
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.command.dump;
+
+import mod.agus.jcoderz.dx.cf.attrib.AttCode;
+import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
+import mod.agus.jcoderz.dx.cf.direct.StdAttributeFactory;
+import mod.agus.jcoderz.dx.cf.iface.Field;
+import mod.agus.jcoderz.dx.cf.iface.FieldList;
+import mod.agus.jcoderz.dx.cf.iface.Method;
+import mod.agus.jcoderz.dx.cf.iface.MethodList;
+import mod.agus.jcoderz.dx.rop.code.AccessFlags;
+import mod.agus.jcoderz.dx.rop.cst.CstString;
+import mod.agus.jcoderz.dx.rop.cst.CstType;
+import mod.agus.jcoderz.dx.rop.type.TypeList;
+import mod.agus.jcoderz.dx.util.Hex;
+import java.io.PrintStream;
+
+/**
+ * Utility to dump the structure of class files as JSON lines: one JSON
+ * object per class, on a single line, giving its name, superclass,
+ * interfaces, access flags, fields and methods. This is meant to be read
+ * by other tools rather than by humans.
+ */
+public final class JsonDumper {
+    /** {@code non-null;} bytes of the (alleged) class file */
+    private final byte[] bytes;
+
+    /** {@code non-null;} where to dump to */
+    private final PrintStream out;
+
+    /** the file path for the class, excluding any base directory */
+    private final String filePath;
+
+    /** commandline parsedArgs */
+    private final Args args;
+
+    /** {@code non-null;} the line being built */
+    private final StringBuilder sb = new StringBuilder(1024);
+
+    /**
+     * Dumps the given array, interpreting it as a class file.
+     *
+     * @param bytes {@code non-null;} bytes of the (alleged) class file
+     * @param out {@code non-null;} where to dump to
+     * @param filePath the file path for the class, excluding any base
+     * directory specification
+     * @param args bag of commandline arguments
+     */
+    static void dump(byte[] bytes, PrintStream out, String filePath, Args args) {
+        new JsonDumper(bytes, out, filePath, args).dump();
+    }
+
+    /**
+     * Dumps a class file which could not be parsed, as an object holding
+     * only its path and the error.
+     *
+     * @param out {@code non-null;} where to dump to
+     * @param filePath the file path for the class
+     * @param message {@code non-null;} the error message
+     */
+    static void dumpError(PrintStream out, String filePath, String message) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"file\":");
+        appendString(sb, filePath);
+        sb.append(",\"error\":");
+        appendString(sb, message);
+        sb.append('}');
+        out.println(sb);
+    }
+
+    /**
+     * Constructs an instance. This class is not publicly instantiable.
+     * Use {@link #dump}.
+     */
+    private JsonDumper(byte[] bytes, PrintStream out, String filePath, Args args) {
+        this.bytes = bytes;
+        this.out = out;
+        this.filePath = filePath;
+        this.args = args;
+    }
+
+    /**
+     * Does the dumping. The line is only written once the whole class is
+     * parsed, so that a class file which fails to parse leaves no partial
+     * line behind.
+     */
+    private void dump() {
+        DirectClassFile cf = new DirectClassFile(bytes, filePath, args.strictParse);
+        cf.setAttributeFactory(StdAttributeFactory.THE_ONE);
+
+        int accessFlags = cf.getAccessFlags();
+        sb.append("{\"file\":");
+        appendString(sb, filePath);
+        sb.append(",\"class\":");
+        appendString(sb, cf.getThisClass().getClassType().getClassName());
+        sb.append(",\"version\":\"").append(cf.getMajorVersion()).append('.')
+                .append(cf.getMinorVersion()).append('"');
+        appendAccess(accessFlags, AccessFlags.classString(accessFlags));
+
+        CstType superclass = cf.getSuperclass();
+        if (superclass != null) {
+            sb.append(",\"super\":");
+            appendString(sb, superclass.getClassType().getClassName());
+        }
+
+        TypeList interfaces = cf.getInterfaces();
+        sb.append(",\"interfaces\":[");
+        for (int i = 0; i < interfaces.size(); i++) {
+            if (i != 0) {
+                sb.append(',');
+            }
+            appendString(sb, interfaces.getType(i).getClassName());
+        }
+        sb.append(']');
+
+        CstString sourceFile = cf.getSourceFile();
+        if (sourceFile != null) {
+            sb.append(",\"source\":");
+            appendString(sb, sourceFile.getString());
+        }
+
+        FieldList fields = cf.getFields();
+        sb.append(",\"fields\":[");
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            if (i != 0) {
+                sb.append(',');
+            }
+            appendMember(field.getName(), field.getDescriptor());
+            appendAccess(field.getAccessFlags(),
+                    AccessFlags.fieldString(field.getAccessFlags()));
+            sb.append('}');
+        }
+        sb.append(']');
+
+        MethodList methods = cf.getMethods();
+        sb.append(",\"methods\":[");
+        boolean first = true;
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            if (args.method != null && !args.method.equals(method.getName().getString())) {
+                continue;
+            }
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendMember(method.getName(), method.getDescriptor());
+            appendAccess(method.getAccessFlags(),
+                    AccessFlags.methodString(method.getAccessFlags()));
+            AttCode code = (AttCode) method.getAttributes().findFirst(AttCode.ATTRIBUTE_NAME);
+            if (code != null) {
+                sb.append(",\"max_stack\":").append(code.getMaxStack());
+                sb.append(",\"max_locals\":").append(code.getMaxLocals());
+                sb.append(",\"code_size\":").append(code.getCode().size());
+                sb.append(",\"catches\":").append(code.getCatches().size());
+            }
+            sb.append('}');
+        }
+        sb.append("]}");
+
+        out.println(sb);
+    }
+
+    /**
+     * Opens the object of a field or method.
+     *
+     * @param name {@code non-null;} the member name
+     * @param descriptor {@code non-null;} the member descriptor
+     */
+    private void appendMember(CstString name, CstString descriptor) {
+        sb.append("{\"name\":");
+        appendString(sb, name.getString());
+        sb.append(",\"descriptor\":");
+        appendString(sb, descriptor.getString());
+    }
+
+    /**
+     * Appends access flags, both as a number and in human-oriented form.
+     *
+     * @param flags the flags
+     * @param human {@code non-null;} the flags in human-oriented form
+     */
+    private void appendAccess(int flags, String human) {
+        sb.append(",\"access\":").append(flags);
+        sb.append(",\"flags\":");
+        appendString(sb, human);
+    }
+
+    /**
+     * Appends a string as a quoted JSON string.
+     *
+     * @param sb {@code non-null;} where to append to
+     * @param s {@code null-ok;} the string
+     */
+    private static void appendString(StringBuilder sb, String s) {
+        if (s == null) {
+            sb.append("null");
+            return;
+        }
+
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c >= 0x7f) {
+                        sb.append("\\u").append(Hex.u2(c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -19,15 +19,52 @@ package mod.agus.jcoderz.dx.command.dump;
 import mod.agus.jcoderz.dex.util.FileUtils;
 import mod.agus.jcoderz.dx.cf.iface.ParseException;
 import mod.agus.jcoderz.dx.util.HexParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayDeque;
+import java.util.Enumeration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Main class for the class file dumper.
  */
 public class Main {
+    /**
+     * number of classes, per thread, that may be rendered but not yet
+     * written out, which bounds the memory held by buffered output
+     */
+    private static final int PENDING_PER_THREAD = 4;
+
+    /**
+     * buffer of each rendering thread, kept from one class to the next so
+     * that it only grows to the size of the largest dump once
+     */
+    private static final ThreadLocal<ByteArrayOutputStream> buffers =
+            new ThreadLocal<ByteArrayOutputStream>() {
+                @Override
+                protected ByteArrayOutputStream initialValue() {
+                    return new ByteArrayOutputStream(64 * 1024);
+                }
+            };
 
     private final Args parsedArgs = new Args();
 
+    /** {@code null-ok;} pool rendering classes, if more than one thread */
+    private ExecutorService renderPool;
+
+    /** {@code non-null;} classes being rendered, in input order */
+    private final ArrayDeque<Future<Rendering>> pending =
+            new ArrayDeque<Future<Rendering>>();
+
     /**
      * This class is uninstantiable.
      */
@@ -65,6 +102,8 @@ public class Main {
                 parsedArgs.debug = true;
             } else if (arg.equals("--dot")) {
                 parsedArgs.dotDump = true;
+            } else if (arg.equals("--json")) {
+                parsedArgs.jsonLines = true;
             } else if (arg.equals("--strict")) {
                 parsedArgs.strictParse = true;
             } else if (arg.startsWith("--width=")) {
@@ -73,6 +112,9 @@ public class Main {
             } else if (arg.startsWith("--method=")) {
                 arg = arg.substring(arg.indexOf('=') + 1);
                 parsedArgs.method = arg;
+            } else if (arg.startsWith("--num-threads=")) {
+                arg = arg.substring(arg.indexOf('=') + 1);
+                parsedArgs.numThreads = Integer.parseInt(arg);
             } else {
                 System.err.println("unknown option: " + arg);
                 throw new RuntimeException("usage");
@@ -84,51 +126,244 @@ public class Main {
             throw new RuntimeException("usage");
         }
 
-        for (/*at*/; at < args.length; at++) {
-            try {
-                String name = args[at];
-                System.out.println("reading " + name + "...");
-                byte[] bytes = FileUtils.readFile(name);
-                if (!name.endsWith(".class")) {
-                    String src;
-                    try {
-                        src = new String(bytes, "utf-8");
-                    } catch (UnsupportedEncodingException ex) {
-                        throw new RuntimeException("shouldn't happen", ex);
+        if (parsedArgs.ssaBlocks) {
+            // --optimize ignored with --ssa-blocks
+            parsedArgs.optimize = false;
+        }
+
+        if (parsedArgs.numThreads > 1) {
+            renderPool = Executors.newFixedThreadPool(parsedArgs.numThreads);
+        }
+
+        try {
+            for (/*at*/; at < args.length; at++) {
+                try {
+                    String name = args[at];
+                    if (isArchive(name)) {
+                        processArchive(name);
+                        continue;
+                    }
+                    byte[] bytes = FileUtils.readFile(name);
+                    if (!name.endsWith(".class")) {
+                        String src;
+                        try {
+                            src = new String(bytes, "utf-8");
+                        } catch (UnsupportedEncodingException ex) {
+                            throw new RuntimeException("shouldn't happen", ex);
+                        }
+                        bytes = HexParser.parse(src);
                     }
-                    bytes = HexParser.parse(src);
+                    processOne(name, name, bytes);
+                } catch (ParseException ex) {
+                    report(args[at], ex);
                 }
-                processOne(name, bytes);
-            } catch (ParseException ex) {
-                System.err.println("\ntrouble parsing:");
-                if (parsedArgs.debug) {
-                    ex.printStackTrace();
-                } else {
-                    ex.printContext(System.err);
+            }
+
+            writePending(0);
+        } finally {
+            if (renderPool != null) {
+                renderPool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Tells whether a file is an archive whose classes are to be dumped.
+     *
+     * @param name {@code non-null;} name of the file
+     * @return whether it is a {@code .zip}, {@code .jar} or {@code .apk}
+     */
+    private static boolean isArchive(String name) {
+        return name.endsWith(".zip") || name.endsWith(".jar") || name.endsWith(".apk");
+    }
+
+    /**
+     * Processes all the class files of an archive, in archive order.
+     *
+     * @param name {@code non-null;} name of the archive
+     */
+    private void processArchive(String name) {
+        ZipFile zip;
+        try {
+            zip = new ZipFile(name);
+        } catch (IOException ex) {
+            throw new RuntimeException("unable to open " + name, ex);
+        }
+
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(40000);
+            byte[] buf = new byte[20000];
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                ZipEntry one = e.nextElement();
+                String path = one.getName();
+                if (one.isDirectory() || !path.endsWith(".class")) {
+                    continue;
+                }
+
+                InputStream in = zip.getInputStream(one);
+                baos.reset();
+                int read;
+                while ((read = in.read(buf)) != -1) {
+                    baos.write(buf, 0, read);
                 }
+                in.close();
+
+                processOne(name + "!" + path, path, baos.toByteArray());
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("unable to read " + name, ex);
+        } finally {
+            try {
+                zip.close();
+            } catch (IOException ex) {
+                // Ignore it; everything needed has been read.
             }
         }
     }
 
     /**
-     * Processes one file.
+     * Processes one class. Without a pool, it is dumped right away;
+     * otherwise it is rendered by the pool into a buffer, which is
+     * written out once the classes before it have been.
+     *
+     * @param name {@code non-null;} name of the input, as reported
+     * @param filePath {@code non-null;} path of the class file
+     * @param bytes {@code non-null;} contents of the file
+     */
+    private void processOne(final String name, final String filePath,
+            final byte[] bytes) {
+        if (renderPool == null) {
+            report(filePath, render(name, filePath, bytes, System.out));
+            return;
+        }
+
+        pending.add(renderPool.submit(new Callable<Rendering>() {
+            @Override
+            public Rendering call() {
+                ByteArrayOutputStream buffer = buffers.get();
+                buffer.reset();
+                PrintStream out = new PrintStream(buffer);
+                ParseException error = render(name, filePath, bytes, out);
+                out.flush();
+                return new Rendering(filePath, buffer.toByteArray(), error);
+            }
+        }));
+        writePending(PENDING_PER_THREAD * parsedArgs.numThreads);
+    }
+
+    /**
+     * Writes out the oldest rendered classes, waiting for them as needed,
+     * until no more than the given number are pending.
+     *
+     * @param maxPending {@code >= 0;} number of classes left pending
+     */
+    private void writePending(int maxPending) {
+        while (pending.size() > maxPending) {
+            Rendering rendering;
+            try {
+                rendering = pending.remove().get();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException("Dump has been interrupted", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+
+            System.out.write(rendering.output, 0, rendering.output.length);
+            report(rendering.filePath, rendering.error);
+        }
+    }
+
+    /**
+     * Dumps one class.
+     *
+     * @param name {@code non-null;} name of the input, as reported
+     * @param filePath {@code non-null;} path of the class file
+     * @param bytes {@code non-null;} contents of the file
+     * @param out {@code non-null;} where to dump to
+     * @return {@code null-ok;} the parse failure, if any
+     */
+    private ParseException render(String name, String filePath, byte[] bytes,
+            PrintStream out) {
+        try {
+            if (parsedArgs.jsonLines) {
+                JsonDumper.dump(bytes, out, filePath, parsedArgs);
+            } else {
+                out.println("reading " + name + "...");
+                dump(filePath, bytes, out);
+            }
+            return null;
+        } catch (ParseException ex) {
+            return ex;
+        }
+    }
+
+    /**
+     * Dumps one class in the requested text form.
      *
      * @param name {@code non-null;} name of the file
      * @param bytes {@code non-null;} contents of the file
+     * @param out {@code non-null;} where to dump to
      */
-    private void processOne(String name, byte[] bytes) {
+    private void dump(String name, byte[] bytes, PrintStream out) {
         if (parsedArgs.dotDump) {
-            DotDumper.dump(bytes, name, parsedArgs);
+            DotDumper.dump(bytes, out, name, parsedArgs);
         } else if (parsedArgs.basicBlocks) {
-            BlockDumper.dump(bytes, System.out, name, false, parsedArgs);
+            BlockDumper.dump(bytes, out, name, false, parsedArgs);
         } else if (parsedArgs.ropBlocks) {
-            BlockDumper.dump(bytes, System.out, name, true, parsedArgs);
+            BlockDumper.dump(bytes, out, name, true, parsedArgs);
         } else if (parsedArgs.ssaBlocks) {
-            // --optimize ignored with --ssa-blocks
-            parsedArgs.optimize = false;
-            SsaDumper.dump(bytes, System.out, name, parsedArgs);
+            SsaDumper.dump(bytes, out, name, parsedArgs);
+        } else {
+            ClassDumper.dump(bytes, out, name, parsedArgs);
+        }
+    }
+
+    /**
+     * Reports a class which failed to parse, if it did.
+     *
+     * @param filePath {@code non-null;} path of the class file
+     * @param ex {@code null-ok;} the parse failure
+     */
+    private void report(String filePath, ParseException ex) {
+        if (ex == null) {
+            return;
+        }
+
+        if (parsedArgs.jsonLines) {
+            JsonDumper.dumpError(System.out, filePath, ex.getMessage());
         } else {
-            ClassDumper.dump(bytes, System.out, name, parsedArgs);
+            System.err.println("\ntrouble parsing:");
+            if (parsedArgs.debug) {
+                ex.printStackTrace();
+            } else {
+                ex.printContext(System.err);
+            }
+        }
+    }
+
+    /**
+     * The dump of one class, rendered by the pool.
+     */
+    private static final class Rendering {
+        /** {@code non-null;} path of the class file */
+        final String filePath;
+
+        /** {@code non-null;} the dump */
+        final byte[] output;
+
+        /** {@code null-ok;} the parse failure, if any */
+        final ParseException error;
+
+        Rendering(String filePath, byte[] output, ParseException error) {
+            this.filePath = filePath;
+            this.output = output;
+            this.error = error;
         }
     }
 }
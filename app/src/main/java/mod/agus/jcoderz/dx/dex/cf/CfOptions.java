@@ -41,6 +41,24 @@ public class CfOptions {
     /** filename containing list of methods <i>not</i> to optimize */
     public String dontOptimizeListFile = null;
 
+    /**
+     * method size, in instructions times registers, above which only cheap
+     * optimization steps are run; {@code 0} for no limit
+     */
+    public long cheapOptimizeThreshold = 0;
+
+    /**
+     * method size, in instructions times registers, above which methods are
+     * not optimized; {@code 0} for no limit
+     */
+    public long skipOptimizeThreshold = 0;
+
+    /**
+     * whether to allocate registers with a linear scan, which is faster
+     * than the default allocator but produces larger code
+     */
+    public boolean linearScan = false;
+
     /** whether to print statistics to stdout at end of compile cycle */
     public boolean statistics;
 
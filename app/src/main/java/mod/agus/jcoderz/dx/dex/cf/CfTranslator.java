@@ -323,18 +323,30 @@ public class CfTranslator {
                             System.err.println("Optimizing " + canonicalName);
                         }
 
-                        nonOptRmeth = rmeth;
-                        rmeth = Optimizer.optimize(rmeth,
-                                paramSize, isStatic, cfOptions.localInfo, advice);
-
-                        if (DEBUG) {
-                            context.optimizerOptions.compareOptimizerStep(nonOptRmeth,
-                                    paramSize, isStatic, cfOptions, advice, rmeth);
+                        Optimizer.Tier tier = Optimizer.chooseTier(rmeth,
+                                cfOptions.cheapOptimizeThreshold,
+                                cfOptions.skipOptimizeThreshold);
+                        long start = cfOptions.statistics ? System.nanoTime() : 0;
+
+                        if (tier != Optimizer.Tier.NONE) {
+                            nonOptRmeth = rmeth;
+                            rmeth = Optimizer.optimize(rmeth,
+                                    paramSize, isStatic, cfOptions.localInfo, advice, tier,
+                                    cfOptions.linearScan);
+
+                            if (DEBUG) {
+                                context.optimizerOptions.compareOptimizerStep(nonOptRmeth,
+                                        paramSize, isStatic, cfOptions, advice, rmeth);
+                            }
                         }
 
                         if (cfOptions.statistics) {
-                            context.codeStatistics.updateRopStatistics(
-                                    nonOptRmeth, rmeth);
+                            context.codeStatistics.updateTierStatistics(tier,
+                                    System.nanoTime() - start);
+                            if (nonOptRmeth != null) {
+                                context.codeStatistics.updateRopStatistics(
+                                        nonOptRmeth, rmeth);
+                            }
                         }
                     }
 
@@ -21,6 +21,7 @@ import mod.agus.jcoderz.dx.dex.code.DalvCode;
 import java.io.PrintStream;
 
 import mod.agus.jcoderz.dx.rop.code.RopMethod;
+import mod.agus.jcoderz.dx.ssa.Optimizer;
 
 /**
  * Static methods and variables for collecting statistics on generated
@@ -67,6 +68,12 @@ public final class CodeStatistics {
     /** running sum of original class bytecode bytes */
     public int runningOriginalBytes = 0;
 
+    /** number of methods optimized in each tier, by ordinal */
+    private final int[] tierMethodCounts = new int[Optimizer.Tier.values().length];
+
+    /** time spent optimizing methods of each tier, by ordinal, in nanoseconds */
+    private final long[] tierNanos = new long[Optimizer.Tier.values().length];
+
     /**
      * Updates the number of original bytecode bytes processed.
      *
@@ -76,6 +83,18 @@ public final class CodeStatistics {
         runningOriginalBytes += count;
     }
 
+    /**
+     * Updates the optimization tier statistics. Called concurrently by
+     * translation threads.
+     *
+     * @param tier {@code non-null;} tier the method was optimized in
+     * @param nanos {@code >= 0;} time spent optimizing the method
+     */
+    public synchronized void updateTierStatistics(Optimizer.Tier tier, long nanos) {
+        tierMethodCounts[tier.ordinal()]++;
+        tierNanos[tier.ordinal()] += nanos;
+    }
+
     /**
      * Updates the dex statistics.
      *
@@ -162,5 +181,13 @@ public final class CodeStatistics {
 
         out.printf("Original bytecode byte count: %d\n",
                 runningOriginalBytes);
+
+        synchronized (this) {
+            for (Optimizer.Tier tier : Optimizer.Tier.values()) {
+                out.printf("Optimizer tier %s: %d methods in %.1fms\n",
+                        tier, tierMethodCounts[tier.ordinal()],
+                        tierNanos[tier.ordinal()] / 1e6);
+            }
+        }
     }
 }
@@ -17,6 +17,7 @@
 package mod.agus.jcoderz.dx.dex.file;
 
 import mod.agus.jcoderz.dex.DexFormat;
+import mod.agus.jcoderz.dex.util.DexHasher;
 import mod.agus.jcoderz.dex.util.ExceptionWithContext;
 import mod.agus.jcoderz.dx.dex.DexOptions;
 import mod.agus.jcoderz.dx.rop.cst.Constant;
@@ -29,23 +30,26 @@ import mod.agus.jcoderz.dx.rop.cst.CstProtoRef;
 import mod.agus.jcoderz.dx.rop.cst.CstString;
 import mod.agus.jcoderz.dx.rop.cst.CstType;
 import mod.agus.jcoderz.dx.rop.type.Type;
+import mod.agus.jcoderz.dx.util.AnnotatedOutput;
 import mod.agus.jcoderz.dx.util.ByteArrayAnnotatedOutput;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
-import java.security.DigestException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.Adler32;
 
 /**
  * Representation of an entire {@code .dex} (Dalvik EXecutable)
  * file, which itself consists of a set of Dalvik classes.
  */
 public final class DexFile {
+    /** number of member ids from which their sections are prepared concurrently */
+    private static final int PARALLEL_PREPARE_THRESHOLD = 4096;
+
     /** options controlling the creation of the file */
     private final mod.agus.jcoderz.dx.dex.DexOptions dexOptions;
 
@@ -610,6 +614,74 @@ public final class DexFile {
     private mod.agus.jcoderz.dx.util.ByteArrayAnnotatedOutput toDex0(boolean annotate,
                                                                      boolean verbose,
                                                                      Storage storage) {
+        placeSections();
+
+        // Write out all the sections.
+
+        int count = sections.length;
+        byte[] barr = storage == null ? new byte[fileSize] : storage.getStorage(fileSize);
+
+        mod.agus.jcoderz.dx.util.ByteArrayAnnotatedOutput out = new ByteArrayAnnotatedOutput(barr);
+
+        if (annotate) {
+            out.enableAnnotations(dumpWidth, verbose);
+        }
+
+        DexHasher hasher = new DexHasher();
+
+        for (int i = 0; i < count; i++) {
+            if (!isOmitted(sections[i])) {
+                writeSection(i, out, barr, 0, hasher);
+            }
+        }
+
+        if (out.getCursor() != fileSize) {
+            throw new RuntimeException("foreshortened write");
+        }
+
+        // Perform final bookkeeping.
+
+        byte[] hashes = hasher.finish();
+        System.arraycopy(hashes, 0, barr, DexHasher.CHECKSUM_OFFSET, hashes.length);
+
+        if (annotate) {
+            wordData.writeIndexAnnotation(out, ItemType.TYPE_CODE_ITEM,
+                    "\nmethod code index:\n\n");
+            getStatistics().writeAnnotation(out);
+            out.finishAnnotating();
+        }
+
+        return out;
+    }
+
+    /**
+     * Prepares the method and field id sections. Both only add items to
+     * later sections, through synchronized interning, so large ones are
+     * prepared concurrently.
+     */
+    private void prepareMemberIds() {
+        int memberIdCount = methodIds.items().size() + fieldIds.items().size();
+        if (memberIdCount < PARALLEL_PREPARE_THRESHOLD) {
+            methodIds.prepare();
+            fieldIds.prepare();
+            return;
+        }
+
+        ForkJoinTask<?> fields = ForkJoinTask.adapt(new Runnable() {
+            @Override
+            public void run() {
+                fieldIds.prepare();
+            }
+        }).fork();
+        methodIds.prepare();
+        fields.join();
+    }
+
+    /**
+     * Prepares all the sections and places them within the file, which
+     * also determines the file size.
+     */
+    private void placeSections() {
         /*
          * The following is ordered so that the prepare() calls which
          * add items happen before the calls to the sections that get
@@ -628,8 +700,7 @@ public final class DexFile {
             // Prepare method handles after call site items placed in byteData.
             methodHandles.prepare();
         }
-        methodIds.prepare();
-        fieldIds.prepare();
+        prepareMemberIds();
         protoIds.prepare();
         typeLists.prepare();
         typeIds.prepare();
@@ -644,12 +715,7 @@ public final class DexFile {
 
         for (int i = 0; i < count; i++) {
             Section one = sections[i];
-            if ((one == callSiteIds || one == methodHandles) && one.items().isEmpty()) {
-                /*
-                 * Skip call site or method handles sections if they have no items as
-                 * they may change the alignment of what follows even if empty as
-                 * Section.setFileOffset() always ensures appropriate alignment for the section.
-                 */
+            if (isOmitted(one)) {
                 continue;
             }
 
@@ -684,59 +750,121 @@ public final class DexFile {
             }
         }
 
-        // Write out all the sections.
-
         fileSize = offset;
-        byte[] barr = storage == null ? new byte[fileSize] : storage.getStorage(fileSize);
+    }
 
-        mod.agus.jcoderz.dx.util.ByteArrayAnnotatedOutput out = new ByteArrayAnnotatedOutput(barr);
+    /**
+     * Tells whether a section is left out of the file. Call site and method
+     * handle sections without items are, as they may change the alignment
+     * of what follows even if empty: {@link Section#setFileOffset} always
+     * aligns the section.
+     *
+     * @param one {@code non-null;} the section
+     * @return whether it is left out
+     */
+    private boolean isOmitted(Section one) {
+        return (one == callSiteIds || one == methodHandles) && one.items().isEmpty();
+    }
 
-        if (annotate) {
-            out.enableAnnotations(dumpWidth, verbose);
+    /**
+     * Writes a placed section, preceded by the zeroes up to its file
+     * offset, and hashes it while it is still in the cache.
+     *
+     * @param i index of the section
+     * @param out {@code non-null;} where to write, whose cursor is a file
+     * offset
+     * @param bytes {@code non-null;} the array {@code out} writes to
+     * @param base file offset of the first byte of {@code bytes}
+     * @param hasher {@code non-null;} hasher of the whole file
+     * @return number of bytes written
+     */
+    private int writeSection(int i, AnnotatedOutput out, byte[] bytes, int base,
+            DexHasher hasher) {
+        Section one = sections[i];
+        int start = out.getCursor();
+        try {
+            int zeroCount = one.getFileOffset() - start;
+            if (zeroCount < 0) {
+                throw new ExceptionWithContext("excess write of " +
+                        (-zeroCount));
+            }
+            out.writeZeroes(zeroCount);
+            one.writeTo(out);
+        } catch (RuntimeException ex) {
+            throw ExceptionWithContext.withContext(ex,
+                    "...while writing section " + i);
         }
 
+        int length = out.getCursor() - start;
+        hasher.update(bytes, start - base, length, start);
+        return length;
+    }
+
+    /**
+     * Writes the contents of this instance as a {@code .dex} file to a
+     * channel, one section at a time, so that the whole file is never held
+     * in memory. The signature and checksum are computed as the sections
+     * are written, and patched into the header at the end.
+     *
+     * @param channel {@code non-null;} where to write to, starting at its
+     * current position
+     */
+    public void writeTo(FileChannel channel) throws IOException {
+        placeSections();
+
+        int count = sections.length;
+        int maxSectionSize = 0;
+        int end = 0;
         for (int i = 0; i < count; i++) {
-            try {
-                final Section one = sections[i];
-                if ((one == callSiteIds || one == methodHandles) && one.items().isEmpty()) {
-                   continue;
-                }
-                final int zeroCount = one.getFileOffset() - out.getCursor();
-                if (zeroCount < 0) {
-                    throw new ExceptionWithContext("excess write of " +
-                            (-zeroCount));
-                }
-                out.writeZeroes(zeroCount);
-                one.writeTo(out);
-            } catch (RuntimeException ex) {
-                ExceptionWithContext ec;
-                if (ex instanceof ExceptionWithContext) {
-                    ec = (ExceptionWithContext) ex;
-                } else {
-                    ec = new ExceptionWithContext(ex);
-                }
-                ec.addContext("...while writing section " + i);
-                throw ec;
+            Section one = sections[i];
+            if (isOmitted(one)) {
+                continue;
             }
+            int sectionEnd = one.getFileOffset() + one.writeSize();
+            maxSectionSize = Math.max(maxSectionSize, sectionEnd - end);
+            end = sectionEnd;
         }
 
-        if (out.getCursor() != fileSize) {
+        DexHasher hasher = new DexHasher();
+
+        long start = channel.position();
+        byte[] buffer = new byte[maxSectionSize];
+        int cursor = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (isOmitted(sections[i])) {
+                continue;
+            }
+
+            int length = writeSection(i, new SectionOutput(buffer, cursor), buffer, cursor,
+                    hasher);
+            writeFully(channel, ByteBuffer.wrap(buffer, 0, length), start + cursor);
+            cursor += length;
+        }
+
+        if (cursor != fileSize) {
             throw new RuntimeException("foreshortened write");
         }
 
-        // Perform final bookkeeping.
+        // Patch the checksum and the signature into the header.
 
-        calcSignature(barr, out.getCursor());
-        calcChecksum(barr, out.getCursor());
+        writeFully(channel, ByteBuffer.wrap(hasher.finish()),
+                start + DexHasher.CHECKSUM_OFFSET);
+        channel.position(start + fileSize);
+    }
 
-        if (annotate) {
-            wordData.writeIndexAnnotation(out, ItemType.TYPE_CODE_ITEM,
-                    "\nmethod code index:\n\n");
-            getStatistics().writeAnnotation(out);
-            out.finishAnnotating();
+    /**
+     * Writes all the remaining bytes of a buffer to a channel.
+     *
+     * @param channel {@code non-null;} where to write to
+     * @param buffer {@code non-null;} what to write
+     * @param position position in the channel to write at
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
         }
-
-        return out;
     }
 
     /**
@@ -753,53 +881,4 @@ public final class DexFile {
 
         return stats;
     }
-
-    /**
-     * Calculates the signature for the {@code .dex} file in the
-     * given array, and modify the array to contain it.
-     *
-     * @param bytes {@code non-null;} the bytes of the file
-     * @param len length of {@code .dex} file encoded in the array
-     */
-    private static void calcSignature(byte[] bytes, int len) {
-        MessageDigest md;
-
-        try {
-            md = MessageDigest.getInstance("SHA-1");
-        } catch (NoSuchAlgorithmException ex) {
-            throw new RuntimeException(ex);
-        }
-
-        md.update(bytes, 32, len - 32);
-
-        try {
-            int amt = md.digest(bytes, 12, 20);
-            if (amt != 20) {
-                throw new RuntimeException("unexpected digest write: " + amt +
-                        " bytes");
-            }
-        } catch (DigestException ex) {
-            throw new RuntimeException(ex);
-        }
-    }
-
-    /**
-     * Calculates the checksum for the {@code .dex} file in the
-     * given array, and modify the array to contain it.
-     *
-     * @param bytes {@code non-null;} the bytes of the file
-     * @param len length of {@code .dex} file encoded in the array
-     */
-    private static void calcChecksum(byte[] bytes, int len) {
-        Adler32 a32 = new Adler32();
-
-        a32.update(bytes, 12, len - 12);
-
-        int sum = (int) a32.getValue();
-
-        bytes[8]  = (byte) sum;
-        bytes[9]  = (byte) (sum >> 8);
-        bytes[10] = (byte) (sum >> 16);
-        bytes[11] = (byte) (sum >> 24);
-    }
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.dex.file;
+
+import mod.agus.jcoderz.dex.util.ExceptionWithContext;
+import mod.agus.jcoderz.dx.util.AnnotatedOutput;
+import mod.agus.jcoderz.dx.util.ByteArray;
+import mod.agus.jcoderz.dx.util.ByteArrayAnnotatedOutput;
+
+/**
+ * Output for one section of a file being streamed, which holds only the
+ * bytes of that section while reporting cursors relative to the start of
+ * the whole file, as expected by the items being written. It does not
+ * keep annotations.
+ */
+final class SectionOutput implements AnnotatedOutput {
+    /** {@code non-null;} the bytes of the section */
+    private final ByteArrayAnnotatedOutput out;
+
+    /** {@code >= 0;} file offset of the first byte of {@link #out} */
+    private final int base;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param buffer {@code non-null;} array large enough for the section
+     * @param base {@code >= 0;} file offset of the first byte written
+     */
+    public SectionOutput(byte[] buffer, int base) {
+        this.out = new ByteArrayAnnotatedOutput(buffer);
+        this.base = base;
+    }
+
+    /**
+     * Gets the underlying {@code byte[]} of this instance, which
+     * may be larger than the number of bytes written.
+     *
+     * @return {@code non-null;} the {@code byte[]}
+     */
+    public byte[] getArray() {
+        return out.getArray();
+    }
+
+    /**
+     * Gets the number of bytes written to this instance.
+     *
+     * @return {@code >= 0;} the number of bytes written
+     */
+    public int getLength() {
+        return out.getCursor();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getCursor() {
+        return base + out.getCursor();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void assertCursor(int expectedCursor) {
+        if (getCursor() != expectedCursor) {
+            throw new ExceptionWithContext("expected cursor " +
+                    expectedCursor + "; actual value: " + getCursor());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeByte(int value) {
+        out.writeByte(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeShort(int value) {
+        out.writeShort(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeInt(int value) {
+        out.writeInt(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeLong(long value) {
+        out.writeLong(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int writeUleb128(int value) {
+        return out.writeUleb128(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int writeSleb128(int value) {
+        return out.writeSleb128(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(ByteArray bytes) {
+        out.write(bytes);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        out.write(bytes, offset, length);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(byte[] bytes) {
+        out.write(bytes);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeZeroes(int count) {
+        out.writeZeroes(count);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void alignTo(int alignment) {
+        int mask = alignment - 1;
+
+        if ((alignment < 0) || ((mask & alignment) != 0)) {
+            throw new IllegalArgumentException("bogus alignment");
+        }
+
+        int cursor = getCursor();
+        out.writeZeroes(((cursor + mask) & ~mask) - cursor);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean annotates() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isVerbose() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void annotate(String msg) {
+        // This space intentionally left blank.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void annotate(int amt, String msg) {
+        // This space intentionally left blank.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endAnnotation() {
+        // This space intentionally left blank.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getAnnotationWidth() {
+        return 0;
+    }
+}
@@ -36,6 +36,11 @@ import mod.agus.jcoderz.dx.command.dexer.DxContext;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Combine two dex files into one.
@@ -85,8 +90,23 @@ public final class DexMerger {
 
     private final InstructionTransformer instructionTransformer;
 
+    /** default minimum number of wasted bytes before compacting the result */
+    private static final int DEFAULT_COMPACT_WASTE_THRESHOLD = 1024 * 1024; // 1MiB
+
     /** minimum number of wasted bytes before it's worthwhile to compact the result */
-    private int compactWasteThreshold = 1024 * 1024; // 1MiB
+    private int compactWasteThreshold = DEFAULT_COMPACT_WASTE_THRESHOLD;
+
+    /** number of classes whose instructions are rewritten by one task */
+    private static final int CLASSES_PER_TASK = 64;
+
+    /** number of threads rewriting instructions, or 1 to rewrite them in line */
+    private int codeParallelism = 1;
+
+    /**
+     * {@code null-ok;} instructions rewritten ahead of their class, while
+     * class definitions are being written in parallel mode
+     */
+    private CodeRewriter codeRewriter;
 
     public DexMerger(Dex[] dexes, CollisionPolicy collisionPolicy, mod.agus.jcoderz.dx.command.dexer.DxContext context)
             throws IOException {
@@ -157,6 +177,21 @@ public final class DexMerger {
         this.compactWasteThreshold = compactWasteThreshold;
     }
 
+    /**
+     * Sets the number of threads rewriting the instructions of methods. With
+     * more than one, the instructions of upcoming classes are rewritten in
+     * parallel while classes are written in order, so the result does not
+     * depend on it.
+     *
+     * @param codeParallelism {@code > 0;} number of threads
+     */
+    public void setCodeParallelism(int codeParallelism) {
+        if (codeParallelism < 1) {
+            throw new IllegalArgumentException("codeParallelism < 1");
+        }
+        this.codeParallelism = codeParallelism;
+    }
+
     private Dex mergeDexes() throws IOException {
         mergeStringIds();
         mergeTypeIds();
@@ -195,6 +230,16 @@ public final class DexMerger {
         }
 
         long start = System.nanoTime();
+        Dex result = mergeAndCompact();
+        printSummary(dexes, result, System.nanoTime() - start, context);
+        return result;
+    }
+
+    /**
+     * Merges the dex files, then compacts the result if too many bytes
+     * are wasted.
+     */
+    private Dex mergeAndCompact() throws IOException {
         Dex result = mergeDexes();
 
         /*
@@ -207,6 +252,7 @@ public final class DexMerger {
         if (wastedByteCount >  + compactWasteThreshold) {
             DexMerger compacter = new DexMerger(
                     new Dex[] {dexOut, new Dex(0)}, CollisionPolicy.FAIL, context, compactedSizes);
+            compacter.setCodeParallelism(codeParallelism);
             result = compacter.mergeDexes();
             context.out.printf("Result compacted from %.1fKiB to %.1fKiB to save %.1fKiB%n",
                     dexOut.getLength() / 1024f,
@@ -214,7 +260,135 @@ public final class DexMerger {
                     wastedByteCount / 1024f);
         }
 
-        long elapsed = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Merges several dex files in parallel. The dex files are split into
+     * contiguous groups, one per thread, each merged by a single k-way
+     * merge; the group results are then merged by one more. Each byte is
+     * therefore copied twice whatever the number of dex files, where a
+     * tree of pairwise merges would copy it once per level. The final
+     * merge is sized from the bytes the group results actually use, rather
+     * than from their padded sections, so the group results are never
+     * compacted. The final result still goes through the compaction check
+     * of {@link #merge}: how many ids the groups share is only known once
+     * they are merged, so its sizes cannot be exact, and when it wastes
+     * more than the threshold it is merged once more, copying its bytes a
+     * third time.
+     *
+     * @param dexes {@code non-null;} the dex files, in priority order
+     * @param collisionPolicy {@code non-null;} how to handle classes
+     * defined by several dex files
+     * @param context {@code non-null;} the context
+     * @param parallelism {@code > 0;} number of merges to run at once
+     * @return {@code null-ok;} the merged dex file, or {@code null} if
+     * there is no dex file to merge
+     */
+    public static Dex mergeInParallel(Dex[] dexes, CollisionPolicy collisionPolicy,
+            DxContext context, int parallelism) throws IOException {
+        return mergeInParallel(dexes, collisionPolicy, context, parallelism,
+                DEFAULT_COMPACT_WASTE_THRESHOLD);
+    }
+
+    /**
+     * Merges several dex files in parallel, as {@link #mergeInParallel(Dex[],
+     * CollisionPolicy, DxContext, int)} does, compacting the result once it
+     * wastes more than the given number of bytes. Many small dex files
+     * should be merged with a threshold of zero: most of their ids are
+     * shared, so the padding left by the pessimistic sizes can be larger
+     * than the result itself.
+     *
+     * @param dexes {@code non-null;} the dex files, in priority order
+     * @param collisionPolicy {@code non-null;} how to handle classes
+     * defined by several dex files
+     * @param context {@code non-null;} the context
+     * @param parallelism {@code > 0;} number of merges to run at once
+     * @param compactWasteThreshold {@code >= 0;} minimum number of wasted
+     * bytes before the result is compacted
+     * @return {@code null-ok;} the merged dex file, or {@code null} if
+     * there is no dex file to merge
+     */
+    public static Dex mergeInParallel(Dex[] dexes, final CollisionPolicy collisionPolicy,
+            final DxContext context, int parallelism, int compactWasteThreshold)
+            throws IOException {
+        // Groups of fewer than two dex files would only add a copy.
+        int groupCount = Math.min(parallelism, dexes.length / 2);
+        if (groupCount <= 1) {
+            DexMerger merger = new DexMerger(dexes, collisionPolicy, context);
+            merger.setCodeParallelism(Math.max(1, parallelism));
+            merger.setCompactWasteThreshold(compactWasteThreshold);
+            return merger.merge();
+        }
+
+        long start = System.nanoTime();
+        MergedDex[] groups = new MergedDex[groupCount];
+        ExecutorService pool = Executors.newFixedThreadPool(groupCount);
+        try {
+            List<Future<MergedDex>> futures = new ArrayList<Future<MergedDex>>(groupCount);
+            for (int i = 0; i < groupCount; i++) {
+                final Dex[] group = Arrays.copyOfRange(dexes,
+                        (int) ((long) dexes.length * i / groupCount),
+                        (int) ((long) dexes.length * (i + 1) / groupCount));
+                futures.add(pool.submit(new Callable<MergedDex>() {
+                    @Override
+                    public MergedDex call() throws IOException {
+                        DexMerger merger = new DexMerger(group, collisionPolicy, context);
+                        return new MergedDex(merger.mergeDexes(), new WriterSizes(merger));
+                    }
+                }));
+            }
+            for (int i = 0; i < groupCount; i++) {
+                groups[i] = getMergedDex(futures.get(i));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Dex[] groupDexes = new Dex[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            groupDexes[i] = groups[i].dex;
+        }
+        DexMerger merger = new DexMerger(groupDexes, collisionPolicy, context,
+                new WriterSizes(groups));
+        merger.setCodeParallelism(parallelism);
+        merger.setCompactWasteThreshold(compactWasteThreshold);
+        // The padding for ids shared between groups may still need compacting.
+        Dex result = merger.mergeAndCompact();
+
+        printSummary(dexes, result, System.nanoTime() - start, context);
+        return result;
+    }
+
+    /**
+     * Waits for the merge of a group of dex files.
+     *
+     * @param future {@code non-null;} the merge
+     * @return {@code non-null;} its result
+     */
+    private static MergedDex getMergedDex(Future<MergedDex> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DexException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DexException(cause);
+        }
+    }
+
+    private static void printSummary(Dex[] dexes, Dex result, long elapsed,
+            DxContext context) {
         for (int i = 0; i < dexes.length; i++) {
             context.out.printf("Merged dex #%d (%d defs/%.1fKiB)%n",
                 i + 1,
@@ -225,8 +399,25 @@ public final class DexMerger {
                 result.getTableOfContents().classDefs.size,
                 result.getLength() / 1024f,
                 elapsed / 1000000000f);
+    }
 
-        return result;
+    /**
+     * A dex file produced by the merge of a group of dex files.
+     */
+    private static final class MergedDex {
+        /** {@code non-null;} the dex file */
+        private final Dex dex;
+
+        /**
+         * {@code null-ok;} the bytes used in each section of {@link #dex},
+         * or {@code null} if its sections are not padded
+         */
+        private final WriterSizes used;
+
+        private MergedDex(Dex dex, WriterSizes used) {
+            this.dex = dex;
+            this.used = used;
+        }
     }
 
     /**
@@ -250,19 +441,25 @@ public final class DexMerger {
             int[] offsets = new int[dexes.length];
             int[] indexes = new int[dexes.length];
 
-            // values contains one value from each dex, sorted for fast retrieval of
-            // the smallest value. The list associated with a value has the indexes
-            // of the dexes that had that value.
-            TreeMap<T, List<Integer>> values = new TreeMap<T, List<Integer>>();
+            // heads contains the next value of each dex, or null once the dex is
+            // exhausted. heap holds the indexes of the other dexes, as a binary
+            // heap ordered by their head for fast retrieval of the smallest value.
+            List<T> heads = new ArrayList<T>(Collections.<T>nCopies(dexes.length, null));
+            int[] heap = new int[dexes.length];
+            int heapSize = 0;
 
             for (int i = 0; i < dexes.length; i++) {
                 sections[i] = getSection(dexes[i].getTableOfContents());
                 dexSections[i] = sections[i].exists() ? dexes[i].open(sections[i].off) : null;
-                // Fill in values with the first value of each dex.
-                offsets[i] = readIntoMap(
-                        dexSections[i], sections[i], indexMaps[i], indexes[i], values, i);
+                // Fill in heads with the first value of each dex.
+                offsets[i] = readHead(dexSections[i], sections[i], indexMaps[i],
+                        indexes[i], heads, i);
+                if (heads.get(i) != null) {
+                    heap[heapSize] = i;
+                    siftUp(heap, heapSize++, heads);
+                }
             }
-            if (values.isEmpty()) {
+            if (heapSize == 0) {
                 getSection(contentsOut).off = 0;
                 getSection(contentsOut).size = 0;
                 return;
@@ -270,112 +467,178 @@ public final class DexMerger {
             getSection(contentsOut).off = out.getPosition();
 
             int outCount = 0;
-            while (!values.isEmpty()) {
-                Map.Entry<T, List<Integer>> first = values.pollFirstEntry();
-                for (Integer dex : first.getValue()) {
+            while (heapSize > 0) {
+                T value = heads.get(heap[0]);
+                do {
+                    int dex = heap[0];
                     updateIndex(offsets[dex], indexMaps[dex], indexes[dex]++, outCount);
-                    // Fetch the next value of the dexes we just polled out
-                    offsets[dex] = readIntoMap(dexSections[dex], sections[dex],
-                            indexMaps[dex], indexes[dex], values, dex);
-                }
-                write(first.getKey());
+                    // Fetch the next value of the dex we just polled out
+                    offsets[dex] = readHead(dexSections[dex], sections[dex],
+                            indexMaps[dex], indexes[dex], heads, dex);
+                    if (heads.get(dex) == null) {
+                        heap[0] = heap[--heapSize];
+                    }
+                    siftDown(heap, heapSize, heads);
+                } while (heapSize > 0 && heads.get(heap[0]).compareTo(value) == 0);
+                write(value);
                 outCount++;
             }
 
             getSection(contentsOut).size = outCount;
         }
 
-        private int readIntoMap(Dex.Section in, TableOfContents.Section section, mod.agus.jcoderz.dx.merge.IndexMap indexMap,
-                                int index, TreeMap<T, List<Integer>> values, int dex) {
+        private int readHead(Dex.Section in, TableOfContents.Section section,
+                mod.agus.jcoderz.dx.merge.IndexMap indexMap, int index, List<T> heads, int dex) {
             int offset = in != null ? in.getPosition() : -1;
-            if (index < section.size) {
-                T v = read(in, indexMap, index);
-                List<Integer> l = values.get(v);
-                if (l == null) {
-                    l = new ArrayList<Integer>();
-                    values.put(v, l);
+            heads.set(dex, index < section.size ? read(in, indexMap, index) : null);
+            return offset;
+        }
+
+        /**
+         * Restores the heap order after the head of {@code heap[at]} was added.
+         */
+        private void siftUp(int[] heap, int at, List<T> heads) {
+            int dex = heap[at];
+            while (at > 0) {
+                int parent = (at - 1) >>> 1;
+                if (heads.get(heap[parent]).compareTo(heads.get(dex)) <= 0) {
+                    break;
                 }
-                l.add(dex);
+                heap[at] = heap[parent];
+                at = parent;
             }
-            return offset;
+            heap[at] = dex;
+        }
+
+        /**
+         * Restores the heap order after the head of {@code heap[0]} grew.
+         */
+        private void siftDown(int[] heap, int size, List<T> heads) {
+            if (size == 0) {
+                return;
+            }
+            int dex = heap[0];
+            int at = 0;
+            while (true) {
+                int child = 2 * at + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size
+                        && heads.get(heap[child + 1]).compareTo(heads.get(heap[child])) < 0) {
+                    child++;
+                }
+                if (heads.get(dex).compareTo(heads.get(heap[child])) <= 0) {
+                    break;
+                }
+                heap[at] = heap[child];
+                at = child;
+            }
+            heap[at] = dex;
         }
 
         /**
          * Merges unsorted sections by reading them completely into memory and
-         * sorting in memory.
+         * sorting in memory. Values are kept in flat arrays and sorted through
+         * a permutation, so that no object is allocated per value.
          */
         public final void mergeUnsorted() {
             getSection(contentsOut).off = out.getPosition();
 
-            List<UnsortedValue> all = new ArrayList<UnsortedValue>();
+            int count = 0;
             for (int i = 0; i < dexes.length; i++) {
-                all.addAll(readUnsortedValues(dexes[i], indexMaps[i]));
+                TableOfContents.Section section = getSection(dexes[i].getTableOfContents());
+                if (section.exists()) {
+                    count += section.size;
+                }
             }
-            if (all.isEmpty()) {
+            if (count == 0) {
                 getSection(contentsOut).off = 0;
                 getSection(contentsOut).size = 0;
                 return;
             }
-            Collections.sort(all);
 
-            int outCount = 0;
-            for (int i = 0; i < all.size(); ) {
-                UnsortedValue e1 = all.get(i++);
-                updateIndex(e1.offset, e1.indexMap, e1.index, outCount - 1);
+            List<T> values = new ArrayList<T>(count);
+            int[] dexIndexes = new int[count];
+            int[] indexes = new int[count];
+            int[] offsets = new int[count];
+            int at = 0;
+            for (int dex = 0; dex < dexes.length; dex++) {
+                TableOfContents.Section section = getSection(dexes[dex].getTableOfContents());
+                if (!section.exists()) {
+                    continue;
+                }
+                Dex.Section in = dexes[dex].open(section.off);
+                for (int i = 0; i < section.size; i++, at++) {
+                    offsets[at] = in.getPosition();
+                    values.add(read(in, indexMaps[dex], 0));
+                    dexIndexes[at] = dex;
+                    indexes[at] = i;
+                }
+            }
+
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            sortStable(order, new int[count], 0, count, values);
 
-                while (i < all.size() && e1.compareTo(all.get(i)) == 0) {
-                    UnsortedValue e2 = all.get(i++);
-                    updateIndex(e2.offset, e2.indexMap, e2.index, outCount - 1);
+            int outCount = 0;
+            for (int i = 0; i < count; ) {
+                int e1 = order[i++];
+                updateIndex(offsets[e1], indexMaps[dexIndexes[e1]], indexes[e1], outCount - 1);
+
+                while (i < count && values.get(e1).compareTo(values.get(order[i])) == 0) {
+                    int e2 = order[i++];
+                    updateIndex(offsets[e2], indexMaps[dexIndexes[e2]], indexes[e2],
+                            outCount - 1);
                 }
 
-                write(e1.value);
+                write(values.get(e1));
                 outCount++;
             }
 
             getSection(contentsOut).size = outCount;
         }
 
-        private List<UnsortedValue> readUnsortedValues(Dex source, mod.agus.jcoderz.dx.merge.IndexMap indexMap) {
-            TableOfContents.Section section = getSection(source.getTableOfContents());
-            if (!section.exists()) {
-                return Collections.emptyList();
+        /**
+         * Sorts a range of a permutation by the values it refers to, keeping
+         * equal values in their original order.
+         *
+         * @param order {@code non-null;} indexes into {@code values}
+         * @param scratch {@code non-null;} scratch array as long as {@code order}
+         * @param from first index of the range
+         * @param to index after the range
+         * @param values {@code non-null;} the values
+         */
+        private void sortStable(int[] order, int[] scratch, int from, int to, List<T> values) {
+            if (to - from < 2) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            sortStable(order, scratch, from, middle, values);
+            sortStable(order, scratch, middle, to, values);
+            if (values.get(order[middle - 1]).compareTo(values.get(order[middle])) <= 0) {
+                return;
             }
 
-            List<UnsortedValue> result = new ArrayList<UnsortedValue>();
-            Dex.Section in = source.open(section.off);
-            for (int i = 0; i < section.size; i++) {
-                int offset = in.getPosition();
-                T value = read(in, indexMap, 0);
-                result.add(new UnsortedValue(source, indexMap, value, i, offset));
+            System.arraycopy(order, from, scratch, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < middle
+                        && values.get(scratch[left]).compareTo(values.get(scratch[right])) <= 0)) {
+                    order[i] = scratch[left++];
+                } else {
+                    order[i] = scratch[right++];
+                }
             }
-            return result;
         }
 
         abstract TableOfContents.Section getSection(TableOfContents tableOfContents);
         abstract T read(Dex.Section in, mod.agus.jcoderz.dx.merge.IndexMap indexMap, int index);
         abstract void updateIndex(int offset, mod.agus.jcoderz.dx.merge.IndexMap indexMap, int oldIndex, int newIndex);
         abstract void write(T value);
-
-        class UnsortedValue implements Comparable<UnsortedValue> {
-            final Dex source;
-            final mod.agus.jcoderz.dx.merge.IndexMap indexMap;
-            final T value;
-            final int index;
-            final int offset;
-
-            UnsortedValue(Dex source, mod.agus.jcoderz.dx.merge.IndexMap indexMap, T value, int index, int offset) {
-                this.source = source;
-                this.indexMap = indexMap;
-                this.value = value;
-                this.index = index;
-                this.offset = offset;
-            }
-
-            @Override
-            public int compareTo(UnsortedValue unsortedValue) {
-                return value.compareTo(unsortedValue.value);
-            }
-        }
     }
 
     private int mergeApiLevels() {
@@ -517,7 +780,7 @@ public final class DexMerger {
 
             @Override
             void updateIndex(int offset, mod.agus.jcoderz.dx.merge.IndexMap indexMap, int oldIndex, int newIndex) {
-                indexMap.methodHandleIds.put(oldIndex, indexMap.methodHandleIds.size());
+                indexMap.putMethodHandleId(oldIndex);
             }
 
             @Override
@@ -599,12 +862,145 @@ public final class DexMerger {
         contentsOut.classDefs.off = idsDefsOut.getPosition();
         contentsOut.classDefs.size = types.length;
 
+        if (codeParallelism > 1) {
+            ExecutorService pool = Executors.newFixedThreadPool(codeParallelism);
+            try {
+                codeRewriter = new CodeRewriter(types, pool);
+                for (SortableType type : types) {
+                    transformClassDef(type.getDex(), type.getClassDef(), type.getIndexMap());
+                }
+            } finally {
+                codeRewriter = null;
+                pool.shutdownNow();
+            }
+            return;
+        }
+
         for (SortableType type : types) {
             Dex in = type.getDex();
             transformClassDef(in, type.getClassDef(), type.getIndexMap());
         }
     }
 
+    /**
+     * Rewrites the instructions of the methods of classes on a pool of
+     * threads, ahead of the writing of these classes. Classes are split into
+     * ranges, each rewritten by one task into its own arrays; the results
+     * are then handed out range by range in method order, so that they are
+     * written to {@link #codeOut} exactly as if rewritten in line. Only a
+     * bounded number of ranges are rewritten ahead of writing.
+     */
+    private final class CodeRewriter {
+        /** {@code non-null;} the classes, in the order they are written */
+        private final SortableType[] types;
+
+        /** {@code non-null;} threads rewriting instructions */
+        private final ExecutorService pool;
+
+        /** {@code non-null;} results of the submitted ranges, in order */
+        private final ArrayDeque<Future<short[][]>> pending =
+                new ArrayDeque<Future<short[][]>>();
+
+        /** index of the first class not yet submitted */
+        private int nextType;
+
+        /** {@code non-null;} rewritten instructions of the current range */
+        private short[][] current = new short[0][];
+
+        /** index in {@link #current} of the next instructions handed out */
+        private int currentAt;
+
+        private CodeRewriter(SortableType[] types, ExecutorService pool) {
+            this.types = types;
+            this.pool = pool;
+            for (int i = 0; i < 2 * codeParallelism; i++) {
+                submitNext();
+            }
+        }
+
+        /**
+         * Submits the next range of classes, if any.
+         */
+        private void submitNext() {
+            if (nextType == types.length) {
+                return;
+            }
+            final int from = nextType;
+            final int to = Math.min(types.length, from + CLASSES_PER_TASK);
+            nextType = to;
+            pending.add(pool.submit(new Callable<short[][]>() {
+                @Override
+                public short[][] call() {
+                    return rewriteRange(from, to);
+                }
+            }));
+        }
+
+        /**
+         * Rewrites the instructions of all methods of a range of classes,
+         * in the order their code is written.
+         */
+        private short[][] rewriteRange(int from, int to) {
+            InstructionTransformer transformer = new InstructionTransformer();
+            ArrayList<short[]> result = new ArrayList<short[]>();
+            for (int i = from; i < to; i++) {
+                Dex in = types[i].getDex();
+                ClassDef classDef = types[i].getClassDef();
+                if (classDef.getClassDataOffset() == 0) {
+                    continue;
+                }
+                ClassData classData = in.readClassData(classDef);
+                rewriteMethods(transformer, in, types[i].getIndexMap(),
+                        classData.getDirectMethods(), result);
+                rewriteMethods(transformer, in, types[i].getIndexMap(),
+                        classData.getVirtualMethods(), result);
+            }
+            return result.toArray(new short[result.size()][]);
+        }
+
+        private void rewriteMethods(InstructionTransformer transformer, Dex in,
+                IndexMap indexMap, ClassData.Method[] methods, List<short[]> result) {
+            for (ClassData.Method method : methods) {
+                if (method.getCodeOffset() != 0) {
+                    short[] instructions = in.readCode(method).getInstructions();
+                    result.add(transformer.transform(indexMap, instructions));
+                }
+            }
+        }
+
+        /**
+         * Gets the rewritten instructions of the next method with code.
+         *
+         * @return {@code non-null;} the instructions
+         */
+        private short[] next() {
+            while (currentAt == current.length) {
+                Future<short[][]> future = pending.poll();
+                if (future == null) {
+                    throw new IllegalStateException("no rewritten code left");
+                }
+                try {
+                    current = future.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new DexException(ex);
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new DexException(cause);
+                }
+                currentAt = 0;
+                submitNext();
+            }
+            return current[currentAt++];
+        }
+    }
+
     /**
      * Returns the union of classes from both files, sorted in order such that
      * a class is always preceded by its supertype and implemented interfaces.
@@ -903,8 +1299,9 @@ public final class DexMerger {
             codeOut.writeInt(0);
         }
 
-        short[] instructions = code.getInstructions();
-        short[] newInstructions = instructionTransformer.transform(indexMap, instructions);
+        short[] newInstructions = codeRewriter != null
+                ? codeRewriter.next()
+                : instructionTransformer.transform(indexMap, code.getInstructions());
         codeOut.writeInt(newInstructions.length);
         codeOut.write(newInstructions);
 
@@ -1093,6 +1490,16 @@ public final class DexMerger {
             fourByteAlign();
         }
 
+        /**
+         * Compute sizes for merging the results of group merges.
+         */
+        public WriterSizes(MergedDex[] merged) {
+            for (int i = 0; i < merged.length; i++) {
+                plus(merged[i]);
+            }
+            fourByteAlign();
+        }
+
         public WriterSizes(DexMerger dexMerger) {
             header = dexMerger.headerOut.used();
             idsDefs = dexMerger.idsDefsOut.used();
@@ -1152,6 +1559,28 @@ public final class DexMerger {
             }
         }
 
+        private void plus(MergedDex merged) {
+            if (merged.used == null) {
+                plus(merged.dex.getTableOfContents(), false);
+                return;
+            }
+
+            // Same bounds as above, applied to the bytes actually used.
+            WriterSizes used = merged.used;
+            idsDefs += used.idsDefs;
+            mapList = Math.max(mapList, used.mapList);
+            typeList += used.typeList;
+            stringData += used.stringData;
+            annotationsDirectory += used.annotationsDirectory;
+            annotationsSet += used.annotationsSet;
+            annotationsSetRefList += used.annotationsSetRefList;
+            code += (int) Math.ceil(used.code * 1.25);
+            classData += (int) Math.ceil(used.classData * 1.67);
+            encodedArray += used.encodedArray * 2;
+            annotation += (int) Math.ceil(used.annotation * 2);
+            debugInfo += used.debugInfo * 2 + 8;
+        }
+
         private void fourByteAlign() {
             header = fourByteAlign(header);
             idsDefs = fourByteAlign(idsDefs);
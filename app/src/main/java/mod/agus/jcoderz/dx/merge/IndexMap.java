@@ -52,8 +52,6 @@ import mod.agus.jcoderz.dex.TypeList;
 import mod.agus.jcoderz.dex.util.ByteOutput;
 import mod.agus.jcoderz.dx.util.ByteArrayAnnotatedOutput;
 
-import java.util.HashMap;
-
 /**
  * Maps the index offsets from one dex file to those in another. For example, if
  * you have string #5 in the old dex file, its position in the new dex file is
@@ -67,13 +65,14 @@ public final class IndexMap {
     public final short[] fieldIds;
     public final short[] methodIds;
     public final int[] callSiteIds;
-    public final HashMap<Integer, Integer> methodHandleIds;
-    private final HashMap<Integer, Integer> typeListOffsets;
-    private final HashMap<Integer, Integer> annotationOffsets;
-    private final HashMap<Integer, Integer> annotationSetOffsets;
-    private final HashMap<Integer, Integer> annotationSetRefListOffsets;
-    private final HashMap<Integer, Integer> annotationDirectoryOffsets;
-    private final HashMap<Integer, Integer> encodedArrayValueOffset;
+    public final int[] methodHandleIds;
+    private int methodHandleCount;
+    private final OffsetMap typeListOffsets;
+    private final OffsetMap annotationOffsets;
+    private final OffsetMap annotationSetOffsets;
+    private final OffsetMap annotationSetRefListOffsets;
+    private final OffsetMap annotationDirectoryOffsets;
+    private final OffsetMap encodedArrayValueOffset;
 
     public IndexMap(Dex target, TableOfContents tableOfContents) {
         this.target = target;
@@ -83,13 +82,15 @@ public final class IndexMap {
         this.fieldIds = new short[tableOfContents.fieldIds.size];
         this.methodIds = new short[tableOfContents.methodIds.size];
         this.callSiteIds = new int[tableOfContents.callSiteIds.size];
-        this.methodHandleIds = new HashMap<Integer, Integer>();
-        this.typeListOffsets = new HashMap<Integer, Integer>();
-        this.annotationOffsets = new HashMap<Integer, Integer>();
-        this.annotationSetOffsets = new HashMap<Integer, Integer>();
-        this.annotationSetRefListOffsets = new HashMap<Integer, Integer>();
-        this.annotationDirectoryOffsets = new HashMap<Integer, Integer>();
-        this.encodedArrayValueOffset = new HashMap<Integer, Integer>();
+        this.methodHandleIds = new int[tableOfContents.methodHandles.size];
+        this.typeListOffsets = new OffsetMap(tableOfContents.typeLists.size);
+        this.annotationOffsets = new OffsetMap(tableOfContents.annotations.size);
+        this.annotationSetOffsets = new OffsetMap(tableOfContents.annotationSets.size);
+        this.annotationSetRefListOffsets =
+                new OffsetMap(tableOfContents.annotationSetRefLists.size);
+        this.annotationDirectoryOffsets =
+                new OffsetMap(tableOfContents.annotationsDirectories.size);
+        this.encodedArrayValueOffset = new OffsetMap(tableOfContents.encodedArrays.size);
 
         /*
          * A type list, annotation set, annotation directory, or static value at
@@ -101,6 +102,14 @@ public final class IndexMap {
         this.encodedArrayValueOffset.put(0, 0);
     }
 
+    /**
+     * Maps a method handle to the next index of the merged dex, in the
+     * order method handles of this dex are visited.
+     */
+    public void putMethodHandleId(int oldIndex) {
+        methodHandleIds[oldIndex] = methodHandleCount++;
+    }
+
     public void putTypeListOffset(int oldOffset, int newOffset) {
         if (oldOffset <= 0 || newOffset <= 0) {
             throw new IllegalArgumentException();
@@ -203,7 +212,7 @@ public final class IndexMap {
     }
 
     public int adjustMethodHandle(int methodHandleIndex) {
-        return methodHandleIds.get(methodHandleIndex);
+        return methodHandleIds[methodHandleIndex];
     }
 
     public MethodId adjust(MethodId methodId) {
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.merge;
+
+/**
+ * Map from the offsets of items in one dex file to their offsets in
+ * another. Keys and values are kept unboxed in a single open-addressing
+ * table with linear probing, so that sparse offset tables cost no object
+ * per entry.
+ */
+final class OffsetMap {
+    /** key marking an unused slot; offset 0 is tracked separately */
+    private static final int EMPTY = 0;
+
+    /** multiplier spreading keys over the table */
+    private static final int HASH_MULTIPLIER = 0x9e3779b9;
+
+    /** {@code non-null;} alternating keys and values; length a power of two */
+    private int[] table;
+
+    /** {@code 32 - log2(number of slots)}, shift applied to hashes */
+    private int shift;
+
+    /** number of entries, not counting offset 0 */
+    private int size;
+
+    /** whether offset 0 is mapped */
+    private boolean hasZero;
+
+    /** value of offset 0, if mapped */
+    private int zeroValue;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param expectedSize {@code >= 0;} number of entries expected, used to
+     * size the table so that it need not grow
+     */
+    public OffsetMap(int expectedSize) {
+        int slots = 4;
+        while (slots < expectedSize * 2) {
+            slots <<= 1;
+        }
+        allocate(slots);
+    }
+
+    /**
+     * Maps an offset, replacing any previous mapping.
+     *
+     * @param key {@code >= 0;} the old offset
+     * @param value the new offset
+     */
+    public void put(int key, int value) {
+        if (key == EMPTY) {
+            hasZero = true;
+            zeroValue = value;
+            return;
+        }
+
+        int slot = find(key);
+        table[slot + 1] = value;
+        if (table[slot] == EMPTY) {
+            table[slot] = key;
+            // Keep at most half of the slots in use.
+            if (++size > table.length / 4) {
+                grow();
+            }
+        }
+    }
+
+    /**
+     * Gets the mapping of an offset.
+     *
+     * @param key {@code >= 0;} the old offset
+     * @return the new offset
+     * @throws IllegalArgumentException if the offset is not mapped
+     */
+    public int get(int key) {
+        if (key == EMPTY) {
+            if (!hasZero) {
+                throw new IllegalArgumentException("unmapped offset: " + key);
+            }
+            return zeroValue;
+        }
+
+        int slot = find(key);
+        if (table[slot] == EMPTY) {
+            throw new IllegalArgumentException("unmapped offset: " + key);
+        }
+        return table[slot + 1];
+    }
+
+    /**
+     * Finds the slot holding a key, or the empty slot where it belongs.
+     *
+     * @param key non-zero key
+     * @return index in {@link #table} of the key of the slot
+     */
+    private int find(int key) {
+        int mask = table.length - 1;
+        int slot = ((key * HASH_MULTIPLIER) >>> shift) << 1;
+        while (table[slot] != EMPTY && table[slot] != key) {
+            slot = (slot + 2) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the number of slots, rehashing all entries.
+     */
+    private void grow() {
+        int[] old = table;
+        allocate(old.length);
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != EMPTY) {
+                int slot = find(old[i]);
+                table[slot] = old[i];
+                table[slot + 1] = old[i + 1];
+            }
+        }
+    }
+
+    /**
+     * Replaces the table with an empty one.
+     *
+     * @param slots number of slots, a power of two
+     */
+    private void allocate(int slots) {
+        table = new int[slots * 2];
+        shift = Integer.numberOfLeadingZeros(slots) + 1;
+    }
+}
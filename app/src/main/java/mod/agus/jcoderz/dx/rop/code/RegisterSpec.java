@@ -19,6 +19,9 @@ package mod.agus.jcoderz.dx.rop.code;
 import mod.agus.jcoderz.dx.rop.type.Type;
 import mod.agus.jcoderz.dx.rop.type.TypeBearer;
 import mod.agus.jcoderz.dx.util.ToHuman;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import mod.agus.jcoderz.dx.rop.cst.Constant;
@@ -37,6 +40,13 @@ public final class RegisterSpec
     private static final ConcurrentHashMap<Object, RegisterSpec> theInterns =
         new ConcurrentHashMap<Object, RegisterSpec>(10_000, 0.75f);
 
+    /**
+     * {@code non-null;} read-only base of the intern table, looked up before
+     * {@link #theInterns} and left in place by {@link #clearInternTable}
+     */
+    private static volatile Map<Object, RegisterSpec> theBaseInterns =
+        Collections.emptyMap();
+
     /** {@code non-null;} common comparison instance used while interning */
     private static final ThreadLocal<ForComparison> theInterningItem =
             new ThreadLocal<ForComparison>() {
@@ -71,7 +81,10 @@ public final class RegisterSpec
             LocalItem local) {
         ForComparison interningItem = theInterningItem.get();
         interningItem.set(reg, type, local);
-        RegisterSpec found = theInterns.get(interningItem);
+        RegisterSpec found = theBaseInterns.get(interningItem);
+        if (found == null) {
+            found = theInterns.get(interningItem);
+        }
         if (found == null) {
             found = interningItem.toRegisterSpec();
             RegisterSpec existing = theInterns.putIfAbsent(found, found);
@@ -619,10 +632,25 @@ public final class RegisterSpec
         return sb.toString();
     }
 
+    /**
+     * Empties the intern table, except for its read-only base.
+     */
     public static void clearInternTable() {
         theInterns.clear();
     }
 
+    /**
+     * Moves all interned instances to the read-only base of the intern
+     * table, so that they survive {@link #clearInternTable}. Must not be
+     * called while other threads intern instances.
+     */
+    public static synchronized void freezeInternTable() {
+        Map<Object, RegisterSpec> base = new HashMap<Object, RegisterSpec>(theBaseInterns);
+        base.putAll(theInterns);
+        theBaseInterns = Collections.unmodifiableMap(base);
+        theInterns.clear();
+    }
+
     /**
      * Holder of register spec data for the purposes of comparison (so that
      * {@code RegisterSpec} itself can still keep {@code final}
@@ -17,6 +17,9 @@
 package mod.agus.jcoderz.dx.rop.cst;
 
 import mod.agus.jcoderz.dx.rop.type.Type;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -33,6 +36,12 @@ public final class CstType extends TypedConstant {
     private static final ConcurrentMap<Type, CstType> interns =
             new ConcurrentHashMap<>(1_000, 0.75f);
 
+    /**
+     * {@code non-null;} read-only base of the intern table, looked up before
+     * {@link #interns} and left in place by {@link #clearInternTable}
+     */
+    private static volatile Map<Type, CstType> baseInterns = Collections.emptyMap();
+
     /** {@code non-null;} instance corresponding to the class {@code Object} */
     public static final CstType OBJECT = new CstType(Type.OBJECT);
 
@@ -171,6 +180,11 @@ public final class CstType extends TypedConstant {
      * @return {@code non-null;} an appropriately-constructed instance
      */
     public static CstType intern(Type type) {
+        CstType base = baseInterns.get(type);
+        if (base != null) {
+            return base;
+        }
+
         CstType cst = new CstType(type);
         CstType result = interns.putIfAbsent(type, cst);
         return result != null ? result : cst;
@@ -291,9 +305,24 @@ public final class CstType extends TypedConstant {
         }
     }
 
+    /**
+     * Empties the intern table, except for its read-only base.
+     */
     public static void clearInternTable() {
         interns.clear();
         initInterns();
     }
 
+    /**
+     * Moves all interned instances to the read-only base of the intern
+     * table, so that they survive {@link #clearInternTable}. Must not be
+     * called while other threads intern instances.
+     */
+    public static synchronized void freezeInternTable() {
+        Map<Type, CstType> base = new HashMap<>(baseInterns);
+        base.putAll(interns);
+        baseInterns = Collections.unmodifiableMap(base);
+        interns.clear();
+    }
+
 }
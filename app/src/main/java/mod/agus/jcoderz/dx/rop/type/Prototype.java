@@ -16,6 +16,9 @@
 
 package mod.agus.jcoderz.dx.rop.type;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -33,6 +36,12 @@ public final class Prototype implements Comparable<Prototype> {
     private static final ConcurrentMap<String, Prototype> internTable =
             new ConcurrentHashMap<>(10_000, 0.75f);
 
+    /**
+     * {@code non-null;} read-only base of the intern table, looked up before
+     * {@link #internTable} and left in place by {@link #clearInternTable}
+     */
+    private static volatile Map<String, Prototype> baseTable = Collections.emptyMap();
+
     /** {@code non-null;} method descriptor */
     private final String descriptor;
 
@@ -60,7 +69,7 @@ public final class Prototype implements Comparable<Prototype> {
             throw new NullPointerException("descriptor == null");
         }
 
-        Prototype result = internTable.get(descriptor);
+        Prototype result = getIntern(descriptor);
         if (result != null) {
             return result;
         }
@@ -82,7 +91,7 @@ public final class Prototype implements Comparable<Prototype> {
      * invalid syntax
      */
     public static Prototype fromDescriptor(String descriptor) {
-        Prototype result = internTable.get(descriptor);
+        Prototype result = getIntern(descriptor);
         if (result != null) {
             return result;
         }
@@ -131,10 +140,36 @@ public final class Prototype implements Comparable<Prototype> {
         return new Prototype(descriptor, returnType, parameterTypes);
     }
 
+    /**
+     * Empties the intern table, except for its read-only base.
+     */
     public static void clearInternTable() {
         internTable.clear();
     }
 
+    /**
+     * Moves all interned instances to the read-only base of the intern
+     * table, so that they survive {@link #clearInternTable}. Must not be
+     * called while other threads intern instances.
+     */
+    public static synchronized void freezeInternTable() {
+        Map<String, Prototype> base = new HashMap<>(baseTable);
+        base.putAll(internTable);
+        baseTable = Collections.unmodifiableMap(base);
+        internTable.clear();
+    }
+
+    /**
+     * Gets the interned instance for a descriptor, if any.
+     *
+     * @param descriptor {@code non-null;} the descriptor
+     * @return {@code null-ok;} the interned instance
+     */
+    private static Prototype getIntern(String descriptor) {
+        Prototype result = baseTable.get(descriptor);
+        return result != null ? result : internTable.get(descriptor);
+    }
+
     /**
      * Helper for {@link #intern} which returns an empty array to
      * populate with parsed parameter types, and which also ensures
@@ -415,7 +450,10 @@ public final class Prototype implements Comparable<Prototype> {
      * @return {@code non-null;} the actual interned object
      */
     private static Prototype putIntern(Prototype desc) {
-        Prototype result = internTable.putIfAbsent(desc.getDescriptor(), desc);
+        Prototype result = baseTable.get(desc.getDescriptor());
+        if (result == null) {
+            result = internTable.putIfAbsent(desc.getDescriptor(), desc);
+        }
         return result != null ? result : desc;
     }
 }
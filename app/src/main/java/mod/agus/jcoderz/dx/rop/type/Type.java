@@ -17,6 +17,9 @@
 package mod.agus.jcoderz.dx.rop.type;
 
 import mod.agus.jcoderz.dx.util.Hex;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -35,6 +38,12 @@ public final class Type implements TypeBearer, Comparable<Type> {
     private static final ConcurrentMap<String, Type> internTable =
             new ConcurrentHashMap<>(10_000, 0.75f);
 
+    /**
+     * {@code non-null;} read-only base of the intern table, looked up before
+     * {@link #internTable} and left in place by {@link #clearInternTable}
+     */
+    private static volatile Map<String, Type> baseTable = Collections.emptyMap();
+
 
     /** basic type constant for {@code void} */
     public static final int BT_VOID = 0;
@@ -327,6 +336,13 @@ public final class Type implements TypeBearer, Comparable<Type> {
      */
     private Type initializedType;
 
+    /**
+     * whether this instance is in the read-only base of the intern table;
+     * such an instance outlives the per-run table, so it never caches
+     * instances from it
+     */
+    private boolean frozen;
+
     /**
      * Returns the unique instance corresponding to the type with the
      * given descriptor. See vmspec-2 sec4.3.2 for details on the
@@ -340,7 +356,7 @@ public final class Type implements TypeBearer, Comparable<Type> {
      * invalid syntax
      */
     public static Type intern(String descriptor) {
-        Type result = internTable.get(descriptor);
+        Type result = getIntern(descriptor);
 
         if (result != null) {
             return result;
@@ -830,11 +846,16 @@ public final class Type implements TypeBearer, Comparable<Type> {
      * @return {@code non-null;} the array type
      */
     public Type getArrayType() {
-        if (arrayType == null) {
-            arrayType = putIntern(new Type('[' + descriptor, BT_OBJECT));
+        Type result = arrayType;
+
+        if (result == null) {
+            result = putIntern(new Type('[' + descriptor, BT_OBJECT));
+            if (!frozen || result.frozen) {
+                arrayType = result;
+            }
         }
 
-        return arrayType;
+        return result;
     }
 
     /**
@@ -844,15 +865,20 @@ public final class Type implements TypeBearer, Comparable<Type> {
      * @return {@code non-null;} the component type
      */
     public Type getComponentType() {
-        if (componentType == null) {
+        Type result = componentType;
+
+        if (result == null) {
             if (descriptor.charAt(0) != '[') {
                 throw new IllegalArgumentException("not an array type: " +
                                                    descriptor);
             }
-            componentType = intern(descriptor.substring(1));
+            result = intern(descriptor.substring(1));
+            if (!frozen || result.frozen) {
+                componentType = result;
+            }
         }
 
-        return componentType;
+        return result;
     }
 
     /**
@@ -902,12 +928,44 @@ public final class Type implements TypeBearer, Comparable<Type> {
      * @return {@code non-null;} the actual interned object
      */
     private static Type putIntern(Type type) {
-        Type result = internTable.putIfAbsent(type.getDescriptor(), type);
+        Type result = baseTable.get(type.getDescriptor());
+        if (result == null) {
+            result = internTable.putIfAbsent(type.getDescriptor(), type);
+        }
         return result != null ? result : type;
     }
 
+    /**
+     * Gets the interned instance for a descriptor, if any.
+     *
+     * @param descriptor {@code non-null;} the descriptor
+     * @return {@code null-ok;} the interned instance
+     */
+    private static Type getIntern(String descriptor) {
+        Type result = baseTable.get(descriptor);
+        return result != null ? result : internTable.get(descriptor);
+    }
+
+    /**
+     * Empties the intern table, except for its read-only base.
+     */
     public static void clearInternTable() {
         internTable.clear();
         initInterns();
     }
+
+    /**
+     * Moves all interned instances to the read-only base of the intern
+     * table, so that they survive {@link #clearInternTable}. Must not be
+     * called while other threads intern instances.
+     */
+    public static synchronized void freezeInternTable() {
+        Map<String, Type> base = new HashMap<>(baseTable);
+        for (Type type : internTable.values()) {
+            type.frozen = true;
+        }
+        base.putAll(internTable);
+        baseTable = Collections.unmodifiableMap(base);
+        internTable.clear();
+    }
 }
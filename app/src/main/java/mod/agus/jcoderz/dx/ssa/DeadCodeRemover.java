@@ -42,8 +42,14 @@ public class DeadCodeRemover {
      */
     private final BitSet worklist;
 
-    /** use list indexed by register; modified during operation */
-    private final ArrayList<mod.agus.jcoderz.dx.ssa.SsaInsn>[] useList;
+    /** insns and use lists of the method; use lists modified during operation */
+    private final UseIndex useIndex;
+
+    /** indexed by insn id in {@link #useIndex}: whether insn is deleted */
+    private final BitSet deletedInsns;
+
+    /** scratch set of registers for {@link #isCircularNoSideEffect} */
+    private final BitSet circularRegs;
 
     /**
      * Process a method with the dead-code remver
@@ -65,7 +71,9 @@ public class DeadCodeRemover {
 
         regCount = ssaMethod.getRegCount();
         worklist = new BitSet(regCount);
-        useList = ssaMeth.getUseListCopy();
+        useIndex = UseIndex.obtain(ssaMethod);
+        deletedInsns = new BitSet(useIndex.getInsnCount());
+        circularRegs = new BitSet(regCount);
     }
 
     /**
@@ -74,7 +82,7 @@ public class DeadCodeRemover {
     private void run() {
         pruneDeadInstructions();
 
-        HashSet<mod.agus.jcoderz.dx.ssa.SsaInsn> deletedInsns = new HashSet<mod.agus.jcoderz.dx.ssa.SsaInsn>();
+        HashSet<mod.agus.jcoderz.dx.ssa.SsaInsn> deletedInsnSet = new HashSet<mod.agus.jcoderz.dx.ssa.SsaInsn>();
 
         ssaMeth.forEachInsn(new NoSideEffectVisitor(worklist));
 
@@ -83,48 +91,49 @@ public class DeadCodeRemover {
         while ( 0 <= (regV = worklist.nextSetBit(0)) ) {
             worklist.clear(regV);
 
-            if (useList[regV].size() == 0
-                    || isCircularNoSideEffect(regV, null)) {
+            if (useIndex.getUseCount(regV) == 0
+                    || isCircularNoSideEffect(regV)) {
 
-                mod.agus.jcoderz.dx.ssa.SsaInsn insnS = ssaMeth.getDefinitionForRegister(regV);
+                int insnId = useIndex.getDefinition(regV);
 
                 // This insn has already been deleted.
-                if (deletedInsns.contains(insnS)) {
+                if (deletedInsns.get(insnId)) {
                     continue;
                 }
 
+                mod.agus.jcoderz.dx.ssa.SsaInsn insnS = useIndex.getInsn(insnId);
                 mod.agus.jcoderz.dx.rop.code.RegisterSpecList sources = insnS.getSources();
 
                 int sz = sources.size();
                 for (int i = 0; i < sz; i++) {
                     // Delete this insn from all usage lists.
-                    mod.agus.jcoderz.dx.rop.code.RegisterSpec source = sources.get(i);
-                    useList[source.getReg()].remove(insnS);
+                    int sourceReg = sources.get(i).getReg();
+                    useIndex.removeUse(sourceReg, insnId);
 
-                    if (!hasSideEffect(
-                            ssaMeth.getDefinitionForRegister(
-                                    source.getReg()))) {
+                    if (!hasSideEffect(getDefinition(sourceReg))) {
                         /*
                          * Only registers whose definition has no side effect
                          * should be added back to the worklist.
                          */
-                        worklist.set(source.getReg());
+                        worklist.set(sourceReg);
                     }
                 }
 
                 // Schedule this insn for later deletion.
-                deletedInsns.add(insnS);
+                deletedInsns.set(insnId);
+                deletedInsnSet.add(insnS);
             }
         }
 
-        ssaMeth.deleteInsns(deletedInsns);
+        ssaMeth.deleteInsns(deletedInsnSet);
+        useIndex.release();
     }
 
     /**
      * Removes all instructions from every unreachable block.
      */
     private void pruneDeadInstructions() {
-        HashSet<mod.agus.jcoderz.dx.ssa.SsaInsn> deletedInsns = new HashSet<mod.agus.jcoderz.dx.ssa.SsaInsn>();
+        HashSet<mod.agus.jcoderz.dx.ssa.SsaInsn> deletedInsnSet = new HashSet<mod.agus.jcoderz.dx.ssa.SsaInsn>();
 
         BitSet reachable = ssaMeth.computeReachability();
         ArrayList<mod.agus.jcoderz.dx.ssa.SsaBasicBlock> blocks = ssaMeth.getBlocks();
@@ -132,29 +141,32 @@ public class DeadCodeRemover {
 
         while ((blockIndex = reachable.nextClearBit(blockIndex)) < blocks.size()) {
             SsaBasicBlock block = blocks.get(blockIndex);
+            int insnId = useIndex.getBlockStart(blockIndex);
             blockIndex++;
 
             // Prune instructions from unreachable blocks
-            for (int i = 0; i < block.getInsns().size(); i++) {
+            for (int i = 0; i < block.getInsns().size(); i++, insnId++) {
                 mod.agus.jcoderz.dx.ssa.SsaInsn insn = block.getInsns().get(i);
                 RegisterSpecList sources = insn.getSources();
                 int sourcesSize = sources.size();
 
                 // Delete this instruction completely if it has sources
                 if (sourcesSize != 0) {
-                    deletedInsns.add(insn);
+                    deletedInsns.set(insnId);
+                    deletedInsnSet.add(insn);
                 }
 
                 // Delete this instruction from all usage lists.
                 for (int j = 0; j < sourcesSize; j++) {
-                    mod.agus.jcoderz.dx.rop.code.RegisterSpec source = sources.get(j);
-                    useList[source.getReg()].remove(insn);
+                    useIndex.removeUse(sources.get(j).getReg(), insnId);
                 }
 
                 // Remove this instruction result from the sources of any phis
                 mod.agus.jcoderz.dx.rop.code.RegisterSpec result = insn.getResult();
                 if (result == null) continue;
-                for (mod.agus.jcoderz.dx.ssa.SsaInsn use : useList[result.getReg()]) {
+                int reg = result.getReg();
+                for (int j = 0; j < useIndex.getUseCount(reg); j++) {
+                    SsaInsn use = useIndex.getInsn(useIndex.getUse(reg, j));
                     if (use instanceof mod.agus.jcoderz.dx.ssa.PhiInsn) {
                         mod.agus.jcoderz.dx.ssa.PhiInsn phiUse = (mod.agus.jcoderz.dx.ssa.PhiInsn) use;
                         phiUse.removePhiRegister(result);
@@ -163,7 +175,19 @@ public class DeadCodeRemover {
             }
         }
 
-        ssaMeth.deleteInsns(deletedInsns);
+        ssaMeth.deleteInsns(deletedInsnSet);
+    }
+
+    /**
+     * Returns the definition of a register, unless it has been deleted.
+     *
+     * @param reg register in question
+     * @return id of the defining insn in {@link #useIndex}, or -1 if it is
+     * undefined or deleted
+     */
+    private int getDefinition(int reg) {
+        int id = useIndex.getDefinition(reg);
+        return (id >= 0 && deletedInsns.get(id)) ? -1 : id;
     }
 
     /**
@@ -171,34 +195,43 @@ public class DeadCodeRemover {
      * operations with no side effects.
      *
      * @param regV register to examine
-     * @param set a set of registers that we've already determined
-     * are only used as sources in operations with no side effect or null
-     * if this is the first recursion
      * @return true if usage is circular without side effect
      */
-    private boolean isCircularNoSideEffect(int regV, BitSet set) {
-        if ((set != null) && set.get(regV)) {
+    private boolean isCircularNoSideEffect(int regV) {
+        circularRegs.clear();
+        return isCircularNoSideEffect0(regV);
+    }
+
+    /**
+     * Helper for {@link #isCircularNoSideEffect}, which recurses over the
+     * uses of a register.
+     *
+     * @param regV register to examine; {@link #circularRegs} holds the
+     * registers that we've already determined are only used as sources
+     * in operations with no side effect
+     * @return true if usage is circular without side effect
+     */
+    private boolean isCircularNoSideEffect0(int regV) {
+        if (circularRegs.get(regV)) {
             return true;
         }
 
-        for (mod.agus.jcoderz.dx.ssa.SsaInsn use : useList[regV]) {
-            if (hasSideEffect(use)) {
+        int useCount = useIndex.getUseCount(regV);
+        for (int i = 0; i < useCount; i++) {
+            if (hasSideEffect(useIndex.getUse(regV, i))) {
                 return false;
             }
         }
 
-        if (set == null) {
-            set = new BitSet(regCount);
-        }
-
         // This register is only used in operations that have no side effect.
-        set.set(regV);
+        circularRegs.set(regV);
 
-        for (mod.agus.jcoderz.dx.ssa.SsaInsn use : useList[regV]) {
-            mod.agus.jcoderz.dx.rop.code.RegisterSpec result = use.getResult();
+        for (int i = 0; i < useCount; i++) {
+            mod.agus.jcoderz.dx.rop.code.RegisterSpec result
+                    = useIndex.getInsn(useIndex.getUse(regV, i)).getResult();
 
             if (result == null
-                    || !isCircularNoSideEffect(result.getReg(), set)) {
+                    || !isCircularNoSideEffect0(result.getReg())) {
                 return false;
             }
         }
@@ -206,6 +239,17 @@ public class DeadCodeRemover {
         return true;
     }
 
+    /**
+     * Returns true if the insn with the given id has a side-effect.
+     * Returns true if there is no insn, as for null insns below.
+     *
+     * @param insnId id of the insn in {@link #useIndex}, or -1
+     * @return true if it has a side-effect
+     */
+    private boolean hasSideEffect(int insnId) {
+        return insnId < 0 || hasSideEffect(useIndex.getInsn(insnId));
+    }
+
     /**
      * Returns true if this insn has a side-effect. Returns true
      * if the insn is null for reasons stated in the code block.
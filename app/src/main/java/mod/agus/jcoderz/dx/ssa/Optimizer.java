@@ -28,9 +28,17 @@ import mod.agus.jcoderz.dx.ssa.back.SsaToRop;
  * and returns it to rop form.
  */
 public class Optimizer {
-    private static boolean preserveLocals = true;
-
-    private static mod.agus.jcoderz.dx.rop.code.TranslationAdvice advice;
+    /**
+     * settings of the optimization running on each thread; methods may be
+     * optimized on several threads at once, with different settings
+     */
+    private static final ThreadLocal<Settings> settings =
+            new ThreadLocal<Settings>() {
+                @Override
+                protected Settings initialValue() {
+                    return new Settings();
+                }
+            };
 
     /** optional optimizer steps */
     public enum OptionalStep {
@@ -38,19 +46,41 @@ public class Optimizer {
             ESCAPE_ANALYSIS
     }
 
+    /** how thoroughly a method is optimized, chosen from its size */
+    public enum Tier {
+        /** all optional steps, and a second register allocation if needed */
+        FULL,
+        /** no SCCP nor escape analysis, and a single register allocation */
+        CHEAP,
+        /** no optimization at all; the rop method is used as is */
+        NONE
+    }
+
     /**
      * @return true if local variable information should be preserved, even
      * at code size/register size cost
      */
     public static boolean getPreserveLocals() {
-        return preserveLocals;
+        return settings.get().preserveLocals;
     }
 
     /**
      * @return {@code non-null;} translation advice
      */
     public static mod.agus.jcoderz.dx.rop.code.TranslationAdvice getAdvice() {
-        return advice;
+        return settings.get().advice;
+    }
+
+    /**
+     * Sets the settings of the optimization starting on the calling thread.
+     *
+     * @param inPreserveLocals true if local variable info should be preserved
+     * @param inAdvice {@code non-null;} translation advice
+     */
+    private static void setSettings(boolean inPreserveLocals, TranslationAdvice inAdvice) {
+        Settings current = settings.get();
+        current.preserveLocals = inPreserveLocals;
+        current.advice = inAdvice;
     }
 
     /**
@@ -93,8 +123,7 @@ public class Optimizer {
                                                                   mod.agus.jcoderz.dx.rop.code.TranslationAdvice inAdvice, EnumSet<OptionalStep> steps) {
         mod.agus.jcoderz.dx.ssa.SsaMethod ssaMeth = null;
 
-        preserveLocals = inPreserveLocals;
-        advice = inAdvice;
+        setSettings(inPreserveLocals, inAdvice);
 
         ssaMeth = SsaConverter.convertToSsaMethod(rmeth, paramWidth, isStatic);
         runSsaFormSteps(ssaMeth, steps);
@@ -102,7 +131,7 @@ public class Optimizer {
         mod.agus.jcoderz.dx.rop.code.RopMethod resultMeth = mod.agus.jcoderz.dx.ssa.back.SsaToRop.convertToRopMethod(ssaMeth, false);
 
         if (resultMeth.getBlocks().getRegCount()
-                > advice.getMaxOptimalRegisterCount()) {
+                > inAdvice.getMaxOptimalRegisterCount()) {
             // Try to see if we can squeeze it under the register count bar
             resultMeth = optimizeMinimizeRegisters(rmeth, paramWidth, isStatic,
                     steps);
@@ -110,6 +139,107 @@ public class Optimizer {
         return resultMeth;
     }
 
+    /**
+     * Chooses how thoroughly to optimize a method. The size of a method is
+     * measured as its number of instructions times its number of registers,
+     * which bounds the cost of the liveness analysis and of the interference
+     * graph that dominate the optimization of large methods.
+     *
+     * @param rmeth {@code non-null;} method to process
+     * @param cheapThreshold size above which only cheap steps are run, or
+     * {@code 0} for no limit
+     * @param skipThreshold size above which the method is not optimized, or
+     * {@code 0} for no limit
+     * @return {@code non-null;} the tier
+     */
+    public static Tier chooseTier(RopMethod rmeth, long cheapThreshold,
+            long skipThreshold) {
+        if (cheapThreshold <= 0 && skipThreshold <= 0) {
+            return Tier.FULL;
+        }
+
+        long size = (long) rmeth.getBlocks().getEffectiveInstructionCount()
+                * rmeth.getBlocks().getRegCount();
+        if (skipThreshold > 0 && size > skipThreshold) {
+            return Tier.NONE;
+        }
+        if (cheapThreshold > 0 && size > cheapThreshold) {
+            return Tier.CHEAP;
+        }
+        return Tier.FULL;
+    }
+
+    /**
+     * Runs optimization algorthims of the given tier over this method, and
+     * returns a new instance of RopMethod with the changes.
+     *
+     * @param rmeth method to process
+     * @param paramWidth the total width, in register-units, of this method's
+     * parameters
+     * @param isStatic true if this method has no 'this' pointer argument.
+     * @param inPreserveLocals true if local variable info should be preserved,
+     * at the cost of some registers and insns
+     * @param inAdvice {@code non-null;} translation advice
+     * @param tier {@code non-null;} how thoroughly to optimize
+     * @return optimized method, or {@code rmeth} itself for {@link Tier#NONE}
+     */
+    public static RopMethod optimize(RopMethod rmeth, int paramWidth, boolean isStatic,
+            boolean inPreserveLocals, TranslationAdvice inAdvice, Tier tier) {
+        return optimize(rmeth, paramWidth, isStatic, inPreserveLocals, inAdvice, tier, false);
+    }
+
+    /**
+     * Runs optimization algorthims of the given tier over this method, and
+     * returns a new instance of RopMethod with the changes.
+     *
+     * @param rmeth method to process
+     * @param paramWidth the total width, in register-units, of this method's
+     * parameters
+     * @param isStatic true if this method has no 'this' pointer argument.
+     * @param inPreserveLocals true if local variable info should be preserved,
+     * at the cost of some registers and insns
+     * @param inAdvice {@code non-null;} translation advice
+     * @param tier {@code non-null;} how thoroughly to optimize
+     * @param linearScan true if registers should be allocated by a linear
+     * scan, which is faster but uses more registers and insns
+     * @return optimized method, or {@code rmeth} itself for {@link Tier#NONE}
+     */
+    public static RopMethod optimize(RopMethod rmeth, int paramWidth, boolean isStatic,
+            boolean inPreserveLocals, TranslationAdvice inAdvice, Tier tier,
+            boolean linearScan) {
+        EnumSet<OptionalStep> steps = EnumSet.allOf(OptionalStep.class);
+
+        switch (tier) {
+            case FULL:
+                if (!linearScan) {
+                    return optimize(rmeth, paramWidth, isStatic, inPreserveLocals, inAdvice);
+                }
+                break;
+            case CHEAP:
+                steps.remove(OptionalStep.SCCP);
+                steps.remove(OptionalStep.ESCAPE_ANALYSIS);
+                break;
+            case NONE:
+                return rmeth;
+            default:
+                throw new IllegalArgumentException("unknown tier: " + tier);
+        }
+
+        setSettings(inPreserveLocals, inAdvice);
+
+        SsaMethod ssaMeth = SsaConverter.convertToSsaMethod(rmeth, paramWidth, isStatic);
+        runSsaFormSteps(ssaMeth, steps);
+
+        /*
+         * The linear scan allocator does not try to minimize registers, so
+         * there is no second attempt with it.
+         */
+        if (linearScan) {
+            return SsaToRop.convertToRopMethodWithLinearScan(ssaMeth);
+        }
+        return SsaToRop.convertToRopMethod(ssaMeth, false);
+    }
+
     /**
      * Runs the optimizer with a strategy to minimize the number of rop-form
      * registers used by the end result. Dex bytecode does not have instruction
@@ -196,8 +326,7 @@ public class Optimizer {
                                                                    boolean isStatic, boolean inPreserveLocals,
                                                                    mod.agus.jcoderz.dx.rop.code.TranslationAdvice inAdvice) {
 
-        preserveLocals = inPreserveLocals;
-        advice = inAdvice;
+        setSettings(inPreserveLocals, inAdvice);
 
         return SsaConverter.testEdgeSplit(rmeth, paramWidth, isStatic);
     }
@@ -206,8 +335,7 @@ public class Optimizer {
                                                                       boolean isStatic, boolean inPreserveLocals,
                                                                       mod.agus.jcoderz.dx.rop.code.TranslationAdvice inAdvice) {
 
-        preserveLocals = inPreserveLocals;
-        advice = inAdvice;
+        setSettings(inPreserveLocals, inAdvice);
 
         return SsaConverter.testPhiPlacement(rmeth, paramWidth, isStatic);
     }
@@ -216,8 +344,7 @@ public class Optimizer {
                                                                   boolean isStatic, boolean inPreserveLocals,
                                                                   mod.agus.jcoderz.dx.rop.code.TranslationAdvice inAdvice) {
 
-        preserveLocals = inPreserveLocals;
-        advice = inAdvice;
+        setSettings(inPreserveLocals, inAdvice);
 
         return SsaConverter.convertToSsaMethod(rmeth, paramWidth, isStatic);
     }
@@ -228,8 +355,7 @@ public class Optimizer {
 
         mod.agus.jcoderz.dx.ssa.SsaMethod ssaMeth;
 
-        preserveLocals = inPreserveLocals;
-        advice = inAdvice;
+        setSettings(inPreserveLocals, inAdvice);
 
         ssaMeth = SsaConverter.convertToSsaMethod(rmeth, paramWidth, isStatic);
         DeadCodeRemover.process(ssaMeth);
@@ -243,8 +369,7 @@ public class Optimizer {
 
         SsaMethod ssaMeth;
 
-        preserveLocals = inPreserveLocals;
-        advice = inAdvice;
+        setSettings(inPreserveLocals, inAdvice);
 
         ssaMeth = SsaConverter.convertToSsaMethod(rmeth, paramWidth, isStatic);
 
@@ -254,4 +379,15 @@ public class Optimizer {
 
         return ssaMeth;
     }
+
+    /**
+     * Settings of an optimization, shared by the steps it runs.
+     */
+    private static final class Settings {
+        /** whether local variable information is preserved */
+        private boolean preserveLocals = true;
+
+        /** {@code null-ok;} translation advice, until a method is optimized */
+        private TranslationAdvice advice;
+    }
 }
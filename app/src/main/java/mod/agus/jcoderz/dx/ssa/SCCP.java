@@ -19,6 +19,8 @@ package mod.agus.jcoderz.dx.ssa;
 import java.util.ArrayList;
 import java.util.BitSet;
 
+import mod.agus.jcoderz.dx.util.IntList;
+
 import mod.agus.jcoderz.dx.rop.code.CstInsn;
 import mod.agus.jcoderz.dx.rop.code.Insn;
 import mod.agus.jcoderz.dx.rop.code.PlainInsn;
@@ -50,33 +52,38 @@ public class SCCP {
     private final int[] latticeValues;
     /** For those registers that are constant, this is the constant value */
     private final mod.agus.jcoderz.dx.rop.cst.Constant[] latticeConstants;
-    /** Worklist of basic blocks to be processed */
-    private final ArrayList<mod.agus.jcoderz.dx.ssa.SsaBasicBlock> cfgWorklist;
-    /** Worklist of executed basic blocks with phis to be processed */
-    private final ArrayList<mod.agus.jcoderz.dx.ssa.SsaBasicBlock> cfgPhiWorklist;
+    /** Worklist of indices of basic blocks to be processed */
+    private final IntList cfgWorklist;
+    /** Worklist of indices of executed basic blocks with phis to be processed */
+    private final IntList cfgPhiWorklist;
     /** Bitset containing bits for each block that has been found executable */
     private final BitSet executableBlocks;
-    /** Worklist for SSA edges.  This is a list of registers to process */
-    private final ArrayList<mod.agus.jcoderz.dx.ssa.SsaInsn> ssaWorklist;
+    /**
+     * Worklist for SSA edges.  This is a list of ids, in {@link #useIndex},
+     * of insns to process
+     */
+    private final IntList ssaWorklist;
     /**
      * Worklist for SSA edges that represent varying values.  It makes the
      * algorithm much faster if you move all values to VARYING as fast as
      * possible.
      */
-    private final ArrayList<mod.agus.jcoderz.dx.ssa.SsaInsn> varyingWorklist;
+    private final IntList varyingWorklist;
     /** Worklist of potential branches to convert to gotos */
     private final ArrayList<mod.agus.jcoderz.dx.ssa.SsaInsn> branchWorklist;
+    /** insns and use lists of the method, while propagating values */
+    private UseIndex useIndex;
 
     private SCCP(mod.agus.jcoderz.dx.ssa.SsaMethod ssaMeth) {
         this.ssaMeth = ssaMeth;
         this.regCount = ssaMeth.getRegCount();
         this.latticeValues = new int[this.regCount];
         this.latticeConstants = new mod.agus.jcoderz.dx.rop.cst.Constant[this.regCount];
-        this.cfgWorklist = new ArrayList<mod.agus.jcoderz.dx.ssa.SsaBasicBlock>();
-        this.cfgPhiWorklist = new ArrayList<mod.agus.jcoderz.dx.ssa.SsaBasicBlock>();
+        this.cfgWorklist = new IntList();
+        this.cfgPhiWorklist = new IntList();
         this.executableBlocks = new BitSet(ssaMeth.getBlocks().size());
-        this.ssaWorklist = new ArrayList<mod.agus.jcoderz.dx.ssa.SsaInsn>();
-        this.varyingWorklist = new ArrayList<mod.agus.jcoderz.dx.ssa.SsaInsn>();
+        this.ssaWorklist = new IntList();
+        this.varyingWorklist = new IntList();
         this.branchWorklist = new ArrayList<mod.agus.jcoderz.dx.ssa.SsaInsn>();
         for (int i = 0; i < this.regCount; i++) {
             latticeValues[i] = TOP;
@@ -99,10 +106,10 @@ public class SCCP {
      */
     private void addBlockToWorklist(mod.agus.jcoderz.dx.ssa.SsaBasicBlock ssaBlock) {
         if (!executableBlocks.get(ssaBlock.getIndex())) {
-            cfgWorklist.add(ssaBlock);
+            cfgWorklist.add(ssaBlock.getIndex());
             executableBlocks.set(ssaBlock.getIndex());
         } else {
-            cfgPhiWorklist.add(ssaBlock);
+            cfgPhiWorklist.add(ssaBlock.getIndex());
         }
     }
 
@@ -112,14 +119,11 @@ public class SCCP {
      * @param latticeValue new lattice value for @param reg.
      */
     private void addUsersToWorklist(int reg, int latticeValue) {
-        if (latticeValue == VARYING) {
-            for (mod.agus.jcoderz.dx.ssa.SsaInsn insn : ssaMeth.getUseListForRegister(reg)) {
-                varyingWorklist.add(insn);
-            }
-        } else {
-            for (mod.agus.jcoderz.dx.ssa.SsaInsn insn : ssaMeth.getUseListForRegister(reg)) {
-                ssaWorklist.add(insn);
-            }
+        IntList worklist = (latticeValue == VARYING) ? varyingWorklist : ssaWorklist;
+        int useCount = useIndex.getUseCount(reg);
+
+        for (int i = 0; i < useCount; i++) {
+            worklist.add(useIndex.getUse(reg, i));
         }
     }
 
@@ -543,26 +547,28 @@ public class SCCP {
         mod.agus.jcoderz.dx.ssa.SsaBasicBlock firstBlock = ssaMeth.getEntryBlock();
         addBlockToWorklist(firstBlock);
 
+        /*
+         * The insns do not change while values are propagated, so their
+         * use lists are taken once, in flat arrays.
+         */
+        useIndex = UseIndex.obtain(ssaMeth);
+        ArrayList<SsaBasicBlock> blocks = ssaMeth.getBlocks();
+
         /* Empty all the worklists by propagating our values */
-        while (!cfgWorklist.isEmpty()
-                || !cfgPhiWorklist.isEmpty()
-                || !ssaWorklist.isEmpty()
-                || !varyingWorklist.isEmpty()) {
-            while (!cfgWorklist.isEmpty()) {
-                int listSize = cfgWorklist.size() - 1;
-                mod.agus.jcoderz.dx.ssa.SsaBasicBlock block = cfgWorklist.remove(listSize);
-                simulateBlock(block);
+        while (cfgWorklist.size() != 0
+                || cfgPhiWorklist.size() != 0
+                || ssaWorklist.size() != 0
+                || varyingWorklist.size() != 0) {
+            while (cfgWorklist.size() != 0) {
+                simulateBlock(blocks.get(cfgWorklist.pop()));
             }
 
-            while (!cfgPhiWorklist.isEmpty()) {
-                int listSize = cfgPhiWorklist.size() - 1;
-                mod.agus.jcoderz.dx.ssa.SsaBasicBlock block = cfgPhiWorklist.remove(listSize);
-                simulatePhiBlock(block);
+            while (cfgPhiWorklist.size() != 0) {
+                simulatePhiBlock(blocks.get(cfgPhiWorklist.pop()));
             }
 
-            while (!varyingWorklist.isEmpty()) {
-                int listSize = varyingWorklist.size() - 1;
-                mod.agus.jcoderz.dx.ssa.SsaInsn insn = varyingWorklist.remove(listSize);
+            while (varyingWorklist.size() != 0) {
+                SsaInsn insn = useIndex.getInsn(varyingWorklist.pop());
 
                 if (!executableBlocks.get(insn.getBlock().getIndex())) {
                     continue;
@@ -574,9 +580,8 @@ public class SCCP {
                     simulateStmt(insn);
                 }
             }
-            while (!ssaWorklist.isEmpty()) {
-                int listSize = ssaWorklist.size() - 1;
-                mod.agus.jcoderz.dx.ssa.SsaInsn insn = ssaWorklist.remove(listSize);
+            while (ssaWorklist.size() != 0) {
+                SsaInsn insn = useIndex.getInsn(ssaWorklist.pop());
 
                 if (!executableBlocks.get(insn.getBlock().getIndex())) {
                     continue;
@@ -590,6 +595,9 @@ public class SCCP {
             }
         }
 
+        useIndex.release();
+        useIndex = null;
+
         replaceConstants();
         replaceBranches();
     }
@@ -35,14 +35,6 @@ public final class SetFactory {
      */
     private static final int DOMFRONT_SET_THRESHOLD_SIZE = 3072;
 
-    /**
-     * BitIntSet/ListIntSet threshold for interference graph sets. These
-     * sets are kept per register until register allocation is done.
-     *
-     * A value of 3072 here is somewhere around 1.125mb of total bitset size.
-     */
-    private static final int INTERFERENCE_SET_THRESHOLD_SIZE = 3072;
-
     /**
      * BitIntSet/ListIntSet threshold for the live in/out sets kept by
      * {@link SsaBasicBlock}. These are sets of SSA registers kept per basic
@@ -68,19 +60,6 @@ public final class SetFactory {
                 : new ListIntSet();
     }
 
-    /**
-     * Make IntSet for the interference graph sets. Public because
-     * InterferenceGraph is in another package.
-     *
-     * @param countRegs {@code >=0;} count of SSA registers used in method
-     * @return {@code non-null;} appropriate set
-     */
-    public static IntSet makeInterferenceSet(int countRegs) {
-        return countRegs <= INTERFERENCE_SET_THRESHOLD_SIZE
-                ? new BitIntSet(countRegs)
-                : new ListIntSet();
-    }
-
     /**
      * Make IntSet for register live in/out sets.
      *
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.ssa;
+
+import mod.agus.jcoderz.dx.rop.code.RegisterSpec;
+import mod.agus.jcoderz.dx.rop.code.RegisterSpecList;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Snapshot of the instructions of an {@link SsaMethod} and of the uses of
+ * its registers, kept in flat arrays. Instructions are identified by their
+ * position in block order, and the uses of all registers share one array,
+ * those of each register being contiguous. Passes that do not add
+ * instructions while they run use it in place of the use lists of the
+ * method, without allocating anything per register.
+ *
+ * <p>An instance is obtained with {@link #obtain} and handed back with
+ * {@link #release}, after which its arrays are reused for the next method
+ * processed by the same thread.</p>
+ */
+final class UseIndex {
+    /** instance available for reuse by each thread */
+    private static final ThreadLocal<UseIndex> available = new ThreadLocal<UseIndex>();
+
+    /** {@code non-null;} instructions, indexed by id */
+    private SsaInsn[] insns = new SsaInsn[0];
+
+    /** number of instructions */
+    private int insnCount;
+
+    /** {@code non-null;} id of the first instruction of each block */
+    private int[] blockStarts = new int[0];
+
+    /** {@code non-null;} id of the definition of each register, or -1 */
+    private int[] definitions = new int[0];
+
+    /**
+     * {@code non-null;} offset in {@link #uses} of the uses of each
+     * register, followed by the total number of uses
+     */
+    private int[] useStarts = new int[0];
+
+    /** {@code non-null;} number of uses of each register still listed */
+    private int[] useCounts = new int[0];
+
+    /** {@code non-null;} ids of the instructions using each register */
+    private int[] uses = new int[0];
+
+    /**
+     * Builds an index of a method, reusing the arrays of the calling
+     * thread if they are not in use.
+     *
+     * @param ssaMeth {@code non-null;} method to index
+     * @return {@code non-null;} the index
+     */
+    public static UseIndex obtain(SsaMethod ssaMeth) {
+        UseIndex index = available.get();
+
+        if (index == null) {
+            index = new UseIndex();
+        } else {
+            available.set(null);
+        }
+
+        index.build(ssaMeth);
+        return index;
+    }
+
+    /**
+     * Hands this instance back for reuse by the calling thread. It must
+     * not be used afterwards.
+     */
+    public void release() {
+        Arrays.fill(insns, 0, insnCount, null);
+        insnCount = 0;
+        available.set(this);
+    }
+
+    /**
+     * Gets the number of instructions.
+     *
+     * @return {@code >= 0;} the number of instructions
+     */
+    public int getInsnCount() {
+        return insnCount;
+    }
+
+    /**
+     * Gets an instruction.
+     *
+     * @param id {@code >= 0;} id of the instruction
+     * @return {@code non-null;} the instruction
+     */
+    public SsaInsn getInsn(int id) {
+        return insns[id];
+    }
+
+    /**
+     * Gets the id of the first instruction of a block. The instructions of
+     * the block have consecutive ids.
+     *
+     * @param blockIndex {@code >= 0;} index of the block
+     * @return {@code >= 0;} id of its first instruction
+     */
+    public int getBlockStart(int blockIndex) {
+        return blockStarts[blockIndex];
+    }
+
+    /**
+     * Gets the definition of a register.
+     *
+     * @param reg {@code >= 0;} the register
+     * @return id of the instruction defining it, or -1 if it is undefined
+     */
+    public int getDefinition(int reg) {
+        return definitions[reg];
+    }
+
+    /**
+     * Gets the number of uses of a register.
+     *
+     * @param reg {@code >= 0;} the register
+     * @return {@code >= 0;} the number of uses still listed
+     */
+    public int getUseCount(int reg) {
+        return useCounts[reg];
+    }
+
+    /**
+     * Gets a use of a register. An instruction using a register several
+     * times is listed as many times.
+     *
+     * @param reg {@code >= 0;} the register
+     * @param n {@code >= 0, < getUseCount(reg);} which use
+     * @return id of the using instruction
+     */
+    public int getUse(int reg, int n) {
+        return uses[useStarts[reg] + n];
+    }
+
+    /**
+     * Removes one use of a register, if listed. This changes the order of
+     * the remaining uses.
+     *
+     * @param reg {@code >= 0;} the register
+     * @param id id of the using instruction
+     */
+    public void removeUse(int reg, int id) {
+        int start = useStarts[reg];
+        int last = start + useCounts[reg] - 1;
+
+        for (int i = start; i <= last; i++) {
+            if (uses[i] == id) {
+                uses[i] = uses[last];
+                useCounts[reg]--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fills in the index.
+     *
+     * @param ssaMeth {@code non-null;} method to index
+     */
+    private void build(SsaMethod ssaMeth) {
+        ArrayList<SsaBasicBlock> blocks = ssaMeth.getBlocks();
+        int blockCount = blocks.size();
+        int regCount = ssaMeth.getRegCount();
+
+        int count = 0;
+        blockStarts = ensureLength(blockStarts, blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            blockStarts[i] = count;
+            count += blocks.get(i).getInsns().size();
+        }
+
+        if (insns.length < count) {
+            insns = new SsaInsn[Math.max(count, insns.length * 2)];
+        }
+        definitions = ensureLength(definitions, regCount);
+        useStarts = ensureLength(useStarts, regCount + 1);
+        useCounts = ensureLength(useCounts, regCount);
+        Arrays.fill(definitions, 0, regCount, -1);
+        Arrays.fill(useStarts, 0, regCount + 1, 0);
+        Arrays.fill(useCounts, 0, regCount, 0);
+
+        // Number the instructions, and count the uses of each register.
+        int id = 0;
+        for (int i = 0; i < blockCount; i++) {
+            ArrayList<SsaInsn> blockInsns = blocks.get(i).getInsns();
+            for (int j = 0, size = blockInsns.size(); j < size; j++) {
+                SsaInsn insn = blockInsns.get(j);
+                insns[id] = insn;
+
+                RegisterSpec result = insn.getResult();
+                if (result != null) {
+                    definitions[result.getReg()] = id;
+                }
+
+                RegisterSpecList sources = insn.getSources();
+                for (int k = 0, sz = sources.size(); k < sz; k++) {
+                    useStarts[sources.get(k).getReg() + 1]++;
+                }
+                id++;
+            }
+        }
+        insnCount = count;
+
+        for (int reg = 0; reg < regCount; reg++) {
+            useStarts[reg + 1] += useStarts[reg];
+        }
+
+        // Fill in the uses, in instruction order.
+        uses = ensureLength(uses, useStarts[regCount]);
+        for (id = 0; id < count; id++) {
+            RegisterSpecList sources = insns[id].getSources();
+            for (int k = 0, sz = sources.size(); k < sz; k++) {
+                int reg = sources.get(k).getReg();
+                uses[useStarts[reg] + useCounts[reg]++] = id;
+            }
+        }
+    }
+
+    /**
+     * Returns an array at least as long as requested, reusing the given
+     * one if possible.
+     *
+     * @param array {@code non-null;} current array
+     * @param length {@code >= 0;} length needed
+     * @return {@code non-null;} {@code array} or a larger array
+     */
+    private static int[] ensureLength(int[] array, int length) {
+        if (array.length >= length) {
+            return array;
+        }
+        return new int[Math.max(length, array.length * 2)];
+    }
+}
@@ -16,19 +16,49 @@
 
 package mod.agus.jcoderz.dx.ssa.back;
 
-import mod.agus.jcoderz.dx.ssa.SetFactory;
+import mod.agus.jcoderz.dx.util.BitIntSet;
 import mod.agus.jcoderz.dx.util.IntSet;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
- * A register interference graph
+ * A register interference graph. Small graphs are kept as a single bit
+ * matrix, one row of bits per register; large ones, which tend to be
+ * sparse, as one array of interfering registers per register.
  */
 public class InterferenceGraph {
     /**
-     * {@code non-null;} interference graph, indexed by register in
-     * both dimensions
+     * Register count up to which the graph is kept as a bit matrix.
+     *
+     * A value of 3072 here is somewhere around 1.125mb of matrix.
      */
-    private final ArrayList<IntSet> interference;
+    private static final int MATRIX_THRESHOLD_SIZE = 3072;
+
+    /** initial length of the adjacency array of a register */
+    private static final int INITIAL_ADJACENCY_SIZE = 4;
+
+    /** {@code >= 0;} number of registers in the graph */
+    private int regCount;
+
+    /** {@code >= regCount;} number of registers the storage can hold */
+    private int capacity;
+
+    /**
+     * {@code null-ok;} bit matrix of the graph, {@link #rowWords} words per
+     * register, or {@code null} if {@link #adjacency} is used instead
+     */
+    private int[] matrix;
+
+    /** number of words of each row of {@link #matrix} */
+    private int rowWords;
+
+    /**
+     * {@code null-ok;} registers interfering with each register, possibly
+     * with duplicates, or {@code null} if {@link #matrix} is used instead
+     */
+    private int[][] adjacency;
+
+    /** number of entries used in each array of {@link #adjacency} */
+    private int[] adjacencySizes;
 
     /**
      * Creates a new graph.
@@ -37,10 +67,15 @@ public class InterferenceGraph {
      * the namespace. New registers can be added subsequently.
      */
     public InterferenceGraph(int countRegs) {
-        interference = new ArrayList<IntSet>(countRegs);
+        regCount = countRegs;
+        capacity = countRegs;
 
-        for (int i = 0; i < countRegs; i++) {
-            interference.add(SetFactory.makeInterferenceSet(countRegs));
+        if (countRegs <= MATRIX_THRESHOLD_SIZE) {
+            rowWords = (countRegs + 31) >> 5;
+            matrix = new int[countRegs * rowWords];
+        } else {
+            adjacency = new int[countRegs][];
+            adjacencySizes = new int[countRegs];
         }
     }
 
@@ -54,22 +89,23 @@ public class InterferenceGraph {
     public void add(int regV, int regW) {
         ensureCapacity(Math.max(regV, regW) + 1);
 
-        interference.get(regV).add(regW);
-        interference.get(regW).add(regV);
+        if (matrix != null) {
+            matrix[regV * rowWords + (regW >> 5)] |= 1 << (regW & 0x1f);
+            matrix[regW * rowWords + (regV >> 5)] |= 1 << (regV & 0x1f);
+        } else {
+            addAdjacent(regV, regW);
+            addAdjacent(regW, regV);
+        }
     }
 
     /**
      * Dumps interference graph to stdout for debugging.
      */
     public void dumpToStdout() {
-        int oldRegCount = interference.size();
-
-        for (int i = 0; i < oldRegCount; i++) {
-            StringBuilder sb = new StringBuilder();
-
-            sb.append("Reg " + i + ":" + interference.get(i).toString());
-
-            System.out.println(sb.toString());
+        for (int i = 0; i < regCount; i++) {
+            BitIntSet set = new BitIntSet(regCount);
+            mergeInterferenceSet(i, set);
+            System.out.println("Reg " + i + ":" + set);
         }
     }
 
@@ -81,9 +117,73 @@ public class InterferenceGraph {
      * with set for given register
      */
     public void mergeInterferenceSet(int reg, IntSet set) {
-        if (reg < interference.size()) {
-            set.merge(interference.get(reg));
+        if (reg >= regCount) {
+            return;
         }
+
+        if (matrix != null) {
+            int base = reg * rowWords;
+            for (int w = 0; w < rowWords; w++) {
+                int bits = matrix[base + w];
+                while (bits != 0) {
+                    set.add((w << 5) + Integer.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        } else {
+            int[] adjacent = adjacency[reg];
+            for (int i = 0, size = adjacencySizes[reg]; i < size; i++) {
+                set.add(adjacent[i]);
+            }
+        }
+    }
+
+    /**
+     * Records that a register interferes with another, in the adjacency
+     * array of the first. Duplicates are only removed when the array is
+     * full, which keeps additions cheap.
+     *
+     * @param reg register whose array to add to
+     * @param other interfering register
+     */
+    private void addAdjacent(int reg, int other) {
+        int[] adjacent = adjacency[reg];
+        int size = adjacencySizes[reg];
+
+        if (adjacent == null) {
+            adjacent = new int[INITIAL_ADJACENCY_SIZE];
+            adjacency[reg] = adjacent;
+        } else if (adjacent[size - 1] == other) {
+            return;
+        } else if (size == adjacent.length) {
+            size = removeDuplicates(adjacent, size);
+            if (size * 2 > adjacent.length) {
+                adjacent = Arrays.copyOf(adjacent, adjacent.length * 2);
+                adjacency[reg] = adjacent;
+            }
+        }
+
+        adjacent[size] = other;
+        adjacencySizes[reg] = size + 1;
+    }
+
+    /**
+     * Sorts the start of an array and removes duplicates from it.
+     *
+     * @param values {@code non-null;} the array
+     * @param size number of values at its start
+     * @return the number of distinct values, now at its start
+     */
+    private static int removeDuplicates(int[] values, int size) {
+        Arrays.sort(values, 0, size);
+
+        int distinct = 1;
+        for (int i = 1; i < size; i++) {
+            if (values[i] != values[distinct - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return distinct;
     }
 
     /**
@@ -92,12 +192,73 @@ public class InterferenceGraph {
      * @param size requested minumum size
      */
     private void ensureCapacity(int size) {
-        int countRegs = interference.size();
+        if (size <= regCount) {
+            return;
+        }
+
+        if (size > capacity) {
+            int newCapacity = Math.max(size, capacity * 2);
+            if (matrix != null && size <= MATRIX_THRESHOLD_SIZE) {
+                /*
+                 * The matrix never grows past the threshold, so the
+                 * capacity is what was allocated, and a register beyond
+                 * it converts the graph to adjacency arrays.
+                 */
+                newCapacity = Math.min(newCapacity, MATRIX_THRESHOLD_SIZE);
+                growMatrix(newCapacity);
+            } else {
+                growAdjacency(newCapacity);
+            }
+            capacity = newCapacity;
+        }
+
+        regCount = size;
+    }
+
+    /**
+     * Moves the bit matrix to a larger one.
+     *
+     * @param newCapacity number of registers the matrix must hold
+     */
+    private void growMatrix(int newCapacity) {
+        int newRowWords = (newCapacity + 31) >> 5;
+        int[] newMatrix = new int[newCapacity * newRowWords];
+
+        for (int i = 0; i < regCount; i++) {
+            System.arraycopy(matrix, i * rowWords, newMatrix, i * newRowWords, rowWords);
+        }
+
+        matrix = newMatrix;
+        rowWords = newRowWords;
+    }
+
+    /**
+     * Moves the graph to larger adjacency arrays, converting it from a bit
+     * matrix if needed.
+     *
+     * @param newCapacity number of registers the arrays must hold
+     */
+    private void growAdjacency(int newCapacity) {
+        if (matrix == null) {
+            adjacency = Arrays.copyOf(adjacency, newCapacity);
+            adjacencySizes = Arrays.copyOf(adjacencySizes, newCapacity);
+            return;
+        }
 
-        interference.ensureCapacity(size);
+        adjacency = new int[newCapacity][];
+        adjacencySizes = new int[newCapacity];
+        int[] oldMatrix = matrix;
+        matrix = null;
 
-        for (int i = countRegs; i < size; i++) {
-            interference.add(SetFactory.makeInterferenceSet(size));
+        for (int i = 0; i < regCount; i++) {
+            int base = i * rowWords;
+            for (int w = 0; w < rowWords; w++) {
+                int bits = oldMatrix[base + w];
+                while (bits != 0) {
+                    addAdjacent(i, (w << 5) + Integer.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
         }
     }
 }
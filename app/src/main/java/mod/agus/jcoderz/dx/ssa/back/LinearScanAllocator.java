@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.ssa.back;
+
+import mod.agus.jcoderz.dx.rop.code.CstInsn;
+import mod.agus.jcoderz.dx.rop.code.RegisterSpec;
+import mod.agus.jcoderz.dx.rop.code.RegisterSpecList;
+import mod.agus.jcoderz.dx.rop.cst.CstInteger;
+import mod.agus.jcoderz.dx.ssa.BasicRegisterMapper;
+import mod.agus.jcoderz.dx.ssa.NormalSsaInsn;
+import mod.agus.jcoderz.dx.ssa.PhiInsn;
+import mod.agus.jcoderz.dx.ssa.RegisterMapper;
+import mod.agus.jcoderz.dx.ssa.SsaBasicBlock;
+import mod.agus.jcoderz.dx.ssa.SsaInsn;
+import mod.agus.jcoderz.dx.ssa.SsaMethod;
+import mod.agus.jcoderz.dx.util.IntIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Allocates registers by a linear scan over live intervals, without an
+ * interference graph. Instructions are numbered in block order, and the
+ * interval of an SSA register is the smallest range of numbers covering
+ * all points where it is live, as computed by {@link LivenessAnalyzer}.
+ * Registers whose intervals do not overlap may share a rop register.
+ *
+ * <p>This is much cheaper than {@link FirstFitLocalCombiningAllocator},
+ * but does not combine moves nor local variables, and an interval
+ * overapproximates liveness, so the output uses more registers and
+ * moves.</p>
+ */
+public class LinearScanAllocator extends RegisterAllocator {
+    /** {@code non-null;} first position of the interval of each register */
+    private final int[] starts;
+
+    /** {@code non-null;} last position of the interval of each register */
+    private final int[] ends;
+
+    /**
+     * Constructs an instance. The live in/out sets of the blocks of the
+     * method must have been computed.
+     *
+     * @param ssaMeth {@code non-null;} method to process
+     */
+    public LinearScanAllocator(SsaMethod ssaMeth) {
+        super(ssaMeth, null);
+
+        int regCount = ssaMeth.getRegCount();
+        starts = new int[regCount];
+        ends = new int[regCount];
+        Arrays.fill(starts, Integer.MAX_VALUE);
+        Arrays.fill(ends, -1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean wantsParamsMovedHigh() {
+        // Parameters are placed at the bottom, in calling-convention order.
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RegisterMapper allocateRegisters() {
+        buildIntervals();
+
+        int regCount = ssaMeth.getRegCount();
+        int paramWidth = ssaMeth.getParamWidth();
+        BasicRegisterMapper mapper = new BasicRegisterMapper(regCount);
+
+        /*
+         * Parameters keep their own slots at the bottom of the register
+         * space. Every other register with an interval is sorted by
+         * start, packed with its start in the high half of a long.
+         */
+        long[] order = new long[regCount];
+        int count = 0;
+        for (int reg = 0; reg < regCount; reg++) {
+            if (isDefinitionMoveParam(reg)) {
+                NormalSsaInsn defInsn
+                        = (NormalSsaInsn) ssaMeth.getDefinitionForRegister(reg);
+                mapper.addMapping(reg, paramNumberFromMoveParam(defInsn),
+                        getCategoryForSsaReg(reg));
+            } else if (ends[reg] < 0) {
+                // Never live, so it appears in no instruction.
+                mapper.addMapping(reg, 0, 1);
+            } else {
+                order[count++] = ((long) starts[reg] << 32) | reg;
+            }
+        }
+        Arrays.sort(order, 0, count);
+
+        /*
+         * The active intervals are kept in a min-heap on their end, each
+         * packed as end, rop register and category.
+         */
+        long[] active = new long[count];
+        int activeCount = 0;
+        BitSet used = new BitSet();
+
+        for (int i = 0; i < count; i++) {
+            int reg = (int) order[i];
+            int start = starts[reg];
+
+            while (activeCount > 0 && (int) (active[0] >>> 32) < start) {
+                int expired = (int) active[0];
+                used.clear(expired >>> 1, (expired >>> 1) + (expired & 1) + 1);
+                active[0] = active[--activeCount];
+                siftDown(active, activeCount);
+            }
+
+            int category = getCategoryForSsaReg(reg);
+            int newReg = used.nextClearBit(paramWidth);
+            while (category == 2 && used.get(newReg + 1)) {
+                newReg = used.nextClearBit(newReg + 1);
+            }
+
+            used.set(newReg, newReg + category);
+            mapper.addMapping(reg, newReg, category);
+
+            active[activeCount] = ((long) ends[reg] << 32)
+                    | (newReg << 1) | (category - 1);
+            siftUp(active, activeCount++);
+        }
+
+        return mapper;
+    }
+
+    /**
+     * Computes the interval of every register. Beyond its definition and
+     * uses, a register is extended to the start of the blocks it is live
+     * into and to the end of those it is live out of. The results and
+     * sources of phis are further extended over all the phis of their
+     * block, so that they overlap as the phi removal move scheduler
+     * expects; see {@code LivenessAnalyzer.coInterferePhis}.
+     */
+    private void buildIntervals() {
+        int position = 0;
+
+        for (SsaBasicBlock block : ssaMeth.getBlocks()) {
+            ArrayList<SsaInsn> insns = block.getInsns();
+            int blockStart = position;
+            int phiCount = 0;
+
+            for (SsaInsn insn : insns) {
+                if (insn instanceof PhiInsn) {
+                    // Phi sources are live out of the predecessors instead.
+                    phiCount++;
+                } else {
+                    RegisterSpecList sources = insn.getSources();
+                    for (int i = 0, size = sources.size(); i < size; i++) {
+                        extend(sources.get(i).getReg(), position);
+                    }
+                }
+
+                RegisterSpec result = insn.getResult();
+                if (result != null) {
+                    extend(result.getReg(), position);
+                }
+                position++;
+            }
+
+            int lastPhi = blockStart + phiCount - 1;
+            for (int i = 0; i < phiCount; i++) {
+                SsaInsn phi = insns.get(i);
+                extend(phi.getResult().getReg(), blockStart);
+                extend(phi.getResult().getReg(), lastPhi);
+
+                RegisterSpecList sources = phi.getSources();
+                for (int j = 0, size = sources.size(); j < size; j++) {
+                    extend(sources.get(j).getReg(), blockStart);
+                    extend(sources.get(j).getReg(), lastPhi);
+                }
+            }
+
+            IntIterator liveIn = block.getLiveInRegs().iterator();
+            while (liveIn.hasNext()) {
+                extend(liveIn.next(), blockStart);
+            }
+
+            int blockEnd = Math.max(blockStart, position - 1);
+            IntIterator liveOut = block.getLiveOutRegs().iterator();
+            while (liveOut.hasNext()) {
+                extend(liveOut.next(), blockEnd);
+            }
+        }
+    }
+
+    /**
+     * Extends the interval of a register to cover a position.
+     *
+     * @param reg {@code >= 0;} SSA register
+     * @param position {@code >= 0;} instruction position
+     */
+    private void extend(int reg, int position) {
+        if (position < starts[reg]) {
+            starts[reg] = position;
+        }
+        if (position > ends[reg]) {
+            ends[reg] = position;
+        }
+    }
+
+    /**
+     * Moves the last element of a min-heap up to its place.
+     *
+     * @param heap {@code non-null;} the heap
+     * @param index index of the last element
+     */
+    private static void siftUp(long[] heap, int index) {
+        long value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    /**
+     * Moves the first element of a min-heap down to its place.
+     *
+     * @param heap {@code non-null;} the heap
+     * @param size number of elements in the heap
+     */
+    private static void siftDown(long[] heap, int size) {
+        if (size == 0) {
+            return;
+        }
+
+        long value = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (value <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+
+    /**
+     * Returns the parameter number that this move-param insn refers to
+     * @param ndefInsn a move-param insn (otherwise, exceptions will be thrown)
+     * @return parameter number (offset in the total parameter width)
+     */
+    private int paramNumberFromMoveParam(NormalSsaInsn ndefInsn) {
+        CstInsn origInsn = (CstInsn) ndefInsn.getOriginalRopInsn();
+
+        return ((CstInteger) origInsn.getConstant()).getValue();
+    }
+}
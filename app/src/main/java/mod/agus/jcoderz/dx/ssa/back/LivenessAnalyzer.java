@@ -58,7 +58,7 @@ public class LivenessAnalyzer {
     /** method to process */
     private final SsaMethod ssaMeth;
 
-    /** interference graph being updated */
+    /** interference graph being updated, or {@code null} if none */
     private final mod.agus.jcoderz.dx.ssa.back.InterferenceGraph interference;
 
     /** block "n" in Appel 19.17 */
@@ -101,13 +101,28 @@ public class LivenessAnalyzer {
         return interference;
     }
 
+    /**
+     * Runs register liveness algorithm for a method, updating the
+     * live in/out information in {@code SsaBasicBlock} instances only.
+     * This is for allocators that work without an interference graph.
+     *
+     * @param ssaMeth {@code non-null;} method to process
+     */
+    public static void computeLiveness(SsaMethod ssaMeth) {
+        int szRegs = ssaMeth.getRegCount();
+
+        for (int i = 0; i < szRegs; i++) {
+            new LivenessAnalyzer(ssaMeth, i, null).run();
+        }
+    }
+
     /**
      * Makes liveness analyzer instance for specific register.
      *
      * @param ssaMeth {@code non-null;} method to process
      * @param reg register whose liveness to analyze
-     * @param interference {@code non-null;} indexed by SSA reg in
-     * both dimensions; graph to update
+     * @param interference {@code null-ok;} indexed by SSA reg in
+     * both dimensions; graph to update, if any
      *
      */
     private LivenessAnalyzer(SsaMethod ssaMeth, int reg,
@@ -238,7 +253,7 @@ public class LivenessAnalyzer {
         mod.agus.jcoderz.dx.rop.code.RegisterSpec rs = statement.getResult();
 
         if (!statement.isResultReg(regV)) {
-            if (rs != null) {
+            if (rs != null && interference != null) {
                 interference.add(regV, rs.getReg());
             }
             nextFunction = NextFunction.LIVE_IN_AT_STATEMENT;
@@ -54,7 +54,16 @@ public class SsaToRop {
      */
     private final boolean minimizeRegisters;
 
-    /** {@code non-null;} interference graph */
+    /**
+     * {@code true} if registers should be allocated by a linear scan,
+     * rather than by the slower first-fit allocator
+     */
+    private final boolean linearScan;
+
+    /**
+     * {@code null-ok;} interference graph, or {@code null} if registers
+     * are allocated by a linear scan
+     */
     private final InterferenceGraph interference;
 
     /**
@@ -67,7 +76,19 @@ public class SsaToRop {
      */
     public static mod.agus.jcoderz.dx.rop.code.RopMethod convertToRopMethod(SsaMethod ssaMeth,
                                                                             boolean minimizeRegisters) {
-        return new SsaToRop(ssaMeth, minimizeRegisters).convert();
+        return new SsaToRop(ssaMeth, minimizeRegisters, false).convert();
+    }
+
+    /**
+     * Converts a method in SSA form to ROP form, allocating registers with
+     * {@link LinearScanAllocator}. This is much faster than
+     * {@link #convertToRopMethod}, at the cost of more registers and moves.
+     *
+     * @param ssaMeth {@code non-null;} method to process
+     * @return {@code non-null;} rop-form output
+     */
+    public static RopMethod convertToRopMethodWithLinearScan(SsaMethod ssaMeth) {
+        return new SsaToRop(ssaMeth, false, true).convert();
     }
 
     /**
@@ -76,12 +97,22 @@ public class SsaToRop {
      * @param ssaMethod {@code non-null;} method to process
      * @param minimizeRegisters {@code true} if the converter should
      * attempt to minimize the rop-form register count
+     * @param linearScan {@code true} if registers should be allocated by
+     * a linear scan
      */
-    private SsaToRop(SsaMethod ssaMethod, boolean minimizeRegisters) {
+    private SsaToRop(SsaMethod ssaMethod, boolean minimizeRegisters,
+            boolean linearScan) {
         this.minimizeRegisters = minimizeRegisters;
+        this.linearScan = linearScan;
         this.ssaMeth = ssaMethod;
-        this.interference =
-            LivenessAnalyzer.constructInterferenceGraph(ssaMethod);
+
+        if (linearScan) {
+            LivenessAnalyzer.computeLiveness(ssaMethod);
+            this.interference = null;
+        } else {
+            this.interference =
+                LivenessAnalyzer.constructInterferenceGraph(ssaMethod);
+        }
     }
 
     /**
@@ -90,7 +121,7 @@ public class SsaToRop {
      * @return {@code non-null;} rop-form output
      */
     private mod.agus.jcoderz.dx.rop.code.RopMethod convert() {
-        if (DEBUG) {
+        if (DEBUG && interference != null) {
             interference.dumpToStdout();
         }
 
@@ -98,9 +129,13 @@ public class SsaToRop {
         // allocator = new NullRegisterAllocator(ssaMeth, interference);
         // allocator = new FirstFitAllocator(ssaMeth, interference);
 
-        RegisterAllocator allocator =
-            new FirstFitLocalCombiningAllocator(ssaMeth, interference,
-                    minimizeRegisters);
+        RegisterAllocator allocator;
+        if (linearScan) {
+            allocator = new LinearScanAllocator(ssaMeth);
+        } else {
+            allocator = new FirstFitLocalCombiningAllocator(ssaMeth,
+                    interference, minimizeRegisters);
+        }
 
         RegisterMapper mapper = allocator.allocateRegisters();
 
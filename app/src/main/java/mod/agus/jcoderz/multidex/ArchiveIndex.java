@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.multidex;
+
+import mod.agus.jcoderz.dx.util.Hex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The {@link ClassReferences} of every class of an archive, kept on disk
+ * between runs. Index files are named after the SHA-1 of the archive, so
+ * an archive is only scanned again when its contents change, and the main
+ * dex list of an unchanged class path is computed without opening any of
+ * its classes.
+ */
+final class ArchiveIndex {
+    /** magic number starting an index file */
+    private static final int MAGIC = 0x6d647869; // "mdxi"
+
+    /**
+     * version of the index file format; version 2 ends with the CRC-32 of
+     * the rest of the file
+     */
+    private static final int VERSION = 2;
+
+    /** file extension of an index file */
+    private static final String INDEX_EXTENSION = ".idx";
+
+    /** {@code non-null;} references of each class, by path in the archive */
+    private final Map<String, ClassReferences> classes;
+
+    /**
+     * {@code non-null;} paths of the class files which could not be
+     * scanned; these are scanned again when asked for, so that the
+     * failure is reported as without an index
+     */
+    private final Set<String> unreadable;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param classes {@code non-null;} references of each class
+     * @param unreadable {@code non-null;} paths of unreadable class files
+     */
+    private ArchiveIndex(Map<String, ClassReferences> classes, Set<String> unreadable) {
+        this.classes = classes;
+        this.unreadable = unreadable;
+    }
+
+    /**
+     * Gets the index of an archive, reading it from the given directory
+     * if it is there, or else scanning the archive and storing its index
+     * in the directory. A missing, stale or corrupt index file is built
+     * again. Failing to build or store the index is only warned about:
+     * the classes are then scanned as without an index.
+     *
+     * @param directory {@code non-null;} directory holding the index files
+     * @param archive {@code non-null;} the archive
+     * @param element {@code non-null;} the class path element reading the
+     * archive
+     * @return {@code null-ok;} the index, or {@code null} if the archive
+     * could not be indexed
+     */
+    public static ArchiveIndex open(File directory, File archive, ClassPathElement element) {
+        File file;
+        try {
+            file = new File(directory, digest(archive) + INDEX_EXTENSION);
+        } catch (IOException e) {
+            warn("unable to index " + archive, e);
+            return null;
+        }
+
+        if (file.isFile()) {
+            try {
+                return read(file);
+            } catch (IOException e) {
+                // An unreadable index is built again.
+            } catch (RuntimeException e) {
+                // So is a corrupt one.
+            }
+        }
+
+        ArchiveIndex index;
+        try {
+            index = build(element);
+        } catch (IOException e) {
+            warn("unable to index " + archive, e);
+            return null;
+        }
+
+        try {
+            index.write(file);
+        } catch (IOException e) {
+            warn("unable to write " + file, e);
+        }
+        return index;
+    }
+
+    /**
+     * Prints a warning about the index cache.
+     *
+     * @param message {@code non-null;} what failed
+     * @param e {@code non-null;} why
+     */
+    private static void warn(String message, IOException e) {
+        System.err.println("warning: " + message + ": " + e.getMessage());
+    }
+
+    /**
+     * Gets the references of a class.
+     *
+     * @param path {@code non-null;} path of the class file in the archive
+     * @return {@code null-ok;} the references, or {@code null} if the
+     * archive has no such class file
+     */
+    public ClassReferences get(String path) {
+        return classes.get(path);
+    }
+
+    /**
+     * Tells whether a class file of the archive could not be scanned.
+     *
+     * @param path {@code non-null;} path of the class file in the archive
+     * @return whether it is unreadable
+     */
+    public boolean isUnreadable(String path) {
+        return unreadable.contains(path);
+    }
+
+    /**
+     * Scans all the class files of an archive.
+     *
+     * @param element {@code non-null;} the class path element reading the
+     * archive
+     * @return {@code non-null;} the index
+     */
+    private static ArchiveIndex build(final ClassPathElement element) throws IOException {
+        List<String> paths = new ArrayList<String>();
+        for (String path : element.list()) {
+            if (path.endsWith(".class")) {
+                paths.add(path);
+            }
+        }
+
+        List<ClassReferences> scanned;
+        ExecutorService executor = ClassReferenceListBuilder.newExecutor();
+        try {
+            List<Future<ClassReferences>> futures =
+                    new ArrayList<Future<ClassReferences>>(paths.size());
+            for (final String path : paths) {
+                futures.add(executor.submit(new Callable<ClassReferences>() {
+                    @Override
+                    public ClassReferences call() throws IOException {
+                        byte[] bytes = Path.readClass(element, path);
+                        try {
+                            return ClassReferenceScanner.scan(bytes);
+                        } catch (RuntimeException e) {
+                            return null;
+                        }
+                    }
+                }));
+            }
+            scanned = ClassReferenceListBuilder.getResults(futures);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, ClassReferences> classes = new HashMap<String, ClassReferences>();
+        Set<String> unreadable = new HashSet<String>();
+        for (int i = 0; i < paths.size(); i++) {
+            ClassReferences references = scanned.get(i);
+            if (references != null) {
+                classes.put(paths.get(i), references);
+            } else {
+                unreadable.add(paths.get(i));
+            }
+        }
+        return new ArchiveIndex(classes, unreadable);
+    }
+
+    /**
+     * Reads an index file.
+     *
+     * @param file {@code non-null;} the index file
+     * @return {@code non-null;} the index
+     */
+    private static ArchiveIndex read(File file) throws IOException {
+        // No count can exceed the length of the file, so a corrupt count
+        // never makes an arbitrarily large array.
+        long maxCount = file.length();
+        CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), new CRC32());
+        DataInputStream in = new DataInputStream(checked);
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Bad index file " + file);
+            }
+
+            String[] strings = new String[readCount(in, maxCount, file)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+
+            int classCount = readCount(in, maxCount, file);
+            Map<String, ClassReferences> classes =
+                    new HashMap<String, ClassReferences>(classCount * 2);
+            for (int i = 0; i < classCount; i++) {
+                String path = strings[in.readInt()];
+                int superIndex = in.readInt();
+                String[] interfaceNames = readStrings(in, strings, maxCount, file);
+                String[] referencedClasses = readStrings(in, strings, maxCount, file);
+                boolean hasRuntimeVisibleAnnotations = in.readBoolean();
+                classes.put(path, new ClassReferences(
+                        (superIndex == -1) ? null : strings[superIndex], interfaceNames,
+                        referencedClasses, hasRuntimeVisibleAnnotations));
+            }
+
+            Set<String> unreadable = new HashSet<String>();
+            for (String path : readStrings(in, strings, maxCount, file)) {
+                unreadable.add(path);
+            }
+
+            // A damaged string or flag still reads as an index, but not as
+            // one with the right checksum.
+            int crc = (int) checked.getChecksum().getValue();
+            if (in.readInt() != crc || in.read() != -1) {
+                throw new IOException("Bad index file " + file);
+            }
+            return new ArchiveIndex(classes, unreadable);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Bad index file " + file, e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes this index to a file. It is first written to a temporary
+     * file, so that concurrent or interrupted runs never see it partly
+     * written.
+     *
+     * @param file {@code non-null;} the index file
+     */
+    private void write(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+
+        // Strings are written once, and referred to by number.
+        Map<String, Integer> stringIds = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        for (Map.Entry<String, ClassReferences> entry : classes.entrySet()) {
+            ClassReferences references = entry.getValue();
+            addString(entry.getKey(), stringIds, strings);
+            if (references.getSuperclassName() != null) {
+                addString(references.getSuperclassName(), stringIds, strings);
+            }
+            for (String name : references.getInterfaceNames()) {
+                addString(name, stringIds, strings);
+            }
+            for (String name : references.getReferencedClasses()) {
+                addString(name, stringIds, strings);
+            }
+        }
+        for (String path : unreadable) {
+            addString(path, stringIds, strings);
+        }
+
+        File temp = new File(parent, file.getName() + "." + Thread.currentThread().getId()
+                + ".tmp");
+        CheckedOutputStream checked = new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)), new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        boolean written = false;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                out.writeUTF(string);
+            }
+
+            out.writeInt(classes.size());
+            for (Map.Entry<String, ClassReferences> entry : classes.entrySet()) {
+                ClassReferences references = entry.getValue();
+                String superclassName = references.getSuperclassName();
+                out.writeInt(stringIds.get(entry.getKey()));
+                out.writeInt((superclassName == null) ? -1 : stringIds.get(superclassName));
+                writeStrings(out, references.getInterfaceNames(), stringIds);
+                writeStrings(out, references.getReferencedClasses(), stringIds);
+                out.writeBoolean(references.hasRuntimeVisibleAnnotations());
+            }
+
+            writeStrings(out, unreadable.toArray(new String[unreadable.size()]), stringIds);
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.close();
+            written = true;
+        } finally {
+            if (!written) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Already failing; the first exception is reported.
+                }
+                temp.delete();
+            }
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            if (!file.isFile()) {
+                throw new IOException("Unable to write " + file);
+            }
+        }
+    }
+
+    private static void addString(String string, Map<String, Integer> stringIds,
+            List<String> strings) {
+        if (!stringIds.containsKey(string)) {
+            stringIds.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values,
+            Map<String, Integer> stringIds) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            out.writeInt(stringIds.get(value));
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in, String[] strings, long maxCount,
+            File file) throws IOException {
+        String[] values = new String[readCount(in, maxCount, file)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = strings[in.readInt()];
+        }
+        return values;
+    }
+
+    private static int readCount(DataInputStream in, long maxCount, File file)
+            throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > maxCount) {
+            throw new IOException("Bad index file " + file);
+        }
+        return count;
+    }
+
+    /**
+     * Computes the SHA-1 of a file.
+     *
+     * @param file {@code non-null;} the file
+     * @return {@code non-null;} the digest, in hexadecimal
+     */
+    private static String digest(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            for (int amt = in.read(buffer); amt >= 0; amt = in.read(buffer)) {
+                digest.update(buffer, 0, amt);
+            }
+        } finally {
+            in.close();
+        }
+
+        StringBuilder hex = new StringBuilder(40);
+        for (byte b : digest.digest()) {
+            hex.append(Hex.u1(b));
+        }
+        return hex.toString();
+    }
+}
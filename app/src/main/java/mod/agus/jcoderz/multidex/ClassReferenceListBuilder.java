@@ -16,22 +16,20 @@
 
 package mod.agus.jcoderz.multidex;
 
-import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
-import mod.agus.jcoderz.dx.cf.iface.FieldList;
-import mod.agus.jcoderz.dx.cf.iface.MethodList;
-import mod.agus.jcoderz.dx.rop.cst.Constant;
-import mod.agus.jcoderz.dx.rop.cst.CstBaseMethodRef;
-import mod.agus.jcoderz.dx.rop.cst.CstFieldRef;
-import mod.agus.jcoderz.dx.rop.cst.CstType;
-import mod.agus.jcoderz.dx.rop.type.Prototype;
-import mod.agus.jcoderz.dx.rop.type.StdTypeList;
-import mod.agus.jcoderz.dx.rop.type.TypeList;
-
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -42,7 +40,13 @@ public class ClassReferenceListBuilder {
     private static final String CLASS_EXTENSION = ".class";
 
     private final mod.agus.jcoderz.multidex.Path path;
-    private final Set<String> classNames = new HashSet<String>();
+    private final Set<String> classNames = newConcurrentSet();
+
+    /**
+     * Classes whose hierarchy has been looked for, whether found in the path or not. Roots
+     * are scanned in parallel, so this is what keeps each class from being scanned twice.
+     */
+    private final Set<String> visitedClassNames = newConcurrentSet();
 
     public ClassReferenceListBuilder(mod.agus.jcoderz.multidex.Path path) {
         this.path = path;
@@ -70,25 +74,33 @@ public class ClassReferenceListBuilder {
             ZipEntry entry = entries.nextElement();
             String name = entry.getName();
             if (name.endsWith(CLASS_EXTENSION)) {
-                classNames.add(name.substring(0, name.length() - CLASS_EXTENSION.length()));
+                String className = name.substring(0, name.length() - CLASS_EXTENSION.length());
+                classNames.add(className);
+                visitedClassNames.add(className);
             }
         }
 
         // keep direct references of roots (+ direct references hierarchy)
-        for (Enumeration<? extends ZipEntry> entries = jarOfRoots.entries();
-                entries.hasMoreElements();) {
-            ZipEntry entry = entries.nextElement();
-            String name = entry.getName();
-            if (name.endsWith(CLASS_EXTENSION)) {
-                DirectClassFile classFile;
-                try {
-                    classFile = path.getClass(name);
-                } catch (FileNotFoundException e) {
-                    throw new IOException("Class " + name +
-                            " is missing form original class path " + path, e);
+        ExecutorService executor = newExecutor();
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (Enumeration<? extends ZipEntry> entries = jarOfRoots.entries();
+                    entries.hasMoreElements();) {
+                ZipEntry entry = entries.nextElement();
+                final String name = entry.getName();
+                if (name.endsWith(CLASS_EXTENSION)) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            addDependencies(name);
+                            return null;
+                        }
+                    }));
                 }
-                addDependencies(classFile);
             }
+            getResults(futures);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -96,69 +108,73 @@ public class ClassReferenceListBuilder {
         return classNames;
     }
 
-    private void addDependencies(DirectClassFile classFile) {
-        for (Constant constant : classFile.getConstantPool().getEntries()) {
-            if (constant instanceof CstType) {
-                checkDescriptor(((CstType) constant).getClassType().getDescriptor());
-            } else if (constant instanceof CstFieldRef) {
-                checkDescriptor(((CstFieldRef) constant).getType().getDescriptor());
-            } else if (constant instanceof CstBaseMethodRef) {
-                checkPrototype(((CstBaseMethodRef) constant).getPrototype());
-            }
-        }
-
-        FieldList fields = classFile.getFields();
-        int nbField = fields.size();
-        for (int i = 0; i < nbField; i++) {
-          checkDescriptor(fields.get(i).getDescriptor().getString());
-        }
+    /**
+     * Makes an executor to scan classes with, using one thread per processor.
+     */
+    static ExecutorService newExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
 
-        MethodList methods = classFile.getMethods();
-        int nbMethods = methods.size();
-        for (int i = 0; i < nbMethods; i++) {
-          checkPrototype(Prototype.intern(methods.get(i).getDescriptor().getString()));
+    /**
+     * Waits for all the given tasks and returns their results, in order. The first failure
+     * found is rethrown.
+     */
+    static <T> List<T> getResults(List<Future<T>> futures) throws IOException {
+        List<T> results = new ArrayList<T>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning classes");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
         }
+        return results;
     }
 
-    private void checkPrototype(Prototype proto) {
-      checkDescriptor(proto.getReturnType().getDescriptor());
-      StdTypeList args = proto.getParameterTypes();
-      for (int i = 0; i < args.size(); i++) {
-          checkDescriptor(args.get(i).getDescriptor());
-      }
+    private static Set<String> newConcurrentSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     }
 
-    private void checkDescriptor(String typeDescriptor) {
-        if (typeDescriptor.endsWith(";")) {
-            int lastBrace = typeDescriptor.lastIndexOf('[');
-            if (lastBrace < 0) {
-                addClassWithHierachy(typeDescriptor.substring(1, typeDescriptor.length()-1));
-            } else {
-                assert typeDescriptor.length() > lastBrace + 3
-                && typeDescriptor.charAt(lastBrace + 1) == 'L';
-                addClassWithHierachy(typeDescriptor.substring(lastBrace + 2,
-                        typeDescriptor.length() - 1));
-            }
+    private void addDependencies(String name) throws IOException {
+        ClassReferences references;
+        try {
+            references = path.scanClass(name);
+        } catch (FileNotFoundException e) {
+            throw new IOException("Class " + name +
+                    " is missing form original class path " + path, e);
+        }
+
+        for (String className : references.getReferencedClasses()) {
+            addClassWithHierachy(className);
         }
     }
 
     private void addClassWithHierachy(String classBinaryName) {
-        if (classNames.contains(classBinaryName)) {
+        if (!visitedClassNames.add(classBinaryName)) {
             return;
         }
 
         try {
-            DirectClassFile classFile = path.getClass(classBinaryName + CLASS_EXTENSION);
+            ClassReferences references = path.scanClass(classBinaryName + CLASS_EXTENSION);
             classNames.add(classBinaryName);
-            CstType superClass = classFile.getSuperclass();
-            if (superClass != null) {
-                addClassWithHierachy(superClass.getClassType().getClassName());
+            String superclassName = references.getSuperclassName();
+            if (superclassName != null) {
+                addClassWithHierachy(superclassName);
             }
 
-            TypeList interfaceList = classFile.getInterfaces();
-            int interfaceNumber = interfaceList.size();
-            for (int i = 0; i < interfaceNumber; i++) {
-                addClassWithHierachy(interfaceList.getType(i).getClassName());
+            for (String interfaceName : references.getInterfaceNames()) {
+                addClassWithHierachy(interfaceName);
             }
         } catch (FileNotFoundException e) {
             // Ignore: The referenced type is not in the path it must be part of the libraries.
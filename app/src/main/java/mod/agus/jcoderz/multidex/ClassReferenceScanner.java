@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.multidex;
+
+import mod.agus.jcoderz.dx.cf.cst.ConstantTags;
+import mod.agus.jcoderz.dx.cf.iface.ParseException;
+import mod.agus.jcoderz.dx.util.Hex;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reads from a class file only what is needed to compute a main dex list:
+ * its superclass and interfaces, the classes it refers to, and whether it
+ * carries runtime visible annotations. Unlike a
+ * {@link mod.agus.jcoderz.dx.cf.direct.DirectClassFile}, it makes no
+ * constants, types nor attributes; the only objects made are the names of
+ * the classes found.
+ *
+ * <p>A class is taken to refer to the classes of its {@code Class}
+ * constants and to those appearing in the descriptors of its field and
+ * method references, fields and methods.</p>
+ *
+ * <p>Only the constants reached from the class header, its members and
+ * its {@code Class} constants are ever decoded, so the main dex list is
+ * computed without a lazily resolved constant pool.</p>
+ */
+final class ClassReferenceScanner {
+    /** name of the attribute holding runtime visible annotations */
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS =
+            asciiBytes("RuntimeVisibleAnnotations");
+
+    /** {@code non-null;} the bytes of the class file */
+    private final byte[] bytes;
+
+    /** {@code non-null;} offset of each constant pool entry, or 0 */
+    private final int[] offsets;
+
+    /** {@code non-null;} decoded utf8 constants, by index */
+    private final String[] strings;
+
+    /** {@code null-ok;} binary name of the superclass, if any */
+    private final String superclassName;
+
+    /** {@code non-null;} binary names of the interfaces */
+    private final String[] interfaceNames;
+
+    /** {@code non-null;} binary names of the classes referred to */
+    private final Set<String> referencedClasses = new LinkedHashSet<String>();
+
+    /**
+     * whether the class, or one of its fields or methods, has runtime
+     * visible annotations
+     */
+    private boolean hasRuntimeVisibleAnnotations;
+
+    /**
+     * Scans a class file.
+     *
+     * @param bytes {@code non-null;} the bytes of the class file
+     * @return {@code non-null;} what was found
+     */
+    public static ClassReferences scan(byte[] bytes) {
+        ClassReferenceScanner scanner = new ClassReferenceScanner(bytes);
+        return new ClassReferences(scanner.superclassName, scanner.interfaceNames,
+                scanner.referencedClasses.toArray(new String[0]),
+                scanner.hasRuntimeVisibleAnnotations);
+    }
+
+    /**
+     * Constructs an instance, scanning the class file.
+     *
+     * @param bytes {@code non-null;} the bytes of the class file
+     */
+    private ClassReferenceScanner(byte[] bytes) {
+        this.bytes = bytes;
+
+        int count = u2(8);
+        offsets = new int[count];
+        strings = new String[count];
+
+        int at = 10;
+        for (int i = 1; i < count; i++) {
+            offsets[i] = at;
+            int tag = bytes[at] & 0xff;
+            switch (tag) {
+                case ConstantTags.CONSTANT_Utf8:
+                    at += u2(at + 1) + 3;
+                    break;
+                case ConstantTags.CONSTANT_Integer:
+                case ConstantTags.CONSTANT_Float:
+                case ConstantTags.CONSTANT_Fieldref:
+                case ConstantTags.CONSTANT_Methodref:
+                case ConstantTags.CONSTANT_InterfaceMethodref:
+                case ConstantTags.CONSTANT_NameAndType:
+                case ConstantTags.CONSTANT_InvokeDynamic:
+                    at += 5;
+                    break;
+                case ConstantTags.CONSTANT_Long:
+                case ConstantTags.CONSTANT_Double:
+                    at += 9;
+                    i++;
+                    break;
+                case ConstantTags.CONSTANT_Class:
+                case ConstantTags.CONSTANT_String:
+                case ConstantTags.CONSTANT_MethodType:
+                    at += 3;
+                    break;
+                case ConstantTags.CONSTANT_MethodHandle:
+                    at += 4;
+                    break;
+                default:
+                    throw new ParseException("unknown tag byte " + Hex.u1(tag)
+                            + " at constant pool index " + Hex.u2(i));
+            }
+        }
+
+        for (int i = 1; i < count; i++) {
+            int offset = offsets[i];
+            if (offset == 0) {
+                continue;
+            }
+
+            switch (bytes[offset] & 0xff) {
+                case ConstantTags.CONSTANT_Class:
+                    addClassName(string(u2(offset + 1)));
+                    break;
+                case ConstantTags.CONSTANT_Fieldref:
+                case ConstantTags.CONSTANT_Methodref:
+                case ConstantTags.CONSTANT_InterfaceMethodref:
+                    // The descriptor of the name-and-type entry.
+                    addDescriptor(string(u2(offsets[u2(offset + 3)] + 3)));
+                    break;
+            }
+        }
+
+        // Skip access_flags and this_class.
+        int superIndex = u2(at + 4);
+        superclassName = (superIndex == 0) ? null : className(superIndex);
+
+        int interfaceCount = u2(at + 6);
+        at += 8;
+        interfaceNames = new String[interfaceCount];
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaceNames[i] = className(u2(at));
+            at += 2;
+        }
+
+        at = scanMembers(at);
+        at = scanMembers(at);
+        scanAttributes(at);
+    }
+
+    /**
+     * Scans a list of fields or methods, adding their descriptors.
+     *
+     * @param at offset of the member count
+     * @return offset of the end of the list
+     */
+    private int scanMembers(int at) {
+        int count = u2(at);
+        at += 2;
+
+        for (int i = 0; i < count; i++) {
+            // Skip access_flags and name_index.
+            addDescriptor(string(u2(at + 4)));
+            at = scanAttributes(at + 6);
+        }
+
+        return at;
+    }
+
+    /**
+     * Scans a list of attributes, looking for runtime visible annotations.
+     *
+     * @param at offset of the attribute count
+     * @return offset of the end of the list
+     */
+    private int scanAttributes(int at) {
+        int count = u2(at);
+        at += 2;
+
+        for (int i = 0; i < count; i++) {
+            int length = u4(at + 2);
+            if (!hasRuntimeVisibleAnnotations && length >= 2
+                    && utf8Equals(u2(at), RUNTIME_VISIBLE_ANNOTATIONS)) {
+                hasRuntimeVisibleAnnotations = u2(at + 6) > 0;
+            }
+            at += 6 + length;
+        }
+
+        return at;
+    }
+
+    /**
+     * Adds the class named by a {@code Class} constant, if any. Array
+     * classes are named by their descriptor.
+     *
+     * @param name {@code non-null;} the name
+     */
+    private void addClassName(String name) {
+        if (name.charAt(0) == '[') {
+            addDescriptor(name);
+        } else {
+            referencedClasses.add(name);
+        }
+    }
+
+    /**
+     * Adds the classes appearing in a field or method descriptor.
+     *
+     * @param descriptor {@code non-null;} the descriptor
+     */
+    private void addDescriptor(String descriptor) {
+        int at = descriptor.indexOf('L');
+        while (at >= 0) {
+            int end = descriptor.indexOf(';', at);
+            referencedClasses.add(descriptor.substring(at + 1, end));
+            at = descriptor.indexOf('L', end);
+        }
+    }
+
+    /**
+     * Gets the binary name of a {@code Class} constant.
+     *
+     * @param index the constant pool index
+     * @return {@code non-null;} the name
+     */
+    private String className(int index) {
+        return string(u2(offsets[index] + 1));
+    }
+
+    /**
+     * Gets a utf8 constant, decoding it on first use.
+     *
+     * @param index the constant pool index
+     * @return {@code non-null;} the string
+     */
+    private String string(int index) {
+        String result = strings[index];
+        if (result != null) {
+            return result;
+        }
+
+        int at = offsets[index];
+        int length = u2(at + 1);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[at + 3 + i];
+            if (b <= 0) {
+                // Not plain ASCII, so leave it to the modified UTF-8 decoder.
+                chars = null;
+                break;
+            }
+            chars[i] = (char) b;
+        }
+
+        if (chars != null) {
+            result = new String(chars);
+        } else {
+            try {
+                result = new DataInputStream(
+                        new ByteArrayInputStream(bytes, at + 1, length + 2)).readUTF();
+            } catch (IOException ex) {
+                throw new ParseException("bad utf8 constant at index " + Hex.u2(index), ex);
+            }
+        }
+
+        strings[index] = result;
+        return result;
+    }
+
+    /**
+     * Tells whether a utf8 constant is the given ASCII string, without
+     * decoding it.
+     *
+     * @param index the constant pool index
+     * @param ascii {@code non-null;} the string, as bytes
+     * @return whether they are equal
+     */
+    private boolean utf8Equals(int index, byte[] ascii) {
+        int at = offsets[index];
+        if (u2(at + 1) != ascii.length) {
+            return false;
+        }
+
+        at += 3;
+        for (int i = 0; i < ascii.length; i++) {
+            if (bytes[at + i] != ascii[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads an unsigned short.
+     *
+     * @param at offset to read at
+     * @return the value
+     */
+    private int u2(int at) {
+        return ((bytes[at] & 0xff) << 8) | (bytes[at + 1] & 0xff);
+    }
+
+    /**
+     * Reads an int.
+     *
+     * @param at offset to read at
+     * @return the value
+     */
+    private int u4(int at) {
+        return (u2(at) << 16) | u2(at + 2);
+    }
+
+    /**
+     * Gets the bytes of an ASCII string.
+     *
+     * @param s {@code non-null;} the string
+     * @return {@code non-null;} its bytes
+     */
+    private static byte[] asciiBytes(String s) {
+        byte[] result = new byte[s.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) s.charAt(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.multidex;
+
+/**
+ * What the main dex list computation needs to know about a class: its
+ * superclass and interfaces, the classes it refers to, and whether it
+ * carries runtime visible annotations. Instances are made by {@link
+ * ClassReferenceScanner} or read back from an {@link ArchiveIndex}.
+ */
+final class ClassReferences {
+    /** {@code null-ok;} binary name of the superclass, if any */
+    private final String superclassName;
+
+    /** {@code non-null;} binary names of the interfaces */
+    private final String[] interfaceNames;
+
+    /** {@code non-null;} binary names of the classes referred to */
+    private final String[] referencedClasses;
+
+    /**
+     * whether the class, or one of its fields or methods, has runtime
+     * visible annotations
+     */
+    private final boolean hasRuntimeVisibleAnnotations;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param superclassName {@code null-ok;} binary name of the superclass
+     * @param interfaceNames {@code non-null;} binary names of the interfaces
+     * @param referencedClasses {@code non-null;} binary names of the
+     * classes referred to, without duplicates
+     * @param hasRuntimeVisibleAnnotations whether the class has runtime
+     * visible annotations
+     */
+    public ClassReferences(String superclassName, String[] interfaceNames,
+            String[] referencedClasses, boolean hasRuntimeVisibleAnnotations) {
+        this.superclassName = superclassName;
+        this.interfaceNames = interfaceNames;
+        this.referencedClasses = referencedClasses;
+        this.hasRuntimeVisibleAnnotations = hasRuntimeVisibleAnnotations;
+    }
+
+    /**
+     * Gets the superclass.
+     *
+     * @return {@code null-ok;} binary name of the superclass, if any
+     */
+    public String getSuperclassName() {
+        return superclassName;
+    }
+
+    /**
+     * Gets the interfaces.
+     *
+     * @return {@code non-null;} binary names of the interfaces
+     */
+    public String[] getInterfaceNames() {
+        return interfaceNames;
+    }
+
+    /**
+     * Gets the classes referred to.
+     *
+     * @return {@code non-null;} binary names of the classes, without
+     * duplicates
+     */
+    public String[] getReferencedClasses() {
+        return referencedClasses;
+    }
+
+    /**
+     * Gets whether the class, or one of its fields or methods, has a
+     * non-empty {@code RuntimeVisibleAnnotations} attribute.
+     *
+     * @return whether the class has runtime visible annotations
+     */
+    public boolean hasRuntimeVisibleAnnotations() {
+        return hasRuntimeVisibleAnnotations;
+    }
+}
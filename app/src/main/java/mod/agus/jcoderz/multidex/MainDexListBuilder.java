@@ -16,16 +16,16 @@
 
 package mod.agus.jcoderz.multidex;
 
-import mod.agus.jcoderz.dx.cf.attrib.AttRuntimeVisibleAnnotations;
-import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
-import mod.agus.jcoderz.dx.cf.iface.Attribute;
-import mod.agus.jcoderz.dx.cf.iface.FieldList;
-import mod.agus.jcoderz.dx.cf.iface.HasAttribute;
-import mod.agus.jcoderz.dx.cf.iface.MethodList;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.ZipFile;
 
 /**
@@ -65,15 +65,24 @@ public class MainDexListBuilder {
     private static final String DISABLE_ANNOTATION_RESOLUTION_WORKAROUND =
             "--disable-annotation-resolution-workaround";
 
+    /**
+     * Keeps an index of the classes of each archive of the classpath in the given directory,
+     * so that later runs over unchanged archives do not scan their classes again.
+     */
+    private static final String INDEX_CACHE_OPTION = "--index-cache=";
+
     private Set<String> filesToKeep = new HashSet<String>();
 
     public static void main(String[] args) {
 
         int argIndex = 0;
         boolean keepAnnotated = true;
+        File indexDirectory = null;
         while (argIndex < args.length -2) {
             if (args[argIndex].equals(DISABLE_ANNOTATION_RESOLUTION_WORKAROUND)) {
                 keepAnnotated = false;
+            } else if (args[argIndex].startsWith(INDEX_CACHE_OPTION)) {
+                indexDirectory = new File(args[argIndex].substring(INDEX_CACHE_OPTION.length()));
             } else {
                 System.err.println("Invalid option " + args[argIndex]);
                 printUsage();
@@ -88,7 +97,7 @@ public class MainDexListBuilder {
 
         try {
             MainDexListBuilder builder = new MainDexListBuilder(keepAnnotated, args[argIndex],
-                    args[argIndex + 1]);
+                    args[argIndex + 1], indexDirectory);
             Set<String> toKeep = builder.getMainDexList();
             printList(toKeep);
         } catch (IOException e) {
@@ -100,6 +109,15 @@ public class MainDexListBuilder {
 
     public MainDexListBuilder(boolean keepAnnotated, String rootJar, String pathString)
             throws IOException {
+        this(keepAnnotated, rootJar, pathString, null);
+    }
+
+    /**
+     * @param indexDirectory directory in which to keep an index of the classes of each archive
+     * of the classpath, or {@code null} to scan them all on each run.
+     */
+    public MainDexListBuilder(boolean keepAnnotated, String rootJar, String pathString,
+            File indexDirectory) throws IOException {
         ZipFile jarOfRoots = null;
         Path path = null;
         try {
@@ -109,7 +127,7 @@ public class MainDexListBuilder {
                 throw new IOException("\"" + rootJar + "\" can not be read as a zip archive. ("
                         + e.getMessage() + ")", e);
             }
-            path = new Path(pathString);
+            path = new Path(pathString, indexDirectory);
 
             ClassReferenceListBuilder mainListBuilder = new ClassReferenceListBuilder(path);
             mainListBuilder.addRoots(jarOfRoots);
@@ -157,38 +175,30 @@ public class MainDexListBuilder {
     /**
      * Keep classes annotated with runtime annotations.
      */
-    private void keepAnnotated(Path path) throws FileNotFoundException {
-        for (ClassPathElement element : path.getElements()) {
-            forClazz:
-                for (String name : element.list()) {
+    private void keepAnnotated(final Path path) throws IOException {
+        ExecutorService executor = ClassReferenceListBuilder.newExecutor();
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (ClassPathElement element : path.getElements()) {
+                for (final String name : element.list()) {
                     if (name.endsWith(CLASS_EXTENSION)) {
-                        DirectClassFile clazz = path.getClass(name);
-                        if (hasRuntimeVisibleAnnotation(clazz)) {
-                            filesToKeep.add(name);
-                        } else {
-                            MethodList methods = clazz.getMethods();
-                            for (int i = 0; i<methods.size(); i++) {
-                                if (hasRuntimeVisibleAnnotation(methods.get(i))) {
-                                    filesToKeep.add(name);
-                                    continue forClazz;
-                                }
+                        futures.add(executor.submit(new Callable<String>() {
+                            @Override
+                            public String call() throws FileNotFoundException {
+                                ClassReferences references = path.scanClass(name);
+                                return references.hasRuntimeVisibleAnnotations() ? name : null;
                             }
-                            FieldList fields = clazz.getFields();
-                            for (int i = 0; i<fields.size(); i++) {
-                                if (hasRuntimeVisibleAnnotation(fields.get(i))) {
-                                    filesToKeep.add(name);
-                                    continue forClazz;
-                                }
-                            }
-                        }
+                        }));
                     }
                 }
+            }
+            for (String name : ClassReferenceListBuilder.getResults(futures)) {
+                if (name != null) {
+                    filesToKeep.add(name);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
         }
     }
-
-    private boolean hasRuntimeVisibleAnnotation(HasAttribute element) {
-        Attribute att = element.getAttributes().findFirst(
-                AttRuntimeVisibleAnnotations.ATTRIBUTE_NAME);
-        return (att != null && ((AttRuntimeVisibleAnnotations)att).getAnnotations().size()>0);
-    }
 }
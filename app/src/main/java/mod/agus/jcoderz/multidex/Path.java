@@ -16,8 +16,7 @@
 
 package mod.agus.jcoderz.multidex;
 
-import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
-import mod.agus.jcoderz.dx.cf.direct.StdAttributeFactory;
+import mod.agus.jcoderz.dx.cf.iface.ParseException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -48,20 +47,45 @@ class Path {
 
     List<ClassPathElement> elements = new ArrayList<ClassPathElement>();
     private final String definition;
-    private final ByteArrayOutputStream baos = new ByteArrayOutputStream(40 * 1024);
-    private final byte[] readBuffer = new byte[20 * 1024];
+
+    /**
+     * Index of each element, or {@code null} for elements without one. Only archives are
+     * indexed.
+     */
+    private final List<ArchiveIndex> indexes = new ArrayList<ArchiveIndex>();
 
     Path(String definition) throws IOException {
+        this(definition, null);
+    }
+
+    /**
+     * @param indexDirectory directory in which to keep an {@link ArchiveIndex} of each archive
+     * of the path, or {@code null} to scan the classes of every archive on each run.
+     */
+    Path(String definition, File indexDirectory) throws IOException {
         this.definition = definition;
         for (String filePath : definition.split(Pattern.quote(File.pathSeparator))) {
+            File file = new File(filePath);
+            ClassPathElement element;
             try {
-                addElement(getClassPathElement(new File(filePath)));
+                element = getClassPathElement(file);
             } catch (IOException e) {
                 throw new IOException("Wrong classpath: " + e.getMessage(), e);
             }
+            addElement(element);
+            indexes.add((indexDirectory != null && element instanceof ArchivePathElement)
+                    ? ArchiveIndex.open(indexDirectory, file, element) : null);
         }
     }
 
+    /**
+     * Reads a file of a class path element.
+     */
+    static byte[] readClass(ClassPathElement element, String path) throws IOException {
+        return readStream(element.open(path), new ByteArrayOutputStream(8 * 1024),
+                new byte[8 * 1024]);
+    }
+
     private static byte[] readStream(InputStream in, ByteArrayOutputStream baos, byte[] readBuffer)
             throws IOException {
         try {
@@ -93,27 +117,35 @@ class Path {
         elements.add(element);
     }
 
-    synchronized DirectClassFile getClass(String path) throws FileNotFoundException {
-        DirectClassFile classFile = null;
-        for (ClassPathElement element : elements) {
+    /**
+     * Scans the first class file found at the given path. This may be called by several
+     * threads at once.
+     */
+    ClassReferences scanClass(String path) throws FileNotFoundException {
+        for (int i = 0; i < elements.size(); i++) {
+            ArchiveIndex index = indexes.get(i);
+            if (index != null && !index.isUnreadable(path)) {
+                ClassReferences references = index.get(path);
+                if (references != null) {
+                    return references;
+                }
+                continue;
+            }
+
             try {
-                InputStream in = element.open(path);
+                byte[] bytes = readClass(elements.get(i), path);
                 try {
-                    byte[] bytes = readStream(in, baos, readBuffer);
-                    baos.reset();
-                    classFile = new DirectClassFile(bytes, path, false);
-                    classFile.setAttributeFactory(StdAttributeFactory.THE_ONE);
-                    break;
-                } finally {
-                    in.close();
+                    return ClassReferenceScanner.scan(bytes);
+                } catch (RuntimeException e) {
+                    ParseException pe = (e instanceof ParseException)
+                            ? (ParseException) e : new ParseException(e);
+                    pe.addContext("...while parsing " + path);
+                    throw pe;
                 }
             } catch (IOException e) {
                 // search next element
             }
         }
-        if (classFile == null) {
-            throw new FileNotFoundException("File \"" + path + "\" not found");
-        }
-        return classFile;
+        throw new FileNotFoundException("File \"" + path + "\" not found");
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import mod.agus.jcoderz.dx.TestDexes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests reading a {@link Dex} from a dex file and from the stored or
+ * deflated {@code classes.dex} of an archive.
+ */
+public final class DexTest {
+    private static final String SOURCE = ""
+            + "class Hello {\n"
+            + "  public static void main(String[] args) {\n"
+            + "    System.out.println(\"hello \" + args.length);\n"
+            + "  }\n"
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void readsDexFile() throws IOException {
+        byte[] bytes = TestDexes.dex(SOURCE).getBytes();
+        File file = temp.newFile("classes.dex");
+        Files.write(file.toPath(), bytes);
+
+        check(bytes, new Dex(file));
+    }
+
+    @Test
+    public void readsStoredClassesDex() throws IOException {
+        byte[] bytes = TestDexes.dex(SOURCE).getBytes();
+        check(bytes, new Dex(writeArchive(bytes, ZipEntry.STORED)));
+    }
+
+    @Test
+    public void readsDeflatedClassesDex() throws IOException {
+        byte[] bytes = TestDexes.dex(SOURCE).getBytes();
+        check(bytes, new Dex(writeArchive(bytes, ZipEntry.DEFLATED)));
+    }
+
+    @Test
+    public void rejectsArchiveWithoutClassesDex() throws IOException {
+        File file = temp.newFile("empty.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("other.dex"));
+            out.closeEntry();
+        }
+        try {
+            new Dex(file);
+            fail();
+        } catch (DexException expected) {
+        }
+    }
+
+    private static void check(byte[] expected, Dex dex) throws IOException {
+        assertArrayEquals(expected, dex.getBytes());
+        assertEquals(expected.length, dex.getLength());
+        assertEquals(dex.getTableOfContents().checksum, dex.computeChecksum());
+        assertEquals("LHello;", dex.typeNames().get(dex.classDefs().iterator().next()
+                .getTypeIndex()));
+    }
+
+    /**
+     * Writes an archive with {@code classes.dex} after another entry, so
+     * that it does not start the archive.
+     */
+    private File writeArchive(byte[] dex, int method) throws IOException {
+        File file = temp.newFile("classes.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            out.write("Manifest-Version: 1.0\r\n".getBytes("UTF-8"));
+            out.closeEntry();
+
+            ZipEntry entry = new ZipEntry("classes.dex");
+            entry.setMethod(method);
+            if (method == ZipEntry.STORED) {
+                CRC32 crc = new CRC32();
+                crc.update(dex);
+                entry.setSize(dex.length);
+                entry.setCrc(crc.getValue());
+            }
+            out.putNextEntry(entry);
+            out.write(dex);
+            out.closeEntry();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dex.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Adler32;
+import org.junit.Test;
+
+/**
+ * Tests that a {@link DexHasher} fed a file in pieces computes the same
+ * checksum and signature as hashing the whole file.
+ */
+public final class DexHasherTest {
+    /** modulus of Adler-32 */
+    private static final int ADLER_BASE = 65521;
+
+    @Test
+    public void matchesWholeFileHashes() throws Exception {
+        Random random = new Random(1);
+        int[] sizes = {
+            32, 33, 100, 4096,
+            // Signed ranges of exactly, and just around, the Adler-32 modulus.
+            32 + ADLER_BASE, 32 + ADLER_BASE - 1, 32 + ADLER_BASE + 1,
+            32 + 3 * ADLER_BASE, 1 << 20,
+        };
+        for (int size : sizes) {
+            byte[] file = new byte[size];
+            random.nextBytes(file);
+            check(file, random);
+
+            // Long runs of 0xff push both Adler-32 sums to their limits.
+            Arrays.fill(file, (byte) 0xff);
+            check(file, random);
+        }
+    }
+
+    @Test
+    public void rejectsGaps() {
+        DexHasher hasher = new DexHasher();
+        hasher.update(new byte[16], 0, 16, 0);
+        try {
+            hasher.update(new byte[16], 0, 16, 20);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedFile() {
+        DexHasher hasher = new DexHasher();
+        hasher.update(new byte[31], 0, 31, 0);
+        try {
+            hasher.finish();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    /**
+     * Hashes a file in random pieces, some taken from the middle of larger
+     * arrays, and checks the result against hashing it whole.
+     */
+    private static void check(byte[] file, Random random) throws Exception {
+        DexHasher hasher = new DexHasher();
+        int at = 0;
+        while (at < file.length) {
+            int length = Math.min(file.length - at, random.nextInt(40000));
+            int pad = random.nextInt(8);
+            byte[] piece = new byte[pad + length + pad];
+            System.arraycopy(file, at, piece, pad, length);
+            hasher.update(piece, pad, length, at);
+            at += length;
+        }
+
+        byte[] expected = new byte[24];
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update(file, 32, file.length - 32);
+        System.arraycopy(digest.digest(), 0, expected, 4, 20);
+        Adler32 adler32 = new Adler32();
+        adler32.update(expected, 4, 20);
+        adler32.update(file, 32, file.length - 32);
+        int sum = (int) adler32.getValue();
+        expected[0] = (byte) sum;
+        expected[1] = (byte) (sum >> 8);
+        expected[2] = (byte) (sum >> 16);
+        expected[3] = (byte) (sum >> 24);
+
+        assertArrayEquals("size " + file.length, expected, hasher.finish());
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dex.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a {@link MappedArchive} reads archives as {@link ZipFile}
+ * does, and rejects those it cannot read exactly.
+ */
+public final class MappedArchiveTest {
+    /** offset of the general purpose flags in a central directory header */
+    private static final int CENTRAL_FLAGS = 8;
+
+    /** offset of the uncompressed size in a central directory header */
+    private static final int CENTRAL_SIZE = 24;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void readsEntriesAsZipFile() throws IOException {
+        File file = writeArchive(null);
+        checkAgainstZipFile(file);
+    }
+
+    @Test
+    public void skipsArchiveComment() throws IOException {
+        // A comment may itself look like the end of central directory record.
+        File file = writeArchive("PK\u0005\u0006 not the end of the directory");
+        checkAgainstZipFile(file);
+    }
+
+    @Test
+    public void slicesStoredEntryInPlace() throws IOException {
+        File file = writeArchive(null);
+        MappedArchive archive = MappedArchive.open(file);
+        MappedArchive.Entry entry = archive.getEntry("stored.bin");
+        assertTrue(entry.isStored());
+
+        ByteBuffer slice = archive.slice(entry);
+        assertEquals(0, slice.position());
+        assertEquals(entry.getSize(), slice.remaining());
+        assertTrue(slice.isReadOnly());
+        byte[] contents = new byte[slice.remaining()];
+        slice.get(contents);
+        assertArrayEquals(archive.read(entry), contents);
+
+        try {
+            archive.slice(archive.getEntry("deflated.bin"));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        archive.close();
+    }
+
+    @Test
+    public void rejectsDeflatedEntryLongerThanItsSize() throws IOException {
+        File file = writeArchive(null);
+        patchCentral(file, "deflated.bin", CENTRAL_SIZE, 1000);
+        checkBadSize(file, "deflated.bin");
+    }
+
+    @Test
+    public void rejectsDeflatedEntryShorterThanItsSize() throws IOException {
+        File file = writeArchive(null);
+        patchCentral(file, "deflated.bin", CENTRAL_SIZE, 5000);
+        checkBadSize(file, "deflated.bin");
+    }
+
+    @Test
+    public void rejectsStoredEntryOfWrongSize() throws IOException {
+        File file = writeArchive(null);
+        patchCentral(file, "stored.bin", CENTRAL_SIZE, 100);
+        checkBadSize(file, "stored.bin");
+    }
+
+    @Test
+    public void doesNotOpenEncryptedArchive() throws IOException {
+        File file = writeArchive(null);
+        patchCentral(file, "stored.bin", CENTRAL_FLAGS, 1);
+        assertNull(MappedArchive.open(file));
+    }
+
+    @Test
+    public void doesNotOpenOtherFiles() throws IOException {
+        File file = temp.newFile("not.zip");
+        Files.write(file.toPath(), new byte[100]);
+        assertNull(MappedArchive.open(file));
+    }
+
+    /**
+     * Writes an archive holding a directory, and stored and deflated
+     * entries with and without extended timestamps.
+     */
+    private File writeArchive(String comment) throws IOException {
+        Random random = new Random(1);
+        byte[] stored = new byte[300];
+        random.nextBytes(stored);
+        // Compressible, so that the deflated data is shorter than the entry.
+        byte[] deflated = new byte[2000];
+        for (int i = 0; i < deflated.length; i++) {
+            deflated[i] = (byte) (i % 7);
+        }
+
+        File file = temp.newFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            ZipEntry dir = new ZipEntry("dir/");
+            dir.setTime(946684800000L);
+            out.putNextEntry(dir);
+            out.closeEntry();
+
+            ZipEntry entry = new ZipEntry("stored.bin");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            CRC32 crc = new CRC32();
+            crc.update(stored);
+            entry.setCrc(crc.getValue());
+            // Not representable in MS-DOS time, so written as an extra field.
+            entry.setLastModifiedTime(FileTime.fromMillis(123456789000L));
+            out.putNextEntry(entry);
+            out.write(stored);
+            out.closeEntry();
+
+            entry = new ZipEntry("deflated.bin");
+            entry.setTime(1262349296000L);
+            out.putNextEntry(entry);
+            out.write(deflated);
+            out.closeEntry();
+
+            entry = new ZipEntry("dir/empty.bin");
+            entry.setLastModifiedTime(FileTime.fromMillis(4102444800000L));
+            out.putNextEntry(entry);
+            out.closeEntry();
+
+            if (comment != null) {
+                out.setComment(comment);
+            }
+        }
+        return file;
+    }
+
+    private static void checkAgainstZipFile(File file) throws IOException {
+        MappedArchive archive = MappedArchive.open(file);
+        try (ZipFile zip = new ZipFile(file)) {
+            List<MappedArchive.Entry> entries = archive.getEntries();
+            int i = 0;
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); i++) {
+                ZipEntry expected = e.nextElement();
+                MappedArchive.Entry entry = entries.get(i);
+                assertEquals(expected.getName(), entry.getName());
+                assertEquals(expected.getName(), expected.getTime(), entry.getTime());
+                assertEquals(expected.getSize(), entry.getSize());
+                assertEquals(expected.isDirectory(), entry.isDirectory());
+                assertEquals(expected.getMethod() == ZipEntry.STORED, entry.isStored());
+                assertArrayEquals(zip.getInputStream(expected).readAllBytes(),
+                        archive.read(entry));
+            }
+            assertEquals(i, entries.size());
+        }
+        archive.close();
+    }
+
+    private static void checkBadSize(File file, String name) throws IOException {
+        MappedArchive archive = MappedArchive.open(file);
+        try {
+            archive.read(archive.getEntry(name));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(name));
+        }
+
+        // Other entries are still read.
+        assertEquals(0, archive.read(archive.getEntry("dir/empty.bin")).length);
+        archive.close();
+    }
+
+    /**
+     * Overwrites a 32-bit field of the central directory header of an
+     * entry.
+     */
+    private static void patchCentral(File file, String name, int field, int value)
+            throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int at = bytes.length - 46; at >= 0; at--) {
+            if (buffer.getInt(at) != 0x02014b50) {
+                continue;
+            }
+            int nameLength = buffer.getShort(at + 28) & 0xffff;
+            if (new String(bytes, at + 46, nameLength, "UTF-8").equals(name)) {
+                if (field == CENTRAL_FLAGS) {
+                    buffer.putShort(at + field, (short) value);
+                } else {
+                    buffer.putInt(at + field, value);
+                }
+                Files.write(file.toPath(), bytes);
+                return;
+            }
+        }
+        throw new AssertionError("no entry " + name);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import mod.agus.jcoderz.dex.Dex;
+import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
+import mod.agus.jcoderz.dx.cf.direct.StdAttributeFactory;
+import mod.agus.jcoderz.dx.cf.iface.ParseException;
+import mod.agus.jcoderz.dx.command.dexer.DxContext;
+import mod.agus.jcoderz.dx.dex.DexOptions;
+import mod.agus.jcoderz.dx.dex.cf.CfOptions;
+import mod.agus.jcoderz.dx.dex.cf.CfTranslator;
+import mod.agus.jcoderz.dx.dex.file.DexFile;
+
+/**
+ * Compiles Java sources to class files dx can read, and dexes them, so
+ * that tests can work on real methods without checked-in binaries.
+ */
+public final class TestDexes {
+    /** pattern finding the name of the first type of a compilation unit */
+    private static final Pattern TYPE_NAME =
+            Pattern.compile("\\b(?:class|interface|enum)\\s+(\\w+)");
+
+    private TestDexes() {
+    }
+
+    /**
+     * Compiles compilation units in the unnamed package, for Java 8.
+     *
+     * @param sources {@code non-null;} the compilation units, each named
+     * after the first type it declares
+     * @return {@code non-null;} the class files, by path and sorted by it
+     */
+    public static Map<String, byte[]> compile(String... sources) throws IOException {
+        File directory = Files.createTempDirectory("classes").toFile();
+        try {
+            List<String> args = new ArrayList<String>();
+            args.add("--release");
+            args.add("8");
+            args.add("-g");
+            args.add("-d");
+            args.add(directory.getPath());
+            for (String source : sources) {
+                Matcher matcher = TYPE_NAME.matcher(source);
+                if (!matcher.find()) {
+                    throw new IllegalArgumentException("no type in " + source);
+                }
+                File file = new File(directory, matcher.group(1) + ".java");
+                Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+                args.add(file.getPath());
+            }
+
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler.run(null, null, null, args.toArray(new String[0])) != 0) {
+                throw new IllegalArgumentException("sources do not compile");
+            }
+
+            Map<String, byte[]> classes = new TreeMap<String, byte[]>();
+            for (File file : directory.listFiles()) {
+                if (file.getName().endsWith(".class")) {
+                    classes.put(file.getName(), Files.readAllBytes(file.toPath()));
+                }
+            }
+            return classes;
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Reads and parses the class files of jars, skipping those dx cannot
+     * parse, such as class files newer than it supports.
+     *
+     * @param jars {@code non-null;} paths of the jars
+     * @return {@code non-null;} the parsed class files
+     */
+    public static List<DirectClassFile> parseJars(String... jars) throws IOException {
+        List<DirectClassFile> classes = new ArrayList<DirectClassFile>();
+        for (String jar : jars) {
+            try (ZipFile zip = new ZipFile(jar)) {
+                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                    ZipEntry entry = e.nextElement();
+                    if (!entry.getName().endsWith(".class")) {
+                        continue;
+                    }
+                    byte[] bytes = zip.getInputStream(entry).readAllBytes();
+                    try {
+                        classes.add(parse(entry.getName(), bytes));
+                    } catch (ParseException ex) {
+                        // dx would reject this class too.
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Parses a class file.
+     *
+     * @param path {@code non-null;} the path of the class file
+     * @param bytes {@code non-null;} its contents
+     * @return {@code non-null;} the parsed class file
+     */
+    public static DirectClassFile parse(String path, byte[] bytes) {
+        DirectClassFile cf = new DirectClassFile(bytes, path, true);
+        cf.setAttributeFactory(StdAttributeFactory.THE_ONE);
+        cf.getMagic();
+        return cf;
+    }
+
+    /**
+     * Compiles and dexes compilation units with default, optimizing options.
+     *
+     * @param sources {@code non-null;} the compilation units
+     * @return {@code non-null;} a dex file holding their classes
+     */
+    public static Dex dex(String... sources) throws IOException {
+        CfOptions cfOptions = new CfOptions();
+        cfOptions.optimize = true;
+        return new Dex(dexBytes(cfOptions, compile(sources)));
+    }
+
+    /**
+     * Dexes class files.
+     *
+     * @param cfOptions {@code non-null;} options for class translation
+     * @param classes {@code non-null;} the class files, by path
+     * @return {@code non-null;} the bytes of a dex file holding them
+     */
+    public static byte[] dexBytes(CfOptions cfOptions, Map<String, byte[]> classes)
+            throws IOException {
+        DxContext context = new DxContext();
+        DexOptions dexOptions = new DexOptions();
+        dexOptions.minSdkVersion = 26;
+        DexFile dexFile = new DexFile(dexOptions);
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            DirectClassFile cf = parse(entry.getKey(), entry.getValue());
+            dexFile.add(CfTranslator.translate(context, cf, entry.getValue(), cfOptions,
+                    dexOptions, dexFile));
+        }
+        return dexFile.toDex(null, false);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.cf.code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import mod.agus.jcoderz.dx.TestDexes;
+import mod.agus.jcoderz.dx.dex.cf.CfOptions;
+import mod.agus.jcoderz.dx.rop.type.Type;
+import mod.agus.jcoderz.dx.util.Hex;
+import org.junit.Test;
+
+/**
+ * Tests that locals arrays sharing storage after a copy never see each
+ * other's changes, and that dx output for subroutines is unchanged.
+ */
+public final class LocalsArrayTest {
+    /**
+     * SHA-1 signature of the dex file of {@link #jsrClass}, as produced
+     * before locals arrays were shared between copies
+     */
+    private static final String JSR_DEX_SIGNATURE =
+            "8708c53de2287b5e207c07793d29ba6a29f448d2";
+
+    @Test
+    public void copyOfImmutableArrayIsIndependent() {
+        OneLocalsArray original = new OneLocalsArray(3);
+        original.set(0, Type.INT);
+        original.set(1, Type.STRING);
+        original.setImmutable();
+
+        OneLocalsArray copy = original.copy();
+        copy.set(1, Type.INT);
+        copy.set(2, Type.OBJECT);
+
+        assertSame(Type.STRING, original.get(1));
+        assertNull(original.getOrNull(2));
+        assertSame(Type.INT, copy.get(0));
+        assertSame(Type.INT, copy.get(1));
+
+        // A second copy of the original starts from it, not the first copy.
+        OneLocalsArray other = original.copy();
+        other.invalidate(0);
+        assertSame(Type.STRING, other.get(1));
+        assertSame(Type.INT, original.get(0));
+        assertSame(Type.INT, copy.get(0));
+    }
+
+    @Test
+    public void copyOfMutableArrayIsIndependent() {
+        OneLocalsArray original = new OneLocalsArray(2);
+        original.set(0, Type.INT);
+
+        OneLocalsArray copy = original.copy();
+        original.set(0, Type.STRING);
+        copy.set(1, Type.OBJECT);
+
+        assertSame(Type.INT, copy.get(0));
+        assertSame(Type.STRING, original.get(0));
+        assertNull(original.getOrNull(1));
+    }
+
+    @Test
+    public void copyOfSetDoesNotChangeSecondaries() {
+        OneLocalsArray secondary = new OneLocalsArray(2);
+        secondary.set(0, Type.STRING);
+        ArrayList<LocalsArray> secondaries = new ArrayList<LocalsArray>(
+                Collections.<LocalsArray>nCopies(2, null));
+        secondaries.set(1, secondary);
+        LocalsArraySet original = new LocalsArraySet(new OneLocalsArray(2), secondaries);
+        original.setImmutable();
+
+        LocalsArraySet copy = (LocalsArraySet) original.copy();
+        copy.set(0, Type.INT);
+
+        assertSame(Type.STRING, original.subArrayForLabel(1).get(0));
+        assertSame(Type.INT, copy.subArrayForLabel(1).get(0));
+        assertNull(original.getOrNull(0));
+    }
+
+    @Test
+    public void subroutineOutputIsUnchanged() throws IOException {
+        CfOptions cfOptions = new CfOptions();
+        cfOptions.optimize = true;
+        byte[] dex = TestDexes.dexBytes(cfOptions,
+                Collections.singletonMap("J.class", jsrClass()));
+
+        StringBuilder signature = new StringBuilder();
+        for (int i = 12; i < 32; i++) {
+            signature.append(Hex.u1(dex[i]));
+        }
+        assertEquals(JSR_DEX_SIGNATURE, signature.toString());
+    }
+
+    /**
+     * Writes a Java 1.4 class whose methods call nested {@code jsr}
+     * subroutines from several places, with a local holding a string at
+     * some call sites and an int at others.
+     */
+    private static byte[] jsrClass() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xcafebabe);
+        out.writeShort(0);
+        out.writeShort(48);
+
+        String[] utf8 = {"J", "java/lang/Object", "Code", "(I)I", "s", "f0", "f1", "f2"};
+        out.writeShort(1 + utf8.length + 3);
+        for (String s : utf8) {
+            out.writeByte(1);
+            out.writeUTF(s);
+        }
+        out.writeByte(7); // #9: class J
+        out.writeShort(1);
+        out.writeByte(7); // #10: class java/lang/Object
+        out.writeShort(2);
+        out.writeByte(8); // #11: string "s"
+        out.writeShort(5);
+
+        out.writeShort(0x0001); // public
+        out.writeShort(9);
+        out.writeShort(10);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+
+        byte[] code = jsrCode(11);
+        out.writeShort(3);
+        for (int i = 0; i < 3; i++) {
+            out.writeShort(0x0009); // public static
+            out.writeShort(6 + i);
+            out.writeShort(4);
+            out.writeShort(1);
+            out.writeShort(3);
+            out.writeInt(12 + code.length);
+            out.writeShort(4); // max stack
+            out.writeShort(8); // max locals
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        }
+        out.writeShort(0); // class attributes
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Assembles the body of a method of {@link #jsrClass}.
+     *
+     * @param stringIndex constant pool index of a string
+     */
+    private static byte[] jsrCode(int stringIndex) {
+        // Code lengths of the parts of the method, used to find targets.
+        int head = 2;
+        int oddTest = 6 + 5 + 6;
+        int evenTest = 6 + 3 + 6;
+        int tests = 2 * oddTest + 2 * evenTest;
+        int sub = head + tests + 6;
+        int sub2 = sub + 1 + 3 + 3 + 2;
+        int end = sub2 + 2 + 3 + 2;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x03); // iconst_0
+        out.write(0x3c); // istore_1
+        for (int i = 0; i < 4; i++) {
+            int at = out.size();
+            int next = at + ((i & 1) == 0 ? evenTest : oddTest);
+            out.write(0x1a); // iload_0
+            out.write(0x10); // bipush i
+            out.write(i);
+            branch(out, 0xa0, next); // if_icmpne next
+            if ((i & 1) == 0) {
+                out.write(0x12); // ldc "s"
+                out.write(stringIndex);
+                out.write(0x4d); // astore_2
+            } else {
+                out.write(0x0a); // lconst_1
+                out.write(0x37); // lstore 4
+                out.write(4);
+                out.write(0x04); // iconst_1
+                out.write(0x3d); // istore_2
+            }
+            branch(out, 0xa8, sub); // jsr sub
+            branch(out, 0xa7, end); // goto end
+        }
+        branch(out, 0xa8, sub2); // jsr sub2
+        branch(out, 0xa7, end); // goto end
+
+        out.write(0x4e); // sub: astore_3
+        out.write(0x84); // iinc 1, 1
+        out.write(1);
+        out.write(1);
+        branch(out, 0xa8, sub2); // jsr sub2
+        out.write(0xa9); // ret 3
+        out.write(3);
+
+        out.write(0x3a); // sub2: astore 6
+        out.write(6);
+        out.write(0x84); // iinc 1, 2
+        out.write(1);
+        out.write(2);
+        out.write(0xa9); // ret 6
+        out.write(6);
+
+        out.write(0x1b); // end: iload_1
+        out.write(0xac); // ireturn
+        if (out.size() != end + 2) {
+            throw new AssertionError("misassembled: " + out.size());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a branch instruction with a 16-bit offset.
+     *
+     * @param out {@code non-null;} code written so far
+     * @param opcode the opcode
+     * @param target offset of the target in the code
+     */
+    private static void branch(ByteArrayOutputStream out, int opcode, int target) {
+        int offset = target - out.size();
+        out.write(opcode);
+        out.write(offset >> 8);
+        out.write(offset);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.cf.code;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import mod.agus.jcoderz.dx.TestDexes;
+import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
+import mod.agus.jcoderz.dx.cf.iface.Method;
+import mod.agus.jcoderz.dx.cf.iface.MethodList;
+import mod.agus.jcoderz.dx.dex.DexOptions;
+import mod.agus.jcoderz.dx.rop.code.DexTranslationAdvice;
+
+/**
+ * Measures the conversion of methods to rop form, that is the bytecode
+ * simulation done by {@link Ropper}, over the methods of real jars on one
+ * thread. The classes are parsed once; each round then converts all of
+ * their methods, reporting the time taken and the bytes allocated. This
+ * is not run as a test; run it with the jars as arguments:
+ *
+ * <pre>
+ * java -cp &lt;classes and test classes&gt; mod.agus.jcoderz.dx.cf.code.RopperBenchmark \
+ *     [--rounds=N] a.jar b.jar ...
+ * </pre>
+ *
+ * <p>The first half of the rounds warms up the JIT and is not reported.</p>
+ */
+public final class RopperBenchmark {
+    private RopperBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = 10;
+        List<String> jars = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--rounds=")) {
+                rounds = Integer.parseInt(arg.substring("--rounds=".length()));
+            } else {
+                jars.add(arg);
+            }
+        }
+
+        List<DirectClassFile> classes = TestDexes.parseJars(jars.toArray(new String[0]));
+        DexOptions dexOptions = new DexOptions();
+        dexOptions.minSdkVersion = 26;
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int round = 0; round < rounds; round++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            int count = 0;
+            for (DirectClassFile cf : classes) {
+                MethodList methods = cf.getMethods();
+                for (int i = 0; i < methods.size(); i++) {
+                    Method method = methods.get(i);
+                    if (method.getAttributes().findFirst("Code") == null) {
+                        continue;
+                    }
+                    ConcreteMethod concrete = new ConcreteMethod(method, cf, true, true);
+                    Ropper.convert(concrete, DexTranslationAdvice.THE_ONE, methods, dexOptions);
+                    count++;
+                }
+            }
+            long time = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            if (round >= rounds / 2) {
+                System.out.printf("%d methods in %d ms, %d MB allocated%n",
+                        count, time / 1000000, allocated / (1024 * 1024));
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.cf.code;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import mod.agus.jcoderz.dx.TestDexes;
+import mod.agus.jcoderz.dx.dex.cf.CfOptions;
+import mod.agus.jcoderz.dx.util.IntList;
+import org.junit.Test;
+
+/**
+ * Tests that a {@link ScratchArena} hands out the same arrays again,
+ * cleared, and that reusing them does not change dx output.
+ */
+public final class ScratchArenaTest {
+    private static final String LARGE = ""
+            + "class Large {\n"
+            + "  static int run(int[] a, int n) {\n"
+            + "    int r = 0;\n"
+            + "    for (int i = 0; i < n; i++) {\n"
+            + "      try {\n"
+            + "        switch (a[i] & 7) {\n"
+            + "          case 0: r += a[i]; break;\n"
+            + "          case 1: r -= a[i]; break;\n"
+            + "          case 2: r *= a[i]; break;\n"
+            + "          case 3: r /= a[i]; break;\n"
+            + "          case 4: r ^= a[i]; break;\n"
+            + "          default: r = ~r;\n"
+            + "        }\n"
+            + "      } catch (ArithmeticException e) {\n"
+            + "        r = -1;\n"
+            + "      } finally {\n"
+            + "        r++;\n"
+            + "      }\n"
+            + "    }\n"
+            + "    return r;\n"
+            + "  }\n"
+            + "}\n";
+    private static final String SMALL = ""
+            + "class Small {\n"
+            + "  static int run(int a) { return a < 0 ? -a : a; }\n"
+            + "}\n";
+
+    @Test
+    public void reusesClearedBitSets() {
+        ScratchArena arena = ScratchArena.get();
+        int[] bits = arena.getBitSet(ScratchArena.WORK_SET, 100);
+        bits[0] = -1;
+        bits[bits.length - 1] = -1;
+
+        int[] again = arena.getBitSet(ScratchArena.WORK_SET, 10);
+        assertSame(bits, again);
+        assertArrayEquals(new int[bits.length], again);
+        assertNotSame(bits, arena.getBitSet(ScratchArena.LIVE_SET, 10));
+    }
+
+    @Test
+    public void releasedArraysHoldNoReferences() {
+        ScratchArena arena = ScratchArena.get();
+        IntList[] targets = arena.getTargetLists(8);
+        ByteBlock[] blocks = arena.getByteBlocks(4);
+        Frame[] frames = arena.getStartFrames(6);
+        targets[7] = new IntList();
+        blocks[3] = new ByteBlock(0, 0, 1, new IntList(), ByteCatchList.EMPTY);
+        frames[5] = new Frame(1, 1);
+
+        arena.releaseBlockArrays();
+        arena.releaseStartFrames();
+        assertNull(targets[7]);
+        assertNull(blocks[3]);
+        assertNull(frames[5]);
+        assertSame(targets, arena.getTargetLists(8));
+        assertSame(frames, arena.getStartFrames(6));
+    }
+
+    @Test
+    public void eachThreadHasItsOwnArena() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ScratchArena other = executor.submit(new Callable<ScratchArena>() {
+                @Override
+                public ScratchArena call() {
+                    return ScratchArena.get();
+                }
+            }).get();
+            assertNotSame(ScratchArena.get(), other);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void reusedArenaGivesSameOutput() throws Exception {
+        final Map<String, byte[]> large = TestDexes.compile(LARGE);
+        final Map<String, byte[]> small = TestDexes.compile(SMALL);
+        final CfOptions cfOptions = new CfOptions();
+        cfOptions.optimize = true;
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // A fresh thread has a fresh arena.
+            byte[] expected = executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return TestDexes.dexBytes(cfOptions, small);
+                }
+            }).get();
+
+            // The arena is now left with larger arrays than the small class
+            // needs.
+            TestDexes.dexBytes(cfOptions, large);
+            int[] bits = ScratchArena.get().getBitSet(ScratchArena.WORK_SET, 0);
+            assertArrayEquals(expected, TestDexes.dexBytes(cfOptions, small));
+            assertSame(bits, ScratchArena.get().getBitSet(ScratchArena.WORK_SET, 0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.command.dexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import mod.agus.jcoderz.dx.cf.direct.ClassPathOpener;
+import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a {@link ClassPathReader} bounds the entries it reads ahead,
+ * including those of the element being processed.
+ */
+public final class ClassPathReaderTest {
+    private static final int ENTRY_COUNT = 40;
+    private static final int ENTRY_SIZE = 1000;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void singleArchiveIsNotReadWholeAhead() throws Exception {
+        RecordingConsumer consumer = new RecordingConsumer(false);
+        read(4 * ENTRY_SIZE, consumer);
+
+        assertEquals(ENTRY_COUNT, consumer.names.size());
+        assertTrue("read ahead " + consumer.maxAhead, consumer.maxAhead <= 4);
+    }
+
+    @Test
+    public void parsedEntriesCountTowardsBudget() throws Exception {
+        // each parsed entry is charged its bytes and an estimate of 4 times
+        // as much for the parsed class
+        RecordingConsumer consumer = new RecordingConsumer(true);
+        read(10 * ENTRY_SIZE, consumer);
+
+        assertEquals(ENTRY_COUNT, consumer.names.size());
+        assertTrue("read ahead " + consumer.maxAhead, consumer.maxAhead <= 2);
+    }
+
+    @Test
+    public void entryLargerThanBudgetIsStillRead() throws Exception {
+        RecordingConsumer consumer = new RecordingConsumer(true);
+        read(ENTRY_SIZE / 2, consumer);
+
+        assertEquals(ENTRY_COUNT, consumer.names.size());
+        assertEquals(1, consumer.maxAhead);
+    }
+
+    private void read(long maxPendingBytes, RecordingConsumer consumer)
+            throws IOException, InterruptedException {
+        File jar = temp.newFile("entries.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < ENTRY_COUNT; i++) {
+                out.putNextEntry(new ZipEntry(entryName(i)));
+                out.write(new byte[ENTRY_SIZE]);
+                out.closeEntry();
+            }
+        }
+
+        ClassPathReader reader = new ClassPathReader(new String[] {jar.getPath()},
+                ClassPathOpener.acceptAll, 2, maxPendingBytes, consumer);
+        assertTrue(reader.process());
+
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            assertEquals(entryName(i), consumer.names.get(i));
+        }
+    }
+
+    /** Gets the name of an entry, such that entries sort by index. */
+    private static String entryName(int i) {
+        return String.format("e%02d.bin", i);
+    }
+
+    /**
+     * Consumer processing entries slowly, recording how many were read
+     * ahead of each.
+     */
+    private static final class RecordingConsumer implements ClassPathReader.Consumer {
+        private final boolean parse;
+        private final AtomicInteger read = new AtomicInteger();
+        private final List<String> names = new ArrayList<String>();
+        private int maxAhead;
+
+        RecordingConsumer(boolean parse) {
+            this.parse = parse;
+        }
+
+        @Override
+        public DirectClassFile parseAhead(String name, long lastModified, byte[] bytes) {
+            read.incrementAndGet();
+            // The class is only parsed once accessed, which it never is.
+            return parse ? new DirectClassFile(bytes, name, false) : null;
+        }
+
+        @Override
+        public boolean processFileBytes(String name, long lastModified, byte[] bytes,
+                Future<DirectClassFile> parsed) {
+            maxAhead = Math.max(maxAhead, read.get() - names.size());
+            names.add(name);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException ex) {
+                throw new AssertionError(ex);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean processFileBytes(String name, long lastModified, byte[] bytes) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void onException(Exception ex) {
+            throw new AssertionError(ex);
+        }
+
+        @Override
+        public void onProcessArchiveStart(File file) {
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.dex.file;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import mod.agus.jcoderz.dx.TestDexes;
+import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
+import mod.agus.jcoderz.dx.command.dexer.DxContext;
+import mod.agus.jcoderz.dx.dex.DexOptions;
+import mod.agus.jcoderz.dx.dex.cf.CfOptions;
+import mod.agus.jcoderz.dx.dex.cf.CfTranslator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a dex file streamed to a channel is the one built in memory.
+ */
+public final class DexFileTest {
+    private static final String[] SOURCES = {
+        ""
+            + "import java.util.function.*;\n"
+            + "class Lambdas {\n"
+            + "  static final String NAME = \"lambdas\";\n"
+            + "  Supplier<StringBuilder> supplier() { return StringBuilder::new; }\n"
+            + "  Function<Object, String> function() { return o -> NAME + o; }\n"
+            + "}\n",
+        ""
+            + "@Deprecated class Plain implements Runnable {\n"
+            + "  long count;\n"
+            + "  public void run() { count++; }\n"
+            + "}\n",
+    };
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void channelOutputMatchesArray() throws Exception {
+        Map<String, byte[]> all = TestDexes.compile(SOURCES);
+        // Without method handles, the call site and method handle sections
+        // are left out.
+        Map<String, byte[]> plain = new TreeMap<String, byte[]>(all);
+        plain.remove("Lambdas.class");
+
+        for (int minSdkVersion : new int[] {13, 26}) {
+            Map<String, byte[]> classes = (minSdkVersion < 26) ? plain : all;
+            byte[] expected = dexFile(classes, minSdkVersion).toDex(null, false);
+
+            // Written after some bytes, as at the position of the channel.
+            File file = temp.newFile();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                    FileChannel channel = raf.getChannel()) {
+                channel.position(3);
+                dexFile(classes, minSdkVersion).writeTo(channel);
+            }
+
+            byte[] actual = Files.readAllBytes(file.toPath());
+            assertArrayEquals(expected, Arrays.copyOfRange(actual, 3, actual.length));
+        }
+    }
+
+    private static DexFile dexFile(Map<String, byte[]> classes, int minSdkVersion) {
+        DxContext context = new DxContext();
+        CfOptions cfOptions = new CfOptions();
+        DexOptions dexOptions = new DexOptions();
+        dexOptions.minSdkVersion = minSdkVersion;
+        DexFile dexFile = new DexFile(dexOptions);
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            DirectClassFile cf = TestDexes.parse(entry.getKey(), entry.getValue());
+            dexFile.add(CfTranslator.translate(context, cf, entry.getValue(), cfOptions,
+                    dexOptions, dexFile));
+        }
+        return dexFile;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.merge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import mod.agus.jcoderz.dex.Dex;
+import mod.agus.jcoderz.dx.command.dexer.DxContext;
+
+/**
+ * Measures the time and memory allocated to merge dex files on one
+ * thread. This is not run as a test; run it with the dex files to merge
+ * as arguments, for example those of a Play Services library:
+ *
+ * <pre>
+ * java -cp &lt;classes and test classes&gt; mod.agus.jcoderz.dx.merge.DexMergerBenchmark \
+ *     [--rounds=N] a.dex b.dex ...
+ * </pre>
+ *
+ * <p>The first half of the rounds warms up the JIT and is not reported.</p>
+ */
+public final class DexMergerBenchmark {
+    private DexMergerBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = 10;
+        int first = 0;
+        if (args.length > 0 && args[0].startsWith("--rounds=")) {
+            rounds = Integer.parseInt(args[0].substring("--rounds=".length()));
+            first = 1;
+        }
+        Dex[] dexes = new Dex[args.length - first];
+        for (int i = 0; i < dexes.length; i++) {
+            dexes[i] = new Dex(new File(args[first + i]));
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        DxContext context = new DxContext(new ByteArrayOutputStream(), System.err);
+        for (int round = 0; round < rounds; round++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            Dex merged = new DexMerger(dexes, CollisionPolicy.KEEP_FIRST, context).merge();
+            long time = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            if (round >= rounds / 2) {
+                System.out.printf("%d bytes merged in %d ms, %d KB allocated%n",
+                        merged.getLength(), time / 1000000, allocated / 1024);
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.merge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import mod.agus.jcoderz.dex.ClassDef;
+import mod.agus.jcoderz.dex.Dex;
+import mod.agus.jcoderz.dex.FieldId;
+import mod.agus.jcoderz.dex.MethodId;
+import mod.agus.jcoderz.dex.ProtoId;
+import mod.agus.jcoderz.dx.TestDexes;
+import mod.agus.jcoderz.dx.command.dexer.DxContext;
+import org.junit.Test;
+
+/**
+ * Tests that merged id sections are the sorted union of those merged,
+ * whether merged at once or in parallel groups.
+ */
+public final class DexMergerTest {
+    private static final String A = ""
+            + "class A {\n"
+            + "  int count;\n"
+            + "  String name() { return \"a\" + count; }\n"
+            + "  static int twice(int x) { return x * 2; }\n"
+            + "}\n";
+    private static final String B = ""
+            + "class B extends java.util.ArrayList<String> {\n"
+            + "  String first;\n"
+            + "  String name() { return first == null ? \"b\" : first; }\n"
+            + "  void addTwice(String s) { add(s); add(s); }\n"
+            + "}\n";
+    private static final String C = ""
+            + "class C implements Runnable {\n"
+            + "  long count;\n"
+            + "  public void run() { count += name().length(); }\n"
+            + "  String name() { return String.valueOf(count); }\n"
+            + "}\n";
+
+    @Test
+    public void idSectionsAreSortedUnions() throws Exception {
+        Dex[] dexes = {
+            TestDexes.dex(A),
+            TestDexes.dex(B),
+            TestDexes.dex(C),
+        };
+        Dex merged = merge(dexes);
+
+        assertSortedUnion(merged.strings(), dexes, new Ids() {
+            @Override
+            public List<String> of(Dex dex) {
+                return dex.strings();
+            }
+        });
+        assertSortedUnion(merged.typeNames(), dexes, new Ids() {
+            @Override
+            public List<String> of(Dex dex) {
+                return dex.typeNames();
+            }
+        });
+        assertSortedUnion(protos(merged), dexes, new Ids() {
+            @Override
+            public List<String> of(Dex dex) {
+                return protos(dex);
+            }
+        });
+        assertSortedUnion(fields(merged), dexes, new Ids() {
+            @Override
+            public List<String> of(Dex dex) {
+                return fields(dex);
+            }
+        });
+        assertSortedUnion(methods(merged), dexes, new Ids() {
+            @Override
+            public List<String> of(Dex dex) {
+                return methods(dex);
+            }
+        });
+        assertIncreasing(merged.protoIds());
+        assertIncreasing(merged.fieldIds());
+        assertIncreasing(merged.methodIds());
+        assertEquals(3, merged.getTableOfContents().classDefs.size);
+    }
+
+    @Test
+    public void idSectionsDoNotDependOnInputOrder() throws Exception {
+        Dex a = TestDexes.dex(A);
+        Dex b = TestDexes.dex(B);
+        Dex c = TestDexes.dex(C);
+        Dex forward = merge(new Dex[] {a, b, c});
+        Dex backward = merge(new Dex[] {c, b, a});
+
+        assertEquals(forward.strings(), backward.strings());
+        assertEquals(forward.typeNames(), backward.typeNames());
+        assertEquals(protos(forward), protos(backward));
+        assertEquals(fields(forward), fields(backward));
+        assertEquals(methods(forward), methods(backward));
+        assertEquals(classNames(forward), classNames(backward));
+    }
+
+    @Test
+    public void parallelMergeMatchesSequentialMerge() throws Exception {
+        Dex[] dexes = {
+            TestDexes.dex(A),
+            TestDexes.dex(B),
+            TestDexes.dex(C),
+            TestDexes.dex(A.replace("class A", "class A2")),
+            TestDexes.dex(B.replace("class B", "class B2")),
+            TestDexes.dex(C.replace("class C", "class C2")),
+        };
+        Dex sequential = merge(dexes);
+
+        // The final merge is compacted when its padding exceeds the
+        // threshold, and is left as is otherwise.
+        int[] lengths = new int[2];
+        int[] thresholds = {0, Integer.MAX_VALUE};
+        for (int i = 0; i < thresholds.length; i++) {
+            int threshold = thresholds[i];
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DxContext context = new DxContext(out, out);
+            Dex parallel = DexMerger.mergeInParallel(dexes, CollisionPolicy.FAIL, context, 3,
+                    threshold);
+
+            assertEquals(threshold == 0, out.toString().contains("Result compacted"));
+            assertEquals(sequential.strings(), parallel.strings());
+            assertEquals(sequential.typeNames(), parallel.typeNames());
+            assertEquals(protos(sequential), protos(parallel));
+            assertEquals(fields(sequential), fields(parallel));
+            assertEquals(methods(sequential), methods(parallel));
+            assertEquals(classNames(sequential), classNames(parallel));
+            lengths[i] = parallel.getLength();
+        }
+        assertTrue(lengths[0] < lengths[1]);
+    }
+
+    private static Dex merge(Dex[] dexes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DxContext context = new DxContext(out, out);
+        return new DexMerger(dexes, CollisionPolicy.FAIL, context).merge();
+    }
+
+    /** Gets the ids of one id section of a dex file, as strings. */
+    private interface Ids {
+        List<String> of(Dex dex);
+    }
+
+    private static void assertSortedUnion(List<String> merged, Dex[] dexes, Ids ids) {
+        Set<String> union = new TreeSet<String>();
+        for (Dex dex : dexes) {
+            union.addAll(ids.of(dex));
+        }
+        assertEquals(union.size(), merged.size());
+        assertEquals(union, new TreeSet<String>(merged));
+    }
+
+    private static <T extends Comparable<T>> void assertIncreasing(List<T> ids) {
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1) + " >= " + ids.get(i),
+                    ids.get(i - 1).compareTo(ids.get(i)) < 0);
+        }
+    }
+
+    private static List<String> protos(Dex dex) {
+        List<String> result = new ArrayList<String>();
+        for (ProtoId protoId : dex.protoIds()) {
+            result.add(protoId.toString());
+        }
+        return result;
+    }
+
+    private static List<String> fields(Dex dex) {
+        List<String> result = new ArrayList<String>();
+        for (FieldId fieldId : dex.fieldIds()) {
+            result.add(fieldId.toString() + ":"
+                    + dex.typeNames().get(fieldId.getTypeIndex()));
+        }
+        return result;
+    }
+
+    private static List<String> methods(Dex dex) {
+        List<String> result = new ArrayList<String>();
+        for (MethodId methodId : dex.methodIds()) {
+            result.add(methodId.toString() + ":"
+                    + dex.protoIds().get(methodId.getProtoIndex()));
+        }
+        return result;
+    }
+
+    private static List<String> classNames(Dex dex) {
+        List<String> result = new ArrayList<String>();
+        for (ClassDef classDef : dex.classDefs()) {
+            result.add(dex.typeNames().get(classDef.getTypeIndex()));
+        }
+        return result;
+    }
+}
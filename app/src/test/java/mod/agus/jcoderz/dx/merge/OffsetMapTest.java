@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.merge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests {@link OffsetMap} against a {@link HashMap}.
+ */
+public final class OffsetMapTest {
+    @Test
+    public void matchesHashMapAcrossGrowth() {
+        OffsetMap map = new OffsetMap(0);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            // Offsets are word aligned, and collide often at low bits.
+            int key = random.nextInt(1 << 16) * 4;
+            int value = random.nextInt();
+            map.put(key, value);
+            expected.put(key, value);
+        }
+
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().intValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void mapsOffsetZero() {
+        OffsetMap map = new OffsetMap(1);
+        try {
+            map.get(0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        map.put(0, 12);
+        map.put(0, 16);
+        assertEquals(16, map.get(0));
+    }
+
+    @Test
+    public void rejectsUnmappedOffset() {
+        OffsetMap map = new OffsetMap(4);
+        map.put(4, 8);
+        try {
+            map.get(8);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void presizedMapAllocatesNothingOnPut() {
+        int count = 10000;
+        OffsetMap map = new OffsetMap(count);
+        // Warm up the allocation counter itself.
+        allocatedBytes();
+        long before = allocatedBytes();
+        for (int i = 1; i <= count; i++) {
+            map.put(i * 4, i);
+        }
+        long allocated = allocatedBytes() - before;
+
+        // A boxed map would take tens of bytes for each entry.
+        assertTrue("allocated " + allocated, allocated < count);
+        assertEquals(count, map.get(count * 4));
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.ssa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import mod.agus.jcoderz.dx.TestDexes;
+import mod.agus.jcoderz.dx.cf.code.ConcreteMethod;
+import mod.agus.jcoderz.dx.cf.code.Ropper;
+import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
+import mod.agus.jcoderz.dx.cf.iface.Method;
+import mod.agus.jcoderz.dx.cf.iface.MethodList;
+import mod.agus.jcoderz.dx.dex.DexOptions;
+import mod.agus.jcoderz.dx.rop.code.AccessFlags;
+import mod.agus.jcoderz.dx.rop.code.DexTranslationAdvice;
+import mod.agus.jcoderz.dx.rop.code.RegisterSpecList;
+import mod.agus.jcoderz.dx.rop.code.RopMethod;
+import mod.agus.jcoderz.dx.rop.cst.CstMethodRef;
+import org.junit.Test;
+
+/**
+ * Tests a {@link UseIndex} against the blocks and instructions of the
+ * methods it indexes, including when its arrays are reused.
+ */
+public final class UseIndexTest {
+    private static final String SOURCE = ""
+            + "class Uses {\n"
+            + "  static int large(int[] a, int n, long w) {\n"
+            + "    int r = 0;\n"
+            + "    for (int i = 0; i < n; i++) {\n"
+            + "      int v = a[i];\n"
+            + "      if (v > r) { r = v + v; } else if (v < 0) { r -= v * v; }\n"
+            + "      w += r;\n"
+            + "      try { r /= a[r & 3]; } catch (ArithmeticException e) { r = (int) w; }\n"
+            + "    }\n"
+            + "    return r + (int) w;\n"
+            + "  }\n"
+            + "  static int small(int a) { return a * a + a; }\n"
+            + "  int field;\n"
+            + "  void set(int v) { field = v < 0 ? -v : v; }\n"
+            + "}\n";
+
+    @Test
+    public void matchesMethodsIndexedInTurn() throws Exception {
+        List<SsaMethod> methods = ssaMethods();
+        assertEquals(4, methods.size());
+
+        // Each index reuses the arrays of the previous, larger or not.
+        for (SsaMethod ssaMeth : methods) {
+            UseIndex index = UseIndex.obtain(ssaMeth);
+            checkIndex(ssaMeth, index);
+            index.release();
+        }
+        for (int i = methods.size() - 1; i >= 0; i--) {
+            UseIndex index = UseIndex.obtain(methods.get(i));
+            checkIndex(methods.get(i), index);
+            index.release();
+        }
+    }
+
+    @Test
+    public void removesOneUseAtATime() throws Exception {
+        SsaMethod ssaMeth = ssaMethods().get(0);
+        UseIndex index = UseIndex.obtain(ssaMeth);
+        try {
+            for (int reg = 0; reg < ssaMeth.getRegCount(); reg++) {
+                List<Integer> expected = usesOf(ssaMeth, index, reg);
+                while (!expected.isEmpty()) {
+                    Integer id = expected.remove(expected.size() / 2);
+                    index.removeUse(reg, id);
+                    assertEquals(expected, listedUses(index, reg));
+                }
+                // Removing a use not listed changes nothing.
+                index.removeUse(reg, 0);
+                assertEquals(0, index.getUseCount(reg));
+            }
+        } finally {
+            index.release();
+        }
+    }
+
+    @Test
+    public void reusesOnlyReleasedIndex() throws Exception {
+        SsaMethod ssaMeth = ssaMethods().get(0);
+        UseIndex first = UseIndex.obtain(ssaMeth);
+        UseIndex second = UseIndex.obtain(ssaMeth);
+        assertNotSame(first, second);
+
+        second.release();
+        first.release();
+        assertSame(first, UseIndex.obtain(ssaMeth));
+    }
+
+    private static void checkIndex(SsaMethod ssaMeth, UseIndex index) {
+        ArrayList<SsaBasicBlock> blocks = ssaMeth.getBlocks();
+        int count = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            ArrayList<SsaInsn> insns = blocks.get(i).getInsns();
+            assertEquals(count, index.getBlockStart(i));
+            for (int j = 0; j < insns.size(); j++) {
+                assertSame(insns.get(j), index.getInsn(count + j));
+            }
+            count += insns.size();
+        }
+        assertEquals(count, index.getInsnCount());
+
+        for (int reg = 0; reg < ssaMeth.getRegCount(); reg++) {
+            SsaInsn definition = ssaMeth.getDefinitionForRegister(reg);
+            int id = index.getDefinition(reg);
+            assertSame(definition, id < 0 ? null : index.getInsn(id));
+            assertEquals(usesOf(ssaMeth, index, reg), listedUses(index, reg));
+        }
+    }
+
+    /**
+     * Finds the uses of a register by going over all instructions, as
+     * sorted ids with one entry for each use.
+     */
+    private static List<Integer> usesOf(SsaMethod ssaMeth, UseIndex index, int reg) {
+        List<Integer> uses = new ArrayList<Integer>();
+        for (int id = 0; id < index.getInsnCount(); id++) {
+            RegisterSpecList sources = index.getInsn(id).getSources();
+            for (int k = 0; k < sources.size(); k++) {
+                if (sources.get(k).getReg() == reg) {
+                    uses.add(id);
+                }
+            }
+        }
+        return uses;
+    }
+
+    /** Gets the uses of a register listed by an index, as sorted ids. */
+    private static List<Integer> listedUses(UseIndex index, int reg) {
+        List<Integer> uses = new ArrayList<Integer>();
+        for (int n = 0; n < index.getUseCount(reg); n++) {
+            uses.add(index.getUse(reg, n));
+        }
+        Collections.sort(uses);
+        return uses;
+    }
+
+    /** Converts the methods of {@link #SOURCE} to SSA form, largest first. */
+    private static List<SsaMethod> ssaMethods() throws Exception {
+        Map<String, byte[]> classes = TestDexes.compile(SOURCE);
+        DirectClassFile cf = TestDexes.parse("Uses.class", classes.get("Uses.class"));
+        DexOptions dexOptions = new DexOptions();
+        dexOptions.minSdkVersion = 26;
+        MethodList methods = cf.getMethods();
+        List<SsaMethod> result = new ArrayList<SsaMethod>();
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            boolean isStatic = (method.getAccessFlags() & AccessFlags.ACC_STATIC) != 0;
+            ConcreteMethod concrete = new ConcreteMethod(method, cf, true, true);
+            RopMethod rmeth = Ropper.convert(concrete, DexTranslationAdvice.THE_ONE, methods,
+                    dexOptions);
+            int paramWidth = new CstMethodRef(cf.getThisClass(), method.getNat())
+                    .getParameterWordCount(isStatic);
+            result.add(Optimizer.debugNoRegisterAllocation(rmeth, paramWidth, isStatic, false,
+                    DexTranslationAdvice.THE_ONE, EnumSet.noneOf(Optimizer.OptionalStep.class)));
+        }
+        Collections.sort(result, new Comparator<SsaMethod>() {
+            @Override
+            public int compare(SsaMethod a, SsaMethod b) {
+                return b.getRegCount() - a.getRegCount();
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.ssa.back;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.TreeSet;
+import mod.agus.jcoderz.dx.util.BitIntSet;
+import org.junit.Test;
+
+/**
+ * Tests an {@link InterferenceGraph} against plain sets, both as a bit
+ * matrix and as adjacency arrays, and growing across the size at which it
+ * stops being kept as a bit matrix.
+ */
+public final class InterferenceGraphTest {
+    @Test
+    public void growsRegisterByRegisterPastMatrixThreshold() {
+        InterferenceGraph graph = new InterferenceGraph(3070);
+        for (int reg = 3070; reg <= 3080; reg++) {
+            graph.add(reg, reg - 1);
+        }
+
+        assertEquals("{3069, 3071}", interference(graph, 3070, 3081));
+        assertEquals("{3071, 3073}", interference(graph, 3072, 3081));
+        assertEquals("{3079}", interference(graph, 3080, 3081));
+    }
+
+    @Test
+    public void growsFarPastMatrixThreshold() {
+        InterferenceGraph graph = new InterferenceGraph(2000);
+        graph.add(2000, 1);
+        graph.add(1, 3100);
+        graph.add(3100, 3099);
+
+        assertEquals("{2000, 3100}", interference(graph, 1, 3101));
+        assertEquals("{1}", interference(graph, 2000, 3101));
+        assertEquals("{1, 3099}", interference(graph, 3100, 3101));
+        assertEquals("{3100}", interference(graph, 3099, 3101));
+        assertEquals("{}", interference(graph, 3098, 3101));
+    }
+
+    @Test
+    public void keepsHighWordsOfGrownMatrixRows() {
+        InterferenceGraph graph = new InterferenceGraph(10);
+        graph.add(0, 2500);
+        graph.add(2500, 3000);
+
+        assertEquals("{2500}", interference(graph, 0, 3001));
+        assertEquals("{0, 3000}", interference(graph, 2500, 3001));
+        assertEquals("{}", interference(graph, 1, 3001));
+    }
+
+    @Test
+    public void matrixMatchesSets() {
+        checkRandomGraph(200, 2000, 1);
+    }
+
+    @Test
+    public void adjacencyArraysMatchSets() {
+        // Dense enough that adjacency arrays fill up and drop duplicates.
+        checkRandomGraph(4000, 40000, 2);
+        checkRandomGraph(4000, 200, 3);
+    }
+
+    private static void checkRandomGraph(int regCount, int edgeCount, long seed) {
+        InterferenceGraph graph = new InterferenceGraph(regCount);
+        @SuppressWarnings("unchecked")
+        TreeSet<Integer>[] expected = new TreeSet[regCount];
+        for (int reg = 0; reg < regCount; reg++) {
+            expected[reg] = new TreeSet<Integer>();
+        }
+
+        Random random = new Random(seed);
+        for (int i = 0; i < edgeCount; i++) {
+            // Few registers take part in most edges, as in real methods.
+            int v = random.nextInt(random.nextBoolean() ? 16 : regCount);
+            int w = random.nextInt(regCount);
+            if (v == w) {
+                continue;
+            }
+            graph.add(v, w);
+            expected[v].add(w);
+            expected[w].add(v);
+        }
+
+        for (int reg = 0; reg < regCount; reg++) {
+            String set = expected[reg].toString().replace('[', '{').replace(']', '}');
+            assertEquals("register " + reg, set, interference(graph, reg, regCount));
+        }
+    }
+
+    private static String interference(InterferenceGraph graph, int reg, int regCount) {
+        BitIntSet set = new BitIntSet(regCount);
+        graph.mergeInterferenceSet(reg, set);
+        return set.toString();
+    }
+}
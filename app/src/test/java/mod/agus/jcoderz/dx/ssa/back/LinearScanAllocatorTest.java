@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.ssa.back;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Map;
+import mod.agus.jcoderz.dx.TestDexes;
+import mod.agus.jcoderz.dx.cf.code.ConcreteMethod;
+import mod.agus.jcoderz.dx.cf.code.Ropper;
+import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
+import mod.agus.jcoderz.dx.cf.iface.Method;
+import mod.agus.jcoderz.dx.cf.iface.MethodList;
+import mod.agus.jcoderz.dx.dex.DexOptions;
+import mod.agus.jcoderz.dx.dex.cf.CfOptions;
+import mod.agus.jcoderz.dx.rop.code.AccessFlags;
+import mod.agus.jcoderz.dx.rop.code.DexTranslationAdvice;
+import mod.agus.jcoderz.dx.rop.code.RopMethod;
+import mod.agus.jcoderz.dx.rop.cst.CstMethodRef;
+import mod.agus.jcoderz.dx.ssa.BasicRegisterMapper;
+import mod.agus.jcoderz.dx.ssa.Optimizer;
+import mod.agus.jcoderz.dx.ssa.SsaMethod;
+import mod.agus.jcoderz.dx.util.BitIntSet;
+import mod.agus.jcoderz.dx.util.IntIterator;
+import org.junit.Test;
+
+/**
+ * Tests that a {@link LinearScanAllocator} never gives interfering
+ * registers overlapping rop registers, checked against the interference
+ * graph that the first-fit allocator works from.
+ */
+public final class LinearScanAllocatorTest {
+    private static final String SOURCE = ""
+            + "class Methods {\n"
+            + "  static long sum(long[] values, double scale) {\n"
+            + "    long total = 0;\n"
+            + "    double scaled = 0;\n"
+            + "    for (int i = 0; i < values.length; i++) {\n"
+            + "      long v = values[i];\n"
+            + "      if (v < 0) { total -= v; } else { total += v * 2; }\n"
+            + "      scaled += v * scale;\n"
+            + "    }\n"
+            + "    return total + (long) scaled;\n"
+            + "  }\n"
+            + "  int manyLocals(int a, long b, int c, double d, Object e) {\n"
+            + "    int x0 = a + c, x1 = a * c, x2 = x0 - x1, x3 = x2 ^ a;\n"
+            + "    long y0 = b + x0, y1 = b * x1, y2 = y0 - y1;\n"
+            + "    double z0 = d + x3, z1 = d * y2, z2 = z0 / (z1 + 1);\n"
+            + "    int x4 = x0 + x1 + x2 + x3, x5 = (int) (y0 + y1 + y2);\n"
+            + "    int x6 = (int) (z0 + z1 + z2), x7 = e == null ? 0 : e.hashCode();\n"
+            + "    for (int i = 0; i < x7; i++) {\n"
+            + "      x4 += i; y2 += x5; z2 += x6;\n"
+            + "    }\n"
+            + "    return x4 + (int) y2 + (int) z2 + x5 + x6 + x7 + hashCode();\n"
+            + "  }\n"
+            + "  static String nested(String s, int n) {\n"
+            + "    StringBuilder sb = new StringBuilder();\n"
+            + "    try {\n"
+            + "      for (int i = 0; i < n; i++) {\n"
+            + "        try {\n"
+            + "          switch (s.charAt(i)) {\n"
+            + "            case 'a': sb.append(1); break;\n"
+            + "            case 'b': sb.append(2L); break;\n"
+            + "            case 'c': sb.append(3.0); continue;\n"
+            + "            default: sb.append(s.charAt(i));\n"
+            + "          }\n"
+            + "        } catch (IndexOutOfBoundsException e) {\n"
+            + "          sb.append(e.getMessage());\n"
+            + "        } finally {\n"
+            + "          sb.append(i);\n"
+            + "        }\n"
+            + "      }\n"
+            + "    } catch (RuntimeException e) {\n"
+            + "      return null;\n"
+            + "    }\n"
+            + "    return sb.toString();\n"
+            + "  }\n"
+            + "  static int swap(int a, int b, int n) {\n"
+            + "    while (n-- > 0) { int t = a; a = b; b = t + a; }\n"
+            + "    return a - b;\n"
+            + "  }\n"
+            + "  synchronized double[] wide(double a, long b, int c) {\n"
+            + "    double[] r = new double[c];\n"
+            + "    for (int i = 0; i < c; i++) { r[i] = a * i + b; a = -a; b += c; }\n"
+            + "    return r;\n"
+            + "  }\n"
+            + "}\n";
+
+    @Test
+    public void interferingRegistersDoNotOverlap() throws Exception {
+        Map<String, byte[]> classes = TestDexes.compile(SOURCE);
+        DirectClassFile cf = TestDexes.parse("Methods.class", classes.get("Methods.class"));
+        DexOptions dexOptions = new DexOptions();
+        dexOptions.minSdkVersion = 26;
+        MethodList methods = cf.getMethods();
+        int checked = 0;
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            boolean isStatic = (method.getAccessFlags() & AccessFlags.ACC_STATIC) != 0;
+            ConcreteMethod concrete = new ConcreteMethod(method, cf, true, true);
+            RopMethod rmeth = Ropper.convert(concrete, DexTranslationAdvice.THE_ONE, methods,
+                    dexOptions);
+            int paramWidth = new CstMethodRef(cf.getThisClass(), method.getNat())
+                    .getParameterWordCount(isStatic);
+            checkMethod(rmeth, paramWidth, isStatic);
+            checked++;
+        }
+        assertEquals(6, checked);
+    }
+
+    @Test
+    public void dexesWithLinearScan() throws Exception {
+        Map<String, byte[]> classes = TestDexes.compile(SOURCE);
+        CfOptions cfOptions = new CfOptions();
+        cfOptions.optimize = true;
+        byte[] firstFit = TestDexes.dexBytes(cfOptions, classes);
+        cfOptions.linearScan = true;
+        byte[] linearScan = TestDexes.dexBytes(cfOptions, classes);
+
+        assertFalse(java.util.Arrays.equals(firstFit, linearScan));
+        // Intervals overapproximate liveness, but not by this much.
+        assertTrue(linearScan.length < firstFit.length * 2);
+    }
+
+    private static void checkMethod(RopMethod rmeth, int paramWidth, boolean isStatic) {
+        SsaMethod ssaMeth = Optimizer.debugNoRegisterAllocation(rmeth, paramWidth, isStatic,
+                false, DexTranslationAdvice.THE_ONE, EnumSet.allOf(Optimizer.OptionalStep.class));
+        InterferenceGraph interference = LivenessAnalyzer.constructInterferenceGraph(ssaMeth);
+        LinearScanAllocator allocator = new LinearScanAllocator(ssaMeth);
+        BasicRegisterMapper mapper = (BasicRegisterMapper) allocator.allocateRegisters();
+
+        int regCount = ssaMeth.getRegCount();
+        for (int reg = 0; reg < regCount; reg++) {
+            if (ssaMeth.getDefinitionForRegister(reg) == null) {
+                continue;
+            }
+            BitIntSet others = new BitIntSet(regCount);
+            interference.mergeInterferenceSet(reg, others);
+            for (IntIterator it = others.iterator(); it.hasNext();) {
+                int other = it.next();
+                if (other == reg) {
+                    // Phis may record a register against itself.
+                    continue;
+                }
+                int start = mapper.oldToNew(reg);
+                int end = start + allocator.getCategoryForSsaReg(reg);
+                int otherStart = mapper.oldToNew(other);
+                int otherEnd = otherStart + allocator.getCategoryForSsaReg(other);
+                assertTrue("v" + reg + " and v" + other + " interfere but share r" + start,
+                        end <= otherStart || otherEnd <= start);
+            }
+        }
+    }
+}
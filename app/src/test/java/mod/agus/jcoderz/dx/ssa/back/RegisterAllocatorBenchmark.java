@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.dx.ssa.back;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import mod.agus.jcoderz.dx.TestDexes;
+import mod.agus.jcoderz.dx.cf.code.ConcreteMethod;
+import mod.agus.jcoderz.dx.cf.code.Ropper;
+import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
+import mod.agus.jcoderz.dx.cf.iface.Method;
+import mod.agus.jcoderz.dx.cf.iface.MethodList;
+import mod.agus.jcoderz.dx.dex.DexOptions;
+import mod.agus.jcoderz.dx.rop.code.AccessFlags;
+import mod.agus.jcoderz.dx.rop.code.DexTranslationAdvice;
+import mod.agus.jcoderz.dx.rop.code.RopMethod;
+import mod.agus.jcoderz.dx.rop.cst.CstMethodRef;
+import mod.agus.jcoderz.dx.ssa.Optimizer;
+
+/**
+ * Measures the optimizer, and so register allocation, over the methods
+ * of real jars on one thread. Every method is converted to rop form once;
+ * each round then optimizes all of them, reporting the time taken, the
+ * bytes allocated, and the registers and instructions of the result.
+ * This is not run as a test; run it with the jars as arguments:
+ *
+ * <pre>
+ * java -cp &lt;classes and test classes&gt; \
+ *     mod.agus.jcoderz.dx.ssa.back.RegisterAllocatorBenchmark \
+ *     [--rounds=N] [--linear-scan] a.jar b.jar ...
+ * </pre>
+ *
+ * <p>The first half of the rounds warms up the JIT and is not reported.</p>
+ */
+public final class RegisterAllocatorBenchmark {
+    private RegisterAllocatorBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = 10;
+        boolean linearScan = false;
+        List<String> jars = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--rounds=")) {
+                rounds = Integer.parseInt(arg.substring("--rounds=".length()));
+            } else if (arg.equals("--linear-scan")) {
+                linearScan = true;
+            } else {
+                jars.add(arg);
+            }
+        }
+
+        List<Input> inputs = new ArrayList<Input>();
+        DexOptions dexOptions = new DexOptions();
+        dexOptions.minSdkVersion = 26;
+        for (DirectClassFile cf : TestDexes.parseJars(jars.toArray(new String[0]))) {
+            MethodList methods = cf.getMethods();
+            for (int i = 0; i < methods.size(); i++) {
+                Method method = methods.get(i);
+                if (method.getAttributes().findFirst("Code") == null) {
+                    continue;
+                }
+                boolean isStatic = (method.getAccessFlags() & AccessFlags.ACC_STATIC) != 0;
+                ConcreteMethod concrete = new ConcreteMethod(method, cf, true, true);
+                RopMethod rmeth = Ropper.convert(concrete, DexTranslationAdvice.THE_ONE,
+                        methods, dexOptions);
+                int paramWidth = new CstMethodRef(cf.getThisClass(), method.getNat())
+                        .getParameterWordCount(isStatic);
+                inputs.add(new Input(rmeth, paramWidth, isStatic));
+            }
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int round = 0; round < rounds; round++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long regs = 0;
+            long insns = 0;
+            for (Input input : inputs) {
+                RopMethod result = Optimizer.optimize(input.rmeth, input.paramWidth,
+                        input.isStatic, true, DexTranslationAdvice.THE_ONE,
+                        Optimizer.Tier.FULL, linearScan);
+                regs += result.getBlocks().getRegCount();
+                insns += result.getBlocks().getEffectiveInstructionCount();
+            }
+            long time = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            if (round >= rounds / 2) {
+                System.out.printf("%d methods in %d ms, %d MB allocated, %d regs, %d insns%n",
+                        inputs.size(), time / 1000000, allocated / (1024 * 1024), regs, insns);
+            }
+        }
+    }
+
+    /** A method to optimize. */
+    private static final class Input {
+        final RopMethod rmeth;
+        final int paramWidth;
+        final boolean isStatic;
+
+        Input(RopMethod rmeth, int paramWidth, boolean isStatic) {
+            this.rmeth = rmeth;
+            this.paramWidth = paramWidth;
+            this.isStatic = isStatic;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.multidex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import mod.agus.jcoderz.dx.TestDexes;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that an {@link ArchiveIndex} gives the references a scan of the
+ * archive gives, whether built or read back from its file, and that stale
+ * or corrupt index files are built again.
+ */
+public final class ArchiveIndexTest {
+    private static final String[] SOURCES = {
+        ""
+            + "import java.lang.annotation.*;\n"
+            + "@Retention(RetentionPolicy.RUNTIME) @interface Visible {}\n",
+        ""
+            + "@Visible class Base implements Runnable, java.io.Serializable {\n"
+            + "  public void run() { new Thread(this).start(); }\n"
+            + "}\n",
+        ""
+            + "class Derived extends Base {\n"
+            + "  java.util.List<java.net.URI[]> uris;\n"
+            + "  java.math.BigInteger m(Object o) { return (java.math.BigInteger) o; }\n"
+            + "}\n",
+    };
+
+    /** path of an entry which is not a class file */
+    private static final String BAD_CLASS = "pkg/Bad.class";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private Map<String, byte[]> classes;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        classes = new TreeMap<String, byte[]>();
+        for (Map.Entry<String, byte[]> entry : TestDexes.compile(SOURCES).entrySet()) {
+            classes.put(entry.getKey(), entry.getValue());
+        }
+        classes.put(BAD_CLASS, new byte[] {(byte) 0xca, (byte) 0xfe});
+        classes.put("README.txt", new byte[] {'x'});
+        directory = new File(temp.getRoot(), "index");
+    }
+
+    @Test
+    public void buildsAndStoresIndex() throws IOException {
+        File jar = writeJar("a.jar", classes);
+        ArchiveIndex index = open(jar, false);
+
+        assertMatchesScan(index);
+        assertEquals(1, indexFiles().length);
+    }
+
+    @Test
+    public void readsStoredIndex() throws IOException {
+        File jar = writeJar("a.jar", classes);
+        open(jar, false);
+
+        // The archive is not opened again.
+        assertMatchesScan(open(jar, true));
+    }
+
+    @Test
+    public void changedArchiveIsIndexedAgain() throws IOException {
+        File jar = writeJar("a.jar", classes);
+        open(jar, false);
+
+        classes.remove("Derived.class");
+        writeJar("a.jar", classes);
+        ArchiveIndex index = open(jar, false);
+
+        assertMatchesScan(index);
+        assertNull(index.get("Derived.class"));
+        assertEquals(2, indexFiles().length);
+    }
+
+    @Test
+    public void corruptIndexIsBuiltAgain() throws IOException {
+        File jar = writeJar("a.jar", classes);
+        open(jar, false);
+        File file = indexFiles()[0];
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        for (int length : new int[] {0, 4, 8, 12, bytes.length / 2, bytes.length - 1}) {
+            Files.write(file.toPath(), Arrays.copyOf(bytes, length));
+            assertMatchesScan(open(jar, false));
+            assertArrayEquals(bytes, Files.readAllBytes(file.toPath()));
+        }
+
+        // Counts and string indexes out of range.
+        for (int at = 8; at < bytes.length; at += 7) {
+            byte[] corrupt = bytes.clone();
+            corrupt[at] = (byte) 0x7f;
+            Files.write(file.toPath(), corrupt);
+            assertMatchesScan(open(jar, false));
+        }
+
+        // Trailing data.
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length + 1));
+        assertMatchesScan(open(jar, false));
+        assertArrayEquals(bytes, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void unwritableDirectoryStillIndexes() throws IOException {
+        File jar = writeJar("a.jar", classes);
+        directory = temp.newFile("not-a-directory");
+
+        assertMatchesScan(open(jar, false));
+    }
+
+    /**
+     * Opens the index of an archive.
+     *
+     * @param closed whether the archive must not be read
+     */
+    private ArchiveIndex open(File jar, boolean closed) throws IOException {
+        try (ZipFile zip = new ZipFile(jar)) {
+            ClassPathElement element = new ArchivePathElement(zip);
+            if (closed) {
+                element = new UnreadableElement(element);
+            }
+            ArchiveIndex index = ArchiveIndex.open(directory, jar, element);
+            assertNotNull(index);
+            return index;
+        }
+    }
+
+    private void assertMatchesScan(ArchiveIndex index) {
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            String path = entry.getKey();
+            if (path.equals(BAD_CLASS)) {
+                assertTrue(index.isUnreadable(path));
+                assertNull(index.get(path));
+            } else if (path.endsWith(".class")) {
+                ClassReferences expected = ClassReferenceScanner.scan(entry.getValue());
+                ClassReferences actual = index.get(path);
+                assertFalse(index.isUnreadable(path));
+                assertEquals(path, expected.getSuperclassName(), actual.getSuperclassName());
+                assertArrayEquals(path, expected.getInterfaceNames(),
+                        actual.getInterfaceNames());
+                assertArrayEquals(path, expected.getReferencedClasses(),
+                        actual.getReferencedClasses());
+                assertEquals(path, expected.hasRuntimeVisibleAnnotations(),
+                        actual.hasRuntimeVisibleAnnotations());
+            } else {
+                assertNull(index.get(path));
+            }
+        }
+    }
+
+    private File[] indexFiles() {
+        File[] files = directory.listFiles();
+        Arrays.sort(files);
+        return files;
+    }
+
+    private File writeJar(String name, Map<String, byte[]> entries) throws IOException {
+        File jar = new File(temp.getRoot(), name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /** Element listing the entries of another, but failing to open them. */
+    private static final class UnreadableElement implements ClassPathElement {
+        private final ClassPathElement delegate;
+
+        UnreadableElement(ClassPathElement delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public InputStream open(String path) throws IOException {
+            throw new AssertionError("opened " + path);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public Iterable<String> list() {
+            return delegate.list();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mod.agus.jcoderz.multidex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import mod.agus.jcoderz.dx.TestDexes;
+import mod.agus.jcoderz.dx.cf.attrib.AttRuntimeVisibleAnnotations;
+import mod.agus.jcoderz.dx.cf.direct.DirectClassFile;
+import mod.agus.jcoderz.dx.cf.iface.Attribute;
+import mod.agus.jcoderz.dx.cf.iface.FieldList;
+import mod.agus.jcoderz.dx.cf.iface.HasAttribute;
+import mod.agus.jcoderz.dx.cf.iface.MethodList;
+import mod.agus.jcoderz.dx.rop.cst.Constant;
+import mod.agus.jcoderz.dx.rop.cst.CstBaseMethodRef;
+import mod.agus.jcoderz.dx.rop.cst.CstFieldRef;
+import mod.agus.jcoderz.dx.rop.cst.CstType;
+import mod.agus.jcoderz.dx.rop.type.Prototype;
+import mod.agus.jcoderz.dx.rop.type.StdTypeList;
+import mod.agus.jcoderz.dx.rop.type.TypeList;
+import org.junit.Test;
+
+/**
+ * Tests that a {@link ClassReferenceScanner} finds what a fully parsed
+ * {@link DirectClassFile} gives, as the main dex list computation used
+ * before the scanner.
+ */
+public final class ClassReferenceScannerTest {
+    private static final String[] SOURCES = {
+        ""
+            + "import java.lang.annotation.*;\n"
+            + "@Retention(RetentionPolicy.RUNTIME) @interface Visible {}\n",
+        ""
+            + "import java.lang.annotation.*;\n"
+            + "@Retention(RetentionPolicy.CLASS) @interface Invisible {}\n",
+        ""
+            + "@Visible class AnnotatedClass {}\n",
+        ""
+            + "class AnnotatedField { @Visible int x; }\n",
+        ""
+            + "class AnnotatedMethod { @Visible void m() {} }\n",
+        ""
+            + "@Invisible class InvisiblyAnnotated { @Invisible int x; }\n",
+        ""
+            + "import java.util.*;\n"
+            + "import java.util.function.*;\n"
+            + "class Mixed extends AbstractList<String>\n"
+            + "    implements RandomAccess, Comparable<Mixed> {\n"
+            + "  static final long BIG = 1L << 40;\n"
+            + "  static final double PI = 3.14159;\n"
+            + "  java.io.File[][] files;\n"
+            + "  Map<Thread.State, String> states = new EnumMap<>(Thread.State.class);\n"
+            + "  public String get(int i) { return String.valueOf(BIG + i * PI); }\n"
+            + "  public int size() { return files == null ? 0 : files.length; }\n"
+            + "  public int compareTo(Mixed o) { return size() - o.size(); }\n"
+            + "  Object[] arrays() { return new java.net.URI[][] {}; }\n"
+            + "  Supplier<StringBuilder> lambda() { return StringBuilder::new; }\n"
+            + "  void run(Runnable r) throws java.io.IOException {\n"
+            + "    Iterator<String> it = iterator();\n"
+            + "    Function<Object, String> f = o -> o + \"\\u00e9\\u20ac\";\n"
+            + "    if (it.hasNext()) { f.apply(it.next()); }\n"
+            + "    java.util.concurrent.Callable<?> c =\n"
+            + "        java.util.concurrent.Executors.callable(r);\n"
+            + "    Class<?> t = java.nio.file.Path[].class;\n"
+            + "  }\n"
+            + "  class Inner implements Cloneable {}\n"
+            + "  interface Nested { java.math.BigDecimal value(); }\n"
+            + "}\n",
+    };
+
+    @Test
+    public void matchesParsedClasses() throws Exception {
+        Map<String, byte[]> classes = TestDexes.compile(SOURCES);
+        assertTrue(classes.keySet().toString(), classes.size() >= 9);
+
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            String name = entry.getKey();
+            DirectClassFile cf = TestDexes.parse(name, entry.getValue());
+            ClassReferences references = ClassReferenceScanner.scan(entry.getValue());
+
+            CstType superclass = cf.getSuperclass();
+            assertEquals(name, superclass == null ? null
+                    : superclass.getClassType().getClassName(),
+                    references.getSuperclassName());
+
+            TypeList interfaces = cf.getInterfaces();
+            String[] interfaceNames = new String[interfaces.size()];
+            for (int i = 0; i < interfaceNames.length; i++) {
+                interfaceNames[i] = interfaces.getType(i).getClassName();
+            }
+            assertEquals(name, Arrays.asList(interfaceNames),
+                    Arrays.asList(references.getInterfaceNames()));
+
+            assertEquals(name, referencedClasses(cf),
+                    new TreeSet<String>(Arrays.asList(references.getReferencedClasses())));
+            assertEquals(name, references.getReferencedClasses().length,
+                    referencedClasses(cf).size());
+
+            assertEquals(name, hasRuntimeVisibleAnnotations(cf),
+                    references.hasRuntimeVisibleAnnotations());
+        }
+    }
+
+    @Test
+    public void findsAnnotationsOnMembers() throws Exception {
+        Map<String, byte[]> classes = TestDexes.compile(SOURCES);
+        assertTrue(scan(classes, "AnnotatedClass").hasRuntimeVisibleAnnotations());
+        assertTrue(scan(classes, "AnnotatedField").hasRuntimeVisibleAnnotations());
+        assertTrue(scan(classes, "AnnotatedMethod").hasRuntimeVisibleAnnotations());
+        assertEquals(false, scan(classes, "InvisiblyAnnotated").hasRuntimeVisibleAnnotations());
+    }
+
+    private static ClassReferences scan(Map<String, byte[]> classes, String name) {
+        return ClassReferenceScanner.scan(classes.get(name + ".class"));
+    }
+
+    /**
+     * Collects the classes a class refers to as the main dex list
+     * computation did from a parsed class.
+     */
+    private static Set<String> referencedClasses(DirectClassFile cf) {
+        Set<String> result = new TreeSet<String>();
+        for (Constant constant : cf.getConstantPool().getEntries()) {
+            if (constant instanceof CstType) {
+                addDescriptor(result, ((CstType) constant).getClassType().getDescriptor());
+            } else if (constant instanceof CstFieldRef) {
+                addDescriptor(result, ((CstFieldRef) constant).getType().getDescriptor());
+            } else if (constant instanceof CstBaseMethodRef) {
+                addPrototype(result, ((CstBaseMethodRef) constant).getPrototype());
+            }
+        }
+
+        FieldList fields = cf.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            addDescriptor(result, fields.get(i).getDescriptor().getString());
+        }
+        MethodList methods = cf.getMethods();
+        for (int i = 0; i < methods.size(); i++) {
+            addPrototype(result, Prototype.intern(methods.get(i).getDescriptor().getString()));
+        }
+        return result;
+    }
+
+    private static void addPrototype(Set<String> result, Prototype proto) {
+        addDescriptor(result, proto.getReturnType().getDescriptor());
+        StdTypeList args = proto.getParameterTypes();
+        for (int i = 0; i < args.size(); i++) {
+            addDescriptor(result, args.get(i).getDescriptor());
+        }
+    }
+
+    private static void addDescriptor(Set<String> result, String descriptor) {
+        if (descriptor.endsWith(";")) {
+            int lastBrace = descriptor.lastIndexOf('[');
+            result.add(descriptor.substring(lastBrace + 2, descriptor.length() - 1));
+        }
+    }
+
+    private static boolean hasRuntimeVisibleAnnotations(DirectClassFile cf) {
+        if (hasRuntimeVisibleAnnotations((HasAttribute) cf)) {
+            return true;
+        }
+        for (int i = 0; i < cf.getMethods().size(); i++) {
+            if (hasRuntimeVisibleAnnotations(cf.getMethods().get(i))) {
+                return true;
+            }
+        }
+        for (int i = 0; i < cf.getFields().size(); i++) {
+            if (hasRuntimeVisibleAnnotations(cf.getFields().get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasRuntimeVisibleAnnotations(HasAttribute element) {
+        Attribute att = element.getAttributes().findFirst(
+                AttRuntimeVisibleAnnotations.ATTRIBUTE_NAME);
+        return att != null && ((AttRuntimeVisibleAnnotations) att).getAnnotations().size() > 0;
+    }
+}
@@ -20,6 +20,8 @@
 
 package eup.dependency.haven.model;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -42,6 +44,11 @@ public class Coordinates {
       Pattern.compile("(implementation) (['\"])(.*)(['\"])");
   private static final Pattern GRADLE_KOTLIN_IMPLEMENTATION =
       Pattern.compile("(implementation\\()(['\"])(.*)(['\"]\\))");
+  // Pattern to retrieve a declaration of any configuration in a Gradle dependencies block
+  private static final Pattern GRADLE_CONFIGURATION_DECLARATION =
+      Pattern.compile("^\\s*[A-Za-z]+\\s*\\(?\\s*['\"]([^'\":\\s]+:[^'\":\\s]+:[^'\"\\s]+)['\"]");
+  private static final Pattern PLAIN_DECLARATION =
+      Pattern.compile("^\\s*([^'\":\\s]+:[^'\":\\s]+:[^'\"\\s]+)\\s*$");
   // only works when online we check for the availability of coordinate versions
   private boolean versionConsistency = true;
 
@@ -89,6 +96,33 @@ public class Coordinates {
         "Failed to convert coordinates string to Coordinates: " + declaration);
   }
 
+  /**
+   * Retrieve every declaration of a Gradle {@code dependencies {}} block or of a list of
+   * (groupId:artifactId:version) declarations, one per line.
+   *
+   * <p>Lines that do not declare a module dependency, such as project dependencies, platforms or
+   * comments, are ignored.
+   *
+   * @param declarations The declarations of the coordinates
+   * @return the coordinates in the order they were declared
+   */
+  public static List<Coordinates> valuesOf(String declarations) {
+    if (declarations == null || declarations.isEmpty()) {
+      throw new IllegalArgumentException("Declaration cannot be empty");
+    }
+    List<Coordinates> coordinates = new ArrayList<>();
+    for (String line : declarations.split("\\r?\\n")) {
+      Matcher configurationMatcher = GRADLE_CONFIGURATION_DECLARATION.matcher(line);
+      Matcher plainMatcher = PLAIN_DECLARATION.matcher(line);
+      if (configurationMatcher.find()) {
+        coordinates.add(valueOf(configurationMatcher.group(1)));
+      } else if (plainMatcher.find()) {
+        coordinates.add(valueOf(plainMatcher.group(1)));
+      }
+    }
+    return coordinates;
+  }
+
   /**
    * Creates an empty Coordinates object.
    *
@@ -38,6 +38,9 @@ public class Dependency {
   // ambiguous scope defaults to compile
   private String scope = "compile";
   private boolean optional = false;
+  // the artifact file name and size when published with Gradle Module Metadata
+  private String artifactFile;
+  private long artifactSize = -1;
   private final List<Exclusion> exclusions = new ArrayList<>();
 
   /**
@@ -72,6 +75,8 @@ public class Dependency {
     this.scope = copy.scope;
     this.type = copy.type;
     this.optional = copy.optional;
+    this.artifactFile = copy.artifactFile;
+    this.artifactSize = copy.artifactSize;
     this.exclusions.addAll(copy.getExclusions());
   }
 
@@ -107,6 +112,35 @@ public class Dependency {
     this.optional = optional;
   }
 
+  /**
+   * Gets the file name of the artifact relative to the directory of the dependency
+   *
+   * @return the file name or {@code null} if it is derived from the coordinates and type
+   */
+  public String getArtifactFile() {
+    return this.artifactFile;
+  }
+
+  /**
+   * Gets the size of the artifact file in bytes
+   *
+   * @return the size or {@code -1} if unknown
+   */
+  public long getArtifactSize() {
+    return this.artifactSize;
+  }
+
+  /**
+   * Sets the exact artifact file of the dependency
+   *
+   * @param artifactFile the file name relative to the directory of the dependency
+   * @param artifactSize the size of the file in bytes, or {@code -1} if unknown
+   */
+  public void setArtifactFile(String artifactFile, long artifactSize) {
+    this.artifactFile = artifactFile;
+    this.artifactSize = artifactSize;
+  }
+
   public List<Exclusion> getExclusions() {
     return this.exclusions;
   }
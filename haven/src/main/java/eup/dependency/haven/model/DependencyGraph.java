@@ -0,0 +1,325 @@
+/*
+ *  MIT License
+ *  Copyright (c) 2023 EUP
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package eup.dependency.haven.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dependency graph whose nodes are interned to int ids.
+ *
+ * <p>Each {@code groupId:artifactId:version} is assigned a dense id the first time it is added.
+ * Edges from a dependency to the dependencies declared in its POM are kept in primitive adjacency
+ * arrays in both directions, which allows membership checks in constant time, a topological order
+ * of the graph and the shortest path from any node back to a root.
+ *
+ * @author EUP
+ */
+public class DependencyGraph {
+
+  /** The id returned for a dependency that is not part of the graph */
+  public static final int NO_ID = -1;
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int[] NO_EDGES = new int[0];
+
+  private final Map<String, Integer> ids = new HashMap<>();
+  private Dependency[] nodes = new Dependency[INITIAL_CAPACITY];
+  private int[][] children = new int[INITIAL_CAPACITY][];
+  private int[] childCounts = new int[INITIAL_CAPACITY];
+  private int[][] parents = new int[INITIAL_CAPACITY][];
+  private int[] parentCounts = new int[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Adds a dependency to the graph
+   *
+   * @param dependency the dependency to add
+   * @return the id of the dependency, the existing id if its coordinates were already added
+   */
+  public int add(Dependency dependency) {
+    String key = keyOf(dependency.getCoordinates());
+    Integer id = ids.get(key);
+    if (id != null) {
+      return id;
+    }
+    if (size == nodes.length) {
+      grow();
+    }
+    int newId = size++;
+    nodes[newId] = dependency;
+    children[newId] = NO_EDGES;
+    parents[newId] = NO_EDGES;
+    ids.put(key, newId);
+    return newId;
+  }
+
+  /**
+   * Adds an edge from a dependency to one it declares, adding both nodes if required
+   *
+   * @param from the declaring dependency, a {@code null} value only adds {@code to}
+   * @param to the declared dependency
+   */
+  public void addEdge(Dependency from, Dependency to) {
+    int toId = add(to);
+    if (from == null) {
+      return;
+    }
+    int fromId = add(from);
+    if (fromId == toId || indexOf(children[fromId], childCounts[fromId], toId) >= 0) {
+      return;
+    }
+    children[fromId] = append(children[fromId], childCounts[fromId]++, toId);
+    parents[toId] = append(parents[toId], parentCounts[toId]++, fromId);
+  }
+
+  /**
+   * Adds every node and edge of another graph to this graph
+   *
+   * @param other the graph to add
+   */
+  public void addAll(DependencyGraph other) {
+    for (int id = 0; id < other.size; id++) {
+      Dependency from = other.nodes[id];
+      add(from);
+      for (int i = 0; i < other.childCounts[id]; i++) {
+        addEdge(from, other.nodes[other.children[id][i]]);
+      }
+    }
+  }
+
+  /**
+   * Gets the id of a dependency
+   *
+   * @param coordinates the coordinates of the dependency
+   * @return the id or {@link #NO_ID} if the dependency is not part of the graph
+   */
+  public int getId(Coordinates coordinates) {
+    Integer id = ids.get(keyOf(coordinates));
+    return (id != null) ? id : NO_ID;
+  }
+
+  public boolean contains(Dependency dependency) {
+    return getId(dependency.getCoordinates()) != NO_ID;
+  }
+
+  public Dependency getDependency(int id) {
+    return nodes[id];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the dependencies declared by a dependency
+   *
+   * @param dependency the declaring dependency
+   * @return the declared dependencies, empty if the dependency is not part of the graph
+   */
+  public List<Dependency> getChildren(Dependency dependency) {
+    int id = getId(dependency.getCoordinates());
+    return (id == NO_ID) ? Collections.emptyList() : toDependencies(children[id], childCounts[id]);
+  }
+
+  /**
+   * Gets the dependencies declaring a dependency
+   *
+   * @param dependency the declared dependency
+   * @return the declaring dependencies, empty if the dependency is a root or not in the graph
+   */
+  public List<Dependency> getParents(Dependency dependency) {
+    int id = getId(dependency.getCoordinates());
+    return (id == NO_ID) ? Collections.emptyList() : toDependencies(parents[id], parentCounts[id]);
+  }
+
+  /**
+   * Gets the dependencies of the graph with every dependency ahead of the ones it declares
+   *
+   * <p>Dependencies that take part in a cycle cannot be ordered and are appended in the order
+   * they were added.
+   *
+   * @return the dependencies in topological order
+   */
+  public List<Dependency> getTopologicalOrder() {
+    int[] inDegrees = Arrays.copyOf(parentCounts, size);
+    int[] order = new int[size];
+    int head = 0;
+    int tail = 0;
+    for (int id = 0; id < size; id++) {
+      if (inDegrees[id] == 0) {
+        order[tail++] = id;
+      }
+    }
+    while (head < tail) {
+      int id = order[head++];
+      for (int i = 0; i < childCounts[id]; i++) {
+        int child = children[id][i];
+        if (--inDegrees[child] == 0) {
+          order[tail++] = child;
+        }
+      }
+    }
+    for (int id = 0; id < size && tail < size; id++) {
+      if (inDegrees[id] > 0) {
+        order[tail++] = id;
+      }
+    }
+    return toDependencies(order, tail);
+  }
+
+  /**
+   * Gets the shortest path from a dependency back to a root of the graph, which tells why the
+   * dependency was resolved
+   *
+   * @param dependency the dependency to find the path for
+   * @return the path starting at the dependency and ending at a root, empty if the dependency is
+   *     not part of the graph
+   */
+  public List<Dependency> getPathToRoot(Dependency dependency) {
+    int start = getId(dependency.getCoordinates());
+    if (start == NO_ID) {
+      return Collections.emptyList();
+    }
+    int[] previous = new int[size];
+    Arrays.fill(previous, NO_ID);
+    previous[start] = start;
+    int[] queue = new int[size];
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = start;
+    int root = start;
+    while (head < tail) {
+      int id = queue[head++];
+      if (parentCounts[id] == 0) {
+        root = id;
+        break;
+      }
+      for (int i = 0; i < parentCounts[id]; i++) {
+        int parent = parents[id][i];
+        if (previous[parent] == NO_ID) {
+          previous[parent] = id;
+          queue[tail++] = parent;
+        }
+      }
+    }
+    List<Dependency> path = new ArrayList<>();
+    for (int id = root; ; id = previous[id]) {
+      path.add(nodes[id]);
+      if (id == start) {
+        break;
+      }
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * Gets the graph reachable from the roots once a single version of each artifact is selected
+   *
+   * <p>Every edge to a version that lost the selection is redirected to the selected version, so a
+   * losing version is left out together with the dependencies only reachable through it.
+   *
+   * @param roots the roots of the graph
+   * @param selected the selected dependency of each {@code groupId:artifactId}, an artifact without
+   *     an entry keeps the version it was added with
+   * @return a new graph of the selected dependencies reachable from the roots
+   */
+  public DependencyGraph select(List<Dependency> roots, Map<String, Dependency> selected) {
+    DependencyGraph result = new DependencyGraph();
+    boolean[] queued = new boolean[size];
+    int[] queue = new int[size];
+    int head = 0;
+    int tail = 0;
+    for (Dependency root : roots) {
+      int id = getSelectedId(root, selected);
+      if (id != NO_ID && !queued[id]) {
+        result.add(nodes[id]);
+        queued[id] = true;
+        queue[tail++] = id;
+      }
+    }
+    while (head < tail) {
+      int id = queue[head++];
+      for (int i = 0; i < childCounts[id]; i++) {
+        int child = getSelectedId(nodes[children[id][i]], selected);
+        if (child == NO_ID) {
+          continue;
+        }
+        result.addEdge(nodes[id], nodes[child]);
+        if (!queued[child]) {
+          queued[child] = true;
+          queue[tail++] = child;
+        }
+      }
+    }
+    return result;
+  }
+
+  private int getSelectedId(Dependency dependency, Map<String, Dependency> selected) {
+    Dependency selectedDependency =
+        selected.get(dependency.getCoordinates().getGroupAndArtifactId());
+    return getId(
+        ((selectedDependency != null) ? selectedDependency : dependency).getCoordinates());
+  }
+
+  private List<Dependency> toDependencies(int[] ids, int count) {
+    List<Dependency> dependencies = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      dependencies.add(nodes[ids[i]]);
+    }
+    return dependencies;
+  }
+
+  private void grow() {
+    int capacity = nodes.length * 2;
+    nodes = Arrays.copyOf(nodes, capacity);
+    children = Arrays.copyOf(children, capacity);
+    childCounts = Arrays.copyOf(childCounts, capacity);
+    parents = Arrays.copyOf(parents, capacity);
+    parentCounts = Arrays.copyOf(parentCounts, capacity);
+  }
+
+  private static int[] append(int[] edges, int count, int id) {
+    if (count == edges.length) {
+      edges = Arrays.copyOf(edges, Math.max(4, count * 2));
+    }
+    edges[count] = id;
+    return edges;
+  }
+
+  private static int indexOf(int[] edges, int count, int id) {
+    for (int i = 0; i < count; i++) {
+      if (edges[i] == id) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static String keyOf(Coordinates coordinates) {
+    return coordinates.toString();
+  }
+}
@@ -31,7 +31,6 @@ public class Exclusion {
 
   private String groupId;
   private String artifactId;
-  // TODO: support WILDCARD
   private static final String WILDCARD = "*";
 
   /**
@@ -96,7 +95,8 @@ public class Exclusion {
     String dAID = dependency.getCoordinates().getArtifactId();
     String dGID = dependency.getCoordinates().getGroupId();
     if ((gID != null || aID != null) || (dGID != null || dAID != null)) {
-      return (gID == null || gID.equals(dGID)) && (aID == null || aID.equals(dAID));
+      return (gID == null || WILDCARD.equals(gID) || gID.equals(dGID))
+          && (aID == null || WILDCARD.equals(aID) || aID.equals(dAID));
     }
     return false;
   }
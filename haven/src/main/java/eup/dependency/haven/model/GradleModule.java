@@ -0,0 +1,248 @@
+/*
+ *  MIT License
+ *  Copyright (c) 2023 EUP
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package eup.dependency.haven.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A representation of a Gradle Module Metadata ({@code .module}) file.
+ *
+ * <p>A module publishes one or more variants, each described by attributes such as usage and
+ * target platform, with the exact files that make up the variant and the dependencies it requires.
+ * A variant may also be published by another module, as Kotlin Multiplatform libraries do for
+ * their platform specific artifacts.
+ *
+ * @see <a
+ *     href="https://github.com/gradle/gradle/blob/master/platforms/documentation/docs/src/docs/design/gradle-module-metadata-latest-specification.md">Gradle
+ *     Module Metadata specification</a>
+ * @author EUP
+ */
+public class GradleModule {
+
+  public static final String ATTRIBUTE_CATEGORY = "org.gradle.category";
+  public static final String ATTRIBUTE_USAGE = "org.gradle.usage";
+  public static final String ATTRIBUTE_KOTLIN_PLATFORM = "org.jetbrains.kotlin.platform.type";
+  public static final String ATTRIBUTE_JVM_ENVIRONMENT = "org.gradle.jvm.environment";
+
+  private Coordinates coordinates;
+  private final List<Variant> variants = new ArrayList<>();
+
+  public Coordinates getCoordinates() {
+    return this.coordinates;
+  }
+
+  public void setCoordinates(Coordinates coordinates) {
+    this.coordinates = coordinates;
+  }
+
+  public List<Variant> getVariants() {
+    return this.variants;
+  }
+
+  public void addVariant(Variant variant) {
+    variants.add(variant);
+  }
+
+  /**
+   * Selects the variant to use on Android at runtime
+   *
+   * <p>Library variants for the runtime are preferred over API variants, and an Android variant is
+   * preferred over a JVM one, whether the target is told by the Kotlin platform type or by the JVM
+   * environment, as libraries such as Guava publish both a standard JVM and an Android variant.
+   * Variants for other Kotlin platforms (JS, native, common metadata) or other JVM environments and
+   * non library variants such as sources or javadoc are never selected.
+   *
+   * @return the selected variant or {@code null} if no variant can be used
+   */
+  public Variant selectRuntimeVariant() {
+    Variant selected = null;
+    int selectedScore = 0;
+    for (Variant variant : variants) {
+      int score = score(variant);
+      if (score > selectedScore) {
+        selected = variant;
+        selectedScore = score;
+      }
+    }
+    return selected;
+  }
+
+  private static int score(Variant variant) {
+    String category = variant.getAttribute(ATTRIBUTE_CATEGORY);
+    if (category != null && !"library".equals(category)) {
+      return 0;
+    }
+    int score = 1;
+    String usage = variant.getAttribute(ATTRIBUTE_USAGE);
+    if (usage != null) {
+      if (usage.endsWith("-runtime")) {
+        score += 4;
+      } else if (!usage.endsWith("-api")) {
+        // kotlin-metadata and other usages cannot be consumed
+        return 0;
+      }
+    }
+    String platform = variant.getAttribute(ATTRIBUTE_KOTLIN_PLATFORM);
+    if (platform != null) {
+      if ("androidJvm".equals(platform)) {
+        score += 16;
+      } else if ("jvm".equals(platform)) {
+        score += 8;
+      } else {
+        return 0;
+      }
+    }
+    String environment = variant.getAttribute(ATTRIBUTE_JVM_ENVIRONMENT);
+    if (environment != null) {
+      if ("android".equals(environment)) {
+        score += 16;
+      } else if ("standard-jvm".equals(environment)) {
+        score += 8;
+      } else {
+        return 0;
+      }
+    }
+    return score;
+  }
+
+  /** A variant of a {@link GradleModule} */
+  public static class Variant {
+
+    private String name;
+    private final Map<String, String> attributes = new HashMap<>();
+    private final List<ArtifactFile> files = new ArrayList<>();
+    private final List<Dependency> dependencies = new ArrayList<>();
+    private Coordinates availableAt;
+
+    public String getName() {
+      return this.name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public Map<String, String> getAttributes() {
+      return this.attributes;
+    }
+
+    public String getAttribute(String key) {
+      return attributes.get(key);
+    }
+
+    public void addAttribute(String key, String value) {
+      attributes.put(key, value);
+    }
+
+    public List<ArtifactFile> getFiles() {
+      return this.files;
+    }
+
+    public void addFile(ArtifactFile file) {
+      files.add(file);
+    }
+
+    /**
+     * Gets the dependencies of this variant
+     *
+     * <p>A dependency on a platform only constrains versions and is not part of the list, so a
+     * dependency whose version comes from a platform has a {@code null} version.
+     *
+     * @return the dependencies
+     */
+    public List<Dependency> getDependencies() {
+      return this.dependencies;
+    }
+
+    public void addDependency(Dependency dependency) {
+      dependencies.add(dependency);
+    }
+
+    /**
+     * Gets the coordinates of the module publishing this variant
+     *
+     * @return the coordinates or {@code null} if the variant is published by its own module
+     */
+    public Coordinates getAvailableAt() {
+      return this.availableAt;
+    }
+
+    public void setAvailableAt(Coordinates availableAt) {
+      this.availableAt = availableAt;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /** A file of a {@link Variant} */
+  public static class ArtifactFile {
+
+    private final String name;
+    private final String url;
+    private final long size;
+
+    /**
+     * Creates a new {@code ArtifactFile}
+     *
+     * @param name the file name
+     * @param url the file location relative to the module file
+     * @param size the file size in bytes, or {@code -1} if unknown
+     */
+    public ArtifactFile(String name, String url, long size) {
+      this.name = name;
+      this.url = (url != null) ? url : name;
+      this.size = size;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    public String getUrl() {
+      return this.url;
+    }
+
+    public long getSize() {
+      return this.size;
+    }
+
+    /**
+     * Gets the type of the file from its extension
+     *
+     * @return the extension of the file name, e.g. {@code aar} or {@code jar}
+     */
+    public String getType() {
+      int index = name.lastIndexOf('.');
+      return (index < 0) ? "jar" : name.substring(index + 1);
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
@@ -39,6 +39,8 @@ public class Pom {
   private List<Dependency> dependencies;
   private List<Exclusion> exclusions;
   private boolean userDefined;
+  // the POM was published alongside a Gradle Module Metadata file
+  private boolean gradleMetadata;
   private final Map<String, String> properties = new HashMap<>();
 
   public Pom() {
@@ -168,4 +170,12 @@ public class Pom {
   public boolean isUserDefined() {
     return userDefined;
   }
+
+  public void setGradleMetadata(boolean published) {
+    gradleMetadata = published;
+  }
+
+  public boolean hasGradleMetadata() {
+    return gradleMetadata;
+  }
 }
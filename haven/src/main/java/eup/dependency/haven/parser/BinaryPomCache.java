@@ -0,0 +1,321 @@
+/*
+ *  MIT License
+ *  Copyright (c) 2023 EUP
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package eup.dependency.haven.parser;
+
+import eup.dependency.haven.model.Coordinates;
+import eup.dependency.haven.model.Dependency;
+import eup.dependency.haven.model.Exclusion;
+import eup.dependency.haven.model.Pom;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of a parsed {@link Pom} stored next to its cached POM file.
+ *
+ * <p>The encoded file starts with a small header holding the last modified time and the size of
+ * the POM it was created from, so a changed POM invalidates it. Every string is written once to a
+ * string table and referenced by index afterwards, which keeps group ids and versions shared
+ * across dependencies small.
+ *
+ * @author EUP
+ */
+public final class BinaryPomCache {
+
+  /** The extension appended to a POM file name for its binary encoding */
+  public static final String EXTENSION = ".bin";
+
+  private static final int MAGIC = 0x48505043; // HPPC
+  private static final int FORMAT_VERSION = 2;
+  private static final int NULL_INDEX = -1;
+
+  private BinaryPomCache() {}
+
+  /**
+   * Gets the binary cache file of a POM file
+   *
+   * @param pomFile the cached POM file
+   */
+  public static File getCacheFile(File pomFile) {
+    return new File(pomFile.getParentFile(), pomFile.getName() + EXTENSION);
+  }
+
+  /**
+   * Reads a POM from its binary cache file
+   *
+   * @param pomFile the cached POM file the binary cache was created from
+   * @return the decoded POM or {@code null} if the cache is missing, stale or unreadable
+   */
+  public static Pom read(File pomFile) {
+    File cacheFile = getCacheFile(pomFile);
+    if (!cacheFile.exists() || !pomFile.exists()) {
+      return null;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "r");
+        FileChannel channel = raf.getChannel()) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < 24
+          || buffer.getInt() != MAGIC
+          || buffer.getInt() != FORMAT_VERSION
+          || buffer.getLong() != pomFile.lastModified()
+          || buffer.getLong() != pomFile.length()) {
+        return null;
+      }
+      return new Reader(buffer).readPom();
+    } catch (IOException | RuntimeException e) {
+      // a corrupted cache is treated as a miss, the POM would be parsed again
+      return null;
+    }
+  }
+
+  /**
+   * Writes the binary encoding of a POM next to the POM file it was parsed from
+   *
+   * @param pomFile the cached POM file
+   * @param pom the parsed POM
+   * @throws IOException in case of I/O error
+   */
+  public static void write(File pomFile, Pom pom) throws IOException {
+    if (pom == null || !pomFile.exists()) {
+      return;
+    }
+    Writer writer = new Writer();
+    writer.writePom(pom);
+
+    File cacheFile = getCacheFile(pomFile);
+    File tempFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+    try (OutputStream os = new FileOutputStream(tempFile);
+        DataOutputStream out = new DataOutputStream(os)) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(pomFile.lastModified());
+      out.writeLong(pomFile.length());
+      writer.writeTo(out);
+    }
+    if (!tempFile.renameTo(cacheFile)) {
+      // rename does not replace on every platform
+      if (!cacheFile.delete() || !tempFile.renameTo(cacheFile)) {
+        tempFile.delete();
+        throw new IOException("Failed to write binary POM cache " + cacheFile);
+      }
+    }
+  }
+
+  /** Encodes a POM into a string table and a body referencing it */
+  private static final class Writer {
+
+    private final Map<String, Integer> stringIndices = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(1024);
+    private final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+    void writePom(Pom pom) throws IOException {
+      if (pom == null) {
+        body.writeBoolean(false);
+        return;
+      }
+      body.writeBoolean(true);
+      writeCoordinates(pom.getCoordinates());
+      writeDependency(pom.getDependency());
+      writeDependencies(pom.getDependencies());
+      writeDependencies(pom.getManagedDependencies());
+      writeExclusions(pom.getExclusions());
+      Map<String, String> properties = pom.getProperties();
+      body.writeInt(properties.size());
+      for (Map.Entry<String, String> entry : properties.entrySet()) {
+        writeString(entry.getKey());
+        writeString(entry.getValue());
+      }
+      body.writeBoolean(pom.isUserDefined());
+      body.writeBoolean(pom.hasGradleMetadata());
+      writePom(pom.getParent());
+    }
+
+    private void writeCoordinates(Coordinates coordinates) throws IOException {
+      if (coordinates == null) {
+        body.writeBoolean(false);
+        return;
+      }
+      body.writeBoolean(true);
+      writeString(coordinates.getGroupId());
+      writeString(coordinates.getArtifactId());
+      writeString(coordinates.getVersion());
+      writeString(coordinates.getPackaging());
+    }
+
+    private void writeDependencies(List<Dependency> dependencies) throws IOException {
+      body.writeInt(dependencies.size());
+      for (Dependency dependency : dependencies) {
+        writeDependency(dependency);
+      }
+    }
+
+    private void writeDependency(Dependency dependency) throws IOException {
+      if (dependency == null) {
+        body.writeBoolean(false);
+        return;
+      }
+      body.writeBoolean(true);
+      writeCoordinates(dependency.getCoordinates());
+      writeString(dependency.getType());
+      writeString(dependency.getScope());
+      body.writeBoolean(dependency.isOptional());
+      writeExclusions(dependency.getExclusions());
+    }
+
+    private void writeExclusions(List<Exclusion> exclusions) throws IOException {
+      body.writeInt(exclusions.size());
+      for (Exclusion exclusion : exclusions) {
+        writeString(exclusion.getGroupId());
+        writeString(exclusion.getArtifactId());
+      }
+    }
+
+    private void writeString(String value) throws IOException {
+      if (value == null) {
+        body.writeInt(NULL_INDEX);
+        return;
+      }
+      Integer index = stringIndices.get(value);
+      if (index == null) {
+        index = strings.size();
+        strings.add(value);
+        stringIndices.put(value, index);
+      }
+      body.writeInt(index);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+      out.writeInt(strings.size());
+      for (String value : strings) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+      body.flush();
+      bodyBytes.writeTo(out);
+    }
+  }
+
+  /** Decodes a POM written by {@link Writer} */
+  private static final class Reader {
+
+    private final ByteBuffer buffer;
+    private final String[] strings;
+
+    Reader(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.strings = new String[buffer.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+
+    Pom readPom() {
+      if (!readBoolean()) {
+        return null;
+      }
+      Pom pom = new Pom();
+      pom.setCoordinates(readCoordinates());
+      pom.setDependency(readDependency());
+      pom.setDependencies(readDependencies());
+      pom.setManagedDependencies(readDependencies());
+      pom.setExclusions(readExclusions());
+      int propertyCount = buffer.getInt();
+      for (int i = 0; i < propertyCount; i++) {
+        String key = readString();
+        pom.addProperty(key, readString());
+      }
+      pom.setUserDefined(readBoolean());
+      pom.setGradleMetadata(readBoolean());
+      pom.setParent(readPom());
+      return pom;
+    }
+
+    private Coordinates readCoordinates() {
+      if (!readBoolean()) {
+        return null;
+      }
+      String groupId = readString();
+      String artifactId = readString();
+      String version = readString();
+      return new Coordinates(groupId, artifactId, version, readString());
+    }
+
+    private List<Dependency> readDependencies() {
+      int count = buffer.getInt();
+      List<Dependency> dependencies = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        dependencies.add(readDependency());
+      }
+      return dependencies;
+    }
+
+    private Dependency readDependency() {
+      if (!readBoolean()) {
+        return null;
+      }
+      Dependency dependency = new Dependency(readCoordinates());
+      dependency.setType(readString());
+      dependency.setScope(readString());
+      dependency.setOptional(readBoolean());
+      for (Exclusion exclusion : readExclusions()) {
+        dependency.addExclusions(exclusion);
+      }
+      return dependency;
+    }
+
+    private List<Exclusion> readExclusions() {
+      int count = buffer.getInt();
+      List<Exclusion> exclusions = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        Exclusion exclusion = new Exclusion();
+        exclusion.setGroupId(readString());
+        exclusion.setArtifactId(readString());
+        exclusions.add(exclusion);
+      }
+      return exclusions;
+    }
+
+    private String readString() {
+      int index = buffer.getInt();
+      return index == NULL_INDEX ? null : strings[index];
+    }
+
+    private boolean readBoolean() {
+      return buffer.get() != 0;
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ *  MIT License
+ *  Copyright (c) 2023 EUP
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package eup.dependency.haven.parser;
+
+import eup.dependency.haven.model.Coordinates;
+import eup.dependency.haven.model.Dependency;
+import eup.dependency.haven.model.Exclusion;
+import eup.dependency.haven.model.GradleModule;
+import eup.dependency.haven.model.GradleModule.ArtifactFile;
+import eup.dependency.haven.model.GradleModule.Variant;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A parser that retrives variant information from a Gradle Module Metadata stream
+ *
+ * @author EUP
+ */
+public class ModuleParser {
+
+  private static final String KEY_COMPONENT = "component";
+  private static final String KEY_VARIANTS = "variants";
+  private static final String KEY_NAME = "name";
+  private static final String KEY_ATTRIBUTES = "attributes";
+  private static final String KEY_FILES = "files";
+  private static final String KEY_URL = "url";
+  private static final String KEY_SIZE = "size";
+  private static final String KEY_AVAILABLE_AT = "available-at";
+  private static final String KEY_GROUP = "group";
+  private static final String KEY_MODULE = "module";
+  private static final String KEY_VERSION = "version";
+  private static final String KEY_DEPENDENCIES = "dependencies";
+  private static final String KEY_EXCLUDES = "excludes";
+  private static final String KEY_STRICTLY = "strictly";
+  private static final String KEY_REQUIRES = "requires";
+  private static final String KEY_PREFERS = "prefers";
+  private static final String CATEGORY_PLATFORM = "platform";
+  private static final String CATEGORY_ENFORCED_PLATFORM = "enforced-platform";
+
+  public GradleModule parse(InputStream moduleStream) throws IOException {
+    if (moduleStream == null) {
+      return null;
+    }
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(moduleStream, StandardCharsets.UTF_8));
+    StringBuilder sb = new StringBuilder();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      sb.append(line);
+    }
+    try {
+      return parseModule(new JSONObject(sb.toString()));
+    } catch (JSONException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private GradleModule parseModule(JSONObject json) {
+    GradleModule module = new GradleModule();
+    JSONObject component = json.optJSONObject(KEY_COMPONENT);
+    if (component != null) {
+      module.setCoordinates(parseCoordinates(component));
+    }
+    JSONArray variants = json.optJSONArray(KEY_VARIANTS);
+    if (variants == null) {
+      return module;
+    }
+    for (int i = 0; i < variants.length(); i++) {
+      JSONObject variant = variants.optJSONObject(i);
+      if (variant != null) {
+        module.addVariant(parseVariant(variant));
+      }
+    }
+    return module;
+  }
+
+  private Variant parseVariant(JSONObject json) {
+    Variant variant = new Variant();
+    variant.setName(json.optString(KEY_NAME, null));
+
+    JSONObject attributes = json.optJSONObject(KEY_ATTRIBUTES);
+    if (attributes != null) {
+      for (String key : attributes.keySet()) {
+        variant.addAttribute(key, attributes.optString(key, null));
+      }
+    }
+
+    JSONArray files = json.optJSONArray(KEY_FILES);
+    if (files != null) {
+      for (int i = 0; i < files.length(); i++) {
+        JSONObject file = files.optJSONObject(i);
+        if (file == null || !file.has(KEY_NAME)) {
+          continue;
+        }
+        variant.addFile(
+            new ArtifactFile(
+                file.optString(KEY_NAME, null),
+                file.optString(KEY_URL, null),
+                file.optLong(KEY_SIZE, -1)));
+      }
+    }
+
+    JSONArray dependencies = json.optJSONArray(KEY_DEPENDENCIES);
+    if (dependencies != null) {
+      for (int i = 0; i < dependencies.length(); i++) {
+        JSONObject dependency = dependencies.optJSONObject(i);
+        if (dependency != null && !isPlatform(dependency)) {
+          variant.addDependency(parseDependency(dependency));
+        }
+      }
+    }
+
+    JSONObject availableAt = json.optJSONObject(KEY_AVAILABLE_AT);
+    if (availableAt != null) {
+      variant.setAvailableAt(parseCoordinates(availableAt));
+    }
+    return variant;
+  }
+
+  private Dependency parseDependency(JSONObject json) {
+    String version = null;
+    JSONObject versionConstraint = json.optJSONObject(KEY_VERSION);
+    if (versionConstraint != null) {
+      // a strict version overrides the required one
+      version = versionConstraint.optString(KEY_STRICTLY, null);
+      if (version == null) {
+        version = versionConstraint.optString(KEY_REQUIRES, null);
+      }
+      if (version == null) {
+        version = versionConstraint.optString(KEY_PREFERS, null);
+      }
+    }
+    Dependency dependency =
+        new Dependency(
+            new Coordinates(
+                json.optString(KEY_GROUP, null), json.optString(KEY_MODULE, null), version));
+
+    JSONArray excludes = json.optJSONArray(KEY_EXCLUDES);
+    if (excludes != null) {
+      for (int i = 0; i < excludes.length(); i++) {
+        JSONObject exclude = excludes.optJSONObject(i);
+        if (exclude != null) {
+          dependency.addExclusions(
+              new Exclusion(
+                  exclude.optString(KEY_GROUP, null), exclude.optString(KEY_MODULE, null)));
+        }
+      }
+    }
+    return dependency;
+  }
+
+  /**
+   * Check whether a dependency is on a platform, which only constrains the versions of other
+   * dependencies as a BOM imported in a POM does
+   */
+  private boolean isPlatform(JSONObject dependency) {
+    JSONObject attributes = dependency.optJSONObject(KEY_ATTRIBUTES);
+    if (attributes == null) {
+      return false;
+    }
+    String category = attributes.optString(GradleModule.ATTRIBUTE_CATEGORY, null);
+    return CATEGORY_PLATFORM.equals(category) || CATEGORY_ENFORCED_PLATFORM.equals(category);
+  }
+
+  private Coordinates parseCoordinates(JSONObject json) {
+    return new Coordinates(
+        json.optString(KEY_GROUP, null),
+        json.optString(KEY_MODULE, null),
+        json.optString(KEY_VERSION, null));
+  }
+}
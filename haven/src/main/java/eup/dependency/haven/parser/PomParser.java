@@ -71,6 +71,8 @@ public class PomParser {
   private static final String NODE_NAME_SCOPE = "scope";
   private static final String NODE_NAME_TYPE = "type";
   private static final String NODE_NAME_PACKAGING = "packaging";
+  // marker comment written by Gradle to POMs published with Gradle Module Metadata
+  private static final String GRADLE_METADATA_MARKER = "published-with-gradle-metadata";
 
   private DocumentBuilderFactory dbFactory;
 
@@ -82,7 +84,8 @@ public class PomParser {
     this.repository = repository;
     this.mProperties = new HashMap<>();
     this.dbFactory = DocumentBuilderFactory.newInstance();
-    this.dbFactory.setIgnoringComments(true);
+    // comments are kept to detect the Gradle Module Metadata marker
+    this.dbFactory.setIgnoringComments(false);
   }
 
   public Pom parse(InputStream pomStream) throws IOException {
@@ -123,7 +126,11 @@ public class PomParser {
     for (int i = 0; i < childNodes.getLength(); i++) {
       Node child = childNodes.item(i);
       String nodeName = child.getNodeName();
-      if (NODE_NAME_DEPENDENCIES.equals(nodeName)) {
+      if (child.getNodeType() == Node.COMMENT_NODE) {
+        if (child.getNodeValue().contains(GRADLE_METADATA_MARKER)) {
+          pom.setGradleMetadata(true);
+        }
+      } else if (NODE_NAME_DEPENDENCIES.equals(nodeName)) {
         pom.setDependencies(parseDependencies(pom, (Element) child));
       } else if (NODE_NAME_DEPENDENCY_MANAGEMENT.equals(nodeName)) {
         List<Dependency> dependencies = parseDependencies(pom, (Element) child);
@@ -49,7 +49,7 @@ public class LocalStorageFactory implements StorageFactory {
       Dependency dependency, RemoteRepository remoteRepository, String relativePath) {
     try {
       downloadCallback.info("Fetching POM for " + dependency + " in " + remoteRepository.getName());
-      File file = getFile(remoteRepository, relativePath);
+      File file = getFile(remoteRepository, relativePath, -1);
       if (file != null && file.exists()) {
         downloadCallback.info(
             "Pom for " + dependency + " found in remote repository " + remoteRepository.getName());
@@ -71,10 +71,12 @@ public class LocalStorageFactory implements StorageFactory {
   public File getLibrary(Pom pom) {
     String fileName = pom.getDependency().toString();
     String relativePath = DependencyResolver.getLibraryDownloadURL(pom.getDependency());
+    // the size is known when the artifact was selected from Gradle Module Metadata
+    long size = pom.getDependency().getArtifactSize();
     // check if file library is cached
     for (LocalRepository repository : LocalRepository.getRepositories(getCacheDirectory())) {
       try {
-        File cachedFile = getCachedFile(repository, relativePath);
+        File cachedFile = getCachedFile(repository, relativePath, size);
         if (cachedFile != null && cachedFile.exists()) {
           downloadCallback.info("Library for " + fileName + " found in cache");
           return cachedFile;
@@ -91,7 +93,7 @@ public class LocalStorageFactory implements StorageFactory {
     // cannot find file library in local repositories , try retrieving from a remote repositories
     for (RemoteRepository repository : resolver.repositories) {
       try {
-        File file = getFile(repository, relativePath);
+        File file = getFile(repository, relativePath, size);
         if (file != null && file.exists()) {
           downloadCallback.info(
               "Library for " + fileName + " found in remote repository " + repository.getName());
@@ -110,7 +112,15 @@ public class LocalStorageFactory implements StorageFactory {
     return null;
   }
 
-  private File getCachedFile(ArtifactRepository repository, String relativePath)
+  /**
+   * Gets a file from the cache
+   *
+   * @param repository the repository the file was downloaded from
+   * @param relativePath the relative path to the file
+   * @param size the expected size of the file in bytes, or {@code -1} if unknown
+   * @return the cached file or {@code null} if it is not cached or was partially downloaded
+   */
+  private File getCachedFile(ArtifactRepository repository, String relativePath, long size)
       throws IOException {
     File rootDirectory = new File(cacheDirectory, repository.getName());
     if (!rootDirectory.exists()) {
@@ -122,16 +132,33 @@ public class LocalStorageFactory implements StorageFactory {
     if (!file.exists()) {
       return null;
     }
+    if (!hasSize(file, size)) {
+      downloadCallback.warning(
+          "Cached " + relativePath + " has " + file.length() + " bytes instead of " + size);
+      return null;
+    }
     return file;
   }
 
-  private File getFile(ArtifactRepository repository, String relativePath) throws IOException {
-    File file = getCachedFile(repository, relativePath);
+  private File getFile(ArtifactRepository repository, String relativePath, long size)
+      throws IOException {
+    File file = getCachedFile(repository, relativePath, size);
     if (file != null && file.exists()) {
       return file;
     }
 
-    return downloadFile(repository, relativePath);
+    file = downloadFile(repository, relativePath);
+    if (file != null && !hasSize(file, size)) {
+      downloadCallback.error(
+          relativePath + " downloaded with " + file.length() + " bytes instead of " + size);
+      FileUtils.deleteQuietly(file);
+      return null;
+    }
+    return file;
+  }
+
+  private static boolean hasSize(File file, long size) {
+    return size < 0 || file.length() == size;
   }
 
   /**
@@ -24,13 +24,20 @@ import eup.dependency.haven.async.AsyncTaskExecutor;
 import eup.dependency.haven.callback.DependencyResolutionCallback;
 import eup.dependency.haven.model.Coordinates;
 import eup.dependency.haven.model.Dependency;
+import eup.dependency.haven.model.DependencyGraph;
+import eup.dependency.haven.model.GradleModule;
+import eup.dependency.haven.model.GradleModule.ArtifactFile;
+import eup.dependency.haven.model.GradleModule.Variant;
 import eup.dependency.haven.model.Pom;
+import eup.dependency.haven.parser.BinaryPomCache;
+import eup.dependency.haven.parser.ModuleParser;
 import eup.dependency.haven.parser.PomParser;
 import eup.dependency.haven.repository.LocalRepository;
 import eup.dependency.haven.repository.RemoteRepository;
 import eup.dependency.haven.repository.Repository;
 import eup.dependency.haven.repository.StorageFactory;
 import eup.dependency.haven.resolver.internal.DependencyResolutionSkipper;
+import eup.dependency.haven.resolver.internal.DependencyResolutionSkipper.ExclusionScope;
 import eup.dependency.haven.versioning.ComparableVersion;
 import java.io.File;
 import java.io.FileInputStream;
@@ -41,6 +48,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -48,10 +57,13 @@ import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import org.xml.sax.SAXException;
 
 /**
@@ -66,20 +78,35 @@ import org.xml.sax.SAXException;
 public class DependencyResolver implements Repository {
 
   private Coordinates coordinates;
+  // the coordinates of every root resolved into one graph
+  private List<Coordinates> rootCoordinates;
 
   // data structure for bfs transversal
   private Queue<Dependency> queue = new LinkedList<>();
   private Set<Dependency> seen = new HashSet<>();
+  // the coordinates expanded by any root of a resolution of several roots, each with the exclusions
+  // it was expanded with, see traversalKey(); null for a single root
+  private Set<String> visited;
+  // exclusions inherited by each queued dependency from the path that declared it
+  private Map<Dependency, ExclusionScope> exclusionScopes = new IdentityHashMap<>();
   // keep track of all resolved dependencies
-  private List<Dependency> resolvedDependencies = new LinkedList<>();
+  private List<Dependency> resolvedDependencies = new ArrayList<>();
+  // the edges between resolved dependencies and the dependencies declaring them
+  private DependencyGraph graph = new DependencyGraph();
+  private Map<Dependency, Dependency> declaringDependencies = new IdentityHashMap<>();
   // keep track of all unresolved dependencies
   private List<Dependency> unresolvedDependencies = new ArrayList<>();
+  // POMs and Gradle modules read during resolution, shared by the resolvers of every root
+  private ConcurrentMap<String, FutureTask<Pom>> poms = new ConcurrentHashMap<>();
+  private ConcurrentMap<String, FutureTask<GradleModule>> modules = new ConcurrentHashMap<>();
   private DependencyResolutionCallback callback;
   // storage factory for caching resolved artifacts
   private StorageFactory storageFactory;
   private DependencyResolutionSkipper skipper;
   public final List<RemoteRepository> repositories;
   private boolean skipInnerDependencies = false;
+  // guards against modules redirecting variants to each other
+  private static final int MAX_VARIANT_REDIRECTS = 2;
   // TODO: REWORK THIS CLASS TO USE POM INSTEAD OF DEPENDEBCY WHILE ITERATING
   // SO THAT I CLOUD PRIORITIZE HIGHER VERSIONS OF POMS USING MAP WITH OREFERENCE TO HIGHER POM
   // VERSIONS
@@ -90,7 +117,7 @@ public class DependencyResolver implements Repository {
    * @param coordinates The dependency coordinates to resolve for
    */
   public DependencyResolver(Coordinates coordinates) {
-    this(null, coordinates);
+    this((StorageFactory) null, coordinates);
   }
 
   /**
@@ -102,9 +129,45 @@ public class DependencyResolver implements Repository {
   public DependencyResolver(StorageFactory storageFactory, Coordinates coordinates) {
     this.storageFactory = storageFactory;
     this.coordinates = coordinates;
+    this.rootCoordinates =
+        (coordinates != null) ? Collections.singletonList(coordinates) : Collections.emptyList();
     this.repositories = new ArrayList<>();
   }
 
+  /**
+   * Creates a DependencyResolver that resolves several dependencies into one graph
+   *
+   * <p>The dependencies are resolved concurrently, sharing every POM read, and when they require
+   * different versions of the same artifact the higher version is selected.
+   *
+   * @param storageFactory the factory for managing cached dependencies and POMs
+   * @param coordinates The dependency coordinates to resolve for, see {@link
+   *     Coordinates#valuesOf(String)}
+   */
+  public DependencyResolver(StorageFactory storageFactory, List<Coordinates> coordinates) {
+    this(storageFactory, coordinates.isEmpty() ? null : coordinates.get(0));
+    this.rootCoordinates = new ArrayList<>(coordinates);
+  }
+
+  /**
+   * Creates a DependencyResolver for one root of a resolution of several dependencies
+   *
+   * @param session the resolver resolving every root
+   * @param coordinates The dependency coordinates of the root
+   */
+  private DependencyResolver(DependencyResolver session, Coordinates coordinates) {
+    this.storageFactory = session.storageFactory;
+    this.coordinates = coordinates;
+    this.rootCoordinates = Collections.singletonList(coordinates);
+    this.repositories = session.repositories;
+    this.poms = session.poms;
+    this.modules = session.modules;
+    this.visited = session.visited;
+    this.callback = session.callback;
+    this.skipper = new DependencyResolutionSkipper(session.callback);
+    this.skipInnerDependencies = session.skipInnerDependencies;
+  }
+
   /**
    * Initlize resoution for the given dependency by reading its POM file
    *
@@ -129,13 +192,18 @@ public class DependencyResolver implements Repository {
               + " GroupID:ArtifactID:Version");
       return;
     }
+    String target =
+        (rootCoordinates.size() > 1) ? rootCoordinates.toString() : coordinates.toString();
     try {
       // Record the start time
       long startTime = System.currentTimeMillis();
-      callback.info("Starting Resolution for " + coordinates);
+      callback.info("Starting Resolution for " + target);
       AsyncTaskExecutor.loadTaskAsync(
           () -> {
             //  run on a background thread
+            if (rootCoordinates.size() > 1) {
+              return resolveRoots();
+            }
             List<Dependency> dependencies = resolveDependencies(new Dependency(coordinates));
             return dependencies;
           },
@@ -143,17 +211,124 @@ public class DependencyResolver implements Repository {
             // runs on the main thread
             long endTime = System.currentTimeMillis();
             if (dependencies.isEmpty()) {
-              callback.warning("No dependencies found for " + coordinates);
+              callback.warning("No dependencies found for " + target);
             } else {
               callback.onDependenciesResolved(
-                  "Successfully resolved " + coordinates, dependencies, (endTime - startTime));
+                  "Successfully resolved " + target, dependencies, (endTime - startTime));
             }
           });
     } catch (Exception e) {
-      callback.error("Failed to resolve " + coordinates + " " + e.getMessage());
+      callback.error("Failed to resolve " + target + " " + e.getMessage());
+    }
+  }
+
+  /**
+   * Resolves every root concurrently and merges them into one graph
+   *
+   * <p>Each root is traversed by its own resolver, all of them sharing the POMs read so far and
+   * the dependencies already visited, so a subgraph shared between roots is only fetched, parsed
+   * and traversed once, by the first root reaching it. Every version of an artifact is visited
+   * rather than only the first one met, and a dependency reached under different exclusions is
+   * traversed once for each of them, which keeps the graph the same whatever the order the roots
+   * reach it in. When different versions of an artifact were resolved the higher version is
+   * selected and the dependencies only reachable through the other versions are dropped.
+   *
+   * @return the resolved dependencies of every root
+   */
+  private List<Dependency> resolveRoots() throws InterruptedException {
+    int threads = Math.min(rootCoordinates.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    visited = ConcurrentHashMap.newKeySet();
+    List<Dependency> roots = new ArrayList<>();
+    for (Coordinates root : rootCoordinates) {
+      Dependency dependency = new Dependency(root);
+      roots.add(dependency);
+      // the resolver of each root traverses it
+      visited.add(traversalKey(dependency, ExclusionScope.EMPTY));
+    }
+    List<DependencyResolver> rootResolvers = new ArrayList<>();
+    List<Future<List<Dependency>>> futures = new ArrayList<>();
+    try {
+      for (Dependency root : roots) {
+        DependencyResolver rootResolver = new DependencyResolver(this, root.getCoordinates());
+        rootResolvers.add(rootResolver);
+        futures.add(executorService.submit(() -> rootResolver.resolveDependencies(root)));
+      }
+
+      Map<String, Dependency> selected = new LinkedHashMap<>();
+      for (int i = 0; i < futures.size(); i++) {
+        DependencyResolver rootResolver = rootResolvers.get(i);
+        List<Dependency> dependencies;
+        try {
+          dependencies = futures.get(i).get();
+        } catch (ExecutionException e) {
+          callback.error("Failed to resolve " + rootResolver.coordinates + " " + e.getCause());
+          continue;
+        }
+        graph.addAll(rootResolver.graph);
+        unresolvedDependencies.addAll(rootResolver.unresolvedDependencies);
+        for (Dependency dependency : dependencies) {
+          selectVersion(selected, dependency);
+        }
+      }
+      graph = graph.select(roots, selected);
+      for (Dependency dependency : selected.values()) {
+        if (graph.contains(dependency)) {
+          resolvedDependencies.add(dependency);
+        } else {
+          callback.verbose("Dropped " + dependency + " only required by unselected versions");
+        }
+      }
+      return resolvedDependencies;
+    } finally {
+      executorService.shutdown();
     }
   }
 
+  /**
+   * Gets the key under which a dependency is visited by a resolution of several roots
+   *
+   * <p>The subtree of a dependency depends on the exclusions in effect below it, so the same
+   * coordinates reached under different exclusions are traversed again.
+   *
+   * @param dependency the dependency to traverse
+   * @param scope the exclusions inherited from the path that declared the dependency
+   * @return the coordinates of the dependency and the exclusions of its subtree
+   */
+  private static String traversalKey(Dependency dependency, ExclusionScope scope) {
+    return dependency.getCoordinates() + " " + scope.with(dependency.getExclusions()).getKey();
+  }
+
+  /**
+   * Selects the higher version when an artifact has been resolved in more than one version
+   *
+   * @param selected the selected dependency of each {@code groupId:artifactId}
+   * @param dependency the resolved dependency
+   */
+  private void selectVersion(Map<String, Dependency> selected, Dependency dependency) {
+    String key = dependency.getCoordinates().getGroupAndArtifactId();
+    Dependency current = selected.get(key);
+    if (current == null) {
+      selected.put(key, dependency);
+      return;
+    }
+    String currentVersion = current.getCoordinates().getVersion();
+    String version = dependency.getCoordinates().getVersion();
+    if (currentVersion.equals(version)) {
+      return;
+    }
+    if (getHigherVersion(currentVersion, version) < 0) {
+      selected.put(key, dependency);
+    }
+    callback.warning(
+        "Version conflict detected for "
+            + current
+            + " against "
+            + dependency
+            + " resolved as "
+            + selected.get(key));
+  }
+
   /**
    * Resolves a dependency and adds its direct and transitive to list
    *
@@ -162,61 +337,182 @@ public class DependencyResolver implements Repository {
   private List<Dependency> resolveDependencies(Dependency dependency) {
     if (skipInnerDependencies) {
       List<Dependency> directDependencies = new ArrayList<>();
-      InputStream is = null;
       Dependency directDependency = dependency;
       try {
-        is = searchRepositories(dependency);
-        Pom parsedPom = new Pom();
-        // parse the pom
-        parsedPom = resolvePom(is);
-        // retrieve the packaging of the direct dependency
-        directDependency.setType(parsedPom.getCoordinates().getPackaging());
-        if (is == null) {
+        // select the artifact of the direct dependency
+        if (selectArtifact(directDependency) == null && readPom(directDependency) == null) {
           callback.error(
               "Failed to resolve " + dependency + ",Cause: search repositories was null");
           return Collections.emptyList();
         }
       } catch (IOException e) {
         callback.error("Failed to retrieve info for " + dependency + " " + e.getMessage());
-      } finally {
-        try {
-          is.close();
-        } catch (IOException e) {
-          callback.error("Failed to close search " + e.getMessage());
-        }
       }
       directDependencies.add(directDependency);
       return directDependencies;
     } else {
+      // declared dependencies had their artifact selected already, this only selects the root's
+      selectArtifact(dependency);
+      graph.add(dependency);
       resolve(new Pom(dependency));
       return resolvedDependencies;
     }
   }
 
   /**
-   * Sets the dependency type from it's packaging
+   * Selects the artifact of a dependency
    *
-   * <p>If the type is not declared in a POM the packaging is also aliased as type
+   * <p>When the dependency was published with Gradle Module Metadata the type and artifact file
+   * are taken from the runtime variant selected from the {@link GradleModule}. Otherwise, if the
+   * type is not declared, the packaging of its POM is aliased as type.
    *
-   * @param dependency the dependency with an ambiguous type
+   * @param dependency the dependency to select the artifact for
+   * @return the selected variant or {@code null} if no variant could be selected
    */
-  private String fallbackType(Dependency dependency) {
-    String defaultType = "jar";
-
+  private Variant selectArtifact(Dependency dependency) {
     try {
-      InputStream is = searchRepositories(dependency);
-      if (is == null) {
-        return defaultType;
+      Variant variant = selectVariant(dependency, MAX_VARIANT_REDIRECTS);
+      if (variant != null) {
+        return variant;
+      }
+      if (dependency.getType() == null || dependency.getType().isEmpty()) {
+        Pom parsedPom = readPom(dependency);
+        dependency.setType((parsedPom != null) ? parsedPom.getCoordinates().getPackaging() : "jar");
       }
-      Pom parsedPom = new Pom();
-      // parse the pom
-      parsedPom = resolvePom(is);
-      is.close();
-      return parsedPom.getCoordinates().getPackaging();
     } catch (Exception e) {
       callback.error("Failed to get extension for " + dependency + " with ambiguous type " + e);
-      // ignore and default type to jar
-      return defaultType;
+      if (dependency.getType() == null || dependency.getType().isEmpty()) {
+        // ignore and default type to jar
+        dependency.setType("jar");
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Selects the runtime variant of a dependency from its Gradle Module Metadata
+   *
+   * <p>A variant published by another module, as done by Kotlin Multiplatform libraries, redirects
+   * the dependency to the coordinates of that module, once a variant has been selected there.
+   *
+   * @param dependency the dependency to select the variant for
+   * @param redirects the number of redirects to other modules still allowed
+   * @return the selected variant or {@code null} if no variant could be selected
+   */
+  private Variant selectVariant(Dependency dependency, int redirects) throws IOException {
+    GradleModule module = readModule(dependency);
+    if (module == null) {
+      return null;
+    }
+    Variant variant = module.selectRuntimeVariant();
+    if (variant == null) {
+      return null;
+    }
+    Coordinates availableAt = variant.getAvailableAt();
+    if (availableAt != null) {
+      if (redirects <= 0) {
+        return null;
+      }
+      callback.verbose(
+          "Variant " + variant + " of " + dependency + " is available at " + availableAt);
+      Dependency redirected = new Dependency(dependency);
+      redirected.setCoordinates(availableAt);
+      Variant redirectedVariant = selectVariant(redirected, redirects - 1);
+      if (redirectedVariant != null) {
+        // otherwise the dependency keeps its coordinates to fall back to its POM
+        dependency.setCoordinates(redirected.getCoordinates());
+        dependency.setArtifactFile(redirected.getArtifactFile(), redirected.getArtifactSize());
+        dependency.setType(redirected.getType());
+      }
+      return redirectedVariant;
+    }
+    if (variant.getFiles().isEmpty()) {
+      return null;
+    }
+    ArtifactFile file = variant.getFiles().get(0);
+    dependency.setArtifactFile(file.getUrl(), file.getSize());
+    dependency.setType(file.getType());
+    callback.verbose("Selected variant " + variant + " of " + dependency);
+    return variant;
+  }
+
+  /**
+   * Reads the dependencies declared by a dependency
+   *
+   * <p>They are taken from the runtime variant of its Gradle Module Metadata when there is one, and
+   * from the POM for artifacts published without Gradle Module Metadata, or when a dependency of
+   * the variant has its version managed by a platform.
+   *
+   * @param dependency the dependency to read the declared dependencies for
+   * @return the declared dependencies or {@code null} if neither a module nor a POM was found
+   * @throws IOException in case of I/O error
+   */
+  private List<Dependency> readDependencies(Dependency dependency) throws IOException {
+    Variant variant = selectVariant(dependency, MAX_VARIANT_REDIRECTS);
+    if (variant != null && hasVersions(variant.getDependencies())) {
+      // like a parsed POM, also list the dependency itself so that a root is resolved too
+      List<Dependency> dependencies = new ArrayList<>(variant.getDependencies());
+      dependencies.add(new Dependency(dependency));
+      return dependencies;
+    }
+    Pom parsedPom = readPom(dependency);
+    return (parsedPom != null) ? parsedPom.getDependencies() : null;
+  }
+
+  private static boolean hasVersions(List<Dependency> dependencies) {
+    for (Dependency dependency : dependencies) {
+      if (dependency.getCoordinates().getVersion() == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the Gradle Module Metadata of a dependency
+   *
+   * <p>Every module is loaded once per resolution, concurrent reads of the same module wait for the
+   * first one to complete.
+   *
+   * @param dependency the dependency to read the module for
+   * @return the parsed module or {@code null} if it was not published
+   * @throws IOException in case of I/O error
+   */
+  private GradleModule readModule(Dependency dependency) throws IOException {
+    return load(modules, getModuleDownloadURL(dependency), () -> loadModule(dependency));
+  }
+
+  /**
+   * Loads the Gradle Module Metadata of a dependency
+   *
+   * <p>Unless the module is cached, the POM is read first: its {@link Pom#hasGradleMetadata()}
+   * marker tells whether a module was published, so artifacts published without one never cost a
+   * failed request per repository. The module is still requested when no POM could be read.
+   *
+   * @param dependency the dependency to load the module for
+   * @return the parsed module or {@code null} if it was not published
+   * @throws IOException in case of I/O error
+   */
+  private GradleModule loadModule(Dependency dependency) throws IOException {
+    String modulePath = getModuleDownloadURL(dependency);
+    File cachedModule = findCachedFile(modulePath);
+    InputStream is;
+    if (cachedModule != null) {
+      is = new FileInputStream(cachedModule);
+    } else {
+      Pom parsedPom = readPom(dependency);
+      if (parsedPom != null && !parsedPom.hasGradleMetadata()) {
+        return null;
+      }
+      is = searchRepositories(dependency, modulePath, true);
+    }
+    if (is == null) {
+      return null;
+    }
+    try {
+      return new ModuleParser().parse(is);
+    } finally {
+      is.close();
     }
   }
 
@@ -227,24 +523,31 @@ public class DependencyResolver implements Repository {
    */
   private void resolve(Pom pom) {
     Dependency parent = pom.getDependency();
+    // exclusions declared on the parent apply to its whole subtree
+    ExclusionScope scope =
+        exclusionScopes.getOrDefault(parent, ExclusionScope.EMPTY).with(parent.getExclusions());
 
-    InputStream inputStream = searchRepositories(parent);
-    if (inputStream == null) {
-      return;
-    }
-    Pom parsePom = new Pom();
     try {
-      // parse the pom
-      parsePom = resolvePom(inputStream);
-
-      parsePom
-          .getDependencies()
-          .forEach(
-              directDependency -> {
-                // Check if type is not explicitly declared
-                if (directDependency.getType() == null || directDependency.getType().isEmpty()) {
-                  directDependency.setType(fallbackType(directDependency));
+      // read the module or the pom
+      List<Dependency> declaredDependencies = readDependencies(parent);
+      if (declaredDependencies == null) {
+        return;
+      }
+
+      declaredDependencies.forEach(
+              declaredDependency -> {
+                // the parsed POM or module may be shared with other resolvers
+                Dependency directDependency = new Dependency(declaredDependency);
+                // excluded subtrees are never fetched
+                if (skipper.isExcluded(directDependency, scope)) {
+                  callback.info("Skipped resolving excluded dependency " + directDependency);
+                  unresolvedDependencies.add(directDependency);
+                  return;
                 }
+                exclusionScopes.put(directDependency, scope);
+                declaringDependencies.put(directDependency, parent);
+                // select the variant, or the packaging if the type is not explicitly declared
+                selectArtifact(directDependency);
                 // add each dependency to the search
                 queue.add(directDependency);
               });
@@ -260,13 +563,33 @@ public class DependencyResolver implements Repository {
       Pom currPom = new Pom();
       // add just pulled dependency as coordinates to pom
       currPom.setCoordinates(currentDependency.getCoordinates());
-      currPom.setExclusions(parsePom.getExclusions());
 
-      if (skipper.skipResolution(seen, currentDependency, currPom)) {
+      if (skipper.skipResolution(
+          // with several roots every version is visited, see resolveRoots()
+          (visited != null) ? Collections.<Dependency>emptySet() : seen,
+          currentDependency,
+          exclusionScopes.getOrDefault(currentDependency, ExclusionScope.EMPTY))) {
+        if (graph.contains(currentDependency)) {
+          // already resolved through another path
+          graph.addEdge(declaringDependencies.get(currentDependency), currentDependency);
+        }
         unresolvedDependencies.add(currentDependency);
         continue;
       }
 
+      if (visited != null
+          && !visited.add(
+              traversalKey(
+                  currentDependency,
+                  exclusionScopes.getOrDefault(currentDependency, ExclusionScope.EMPTY)))) {
+        // already traversed with the same exclusions by this root or another one, which adds its
+        // dependencies to the graph
+        graph.addEdge(declaringDependencies.get(currentDependency), currentDependency);
+        // still resolved by this root, a root itself is only listed through its own POM entry
+        resolvedDependencies.add(currentDependency);
+        continue;
+      }
+
       seen.forEach(
           visitedDependency -> {
             if (skipper.hasVersionConflicts(visitedDependency, currentDependency)) {
@@ -292,6 +615,7 @@ public class DependencyResolver implements Repository {
         // also add unseen dependency to pom
         currPom.setCoordinates(currentDependency.getCoordinates());
         resolvedDependencies.add(currentDependency);
+        graph.addEdge(declaringDependencies.get(currentDependency), currentDependency);
         callback.info("Successfully resolved " + currentDependency);
       }
 
@@ -310,17 +634,22 @@ public class DependencyResolver implements Repository {
         callback.warning("Failed to resolve " + currentDependency + " " + e.getMessage());
       }
     }
-    try {
-      inputStream.close();
-    } catch (IOException e) {
-      callback.error("Failed to close input stream " + inputStream + " " + e.getMessage());
-    }
   }
 
   public void skipInnerDependencies(boolean enabled) {
     this.skipInnerDependencies = enabled;
   }
 
+  /**
+   * Gets the graph of the resolved dependencies, which tells for each dependency which dependencies
+   * declared it
+   *
+   * @return the dependency graph, populated once resolution has completed
+   */
+  public DependencyGraph getDependencyGraph() {
+    return graph;
+  }
+
   /**
    * Applies DFS (Depth First Search) to recrusively transverse a tree in order to all trace
    * transitive dependencies
@@ -336,7 +665,7 @@ public class DependencyResolver implements Repository {
     }
     for (Dependency transitiveDependency : resolveDependencies(indirectDependency)) {
       // prevent unnecessary recursion
-      if (!resolvedDependencies.contains(transitiveDependency)) {
+      if (!graph.contains(transitiveDependency)) {
         resolveTransitiveDependencies(transitiveDependency, resolvedDependencies);
       }
     }
@@ -344,20 +673,132 @@ public class DependencyResolver implements Repository {
 
   @Override
   public Pom getParentPom(Coordinates coordinates) {
-    InputStream is = null;
     try {
-      is = searchRepositories(new Dependency(coordinates));
-      Pom parsedPom = new Pom();
       callback.info("Parsing parent POM " + coordinates);
-      parsedPom = resolvePom(is);
-      return parsedPom;
+      return readPom(new Dependency(coordinates));
     } catch (IOException e) {
       callback.error("Failed to parse parent POM for " + coordinates + " " + e.getMessage());
-    } finally {
+    }
+    return null;
+  }
+
+  /**
+   * Reads the POM of a dependency
+   *
+   * <p>Every POM is loaded once per resolution, concurrent reads of the same POM wait for the
+   * first one to complete.
+   *
+   * @param dependency the dependency to read the POM for
+   * @return the parsed POM or {@code null} if it was not found in any repository
+   * @throws IOException in case of I/O error
+   */
+  private Pom readPom(Dependency dependency) throws IOException {
+    return load(poms, getPomDownloadURL(dependency), () -> loadPom(dependency));
+  }
+
+  /**
+   * Loads a file of a resolution once, concurrent loads of the same file wait for the first one
+   *
+   * @param loaded the files loaded so far, by path
+   * @param path the path of the file relative to the repository
+   * @param loader loads the file the first time it is requested
+   * @return the loaded file
+   * @throws IOException in case of I/O error
+   */
+  private static <T> T load(
+      ConcurrentMap<String, FutureTask<T>> loaded, String path, Callable<T> loader)
+      throws IOException {
+    FutureTask<T> task = new FutureTask<>(loader);
+    FutureTask<T> existing = loaded.putIfAbsent(path, task);
+    if (existing == null) {
+      existing = task;
+      existing.run();
+    }
+    try {
+      return existing.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      // allow the file to be loaded again
+      loaded.remove(path, existing);
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Loads the POM of a dependency
+   *
+   * <p>A POM cached in a {@link LocalRepository} is decoded from its {@link BinaryPomCache} when
+   * the binary encoding is still valid, otherwise it is parsed and the binary encoding is written
+   * for subsequent resolutions.
+   *
+   * @param dependency the dependency to load the POM for
+   * @return the parsed POM or {@code null} if it was not found in any repository
+   * @throws IOException in case of I/O error
+   */
+  private Pom loadPom(Dependency dependency) throws IOException {
+    File cachedPom = findCachedPom(dependency);
+    if (cachedPom == null) {
+      InputStream is = searchRepositories(dependency);
+      if (is == null) {
+        return null;
+      }
       try {
+        return resolvePom(is);
+      } finally {
         is.close();
-      } catch (IOException e) {
-        callback.error("Failed to close search for POM" + e.getMessage());
+      }
+    }
+
+    Pom parsedPom = BinaryPomCache.read(cachedPom);
+    if (parsedPom != null) {
+      return parsedPom;
+    }
+    try (InputStream is = new FileInputStream(cachedPom)) {
+      parsedPom = resolvePom(is);
+    }
+    if (parsedPom == null) {
+      // not a POM, nothing to cache
+      return null;
+    }
+    try {
+      BinaryPomCache.write(cachedPom, parsedPom);
+    } catch (IOException e) {
+      // the POM would be parsed again on the next resolution
+      callback.verbose("Failed to cache POM " + cachedPom + " " + e.getMessage());
+    }
+    return parsedPom;
+  }
+
+  /**
+   * Finds the POM of a dependency in the {@link LocalRepository} of the cache directory
+   *
+   * @param dependency the dependency to find the POM for
+   * @return the cached POM file or {@code null} if the POM has not been cached
+   */
+  private File findCachedPom(Dependency dependency) {
+    return findCachedFile(getPomDownloadURL(dependency));
+  }
+
+  /**
+   * Finds a file in the {@link LocalRepository} of the cache directory
+   *
+   * @param relativePath the path of the file relative to the repository
+   * @return the cached file or {@code null} if the file has not been cached
+   */
+  private File findCachedFile(String relativePath) {
+    if (storageFactory == null) {
+      return null;
+    }
+    for (LocalRepository localRepository :
+        LocalRepository.getRepositories(storageFactory.getCacheDirectory())) {
+      File localFile = new File(localRepository.getUrl() + "/" + relativePath);
+      if (localFile.isFile()) {
+        return localFile;
       }
     }
     return null;
@@ -393,7 +834,20 @@ public class DependencyResolver implements Repository {
    * @param dependency the dependency to search for
    */
   public InputStream searchRepositories(Dependency dependency) {
-    String pomPath = getPomDownloadURL(dependency);
+    return searchRepositories(dependency, getPomDownloadURL(dependency), false);
+  }
+
+  /**
+   * Searches for a file of a dependency in either a {@link LocalRepository} or {@link
+   * RemoteRepository}
+   *
+   * @param dependency the dependency to search for
+   * @param pomPath the path of the file relative to the repository
+   * @param optional whether the file may not be published, failing to fetch it is then not a
+   *     warning
+   */
+  private InputStream searchRepositories(
+      Dependency dependency, String pomPath, boolean optional) {
 
     if (storageFactory != null) {
       // Try to fetch from local repositories first
@@ -454,11 +908,16 @@ public class DependencyResolver implements Repository {
           }
         }
       } catch (InterruptedException | ExecutionException | IOException e) {
-        callback.warning(
+        String msg =
             "Error fetching artifact"
                 + dependency.toString()
                 + " from remote repository: "
-                + e.getMessage());
+                + e.getMessage();
+        if (optional) {
+          callback.verbose(msg);
+        } else {
+          callback.warning(msg);
+        }
       }
     }
     return null; // no result found
@@ -475,6 +934,11 @@ public class DependencyResolver implements Repository {
     if (dependency == null) {
       return "";
     }
+    if (dependency.getArtifactFile() != null) {
+      // the exact file name is known from the Gradle Module Metadata
+      String path = getPathFromDeclaration(dependency);
+      return path.substring(0, path.lastIndexOf('/') + 1) + dependency.getArtifactFile();
+    }
     return getPathFromDeclaration(dependency)
         + ("aar".equalsIgnoreCase(dependency.getType())
             ? ".aar"
@@ -496,6 +960,20 @@ public class DependencyResolver implements Repository {
     return getPathFromDeclaration(dependency) + ".pom";
   }
 
+  /**
+   * Gets a Gradle Module Metadata download url for a dependency
+   *
+   * <p>The url can also be used with local repositories that follow same remote declaration path
+   *
+   * @param dependency the dependency to provide module url for
+   */
+  public static String getModuleDownloadURL(Dependency dependency) {
+    if (dependency == null) {
+      return "";
+    }
+    return getPathFromDeclaration(dependency) + ".module";
+  }
+
   /**
    * Gets a declaration path for a dependency from it's coordinates
    *
@@ -21,15 +21,15 @@
 package eup.dependency.haven.resolver.internal;
 
 import eup.dependency.haven.callback.DependencyResolutionCallback;
+import eup.dependency.haven.model.Coordinates;
 import eup.dependency.haven.model.Dependency;
 import eup.dependency.haven.model.Exclusion;
-import eup.dependency.haven.model.Pom;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A skipper that determines whether to skip resolving a dependency
@@ -53,11 +53,12 @@ public final class DependencyResolutionSkipper {
    *
    * @param visited all visited dependencies when transversing the tree
    * @param dependency the current dependency
-   * @param pom the POM containing exclusion(s)
+   * @param exclusions the exclusions inherited from the path that declared the dependency
    * @return {@code true} if the node can be skipped for resolution, {@code false} if resolution
    *     required.
    */
-  public boolean skipResolution(Set<Dependency> visited, Dependency dependency, Pom pom) {
+  public boolean skipResolution(
+      Set<Dependency> visited, Dependency dependency, ExclusionScope exclusions) {
 
     if (dependency.getScope() != null & IGNORED_SCOPES.contains(dependency.getScope())) {
       resolutionCallback.info(
@@ -67,7 +68,7 @@ public final class DependencyResolutionSkipper {
               + dependency.getScope());
       return true;
     }
-    if (isExcluded(dependency, pom.getExclusions())) {
+    if (isExcluded(dependency, exclusions)) {
       resolutionCallback.info("Skipped resolving excluded dependency " + dependency.toString());
       return true;
     }
@@ -101,31 +102,127 @@ public final class DependencyResolutionSkipper {
         || dp.getCoordinates().getVersion() == null;
   }
 
-  private boolean isExcluded(Dependency dependency, List<Exclusion> exclusions) {
-    boolean exclusion =
-        exclusions.stream()
-            .filter(Objects::nonNull)
-            .anyMatch(
-                ex -> {
-                  if (ex == null) {
-                    return false;
-                  }
-                  if (ex.getGroupId() == null) {
-                    return false;
-                  }
-                  if (!ex.getGroupId().equals(dependency.getCoordinates().getGroupId())) {
-                    return false;
-                  }
-
-                  if (ex.getArtifactId() == null) {
-                    return false;
-                  }
-
-                  if (!ex.getArtifactId().equals(dependency.getCoordinates().getArtifactId())) {
-                    return false;
-                  }
-                  return false;
-                });
-    return exclusion;
+  /**
+   * Check whether a dependency is excluded by the path that declared it
+   *
+   * @param dependency the dependency to check
+   * @param exclusions the exclusions inherited from the path that declared the dependency
+   * @return {@code true} if the dependency and its subtree must not be resolved
+   */
+  public boolean isExcluded(Dependency dependency, ExclusionScope exclusions) {
+    return exclusions != null && exclusions.excludes(dependency.getCoordinates());
+  }
+
+  /**
+   * The exclusions in effect for a subtree of the dependency graph.
+   *
+   * <p>An exclusion declared on a dependency applies to every node below it, so the scope of a
+   * node is the scope of its declaring dependency plus that dependency's own exclusions. Exclusions
+   * are compiled into hash sets keyed by {@code groupId:artifactId}, {@code groupId} and {@code
+   * artifactId} so that matching a node is a constant number of lookups, with {@code *} matching
+   * any group or artifact.
+   */
+  public static final class ExclusionScope {
+
+    /** A scope that excludes nothing */
+    public static final ExclusionScope EMPTY =
+        new ExclusionScope(
+            Collections.<String>emptySet(),
+            Collections.<String>emptySet(),
+            Collections.<String>emptySet(),
+            false);
+
+    private final Set<String> excludedArtifacts;
+    private final Set<String> excludedGroups;
+    private final Set<String> excludedArtifactIds;
+    private final boolean excludesAll;
+    private String key;
+
+    private ExclusionScope(
+        Set<String> excludedArtifacts,
+        Set<String> excludedGroups,
+        Set<String> excludedArtifactIds,
+        boolean excludesAll) {
+      this.excludedArtifacts = excludedArtifacts;
+      this.excludedGroups = excludedGroups;
+      this.excludedArtifactIds = excludedArtifactIds;
+      this.excludesAll = excludesAll;
+    }
+
+    /**
+     * Creates the scope of a subtree by adding the exclusions declared on its root
+     *
+     * @param exclusions the exclusions declared on the root of the subtree
+     * @return a new scope, or this scope when nothing is added
+     */
+    public ExclusionScope with(List<Exclusion> exclusions) {
+      if (excludesAll || exclusions == null || exclusions.isEmpty()) {
+        return this;
+      }
+      Set<String> artifacts = new HashSet<>(excludedArtifacts);
+      Set<String> groups = new HashSet<>(excludedGroups);
+      Set<String> artifactIds = new HashSet<>(excludedArtifactIds);
+      boolean all = false;
+      for (Exclusion exclusion : exclusions) {
+        if (exclusion == null) {
+          continue;
+        }
+        boolean anyGroup = isWildCard(exclusion.getGroupId());
+        boolean anyArtifact = isWildCard(exclusion.getArtifactId());
+        if (anyGroup && anyArtifact) {
+          all = true;
+        } else if (anyGroup) {
+          artifactIds.add(exclusion.getArtifactId());
+        } else if (anyArtifact) {
+          groups.add(exclusion.getGroupId());
+        } else {
+          artifacts.add(exclusion.getGroupId() + ":" + exclusion.getArtifactId());
+        }
+      }
+      return new ExclusionScope(artifacts, groups, artifactIds, all);
+    }
+
+    /**
+     * Check whether this scope excludes an artifact
+     *
+     * @param coordinates the coordinates of the artifact
+     * @return {@code true} if the artifact is excluded
+     */
+    public boolean excludes(Coordinates coordinates) {
+      if (excludesAll) {
+        return true;
+      }
+      if (coordinates == null) {
+        return false;
+      }
+      return excludedGroups.contains(coordinates.getGroupId())
+          || excludedArtifactIds.contains(coordinates.getArtifactId())
+          || excludedArtifacts.contains(coordinates.getGroupAndArtifactId());
+    }
+
+    /**
+     * Gets a key identifying the artifacts this scope excludes
+     *
+     * <p>Scopes built from the same exclusions, in any order, have the same key.
+     *
+     * @return the key of this scope
+     */
+    public String getKey() {
+      if (key == null) {
+        key =
+            excludesAll
+                ? WILD_CARD
+                : new TreeSet<>(excludedArtifacts)
+                    + " "
+                    + new TreeSet<>(excludedGroups)
+                    + " "
+                    + new TreeSet<>(excludedArtifactIds);
+      }
+      return key;
+    }
+
+    private static boolean isWildCard(String id) {
+      return id == null || id.isEmpty() || WILD_CARD.equals(id);
+    }
   }
 }
@@ -0,0 +1,182 @@
+/*
+ *  MIT License
+ *  Copyright (c) 2023 EUP
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package eup.dependency.haven.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests the nodes, edges and traversals of a {@link DependencyGraph}. */
+public class DependencyGraphTest {
+
+  @Test
+  public void sameCoordinatesGetSameId() {
+    DependencyGraph graph = new DependencyGraph();
+    int a = graph.add(dependency("t:a:1"));
+    int b = graph.add(dependency("t:b:1"));
+
+    assertEquals(a, graph.add(dependency("t:a:1")));
+    assertNotEquals(a, graph.add(dependency("t:a:2")));
+    assertEquals(b, graph.getId(Coordinates.valueOf("t:b:1")));
+    assertEquals(DependencyGraph.NO_ID, graph.getId(Coordinates.valueOf("t:c:1")));
+    assertTrue(graph.contains(dependency("t:a:2")));
+    assertFalse(graph.contains(dependency("t:c:1")));
+    assertEquals(3, graph.size());
+  }
+
+  @Test
+  public void edgesAreKeptBothWays() {
+    DependencyGraph graph = new DependencyGraph();
+    // more nodes and edges than the initial capacities
+    List<String> expectedChildren = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      graph.addEdge(dependency("t:root:1"), dependency("t:c" + i + ":1"));
+      graph.addEdge(dependency("t:other:1"), dependency("t:c" + i + ":1"));
+      expectedChildren.add("t:c" + i + ":1");
+    }
+    // duplicate edges and self edges are ignored
+    graph.addEdge(dependency("t:root:1"), dependency("t:c3:1"));
+    graph.addEdge(dependency("t:root:1"), dependency("t:root:1"));
+    graph.addEdge(null, dependency("t:lone:1"));
+
+    assertEquals(43, graph.size());
+    assertEquals(expectedChildren, names(graph.getChildren(dependency("t:root:1"))));
+    assertEquals(
+        Arrays.asList("t:root:1", "t:other:1"), names(graph.getParents(dependency("t:c3:1"))));
+    assertEquals(Collections.emptyList(), graph.getParents(dependency("t:root:1")));
+    assertEquals(Collections.emptyList(), graph.getChildren(dependency("t:lone:1")));
+    assertEquals(Collections.emptyList(), graph.getChildren(dependency("t:missing:1")));
+  }
+
+  @Test
+  public void topologicalOrderPutsDependenciesAfterDeclarers() {
+    Random random = new Random(29);
+    for (int round = 0; round < 20; round++) {
+      DependencyGraph graph = new DependencyGraph();
+      int count = 1 + random.nextInt(60);
+      List<int[]> edges = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        graph.add(dependency("t:n" + i + ":1"));
+      }
+      for (int i = 0; i < count * 2; i++) {
+        int from = random.nextInt(count);
+        int to = random.nextInt(count);
+        // edges only go to higher numbers, so there is no cycle
+        if (from < to) {
+          graph.addEdge(dependency("t:n" + from + ":1"), dependency("t:n" + to + ":1"));
+          edges.add(new int[] {from, to});
+        }
+      }
+
+      List<String> order = names(graph.getTopologicalOrder());
+      assertEquals(count, order.size());
+      for (int[] edge : edges) {
+        assertTrue(order.indexOf("t:n" + edge[0] + ":1") < order.indexOf("t:n" + edge[1] + ":1"));
+      }
+    }
+  }
+
+  @Test
+  public void cycleIsAppendedToTopologicalOrder() {
+    DependencyGraph graph = new DependencyGraph();
+    graph.addEdge(dependency("t:b:1"), dependency("t:c:1"));
+    graph.addEdge(dependency("t:c:1"), dependency("t:b:1"));
+    graph.addEdge(dependency("t:a:1"), dependency("t:b:1"));
+    graph.addEdge(dependency("t:a:1"), dependency("t:d:1"));
+
+    assertEquals(
+        Arrays.asList("t:a:1", "t:d:1", "t:c:1", "t:b:1"), names(graph.getTopologicalOrder()));
+  }
+
+  @Test
+  public void pathToRootIsShortest() {
+    DependencyGraph graph = new DependencyGraph();
+    graph.addEdge(dependency("t:a:1"), dependency("t:b:1"));
+    graph.addEdge(dependency("t:b:1"), dependency("t:c:1"));
+    graph.addEdge(dependency("t:c:1"), dependency("t:z:1"));
+    graph.addEdge(dependency("t:r:1"), dependency("t:z:1"));
+
+    assertEquals(Arrays.asList("t:z:1", "t:r:1"), names(graph.getPathToRoot(dependency("t:z:1"))));
+    assertEquals(
+        Arrays.asList("t:c:1", "t:b:1", "t:a:1"), names(graph.getPathToRoot(dependency("t:c:1"))));
+    assertEquals(Arrays.asList("t:a:1"), names(graph.getPathToRoot(dependency("t:a:1"))));
+    assertEquals(Collections.emptyList(), graph.getPathToRoot(dependency("t:y:1")));
+  }
+
+  @Test
+  public void selectRedirectsEdgesToSelectedVersions() {
+    DependencyGraph graph = new DependencyGraph();
+    graph.addEdge(dependency("t:a:1"), dependency("t:x:1"));
+    graph.addEdge(dependency("t:b:1"), dependency("t:x:2"));
+    graph.addEdge(dependency("t:x:1"), dependency("t:y:1"));
+    graph.addEdge(dependency("t:x:2"), dependency("t:w:1"));
+    graph.add(dependency("t:unreachable:1"));
+
+    Map<String, Dependency> selected = new HashMap<>();
+    selected.put("t:x", dependency("t:x:2"));
+    DependencyGraph result =
+        graph.select(Arrays.asList(dependency("t:a:1"), dependency("t:b:1")), selected);
+
+    assertEquals(
+        Arrays.asList("t:a:1", "t:b:1", "t:x:2", "t:w:1"), names(result.getTopologicalOrder()));
+    assertEquals(Arrays.asList("t:x:2"), names(result.getChildren(dependency("t:a:1"))));
+    assertEquals(
+        Arrays.asList("t:a:1", "t:b:1"), names(result.getParents(dependency("t:x:2"))));
+    assertFalse(result.contains(dependency("t:y:1")));
+  }
+
+  @Test
+  public void addAllCopiesNodesAndEdges() {
+    DependencyGraph first = new DependencyGraph();
+    first.addEdge(dependency("t:a:1"), dependency("t:b:1"));
+    DependencyGraph second = new DependencyGraph();
+    second.addEdge(dependency("t:b:1"), dependency("t:c:1"));
+    second.add(dependency("t:d:1"));
+
+    first.addAll(second);
+
+    assertEquals(4, first.size());
+    assertEquals(Arrays.asList("t:c:1"), names(first.getChildren(dependency("t:b:1"))));
+    assertEquals(
+        Arrays.asList("t:c:1", "t:b:1", "t:a:1"), names(first.getPathToRoot(dependency("t:c:1"))));
+  }
+
+  private static Dependency dependency(String coordinates) {
+    return new Dependency(Coordinates.valueOf(coordinates));
+  }
+
+  private static List<String> names(List<Dependency> dependencies) {
+    List<String> names = new ArrayList<>();
+    for (Dependency dependency : dependencies) {
+      names.add(dependency.getCoordinates().toString());
+    }
+    return names;
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ *  MIT License
+ *  Copyright (c) 2023 EUP
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package eup.dependency.haven.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import eup.dependency.haven.model.Coordinates;
+import eup.dependency.haven.model.Dependency;
+import eup.dependency.haven.model.Exclusion;
+import eup.dependency.haven.model.Pom;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests encoding parsed POMs and invalidating their encoding when the POM changes. */
+public class BinaryPomCacheTest {
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  private File pomFile;
+
+  @Before
+  public void setUp() throws IOException {
+    pomFile = temp.newFile("a-1.pom");
+    writePomFile("<project/>");
+  }
+
+  @Test
+  public void pomIsDecodedAsEncoded() throws Exception {
+    Pom pom = pom();
+    BinaryPomCache.write(pomFile, pom);
+
+    assertEquals(describe(pom), describe(BinaryPomCache.read(pomFile)));
+  }
+
+  @Test
+  public void missingFilesAreMisses() throws Exception {
+    assertNull(BinaryPomCache.read(pomFile));
+
+    BinaryPomCache.write(pomFile, pom());
+    assertTrue(pomFile.delete());
+    assertNull(BinaryPomCache.read(pomFile));
+  }
+
+  @Test
+  public void changedSizeInvalidatesCache() throws Exception {
+    long lastModified = pomFile.lastModified();
+    BinaryPomCache.write(pomFile, pom());
+
+    writePomFile("<project></project>");
+    assertTrue(pomFile.setLastModified(lastModified));
+    assertNull(BinaryPomCache.read(pomFile));
+  }
+
+  @Test
+  public void changedLastModifiedInvalidatesCache() throws Exception {
+    BinaryPomCache.write(pomFile, pom());
+
+    assertTrue(pomFile.setLastModified(pomFile.lastModified() - 60_000));
+    assertNull(BinaryPomCache.read(pomFile));
+
+    // encoding it again makes it valid
+    BinaryPomCache.write(pomFile, pom());
+    assertNotNull(BinaryPomCache.read(pomFile));
+  }
+
+  @Test
+  public void otherFormatVersionIsMiss() throws Exception {
+    BinaryPomCache.write(pomFile, pom());
+    File cacheFile = BinaryPomCache.getCacheFile(pomFile);
+    try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw")) {
+      raf.seek(4);
+      int version = raf.readInt();
+      raf.seek(4);
+      raf.writeInt(version - 1);
+    }
+
+    assertNull(BinaryPomCache.read(pomFile));
+  }
+
+  @Test
+  public void corruptCacheIsMiss() throws Exception {
+    BinaryPomCache.write(pomFile, pom());
+    File cacheFile = BinaryPomCache.getCacheFile(pomFile);
+    byte[] bytes = Files.readAllBytes(cacheFile.toPath());
+
+    for (int length = 0; length < bytes.length; length += 5) {
+      Files.write(cacheFile.toPath(), Arrays.copyOf(bytes, length));
+      // a truncated body fails to decode, it never throws
+      BinaryPomCache.read(pomFile);
+    }
+    for (int length : new int[] {0, 12, 23}) {
+      Files.write(cacheFile.toPath(), Arrays.copyOf(bytes, length));
+      assertNull(BinaryPomCache.read(pomFile));
+    }
+  }
+
+  /** Creates a POM using every encoded field, with a parent. */
+  private static Pom pom() {
+    Pom parent = new Pom(new Coordinates("t", "parent", "3", "pom"));
+    parent.addProperty("parent.version", "3");
+
+    Dependency x = new Dependency(Coordinates.valueOf("t:x:1"));
+    x.setScope("compile");
+    x.setType("aar");
+    x.setOptional(true);
+    x.addExclusions(new Exclusion("t", "z"));
+    x.addExclusions(new Exclusion("*", "*"));
+    Dependency managed = new Dependency(Coordinates.valueOf("t:y:2"));
+
+    Pom pom = new Pom(new Coordinates("t", "a", "1", "jar"));
+    pom.setDependency(new Dependency(pom.getCoordinates()));
+    pom.addDependency(x);
+    pom.addDependency(new Dependency(new Coordinates("t", "\u00e9\u20ac", null)));
+    pom.setManagedDependencies(Arrays.asList(managed));
+    pom.addExclusions(new Exclusion("t", "w"));
+    pom.addProperty("x.version", "1");
+    pom.addProperty("empty", "");
+    pom.setUserDefined(true);
+    pom.setGradleMetadata(true);
+    pom.setParent(parent);
+    return pom;
+  }
+
+  /** Describes every encoded field of a POM. */
+  private static String describe(Pom pom) {
+    if (pom == null) {
+      return "null";
+    }
+    Map<String, String> properties = new TreeMap<>(pom.getProperties());
+    return "Pom["
+        + describe(pom.getCoordinates())
+        + ", "
+        + describe(pom.getDependency())
+        + ", "
+        + describe(pom.getDependencies())
+        + ", managed="
+        + describe(pom.getManagedDependencies())
+        + ", "
+        + pom.getExclusions()
+        + ", "
+        + properties
+        + ", "
+        + pom.isUserDefined()
+        + ", "
+        + pom.hasGradleMetadata()
+        + ", parent="
+        + describe(pom.getParent())
+        + "]";
+  }
+
+  private static String describe(List<Dependency> dependencies) {
+    StringBuilder result = new StringBuilder("[");
+    for (Dependency dependency : dependencies) {
+      result.append(describe(dependency)).append(' ');
+    }
+    return result.append(']').toString();
+  }
+
+  private static String describe(Dependency dependency) {
+    if (dependency == null) {
+      return "null";
+    }
+    return describe(dependency.getCoordinates())
+        + "/"
+        + dependency.getType()
+        + "/"
+        + dependency.getScope()
+        + "/"
+        + dependency.isOptional()
+        + "/"
+        + dependency.getExclusions();
+  }
+
+  private static String describe(Coordinates coordinates) {
+    return (coordinates == null) ? "null" : coordinates + "@" + coordinates.getPackaging();
+  }
+
+  private void writePomFile(String contents) throws IOException {
+    try (OutputStream out = new FileOutputStream(pomFile)) {
+      out.write(contents.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
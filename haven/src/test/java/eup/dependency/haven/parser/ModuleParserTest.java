@@ -0,0 +1,213 @@
+/*
+ *  MIT License
+ *  Copyright (c) 2023 EUP
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package eup.dependency.haven.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import eup.dependency.haven.model.Dependency;
+import eup.dependency.haven.model.GradleModule;
+import eup.dependency.haven.model.GradleModule.ArtifactFile;
+import eup.dependency.haven.model.GradleModule.Variant;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/** Tests parsing Gradle Module Metadata and selecting the variant used on Android. */
+public class ModuleParserTest {
+
+  private final ModuleParser parser = new ModuleParser();
+
+  @Test
+  public void componentAndVariantsAreParsed() throws Exception {
+    GradleModule module =
+        parse(
+            "{'formatVersion': '1.1',",
+            " 'component': {'group': 't', 'module': 'g', 'version': '1'},",
+            " 'variants': [",
+            "  {'name': 'apiElements',",
+            "   'attributes': {'org.gradle.usage': 'java-api', 'org.gradle.category': 'library'},",
+            "   'files': [{'name': 'g-1.jar', 'url': 'g-1.jar', 'size': 1234}]},",
+            "  {'name': 'runtimeElements',",
+            "   'files': [{'name': 'g-1.aar'}, {'url': 'nameless.jar'}, 'not an object']},",
+            "  'not an object']}");
+
+    assertEquals("t:g:1", module.getCoordinates().toString());
+    assertEquals(2, module.getVariants().size());
+
+    Variant api = module.getVariants().get(0);
+    assertEquals("apiElements", api.getName());
+    assertEquals("java-api", api.getAttribute(GradleModule.ATTRIBUTE_USAGE));
+    assertEquals("library", api.getAttribute(GradleModule.ATTRIBUTE_CATEGORY));
+    ArtifactFile jar = api.getFiles().get(0);
+    assertEquals("g-1.jar", jar.getUrl());
+    assertEquals(1234, jar.getSize());
+    assertEquals("jar", jar.getType());
+
+    // files without a name are skipped, a missing url is the name
+    Variant runtime = module.getVariants().get(1);
+    assertEquals(1, runtime.getFiles().size());
+    ArtifactFile aar = runtime.getFiles().get(0);
+    assertEquals("g-1.aar", aar.getUrl());
+    assertEquals(-1, aar.getSize());
+    assertEquals("aar", aar.getType());
+    assertNull(runtime.getAvailableAt());
+  }
+
+  @Test
+  public void dependencyVersionsFollowConstraintPrecedence() throws Exception {
+    Variant variant =
+        parseVariant(
+            "'dependencies': [",
+            " {'group': 't', 'module': 'strict',",
+            "  'version': {'strictly': '3', 'requires': '2', 'prefers': '1'}},",
+            " {'group': 't', 'module': 'required', 'version': {'requires': '2', 'prefers': '1'}},",
+            " {'group': 't', 'module': 'preferred', 'version': {'prefers': '1'}},",
+            " {'group': 't', 'module': 'unversioned'}]");
+
+    assertEquals(
+        Arrays.asList("t:strict:3", "t:required:2", "t:preferred:1", "t:unversioned:null"),
+        names(variant.getDependencies()));
+  }
+
+  @Test
+  public void dependencyExclusionsAreParsed() throws Exception {
+    Variant variant =
+        parseVariant(
+            "'dependencies': [{'group': 't', 'module': 'x', 'version': {'requires': '1'},",
+            " 'excludes': [{'group': 't', 'module': 'z'}, {'group': 'u', 'module': '*'},",
+            "  {'group': '*', 'module': 'w'}]}]");
+
+    Dependency dependency = variant.getDependencies().get(0);
+    assertEquals("[t:z, u:*, *:w]", dependency.getExclusions().toString());
+  }
+
+  @Test
+  public void platformDependenciesAreSkipped() throws Exception {
+    Variant variant =
+        parseVariant(
+            "'dependencies': [",
+            " {'group': 't', 'module': 'bom', 'version': {'requires': '1'},",
+            "  'attributes': {'org.gradle.category': 'platform'}},",
+            " {'group': 't', 'module': 'enforced', 'version': {'requires': '1'},",
+            "  'attributes': {'org.gradle.category': 'enforced-platform'}},",
+            " {'group': 't', 'module': 'lib', 'version': {'requires': '1'},",
+            "  'attributes': {'org.gradle.category': 'library'}}]");
+
+    assertEquals(Arrays.asList("t:lib:1"), names(variant.getDependencies()));
+  }
+
+  @Test
+  public void availableAtIsParsed() throws Exception {
+    Variant variant =
+        parseVariant(
+            "'available-at': {'url': '../../k-android/1/k-android-1.module',",
+            " 'group': 't', 'module': 'k-android', 'version': '1'}");
+
+    assertEquals("t:k-android:1", variant.getAvailableAt().toString());
+  }
+
+  @Test
+  public void androidRuntimeVariantIsSelected() throws Exception {
+    GradleModule module =
+        parseVariants(
+            variant(
+                "jvmApi",
+                "'org.gradle.usage': 'java-api', 'org.gradle.jvm.environment': 'android'"),
+            variant(
+                "jvmRuntime",
+                "'org.gradle.usage': 'java-runtime', 'org.jetbrains.kotlin.platform.type': 'jvm'"),
+            variant(
+                "androidRuntime",
+                "'org.gradle.usage': 'java-runtime', "
+                    + "'org.jetbrains.kotlin.platform.type': 'androidJvm'"),
+            variant(
+                "jsRuntime",
+                "'org.gradle.usage': 'kotlin-runtime', 'org.jetbrains.kotlin.platform.type': 'js'"),
+            variant("sources", "'org.gradle.category': 'documentation'"));
+
+    assertEquals("androidRuntime", module.selectRuntimeVariant().getName());
+  }
+
+  @Test
+  public void unusableVariantsAreNotSelected() throws Exception {
+    GradleModule module =
+        parseVariants(
+            variant("metadata", "'org.gradle.usage': 'kotlin-metadata'"),
+            variant("native", "'org.jetbrains.kotlin.platform.type': 'native'"),
+            variant("other", "'org.gradle.jvm.environment': 'other'"));
+
+    assertNull(module.selectRuntimeVariant());
+  }
+
+  @Test
+  public void missingStreamIsNotParsed() throws Exception {
+    assertNull(parser.parse(null));
+  }
+
+  @Test
+  public void malformedModuleFails() {
+    try {
+      parse("{'variants': [");
+      fail();
+    } catch (IOException expected) {
+      // the JSON error is wrapped
+    }
+  }
+
+  private GradleModule parse(String... lines) throws IOException {
+    String json = String.join("\n", lines).replace('\'', '"');
+    return parser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Parses a module with a single variant
+   *
+   * @param members the members of the variant object besides its name
+   */
+  private Variant parseVariant(String... members) throws IOException {
+    List<String> lines = new ArrayList<>();
+    lines.add("{'variants': [{'name': 'runtimeElements',");
+    lines.addAll(Arrays.asList(members));
+    lines.add("}]}");
+    return parse(lines.toArray(new String[0])).getVariants().get(0);
+  }
+
+  private GradleModule parseVariants(String... variants) throws IOException {
+    return parse("{'variants': [" + String.join(", ", variants) + "]}");
+  }
+
+  private static String variant(String name, String attributes) {
+    return "{'name': '" + name + "', 'attributes': {" + attributes + "}}";
+  }
+
+  private static List<String> names(List<Dependency> dependencies) {
+    List<String> names = new ArrayList<>();
+    for (Dependency dependency : dependencies) {
+      names.add(dependency.getCoordinates().toString());
+    }
+    return names;
+  }
+}
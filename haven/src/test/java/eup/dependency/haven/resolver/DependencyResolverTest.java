@@ -0,0 +1,328 @@
+/*
+ *  MIT License
+ *  Copyright (c) 2023 EUP
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package eup.dependency.haven.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import eup.dependency.haven.callback.DependencyResolutionCallback;
+import eup.dependency.haven.model.Coordinates;
+import eup.dependency.haven.model.Dependency;
+import eup.dependency.haven.repository.StorageFactory;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests resolving dependencies from a repository of POMs and Gradle modules. */
+public class DependencyResolverTest {
+
+  private static final String GRADLE_METADATA_MARKER =
+      "<!-- do_not_remove: published-with-gradle-metadata -->";
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  private File repository;
+
+  @Before
+  public void setUp() throws IOException {
+    repository = temp.newFolder("repository");
+  }
+
+  @Test
+  public void rootsExcludingDifferentDependenciesResolveTheirUnion() throws Exception {
+    writePom("t:a:1", dependency("t:x:1", "t:z"));
+    writePom("t:b:1", dependency("t:x:1"));
+    writePom("t:x:1", dependency("t:z:1"));
+    writePom("t:z:1");
+
+    // z is excluded below x by a, not by b, whichever root reaches x first
+    Set<String> expected = set("t:a:1", "t:b:1", "t:x:1", "t:z:1");
+    assertEquals(expected, resolve("t:a:1", "t:b:1"));
+    assertEquals(expected, resolve("t:b:1", "t:a:1"));
+  }
+
+  @Test
+  public void dependencyExcludedByEveryRootIsNotResolved() throws Exception {
+    writePom("t:a:1", dependency("t:x:1", "t:z"));
+    writePom("t:b:1", dependency("t:x:1", "t:*"));
+    writePom("t:x:1", dependency("t:z:1"));
+    writePom("t:z:1");
+
+    Set<String> expected = set("t:a:1", "t:b:1", "t:x:1");
+    assertEquals(expected, resolve("t:a:1", "t:b:1"));
+    assertEquals(expected, resolve("t:b:1", "t:a:1"));
+  }
+
+  @Test
+  public void higherVersionIsSelected() throws Exception {
+    writePom("t:a:1", dependency("t:x:1"));
+    writePom("t:b:1", dependency("t:x:2"));
+    writePom("t:x:1", dependency("t:y:1"));
+    writePom("t:x:2");
+    writePom("t:y:1");
+
+    // y is only required by the losing version of x
+    Set<String> expected = set("t:a:1", "t:b:1", "t:x:2");
+    assertEquals(expected, resolve("t:a:1", "t:b:1"));
+    assertEquals(expected, resolve("t:b:1", "t:a:1"));
+  }
+
+  @Test
+  public void androidVariantIsSelectedOverStandardJvm() throws Exception {
+    publishModule(
+        "t:g:1",
+        variant("jreRuntimeElements", "standard-jvm", "g-1-jre.jar"),
+        variant("androidRuntimeElements", "android", "g-1-android.jar"),
+        variant("otherRuntimeElements", "other", "g-1-other.jar"));
+
+    Dependency dependency = resolveOne("t:g:1");
+    assertEquals("g-1-android.jar", dependency.getArtifactFile());
+    assertEquals("jar", dependency.getType());
+  }
+
+  @Test
+  public void moduleIsNotReadWithoutPomMarker() throws Exception {
+    writePom("t:g:1");
+    writeModule("t:g:1", variant("androidRuntimeElements", "android", "g-1-android.jar"));
+
+    Dependency dependency = resolveOne("t:g:1");
+    assertNull(dependency.getArtifactFile());
+    assertEquals("jar", dependency.getType());
+  }
+
+  @Test
+  public void failedRedirectKeepsCoordinates() throws Exception {
+    // the module redirected to is not published
+    publishModule(
+        "t:k:1",
+        "{\"name\": \"androidRuntimeElements\", \"attributes\": "
+            + "{\"org.gradle.usage\": \"java-runtime\"}, \"available-at\": "
+            + "{\"url\": \"../../k-android/1/k-android-1.module\", "
+            + "\"group\": \"t\", \"module\": \"k-android\", \"version\": \"1\"}}");
+
+    Dependency dependency = resolveOne("t:k:1");
+    assertEquals("t:k:1", dependency.getCoordinates().toString());
+    assertNull(dependency.getArtifactFile());
+  }
+
+  /**
+   * Resolves several roots from the repository
+   *
+   * @param roots the coordinates of the roots
+   * @return the coordinates of the resolved dependencies
+   */
+  private Set<String> resolve(String... roots) throws InterruptedException {
+    Set<String> resolved = new TreeSet<>();
+    for (Dependency dependency : resolveAll(roots)) {
+      resolved.add(dependency.getCoordinates().toString());
+    }
+    return resolved;
+  }
+
+  /**
+   * Resolves a single root from the repository
+   *
+   * @param root the coordinates of the root
+   * @return the resolved root
+   */
+  private Dependency resolveOne(String root) throws InterruptedException {
+    for (Dependency dependency : resolveAll(root)) {
+      if (root.equals(dependency.getCoordinates().toString())) {
+        return dependency;
+      }
+    }
+    throw new AssertionError(root + " was not resolved");
+  }
+
+  /**
+   * Resolves several roots from the repository
+   *
+   * @param roots the coordinates of the roots
+   * @return the resolved dependencies
+   */
+  private List<Dependency> resolveAll(String... roots) throws InterruptedException {
+    List<Coordinates> coordinates = new ArrayList<>();
+    for (String root : roots) {
+      coordinates.add(Coordinates.valueOf(root));
+    }
+    DependencyResolver resolver = new DependencyResolver((StorageFactory) null, coordinates);
+    String url = repository.toURI().toString();
+    resolver.addRepository("test", url.substring(0, url.length() - 1));
+
+    final List<Dependency> resolved = new ArrayList<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    resolver.resolve(
+        new DependencyResolutionCallback() {
+          @Override
+          public void onDependenciesResolved(
+              String message, List<Dependency> resolvedDependencies, long totalTime) {
+            resolved.addAll(resolvedDependencies);
+            done.countDown();
+          }
+
+          @Override
+          public void onDependencyNotResolved(
+              String message, List<Dependency> unresolvedDependencies) {}
+
+          @Override
+          public void info(String message) {}
+
+          @Override
+          public void verbose(String message) {}
+
+          @Override
+          public void error(String message) {}
+
+          @Override
+          public void warning(String message) {
+            if (message.startsWith("No dependencies found")) {
+              done.countDown();
+            }
+          }
+        });
+    assertTrue("resolution timed out", done.await(30, TimeUnit.SECONDS));
+    return resolved;
+  }
+
+  /**
+   * Writes the POM of an artifact to the repository
+   *
+   * @param coordinates the {@code groupId:artifactId:version} of the artifact
+   * @param dependencies the declared dependencies, see {@link #dependency(String, String...)}
+   */
+  private void writePom(String coordinates, String... dependencies) throws IOException {
+    writePom(coordinates, "", dependencies);
+  }
+
+  private void writePom(String coordinates, String comment, String[] dependencies)
+      throws IOException {
+    String[] gav = coordinates.split(":");
+    StringBuilder pom = new StringBuilder();
+    pom.append("<project>")
+        .append(comment)
+        .append("<modelVersion>4.0.0</modelVersion>")
+        .append(ids(gav))
+        .append("<packaging>jar</packaging><dependencies>");
+    for (String dependency : dependencies) {
+      pom.append(dependency);
+    }
+    pom.append("</dependencies></project>");
+    writeFile(gav, ".pom", pom.toString());
+  }
+
+  /**
+   * Publishes an artifact with Gradle Module Metadata, writing its POM and module
+   *
+   * @param coordinates the {@code groupId:artifactId:version} of the artifact
+   * @param variants the variants of the module, see {@link #variant(String, String, String)}
+   */
+  private void publishModule(String coordinates, String... variants) throws IOException {
+    writePom(coordinates, GRADLE_METADATA_MARKER, new String[0]);
+    writeModule(coordinates, variants);
+  }
+
+  private void writeModule(String coordinates, String... variants) throws IOException {
+    String[] gav = coordinates.split(":");
+    StringBuilder module = new StringBuilder();
+    module
+        .append("{\"formatVersion\": \"1.1\", \"component\": {\"group\": \"")
+        .append(gav[0])
+        .append("\", \"module\": \"")
+        .append(gav[1])
+        .append("\", \"version\": \"")
+        .append(gav[2])
+        .append("\"}, \"variants\": [");
+    for (int i = 0; i < variants.length; i++) {
+      module.append((i > 0) ? ", " : "").append(variants[i]);
+    }
+    module.append("]}");
+    writeFile(gav, ".module", module.toString());
+  }
+
+  /**
+   * Declares a runtime library variant of a module
+   *
+   * @param name the name of the variant
+   * @param environment the value of its {@code org.gradle.jvm.environment} attribute
+   * @param file the name of its only file
+   * @return the variant object
+   */
+  private static String variant(String name, String environment, String file) {
+    return "{\"name\": \""
+        + name
+        + "\", \"attributes\": {\"org.gradle.category\": \"library\", "
+        + "\"org.gradle.usage\": \"java-runtime\", \"org.gradle.jvm.environment\": \""
+        + environment
+        + "\"}, \"files\": [{\"name\": \""
+        + file
+        + "\", \"url\": \""
+        + file
+        + "\", \"size\": 1}]}";
+  }
+
+  private void writeFile(String[] gav, String extension, String contents) throws IOException {
+    File directory = new File(repository, gav[0].replace('.', '/') + "/" + gav[1] + "/" + gav[2]);
+    assertTrue(directory.isDirectory() || directory.mkdirs());
+    try (OutputStream out =
+        new FileOutputStream(new File(directory, gav[1] + "-" + gav[2] + extension))) {
+      out.write(contents.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Declares a dependency in a POM
+   *
+   * @param coordinates the {@code groupId:artifactId:version} of the dependency
+   * @param exclusions the {@code groupId:artifactId} of each exclusion
+   * @return the {@code <dependency>} element
+   */
+  private static String dependency(String coordinates, String... exclusions) {
+    StringBuilder dependency = new StringBuilder("<dependency>");
+    dependency.append(ids(coordinates.split(":"))).append("<exclusions>");
+    for (String exclusion : exclusions) {
+      dependency.append("<exclusion>").append(ids(exclusion.split(":"))).append("</exclusion>");
+    }
+    return dependency.append("</exclusions></dependency>").toString();
+  }
+
+  private static String ids(String[] ids) {
+    String ret = "<groupId>" + ids[0] + "</groupId><artifactId>" + ids[1] + "</artifactId>";
+    return (ids.length > 2) ? ret + "<version>" + ids[2] + "</version>" : ret;
+  }
+
+  private static Set<String> set(String... values) {
+    return new TreeSet<>(Arrays.asList(values));
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ *  MIT License
+ *  Copyright (c) 2023 EUP
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package eup.dependency.haven.resolver.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import eup.dependency.haven.callback.DependencyResolutionCallback;
+import eup.dependency.haven.model.Coordinates;
+import eup.dependency.haven.model.Dependency;
+import eup.dependency.haven.model.Exclusion;
+import eup.dependency.haven.resolver.internal.DependencyResolutionSkipper.ExclusionScope;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+/** Tests skipping dependencies, and matching them against scoped and wildcard exclusions. */
+public class DependencyResolutionSkipperTest {
+
+  private final DependencyResolutionSkipper skipper =
+      new DependencyResolutionSkipper(new QuietCallback());
+
+  @Test
+  public void emptyScopeExcludesNothing() {
+    assertFalse(ExclusionScope.EMPTY.excludes(Coordinates.valueOf("t:a:1")));
+    assertFalse(ExclusionScope.EMPTY.excludes(null));
+    assertSame(ExclusionScope.EMPTY, ExclusionScope.EMPTY.with(null));
+    assertSame(ExclusionScope.EMPTY, ExclusionScope.EMPTY.with(Collections.<Exclusion>emptyList()));
+  }
+
+  @Test
+  public void exclusionMatchesGroupAndArtifact() {
+    ExclusionScope scope = scope("t:a");
+
+    assertTrue(scope.excludes(Coordinates.valueOf("t:a:1")));
+    assertTrue(scope.excludes(Coordinates.valueOf("t:a:2")));
+    assertFalse(scope.excludes(Coordinates.valueOf("t:b:1")));
+    assertFalse(scope.excludes(Coordinates.valueOf("u:a:1")));
+  }
+
+  @Test
+  public void wildcardsMatchAnyGroupOrArtifact() {
+    ExclusionScope anyArtifact = scope("t:*");
+    assertTrue(anyArtifact.excludes(Coordinates.valueOf("t:a:1")));
+    assertTrue(anyArtifact.excludes(Coordinates.valueOf("t:b:1")));
+    assertFalse(anyArtifact.excludes(Coordinates.valueOf("u:a:1")));
+
+    ExclusionScope anyGroup = scope("*:a");
+    assertTrue(anyGroup.excludes(Coordinates.valueOf("t:a:1")));
+    assertTrue(anyGroup.excludes(Coordinates.valueOf("u:a:1")));
+    assertFalse(anyGroup.excludes(Coordinates.valueOf("t:b:1")));
+
+    ExclusionScope all = scope("*:*");
+    assertTrue(all.excludes(Coordinates.valueOf("t:a:1")));
+    assertTrue(all.excludes(Coordinates.valueOf("u:b:1")));
+    // nothing more can be excluded
+    assertSame(all, all.with(exclusions("t:a")));
+  }
+
+  @Test
+  public void missingIdsAreWildcards() {
+    ExclusionScope scope =
+        ExclusionScope.EMPTY.with(
+            Arrays.asList(new Exclusion("t", null), new Exclusion("", "a"), null));
+
+    assertTrue(scope.excludes(Coordinates.valueOf("t:b:1")));
+    assertTrue(scope.excludes(Coordinates.valueOf("u:a:1")));
+    assertFalse(scope.excludes(Coordinates.valueOf("u:b:1")));
+  }
+
+  @Test
+  public void subtreeScopeKeepsInheritedExclusions() {
+    ExclusionScope parent = scope("t:a", "v:*", "*:w");
+    ExclusionScope child = parent.with(exclusions("u:*", "*:x", "t:c"));
+
+    for (String excluded : Arrays.asList("t:a:1", "v:b:1", "z:w:1", "u:b:1", "t:x:1", "t:c:1")) {
+      assertTrue(excluded, child.excludes(Coordinates.valueOf(excluded)));
+    }
+    assertFalse(child.excludes(Coordinates.valueOf("t:b:1")));
+    // the parent scope is left as it was
+    assertFalse(parent.excludes(Coordinates.valueOf("u:b:1")));
+  }
+
+  @Test
+  public void keyIgnoresDeclarationOrder() {
+    assertEquals(scope("t:a", "u:*", "*:b").getKey(), scope("*:b", "t:a", "u:*").getKey());
+    assertEquals(scope("t:a", "u:*").getKey(), scope("t:a").with(exclusions("u:*")).getKey());
+    assertNotEquals(scope("t:*").getKey(), scope("*:t").getKey());
+    assertNotEquals(scope("t:a").getKey(), ExclusionScope.EMPTY.getKey());
+    assertEquals(scope("*:*").getKey(), scope("*:*", "t:a").getKey());
+  }
+
+  @Test
+  public void excludedDependencyIsSkipped() {
+    Set<Dependency> visited = new HashSet<>();
+    Dependency dependency = new Dependency(Coordinates.valueOf("t:a:1"));
+
+    assertTrue(skipper.isExcluded(dependency, scope("t:*")));
+    assertFalse(skipper.isExcluded(dependency, null));
+    assertTrue(skipper.skipResolution(visited, dependency, scope("*:a")));
+    assertFalse(skipper.skipResolution(visited, dependency, scope("t:b")));
+    assertFalse(skipper.skipResolution(visited, dependency, ExclusionScope.EMPTY));
+  }
+
+  private static ExclusionScope scope(String... exclusions) {
+    return ExclusionScope.EMPTY.with(exclusions(exclusions));
+  }
+
+  /**
+   * Creates exclusions
+   *
+   * @param ids the {@code groupId:artifactId} of each exclusion
+   */
+  private static List<Exclusion> exclusions(String... ids) {
+    List<Exclusion> exclusions = new ArrayList<>();
+    for (String id : ids) {
+      String[] parts = id.split(":");
+      exclusions.add(new Exclusion(parts[0], parts[1]));
+    }
+    return exclusions;
+  }
+
+  /** A callback ignoring every message */
+  private static final class QuietCallback implements DependencyResolutionCallback {
+    @Override
+    public void onDependenciesResolved(
+        String message, List<Dependency> resolvedDependencies, long totalTime) {}
+
+    @Override
+    public void onDependencyNotResolved(String message, List<Dependency> unresolvedDependencies) {}
+
+    @Override
+    public void info(String message) {}
+
+    @Override
+    public void verbose(String message) {}
+
+    @Override
+    public void error(String message) {}
+
+    @Override
+    public void warning(String message) {}
+  }
+}